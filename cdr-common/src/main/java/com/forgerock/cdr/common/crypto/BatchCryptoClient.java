@@ -0,0 +1,126 @@
+/**
+ * Copyright 2019 ForgeRock AS. All Rights Reserved
+ *
+ * Use of this code requires a commercial software license with ForgeRock AS.
+ * or with one of its affiliates. All use shall be exclusively subject
+ * to such license between the licensee and ForgeRock AS.
+ */
+package com.forgerock.cdr.common.crypto;
+
+import com.nimbusds.jose.jwk.JWKSet;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.web.client.RestTemplate;
+
+import java.text.ParseException;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Signs and verifies many JWS with the jwkms batch crypto API, in one mTLS round-trip per batch instead of one per
+ * signature. The lists larger than the batch size of jwkms are sent in several batches.
+ */
+@Component
+@Slf4j
+public class BatchCryptoClient {
+
+    private static final String SIGN_ENDPOINT = "api/crypto/batch/sign";
+    private static final String VERIFY_ENDPOINT = "api/crypto/batch/verify";
+
+    private final RestTemplate restTemplate;
+    private final String jwkmsRoot;
+    private final int maxBatchSize;
+
+    public BatchCryptoClient(RestTemplate restTemplate,
+                             @Value("${jwkms.root}") String jwkmsRoot,
+                             @Value("${jwkms.batch-crypto.max-batch-size:500}") int maxBatchSize) {
+        this.restTemplate = restTemplate;
+        this.jwkmsRoot = jwkmsRoot;
+        this.maxBatchSize = maxBatchSize;
+    }
+
+    /**
+     * Sign the payloads with the current signing key of this application.
+     *
+     * @return the compact JWS of the payloads, in their order
+     */
+    public List<String> sign(List<String> payloads) {
+        return sign(payloads, false);
+    }
+
+    /**
+     * Sign the payloads with the current signing key of this application, leaving the payloads out of the JWS.
+     *
+     * @return the detached JWS of the payloads, in their order
+     */
+    public List<String> signDetached(List<String> payloads) {
+        return sign(payloads, true);
+    }
+
+    /**
+     * Verify the signatures with the keys of the JWKS of a jwk_uri, fetched once for all of them.
+     *
+     * @return whether each signature is valid, in their order
+     */
+    public List<Boolean> verify(String jwkUri, List<String> signatures) throws ParseException {
+        return verify(JWKSet.parse(restTemplate.getForObject(jwkUri, String.class)), signatures);
+    }
+
+    /**
+     * Verify the signatures with the keys of a JWKS.
+     *
+     * @return whether each signature is valid, in their order
+     */
+    public List<Boolean> verify(JWKSet keys, List<String> signatures) {
+        return verify(keys, signatures, null);
+    }
+
+    /**
+     * Verify the detached signatures of the payloads with the keys of a JWKS.
+     *
+     * @return whether each signature is valid, in their order
+     */
+    public List<Boolean> verifyDetached(JWKSet keys, List<String> signatures, List<String> payloads) {
+        if (payloads.size() != signatures.size()) {
+            throw new IllegalArgumentException("There are " + signatures.size() + " signatures for " + payloads.size() + " payloads");
+        }
+        return verify(keys, signatures, payloads);
+    }
+
+    private List<String> sign(List<String> payloads, boolean detached) {
+        List<String> signatures = new ArrayList<>(payloads.size());
+        for (int from = 0; from < payloads.size(); from += maxBatchSize) {
+            List<String> batch = payloads.subList(from, Math.min(from + maxBatchSize, payloads.size()));
+            BatchSignResponse response = restTemplate.postForObject(jwkmsRoot + SIGN_ENDPOINT,
+                    new BatchSignRequest(batch, detached), BatchSignResponse.class);
+            signatures.addAll(checkSize(response != null ? response.getSignatures() : null, batch.size()));
+        }
+        log.debug("Signed {} payloads in {} batches", payloads.size(), batches(payloads.size()));
+        return signatures;
+    }
+
+    private List<Boolean> verify(JWKSet keys, List<String> signatures, List<String> payloads) {
+        String jwks = keys.toPublicJWKSet().toString();
+        List<Boolean> valid = new ArrayList<>(signatures.size());
+        for (int from = 0; from < signatures.size(); from += maxBatchSize) {
+            int to = Math.min(from + maxBatchSize, signatures.size());
+            BatchVerifyResponse response = restTemplate.postForObject(jwkmsRoot + VERIFY_ENDPOINT,
+                    new BatchVerifyRequest(jwks, signatures.subList(from, to), payloads != null ? payloads.subList(from, to) : null),
+                    BatchVerifyResponse.class);
+            valid.addAll(checkSize(response != null ? response.getValid() : null, to - from));
+        }
+        return valid;
+    }
+
+    private int batches(int size) {
+        return (size + maxBatchSize - 1) / maxBatchSize;
+    }
+
+    private static <T> List<T> checkSize(List<T> results, int expected) {
+        if (results == null || results.size() != expected) {
+            throw new IllegalStateException("jwkms returned " + (results == null ? 0 : results.size()) + " results for a batch of " + expected);
+        }
+        return results;
+    }
+}
@@ -0,0 +1,32 @@
+/**
+ * Copyright 2019 ForgeRock AS. All Rights Reserved
+ *
+ * Use of this code requires a commercial software license with ForgeRock AS.
+ * or with one of its affiliates. All use shall be exclusively subject
+ * to such license between the licensee and ForgeRock AS.
+ */
+package com.forgerock.cdr.common.crypto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+/**
+ * The payloads to sign with the current signing key of the calling application.
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class BatchSignRequest {
+
+    /**
+     * The payloads, like JWT claims or response bodies.
+     */
+    private List<String> payloads;
+    /**
+     * Leave the payloads out of the signatures, for the detached signatures of the responses.
+     */
+    private boolean detached;
+}
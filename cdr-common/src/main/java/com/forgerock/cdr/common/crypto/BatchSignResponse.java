@@ -0,0 +1,25 @@
+/**
+ * Copyright 2019 ForgeRock AS. All Rights Reserved
+ *
+ * Use of this code requires a commercial software license with ForgeRock AS.
+ * or with one of its affiliates. All use shall be exclusively subject
+ * to such license between the licensee and ForgeRock AS.
+ */
+package com.forgerock.cdr.common.crypto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+/**
+ * The compact JWS of the payloads, in their order.
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class BatchSignResponse {
+
+    private List<String> signatures;
+}
@@ -0,0 +1,33 @@
+/**
+ * Copyright 2019 ForgeRock AS. All Rights Reserved
+ *
+ * Use of this code requires a commercial software license with ForgeRock AS.
+ * or with one of its affiliates. All use shall be exclusively subject
+ * to such license between the licensee and ForgeRock AS.
+ */
+package com.forgerock.cdr.common.crypto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+/**
+ * The signatures to verify with the public keys of a JWKS.
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class BatchVerifyRequest {
+
+    /**
+     * The JWKS of the signer, as resolved from its jwk_uri.
+     */
+    private String jwks;
+    private List<String> signatures;
+    /**
+     * The payloads of detached signatures, in their order, or null.
+     */
+    private List<String> payloads;
+}
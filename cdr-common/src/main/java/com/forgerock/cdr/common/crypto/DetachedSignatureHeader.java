@@ -0,0 +1,54 @@
+/**
+ * Copyright 2019 ForgeRock AS. All Rights Reserved
+ *
+ * Use of this code requires a commercial software license with ForgeRock AS.
+ * or with one of its affiliates. All use shall be exclusively subject
+ * to such license between the licensee and ForgeRock AS.
+ */
+package com.forgerock.cdr.common.crypto;
+
+import com.nimbusds.jose.JWSAlgorithm;
+import com.nimbusds.jose.JWSHeader;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Set;
+
+/**
+ * The header of the detached signatures, with the critical Open Banking claims jwkms sets: the issuer, the trust
+ * anchor and the time of the signature.
+ *
+ * jwkms signing a batch and the applications signing with a leased key build it the same way, so a verifier can't tell
+ * them apart.
+ */
+public final class DetachedSignatureHeader {
+
+    public static final String OB_IAT = "http://openbanking.org.uk/iat";
+    public static final String OB_ISS = "http://openbanking.org.uk/iss";
+    public static final String OB_TAN = "http://openbanking.org.uk/tan";
+    /**
+     * The critical claims a verifier of the detached signatures must understand.
+     */
+    public static final Set<String> CRITICAL_PARAMS = Collections.unmodifiableSet(new HashSet<>(Arrays.asList(OB_IAT, OB_ISS, OB_TAN)));
+
+    private DetachedSignatureHeader() {
+    }
+
+    /**
+     * Build the header of a detached signature.
+     *
+     * @param issuer the issuer id of the signing application
+     * @param trustAnchor the trust anchor of the signing key, the jwkms.tan of jwkms
+     * @param issuedAt the time of the signature, in seconds since the epoch
+     */
+    public static JWSHeader build(JWSAlgorithm algorithm, String keyId, String issuer, String trustAnchor, long issuedAt) {
+        return new JWSHeader.Builder(algorithm)
+                .keyID(keyId)
+                .customParam(OB_IAT, issuedAt)
+                .customParam(OB_ISS, issuer)
+                .customParam(OB_TAN, trustAnchor)
+                .criticalParams(CRITICAL_PARAMS)
+                .build();
+    }
+}
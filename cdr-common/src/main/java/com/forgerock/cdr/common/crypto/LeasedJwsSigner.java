@@ -0,0 +1,233 @@
+/**
+ * Copyright 2019 ForgeRock AS. All Rights Reserved
+ *
+ * Use of this code requires a commercial software license with ForgeRock AS.
+ * or with one of its affiliates. All use shall be exclusively subject
+ * to such license between the licensee and ForgeRock AS.
+ */
+package com.forgerock.cdr.common.crypto;
+
+import com.nimbusds.jose.JOSEException;
+import com.nimbusds.jose.JWSAlgorithm;
+import com.nimbusds.jose.JWSHeader;
+import com.nimbusds.jose.JWSObject;
+import com.nimbusds.jose.JWSSigner;
+import com.nimbusds.jose.Payload;
+import com.nimbusds.jose.crypto.ECDSASigner;
+import com.nimbusds.jose.crypto.RSASSASigner;
+import com.nimbusds.jose.crypto.bc.BouncyCastleProviderSingleton;
+import com.nimbusds.jose.jwk.ECKey;
+import com.nimbusds.jose.jwk.JWK;
+import com.nimbusds.jose.jwk.RSAKey;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+import org.springframework.web.client.RestTemplate;
+
+import javax.annotation.PreDestroy;
+import java.text.ParseException;
+import java.time.Duration;
+import java.util.Collections;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Signs the JWS of this application locally, with the signing key leased from jwkms, instead of calling jwkms for each
+ * of them.
+ *
+ * Once the application is ready, the lease is taken over mTLS and renewed a while before it expires. Every lease is a
+ * new key, which jwkms publishes in the JWKS of the application until the lease expires. Without a valid lease,
+ * because jwkms was unreachable or the leased mode is disabled, the JWS are signed by jwkms; the
+ * "jwkms.signing-key-lease.signatures" metric counts both.
+ */
+@Component
+@Slf4j
+public class LeasedJwsSigner {
+
+    private static final String LEASE_ENDPOINT = "api/crypto/signing-key-lease";
+    static final String METRIC_NAME = "jwkms.signing-key-lease.signatures";
+
+    private final RestTemplate restTemplate;
+    private final BatchCryptoClient batchCryptoClient;
+    private final String jwkmsRoot;
+    private final boolean enabled;
+    private final long renewBefore;
+    private final long retryInterval;
+    private final Counter leasedSignatures;
+    private final Counter remoteSignatures;
+
+    private volatile Lease lease;
+    private ScheduledExecutorService executor;
+
+    public LeasedJwsSigner(RestTemplate restTemplate,
+                           BatchCryptoClient batchCryptoClient,
+                           @Value("${jwkms.root}") String jwkmsRoot,
+                           @Value("${jwkms.signing-key-lease.enabled:false}") boolean enabled,
+                           @Value("${jwkms.signing-key-lease.renew-before:PT1M}") Duration renewBefore,
+                           @Value("${jwkms.signing-key-lease.retry-interval:PT10S}") Duration retryInterval,
+                           MeterRegistry meterRegistry) {
+        this.restTemplate = restTemplate;
+        this.batchCryptoClient = batchCryptoClient;
+        this.jwkmsRoot = jwkmsRoot;
+        this.enabled = enabled;
+        this.renewBefore = renewBefore.toMillis();
+        this.retryInterval = retryInterval.toMillis();
+        this.leasedSignatures = Counter.builder(METRIC_NAME)
+                .description("The JWS signed by this application")
+                .tag("mode", "leased")
+                .register(meterRegistry);
+        this.remoteSignatures = Counter.builder(METRIC_NAME)
+                .description("The JWS signed by jwkms")
+                .tag("mode", "remote")
+                .register(meterRegistry);
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public synchronized void start() {
+        if (!enabled || executor != null) {
+            return;
+        }
+        executor = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "signing-key-lease");
+            thread.setDaemon(true);
+            return thread;
+        });
+        executor.execute(this::renewAndReschedule);
+    }
+
+    @PreDestroy
+    public synchronized void stop() {
+        if (executor != null) {
+            executor.shutdownNow();
+            executor = null;
+        }
+        lease = null;
+    }
+
+    /**
+     * Whether the JWS are signed locally, with a lease not expired yet.
+     */
+    public boolean isLeased() {
+        Lease current = lease;
+        return current != null && System.currentTimeMillis() < current.expiresAt;
+    }
+
+    /**
+     * Take a new lease of the signing key from jwkms, keeping the current one if jwkms can't lend it.
+     *
+     * @return whether the new lease was taken
+     */
+    public boolean renew() {
+        return takeLease() != null;
+    }
+
+    /**
+     * Sign a payload, with the leased key if there is one.
+     *
+     * @return the compact JWS
+     */
+    public String sign(String payload) {
+        return sign(payload, false);
+    }
+
+    /**
+     * Sign a payload, with the leased key if there is one, leaving the payload out of the JWS.
+     *
+     * @return the detached JWS
+     */
+    public String signDetached(String payload) {
+        return sign(payload, true);
+    }
+
+    private String sign(String payload, boolean detached) {
+        Lease current = lease;
+        if (current == null || System.currentTimeMillis() >= current.expiresAt) {
+            remoteSignatures.increment();
+            return detached
+                    ? batchCryptoClient.signDetached(Collections.singletonList(payload)).get(0)
+                    : batchCryptoClient.sign(Collections.singletonList(payload)).get(0);
+        }
+        JWSObject jws = new JWSObject(current.header(detached), new Payload(payload));
+        try {
+            jws.sign(current.signer);
+        } catch (JOSEException e) {
+            throw new IllegalStateException("Can't sign with the leased key " + current.keyId, e);
+        }
+        leasedSignatures.increment();
+        return jws.serialize(detached);
+    }
+
+    private Lease takeLease() {
+        try {
+            SigningKeyLease signingKeyLease = restTemplate.postForObject(jwkmsRoot + LEASE_ENDPOINT, null, SigningKeyLease.class);
+            if (signingKeyLease == null) {
+                throw new IllegalStateException("No signing key lease");
+            }
+            Lease taken = new Lease(signingKeyLease);
+            lease = taken;
+            log.debug("Leased the signing key {} until {}", taken.keyId, signingKeyLease.getExpiresAt());
+            return taken;
+        } catch (RuntimeException | ParseException | JOSEException e) {
+            // Until the lease expires, the current key is still good
+            log.warn("Can't lease the signing key from jwkms", e);
+            return null;
+        }
+    }
+
+    private void renewAndReschedule() {
+        Lease taken = takeLease();
+        // A lease shorter than the renewal margin is renewed every retry interval
+        long delay = taken != null
+                ? Math.max(taken.expiresAt - renewBefore - System.currentTimeMillis(), retryInterval)
+                : retryInterval;
+        synchronized (this) {
+            if (executor != null) {
+                executor.schedule(this::renewAndReschedule, delay, TimeUnit.MILLISECONDS);
+            }
+        }
+    }
+
+    private static class Lease {
+
+        private final String keyId;
+        private final JWSAlgorithm algorithm;
+        private final String issuer;
+        private final String trustAnchor;
+        private final JWSHeader attachedHeader;
+        private final JWSSigner signer;
+        private final long expiresAt;
+
+        private Lease(SigningKeyLease signingKeyLease) throws ParseException, JOSEException {
+            JWK key = JWK.parse(signingKeyLease.getKey());
+            if (key instanceof RSAKey) {
+                signer = new RSASSASigner((RSAKey) key);
+            } else if (key instanceof ECKey) {
+                signer = new ECDSASigner((ECKey) key);
+            } else {
+                throw new JOSEException("Unsupported signing key type " + key.getKeyType());
+            }
+            // nimbus looks PS256 up by its Bouncy Castle name, which the JDK provider does not know
+            signer.getJCAContext().setProvider(BouncyCastleProviderSingleton.getInstance());
+            keyId = key.getKeyID();
+            algorithm = JWSAlgorithm.parse(signingKeyLease.getAlgorithm());
+            issuer = signingKeyLease.getIssuer();
+            trustAnchor = signingKeyLease.getTrustAnchor();
+            attachedHeader = new JWSHeader.Builder(algorithm).keyID(keyId).build();
+            expiresAt = signingKeyLease.getExpiresAt();
+        }
+
+        /**
+         * The header jwkms would sign with, a detached signature having the time it is signed at.
+         */
+        private JWSHeader header(boolean detached) {
+            return detached
+                    ? DetachedSignatureHeader.build(algorithm, keyId, issuer, trustAnchor, System.currentTimeMillis() / 1000)
+                    : attachedHeader;
+        }
+    }
+}
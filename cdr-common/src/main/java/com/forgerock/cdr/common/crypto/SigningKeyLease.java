@@ -0,0 +1,42 @@
+/**
+ * Copyright 2019 ForgeRock AS. All Rights Reserved
+ *
+ * Use of this code requires a commercial software license with ForgeRock AS.
+ * or with one of its affiliates. All use shall be exclusively subject
+ * to such license between the licensee and ForgeRock AS.
+ */
+package com.forgerock.cdr.common.crypto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * A short-lived signing key of an application, lent by jwkms until the lease expires.
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class SigningKeyLease {
+
+    /**
+     * The private signing key, as a JWK, a new key pair for every lease.
+     */
+    private String key;
+    /**
+     * The algorithm to sign with.
+     */
+    private String algorithm;
+    /**
+     * The issuer id of the application, for the header of the detached signatures.
+     */
+    private String issuer;
+    /**
+     * The trust anchor of the key, for the header of the detached signatures.
+     */
+    private String trustAnchor;
+    /**
+     * The end of the lease, in milliseconds since the epoch, when jwkms stops publishing the public key.
+     */
+    private long expiresAt;
+}
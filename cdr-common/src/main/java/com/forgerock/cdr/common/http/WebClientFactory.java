@@ -0,0 +1,247 @@
+/**
+ * Copyright 2019 ForgeRock AS. All Rights Reserved
+ *
+ * Use of this code requires a commercial software license with ForgeRock AS.
+ * or with one of its affiliates. All use shall be exclusively subject
+ * to such license between the licensee and ForgeRock AS.
+ */
+package com.forgerock.cdr.common.http;
+
+import com.forgerock.openbanking.ssl.config.SslConfiguration;
+import com.forgerock.openbanking.ssl.exceptions.SslConfigurationFailure;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.netty.channel.Channel;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.ChannelOption;
+import io.netty.handler.ssl.SslContext;
+import io.netty.handler.timeout.IdleStateEvent;
+import io.netty.handler.timeout.IdleStateHandler;
+import io.netty.handler.timeout.ReadTimeoutHandler;
+import io.netty.util.AttributeKey;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.client.reactive.ReactorClientHttpConnector;
+import org.springframework.stereotype.Component;
+import org.springframework.web.reactive.function.client.WebClient;
+import reactor.netty.Connection;
+import reactor.netty.ConnectionObserver;
+import reactor.netty.http.client.HttpClient;
+import reactor.netty.resources.ConnectionProvider;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * The reactive HTTP clients of the services, each with its own named and sized connection pool.
+ *
+ * The Reactor Netty pools have no eviction, no response timeout and no metrics, they are added here: a pooled
+ * connection idle for the max idle time is closed, a connection older than the max life time is closed when it is
+ * released, and a request fails if no response data comes for the response timeout. The
+ * "webclient.pool.connections" gauge counts the connections of a pool by state, active or idle, and
+ * "webclient.pool.evictions" counts the connections closed by reason, idle or lifetime.
+ */
+@Component
+@Slf4j
+public class WebClientFactory implements DisposableBean {
+
+    public static final String METRICS_PREFIX = "webclient.pool";
+
+    private static final String IDLE_EVICTION_HANDLER = "webClientFactory.idleEviction";
+    private static final String RESPONSE_TIMEOUT_HANDLER = "webClientFactory.responseTimeout";
+    private static final AttributeKey<PooledConnection> POOLED_CONNECTION = AttributeKey.valueOf("webClientFactory.pooledConnection");
+
+    private final SslConfiguration sslConfiguration;
+    private final MeterRegistry meterRegistry;
+    private final int maxConnections;
+    private final Duration acquireTimeout;
+    private final Duration maxIdleTime;
+    private final Duration maxLifeTime;
+    private final Duration connectTimeout;
+    private final Duration responseTimeout;
+    private final List<ConnectionProvider> connectionProviders = new CopyOnWriteArrayList<>();
+    private final Set<String> poolNames = ConcurrentHashMap.newKeySet();
+
+    public WebClientFactory(SslConfiguration sslConfiguration,
+                            MeterRegistry meterRegistry,
+                            @Value("${webclient.pool.max-connections:100}") int maxConnections,
+                            @Value("${webclient.pool.acquire-timeout:PT45S}") Duration acquireTimeout,
+                            @Value("${webclient.pool.max-idle-time:PT30S}") Duration maxIdleTime,
+                            @Value("${webclient.pool.max-life-time:PT10M}") Duration maxLifeTime,
+                            @Value("${webclient.connect-timeout:PT5S}") Duration connectTimeout,
+                            @Value("${webclient.response-timeout:PT30S}") Duration responseTimeout) {
+        this.sslConfiguration = sslConfiguration;
+        this.meterRegistry = meterRegistry;
+        this.maxConnections = maxConnections;
+        this.acquireTimeout = acquireTimeout;
+        this.maxIdleTime = maxIdleTime;
+        this.maxLifeTime = maxLifeTime;
+        this.connectTimeout = connectTimeout;
+        this.responseTimeout = responseTimeout;
+    }
+
+    /**
+     * A web client presenting the certificate of a key alias.
+     *
+     * @param poolName the name of the connection pool, unique per service
+     * @param keyAlias the alias of the client certificate key
+     */
+    public WebClient matlsWebClient(String poolName, String keyAlias) throws SslConfigurationFailure {
+        SslContext sslContext = sslConfiguration.getSslContextForReactor(keyAlias);
+        HttpClient httpClient = httpClient(poolName)
+                .secure(sslContextSpec -> sslContextSpec.sslContext(sslContext));
+        return WebClient.builder().clientConnector(new ReactorClientHttpConnector(httpClient)).build();
+    }
+
+    /**
+     * An HTTP client with its own connection pool.
+     *
+     * @param poolName the name of the connection pool, unique per service
+     * @throws IllegalArgumentException if a pool already has this name, as its metrics would be mixed with this one's
+     */
+    public HttpClient httpClient(String poolName) {
+        if (!poolNames.add(poolName)) {
+            throw new IllegalArgumentException("There is already a connection pool named " + poolName);
+        }
+        ConnectionProvider connectionProvider = ConnectionProvider.fixed(poolName, maxConnections, acquireTimeout.toMillis());
+        connectionProviders.add(connectionProvider);
+        PoolMetrics poolMetrics = new PoolMetrics(poolName, meterRegistry);
+        log.debug("Create the connection pool {} of {} connections", poolName, maxConnections);
+        return HttpClient.create(connectionProvider)
+                .tcpConfiguration(tcpClient -> tcpClient.option(ChannelOption.CONNECT_TIMEOUT_MILLIS, (int) connectTimeout.toMillis()))
+                .observe((connection, newState) -> onStateChange(connection, newState, poolMetrics))
+                .doOnRequest((request, connection) -> connection.addHandlerFirst(RESPONSE_TIMEOUT_HANDLER,
+                        new ReadTimeoutHandler(responseTimeout.toMillis(), TimeUnit.MILLISECONDS)));
+    }
+
+    @Override
+    public void destroy() {
+        connectionProviders.forEach(ConnectionProvider::dispose);
+    }
+
+    private void onStateChange(Connection connection, ConnectionObserver.State newState, PoolMetrics poolMetrics) {
+        Channel channel = connection.channel();
+        if (newState == ConnectionObserver.State.CONNECTED) {
+            PooledConnection pooledConnection = new PooledConnection(poolMetrics);
+            channel.attr(POOLED_CONNECTION).set(pooledConnection);
+            channel.pipeline().addFirst(IDLE_EVICTION_HANDLER, new IdleEvictionHandler(pooledConnection, maxIdleTime));
+            channel.closeFuture().addListener(future -> pooledConnection.closed());
+            return;
+        }
+        PooledConnection pooledConnection = channel.attr(POOLED_CONNECTION).get();
+        if (pooledConnection == null) {
+            return;
+        }
+        if (newState == ConnectionObserver.State.CONFIGURED || newState == ConnectionObserver.State.ACQUIRED) {
+            pooledConnection.acquired();
+        } else if (newState == ConnectionObserver.State.RELEASED) {
+            pooledConnection.released();
+            if (System.nanoTime() - pooledConnection.created >= maxLifeTime.toNanos()) {
+                log.debug("Close the connection {}, older than {}", channel, maxLifeTime);
+                poolMetrics.lifetimeEvictions.increment();
+                channel.close();
+            }
+        }
+    }
+
+    private static class IdleEvictionHandler extends IdleStateHandler {
+
+        private final PooledConnection pooledConnection;
+
+        private IdleEvictionHandler(PooledConnection pooledConnection, Duration maxIdleTime) {
+            super(0, 0, maxIdleTime.toMillis(), TimeUnit.MILLISECONDS);
+            this.pooledConnection = pooledConnection;
+        }
+
+        @Override
+        protected void channelIdle(ChannelHandlerContext ctx, IdleStateEvent evt) {
+            if (pooledConnection.state == PooledConnection.State.IDLE) {
+                log.debug("Close the idle connection {}", ctx.channel());
+                pooledConnection.poolMetrics.idleEvictions.increment();
+                ctx.close();
+            }
+        }
+    }
+
+    /**
+     * The state of a connection in its pool, changed on the event loop of the connection only.
+     */
+    private static class PooledConnection {
+
+        private enum State {
+            NEW, ACTIVE, IDLE, CLOSED
+        }
+
+        private final PoolMetrics poolMetrics;
+        private final long created = System.nanoTime();
+        private State state = State.NEW;
+
+        private PooledConnection(PoolMetrics poolMetrics) {
+            this.poolMetrics = poolMetrics;
+        }
+
+        private void acquired() {
+            moveTo(State.ACTIVE);
+        }
+
+        private void released() {
+            moveTo(State.IDLE);
+        }
+
+        private void closed() {
+            moveTo(State.CLOSED);
+        }
+
+        private void moveTo(State newState) {
+            if (state == newState || state == State.CLOSED) {
+                return;
+            }
+            poolMetrics.add(state, -1);
+            poolMetrics.add(newState, 1);
+            state = newState;
+        }
+    }
+
+    private static class PoolMetrics {
+
+        private final AtomicInteger active = new AtomicInteger();
+        private final AtomicInteger idle = new AtomicInteger();
+        private final Counter idleEvictions;
+        private final Counter lifetimeEvictions;
+
+        private PoolMetrics(String poolName, MeterRegistry meterRegistry) {
+            Gauge.builder(METRICS_PREFIX + ".connections", active, AtomicInteger::get)
+                    .description("The connections of the pool")
+                    .tags("pool", poolName, "state", "active")
+                    .register(meterRegistry);
+            Gauge.builder(METRICS_PREFIX + ".connections", idle, AtomicInteger::get)
+                    .description("The connections of the pool")
+                    .tags("pool", poolName, "state", "idle")
+                    .register(meterRegistry);
+            this.idleEvictions = eviction(poolName, "idle", meterRegistry);
+            this.lifetimeEvictions = eviction(poolName, "lifetime", meterRegistry);
+        }
+
+        private void add(PooledConnection.State state, int delta) {
+            if (state == PooledConnection.State.ACTIVE) {
+                active.addAndGet(delta);
+            } else if (state == PooledConnection.State.IDLE) {
+                idle.addAndGet(delta);
+            }
+        }
+
+        private static Counter eviction(String poolName, String reason, MeterRegistry meterRegistry) {
+            return Counter.builder(METRICS_PREFIX + ".evictions")
+                    .description("The connections closed by the pool")
+                    .tags("pool", poolName, "reason", reason)
+                    .register(meterRegistry);
+        }
+    }
+}
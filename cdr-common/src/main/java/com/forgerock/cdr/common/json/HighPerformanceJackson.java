@@ -0,0 +1,187 @@
+/**
+ * Copyright 2019 ForgeRock AS. All Rights Reserved
+ *
+ * Use of this code requires a commercial software license with ForgeRock AS.
+ * or with one of its affiliates. All use shall be exclusively subject
+ * to such license between the licensee and ForgeRock AS.
+ */
+package com.forgerock.cdr.common.json;
+
+import com.fasterxml.jackson.databind.JavaType;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.module.afterburner.AfterburnerModule;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.aop.support.AopUtils;
+import org.springframework.beans.BeanUtils;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.ApplicationContext;
+import org.springframework.context.ApplicationListener;
+import org.springframework.context.event.ContextRefreshedEvent;
+import org.springframework.core.ResolvableType;
+import org.springframework.core.annotation.AnnotatedElementUtils;
+import org.springframework.http.HttpEntity;
+import org.springframework.http.converter.json.MappingJackson2HttpMessageConverter;
+import org.springframework.stereotype.Component;
+import org.springframework.stereotype.Controller;
+import org.springframework.util.ClassUtils;
+import org.springframework.util.ReflectionUtils;
+import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestMapping;
+
+import java.lang.reflect.Method;
+import java.lang.reflect.ParameterizedType;
+import java.lang.reflect.Type;
+import java.text.DateFormat;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.Set;
+
+/**
+ * The opt-in high performance mode of the JSON mapping of the REST payloads.
+ *
+ * When enabled, the object mapper of a message converter gets the Afterburner module, which replaces the reflection
+ * of the bean serializers and deserializers by generated bytecode. An object mapper which already writes the RFC 3339
+ * dates of the model, like the one of rs-api, gets the {@link Rfc3339DateFormat} for the same dates, which is shared
+ * instead of cloned for every request; the other services keep their date format.
+ *
+ * Once the context is refreshed, the serializers and deserializers of the request and response bodies of the
+ * controllers are built, so that the first requests don't pay for the introspection and the bytecode generation.
+ */
+@Component
+@Slf4j
+public class HighPerformanceJackson implements ApplicationListener<ContextRefreshedEvent> {
+
+    /**
+     * The RFC3339DateFormat of the model, the date-format of rs-api.
+     */
+    public static final String MODEL_DATE_FORMAT = "com.forgerock.openbanking.serialiser.RFC3339DateFormat";
+
+    private final boolean enabled;
+    private final Set<String> replacedDateFormats;
+
+    /**
+     * @param replacedDateFormats the class names of the date formats replaced by the {@link Rfc3339DateFormat}
+     */
+    public HighPerformanceJackson(@Value("${jackson.high-performance:false}") boolean enabled,
+                                  @Value("${jackson.shared-date-format-replaces:" + MODEL_DATE_FORMAT + "}")
+                                          String[] replacedDateFormats) {
+        this.enabled = enabled;
+        this.replacedDateFormats = new HashSet<>(Arrays.asList(replacedDateFormats));
+    }
+
+    /**
+     * Tune an object mapper, if the high performance mode is enabled.
+     *
+     * @param objectMapper the object mapper built from the customised Jackson2ObjectMapperBuilder
+     * @return the same object mapper
+     */
+    public ObjectMapper configure(ObjectMapper objectMapper) {
+        if (enabled) {
+            objectMapper.registerModule(new AfterburnerModule());
+            DateFormat dateFormat = objectMapper.getDateFormat();
+            if (dateFormat != null && replacedDateFormats.contains(dateFormat.getClass().getName())) {
+                objectMapper.setDateFormat(new Rfc3339DateFormat());
+            }
+        }
+        return objectMapper;
+    }
+
+    @Override
+    public void onApplicationEvent(ContextRefreshedEvent event) {
+        if (!enabled) {
+            return;
+        }
+        ApplicationContext applicationContext = event.getApplicationContext();
+        Collection<MappingJackson2HttpMessageConverter> converters = applicationContext
+                .getBeansOfType(MappingJackson2HttpMessageConverter.class, false, false).values();
+        if (converters.isEmpty()) {
+            return;
+        }
+        long start = System.currentTimeMillis();
+        Set<Type> payloadTypes = payloadTypes(applicationContext.getBeansWithAnnotation(Controller.class).values());
+        int warmedUp = 0;
+        for (MappingJackson2HttpMessageConverter converter : converters) {
+            warmedUp += warmUp(converter.getObjectMapper(), payloadTypes);
+        }
+        log.info("Warmed up the JSON mapping of {} payload types in {}ms", warmedUp, System.currentTimeMillis() - start);
+    }
+
+    /**
+     * Build and cache the serializers and deserializers of some types.
+     *
+     * @return the number of types the object mapper can serialize or deserialize
+     */
+    public static int warmUp(ObjectMapper objectMapper, Collection<Type> types) {
+        int warmedUp = 0;
+        for (Type type : types) {
+            try {
+                JavaType javaType = objectMapper.constructType(type);
+                boolean deserializable = objectMapper.canDeserialize(javaType);
+                // The serializers of the collections find the serializers of their elements on the first write
+                JavaType elementType = javaType;
+                while (elementType.isContainerType() || elementType.isReferenceType()) {
+                    elementType = elementType.getContentType();
+                }
+                boolean serializable = objectMapper.canSerialize(elementType.getRawClass());
+                if (serializable || deserializable) {
+                    warmedUp++;
+                }
+            } catch (RuntimeException e) {
+                log.debug("Can't warm up the JSON mapping of {}", type, e);
+            }
+        }
+        return warmedUp;
+    }
+
+    /**
+     * The request and response body types of the request mappings of some controllers.
+     */
+    public static Set<Type> payloadTypes(Collection<Object> controllers) {
+        Set<Type> payloadTypes = new LinkedHashSet<>();
+        for (Object controller : controllers) {
+            Class<?> controllerClass = ClassUtils.getUserClass(AopUtils.getTargetClass(controller));
+            ReflectionUtils.doWithMethods(controllerClass,
+                    method -> addPayloadTypes(controllerClass, method, payloadTypes),
+                    method -> !method.isBridge() && !method.isSynthetic()
+                            && AnnotatedElementUtils.hasAnnotation(method, RequestMapping.class));
+        }
+        return payloadTypes;
+    }
+
+    private static void addPayloadTypes(Class<?> controllerClass, Method method, Set<Type> payloadTypes) {
+        addPayloadType(ResolvableType.forMethodReturnType(method, controllerClass), payloadTypes);
+        for (int i = 0; i < method.getParameterCount(); i++) {
+            if (isRequestBody(controllerClass, method, i)) {
+                addPayloadType(ResolvableType.forMethodParameter(method, i, controllerClass), payloadTypes);
+            }
+        }
+    }
+
+    private static boolean isRequestBody(Class<?> controllerClass, Method method, int index) {
+        if (method.getParameters()[index].isAnnotationPresent(RequestBody.class)) {
+            return true;
+        }
+        // The generated API interfaces carry the annotations of the parameters
+        for (Class<?> api : ClassUtils.getAllInterfacesForClassAsSet(controllerClass)) {
+            Method apiMethod = ReflectionUtils.findMethod(api, method.getName(), method.getParameterTypes());
+            if (apiMethod != null && apiMethod.getParameters()[index].isAnnotationPresent(RequestBody.class)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static void addPayloadType(ResolvableType type, Set<Type> payloadTypes) {
+        if (HttpEntity.class.isAssignableFrom(type.toClass())) {
+            type = type.as(HttpEntity.class).getGeneric(0);
+        }
+        Class<?> rawClass = type.resolve();
+        if (rawClass == null || rawClass == Object.class || rawClass == void.class || rawClass == Void.class
+                || BeanUtils.isSimpleValueType(rawClass) || type.hasUnresolvableGenerics()) {
+            return;
+        }
+        payloadTypes.add(type.getType() instanceof Class || type.getType() instanceof ParameterizedType ? type.getType() : rawClass);
+    }
+}
@@ -0,0 +1,191 @@
+/**
+ * Copyright 2019 ForgeRock AS. All Rights Reserved
+ *
+ * Use of this code requires a commercial software license with ForgeRock AS.
+ * or with one of its affiliates. All use shall be exclusively subject
+ * to such license between the licensee and ForgeRock AS.
+ */
+package com.forgerock.cdr.common.json;
+
+import java.text.DateFormat;
+import java.text.FieldPosition;
+import java.text.NumberFormat;
+import java.text.ParsePosition;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.Month;
+import java.time.Year;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeFormatterBuilder;
+import java.time.format.DateTimeParseException;
+import java.time.format.ResolverStyle;
+import java.time.temporal.ChronoField;
+import java.util.Calendar;
+import java.util.Date;
+import java.util.TimeZone;
+
+/**
+ * The RFC 3339 dates of the model, written in UTC with milliseconds as "2019-10-01T12:30:00.000Z".
+ *
+ * It replaces the RFC3339DateFormat of the model, a SimpleDateFormat that Jackson clones for every request it
+ * serializes or deserializes. This one has no mutable state, so a single instance is shared: clone() returns it and
+ * the time zone can't be changed. The dates in the written form are formatted and parsed digit by digit, the other
+ * dates go through an immutable java.time parser, which accepts them with or without time, seconds, fraction of second
+ * and offset, a missing offset being UTC.
+ */
+public class Rfc3339DateFormat extends DateFormat {
+
+    private static final TimeZone UTC = TimeZone.getTimeZone(ZoneOffset.UTC);
+
+    private static final int WRITTEN_LENGTH = "2019-10-01T12:30:00.000Z".length();
+    private static final long MILLIS_PER_DAY = 86_400_000L;
+
+    private static final DateTimeFormatter PARSER = new DateTimeFormatterBuilder()
+            .parseCaseInsensitive()
+            .append(DateTimeFormatter.ISO_LOCAL_DATE)
+            .optionalStart()
+            .appendLiteral('T')
+            .appendValue(ChronoField.HOUR_OF_DAY, 2)
+            .appendLiteral(':')
+            .appendValue(ChronoField.MINUTE_OF_HOUR, 2)
+            .optionalStart()
+            .appendLiteral(':')
+            .appendValue(ChronoField.SECOND_OF_MINUTE, 2)
+            .optionalStart()
+            .appendFraction(ChronoField.NANO_OF_SECOND, 1, 9, true)
+            .optionalEnd()
+            .optionalEnd()
+            .optionalStart()
+            .appendOffset("+HH:MM", "Z")
+            .optionalEnd()
+            .optionalStart()
+            .appendOffset("+HHMM", "Z")
+            .optionalEnd()
+            .optionalEnd()
+            .parseDefaulting(ChronoField.HOUR_OF_DAY, 0)
+            .parseDefaulting(ChronoField.MINUTE_OF_HOUR, 0)
+            .parseDefaulting(ChronoField.SECOND_OF_MINUTE, 0)
+            .parseDefaulting(ChronoField.NANO_OF_SECOND, 0)
+            .parseDefaulting(ChronoField.OFFSET_SECONDS, 0)
+            .toFormatter()
+            .withResolverStyle(ResolverStyle.STRICT);
+
+    public Rfc3339DateFormat() {
+        this.calendar = Calendar.getInstance(UTC);
+        this.numberFormat = NumberFormat.getIntegerInstance();
+    }
+
+    @Override
+    public StringBuffer format(Date date, StringBuffer toAppendTo, FieldPosition fieldPosition) {
+        long millis = date.getTime();
+        long epochDay = Math.floorDiv(millis, MILLIS_PER_DAY);
+        int millisOfDay = (int) Math.floorMod(millis, MILLIS_PER_DAY);
+        LocalDate localDate = LocalDate.ofEpochDay(epochDay);
+        int year = localDate.getYear();
+        if (year < 0 || year > 9999) {
+            return toAppendTo.append(DateTimeFormatter.ISO_INSTANT.format(date.toInstant()));
+        }
+        append(toAppendTo, year, 4).append('-');
+        append(toAppendTo, localDate.getMonthValue(), 2).append('-');
+        append(toAppendTo, localDate.getDayOfMonth(), 2).append('T');
+        append(toAppendTo, millisOfDay / 3_600_000, 2).append(':');
+        append(toAppendTo, millisOfDay / 60_000 % 60, 2).append(':');
+        append(toAppendTo, millisOfDay / 1000 % 60, 2).append('.');
+        return append(toAppendTo, millisOfDay % 1000, 3).append('Z');
+    }
+
+    @Override
+    public Date parse(String source, ParsePosition pos) {
+        int start = pos.getIndex();
+        if (source.length() - start == WRITTEN_LENGTH) {
+            Date date = parseWritten(source, start);
+            if (date != null) {
+                pos.setIndex(source.length());
+                return date;
+            }
+        }
+        try {
+            Instant instant = PARSER.parse(source.substring(start), Instant::from);
+            pos.setIndex(source.length());
+            return Date.from(instant);
+        } catch (DateTimeParseException e) {
+            pos.setErrorIndex(start + e.getErrorIndex());
+            return null;
+        }
+    }
+
+    private static StringBuffer append(StringBuffer buffer, int value, int digits) {
+        for (int divisor = digits == 4 ? 1000 : digits == 3 ? 100 : 10; divisor > 0; divisor /= 10) {
+            buffer.append((char) ('0' + value / divisor % 10));
+        }
+        return buffer;
+    }
+
+    /**
+     * Parse a date in the written form, or return null to fall back to the parser.
+     */
+    private static Date parseWritten(String source, int start) {
+        if (source.charAt(start + 4) != '-' || source.charAt(start + 7) != '-' || source.charAt(start + 10) != 'T'
+                || source.charAt(start + 13) != ':' || source.charAt(start + 16) != ':'
+                || source.charAt(start + 19) != '.' || source.charAt(start + 23) != 'Z') {
+            return null;
+        }
+        int year = digits(source, start, 4);
+        int month = digits(source, start + 5, 2);
+        int day = digits(source, start + 8, 2);
+        int hour = digits(source, start + 11, 2);
+        int minute = digits(source, start + 14, 2);
+        int second = digits(source, start + 17, 2);
+        int millis = digits(source, start + 20, 3);
+        if (Math.min(Math.min(year, hour), Math.min(Math.min(minute, second), millis)) < 0
+                || month < 1 || month > 12 || day < 1 || day > 28 && day > Month.of(month).length(Year.isLeap(year))
+                || hour > 23 || minute > 59 || second > 59) {
+            return null;
+        }
+        long epochDay = LocalDate.of(year, month, day).toEpochDay();
+        return new Date(epochDay * MILLIS_PER_DAY + ((hour * 60L + minute) * 60 + second) * 1000 + millis);
+    }
+
+    private static int digits(String source, int start, int length) {
+        int value = 0;
+        for (int i = start; i < start + length; i++) {
+            char c = source.charAt(i);
+            if (c < '0' || c > '9') {
+                return -1;
+            }
+            value = value * 10 + c - '0';
+        }
+        return value;
+    }
+
+    @Override
+    public TimeZone getTimeZone() {
+        return UTC;
+    }
+
+    @Override
+    public void setTimeZone(TimeZone zone) {
+        // The dates are always written in UTC
+    }
+
+    @Override
+    public void setLenient(boolean lenient) {
+        // The parsing is always strict: the optional parts may be missing, but an invalid date is rejected
+    }
+
+    @Override
+    public Object clone() {
+        return this;
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+        return obj instanceof Rfc3339DateFormat;
+    }
+
+    @Override
+    public int hashCode() {
+        return Rfc3339DateFormat.class.hashCode();
+    }
+}
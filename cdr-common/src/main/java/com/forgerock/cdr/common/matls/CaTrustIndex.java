@@ -0,0 +1,132 @@
+/**
+ * Copyright 2019 ForgeRock AS. All Rights Reserved
+ *
+ * Use of this code requires a commercial software license with ForgeRock AS.
+ * or with one of its affiliates. All use shall be exclusively subject
+ * to such license between the licensee and ForgeRock AS.
+ */
+package com.forgerock.cdr.common.matls;
+
+import lombok.extern.slf4j.Slf4j;
+
+import javax.security.auth.x500.X500Principal;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.security.PublicKey;
+import java.security.cert.X509Certificate;
+import java.util.Base64;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * The CAs the services trust to issue client certificates, built once at startup, to classify a certificate chain in
+ * one lookup instead of comparing it with each CA in turn.
+ *
+ * A chain of one certificate, as the x-client-jwk header carries, is issued by a CA if its issuer is the CA subject:
+ * it is looked up by issuer principal. A longer chain is issued by a CA if its second certificate is the CA
+ * certificate: the few CA certificates are compared with it, a DER comparison that fails on the first bytes for the
+ * other CAs and is cheaper than hashing the presented certificate.
+ */
+@Slf4j
+public final class CaTrustIndex {
+
+    public enum Issuer {
+        FORGEROCK_INTERNAL,
+        FORGEROCK_EXTERNAL,
+        OPEN_BANKING
+    }
+
+    private final Map<X500Principal, TrustedCa> bySubject;
+    private final TrustedCa[] trustedCas;
+
+    private CaTrustIndex(Map<X500Principal, TrustedCa> bySubject) {
+        this.bySubject = bySubject;
+        this.trustedCas = bySubject.values().toArray(new TrustedCa[0]);
+    }
+
+    public static Builder builder() {
+        return new Builder();
+    }
+
+    /**
+     * Classify a certificate chain.
+     *
+     * @param certificatesChain the chain, client certificate first
+     * @return the CA that issued the chain or null if none of the trusted CAs did
+     */
+    public Issuer classify(X509Certificate[] certificatesChain) {
+        if (certificatesChain == null || certificatesChain.length == 0) {
+            return null;
+        }
+        if (certificatesChain.length == 1) {
+            TrustedCa ca = bySubject.get(certificatesChain[0].getIssuerX500Principal());
+            return ca != null ? ca.issuer : null;
+        }
+        for (TrustedCa ca : trustedCas) {
+            if (ca.certificate.equals(certificatesChain[1])) {
+                return ca.issuer;
+            }
+        }
+        return null;
+    }
+
+    public boolean isIssuedBy(X509Certificate[] certificatesChain, Issuer issuer) {
+        return classify(certificatesChain) == issuer;
+    }
+
+    public static class Builder {
+
+        private final Map<X500Principal, TrustedCa> bySubject = new HashMap<>();
+
+        private Builder() {
+        }
+
+        /**
+         * Trust a CA. A CA without certificate is skipped, a CA with the subject of a CA already trusted too.
+         */
+        public Builder ca(Issuer issuer, X509Certificate... certificates) {
+            if (certificates == null) {
+                return this;
+            }
+            for (X509Certificate certificate : certificates) {
+                if (certificate == null) {
+                    continue;
+                }
+                TrustedCa ca = new TrustedCa(issuer, certificate);
+                TrustedCa existing = bySubject.putIfAbsent(certificate.getSubjectX500Principal(), ca);
+                if (existing != null) {
+                    log.warn("The {} CA {} is already trusted as {}, the first one wins", issuer,
+                            certificate.getSubjectX500Principal(), existing.issuer);
+                    continue;
+                }
+                log.debug("Trust the {} CA {} with SPKI thumbprint {}", issuer, certificate.getSubjectX500Principal(),
+                        spkiThumbprint(certificate.getPublicKey()));
+            }
+            return this;
+        }
+
+        public CaTrustIndex build() {
+            return new CaTrustIndex(new HashMap<>(bySubject));
+        }
+
+        private static String spkiThumbprint(PublicKey publicKey) {
+            try {
+                byte[] digest = MessageDigest.getInstance("SHA-256").digest(publicKey.getEncoded());
+                return Base64.getUrlEncoder().withoutPadding().encodeToString(digest);
+            } catch (NoSuchAlgorithmException e) {
+                throw new IllegalStateException("SHA-256 is not available", e);
+            }
+        }
+    }
+
+    private static class TrustedCa {
+
+        private final Issuer issuer;
+        private final X509Certificate certificate;
+
+        private TrustedCa(Issuer issuer, X509Certificate certificate) {
+            this.issuer = issuer;
+            this.certificate = certificate;
+        }
+    }
+}
@@ -0,0 +1,45 @@
+/**
+ * Copyright 2019 ForgeRock AS. All Rights Reserved
+ *
+ * Use of this code requires a commercial software license with ForgeRock AS.
+ * or with one of its affiliates. All use shall be exclusively subject
+ * to such license between the licensee and ForgeRock AS.
+ */
+package com.forgerock.cdr.common.matls;
+
+import dev.openbanking4.spring.security.multiauth.configurers.collectors.PSD2Collector;
+import dev.openbanking4.spring.security.multiauth.model.CertificateHeaderFormat;
+import lombok.Builder;
+
+import javax.servlet.http.HttpServletRequest;
+import java.security.cert.X509Certificate;
+import java.util.UUID;
+
+/**
+ * A PSD2 collector of the client certificate in a JWK header, as {@code PSD2Collector.psd2Builder()
+ * .collectFromHeader(CertificateHeaderFormat.JWK)}, which decodes the header through the {@link ClientJwkHeaderCache}.
+ */
+public class ClientJwkCollector extends PSD2Collector {
+
+    private final String headerName;
+    private final ClientJwkHeaderCache clientJwkHeaderCache;
+
+    @Builder
+    public ClientJwkCollector(String collectorName, UsernameCollector usernameCollector, AuthoritiesCollector authoritiesCollector,
+                              String headerName, ClientJwkHeaderCache clientJwkHeaderCache) {
+        super(
+                collectorName != null ? collectorName : UUID.randomUUID().toString(),
+                usernameCollector,
+                authoritiesCollector,
+                CertificateHeaderFormat.JWK,
+                headerName
+        );
+        this.headerName = headerName;
+        this.clientJwkHeaderCache = clientJwkHeaderCache;
+    }
+
+    @Override
+    protected X509Certificate[] getCertificatesFromRequest(HttpServletRequest request) {
+        return clientJwkHeaderCache.getCertificatesChain(request.getHeader(headerName));
+    }
+}
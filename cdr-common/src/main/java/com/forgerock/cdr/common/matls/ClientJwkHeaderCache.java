@@ -0,0 +1,81 @@
+/**
+ * Copyright 2019 ForgeRock AS. All Rights Reserved
+ *
+ * Use of this code requires a commercial software license with ForgeRock AS.
+ * or with one of its affiliates. All use shall be exclusively subject
+ * to such license between the licensee and ForgeRock AS.
+ */
+package com.forgerock.cdr.common.matls;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.nimbusds.jose.jwk.JWK;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.security.cert.X509Certificate;
+import java.text.ParseException;
+import java.time.Duration;
+import java.util.List;
+
+/**
+ * The certificate chains of the x-client-jwk header, by header value.
+ *
+ * The gateway sends the same JWK for every request of a TPP, and each PSD2 collector of a request decodes it. This
+ * saves the JSON parsing, the base64 decoding and the certificate parsing after the first request. A header that
+ * can't be decoded is not cached, so that random values don't evict the TPPs.
+ */
+@Component
+@Slf4j
+public class ClientJwkHeaderCache {
+
+    public static final String CACHE_NAME = "client.jwk.headers";
+
+    private final Cache<String, X509Certificate[]> cache;
+
+    public ClientJwkHeaderCache(@Value("${client-jwk-header-cache.maximum-size:1000}") long maximumSize,
+                                @Value("${client-jwk-header-cache.expire-after-write:PT1H}") Duration expireAfterWrite,
+                                MeterRegistry meterRegistry) {
+        this.cache = Caffeine.newBuilder()
+                .maximumSize(maximumSize)
+                .expireAfterWrite(expireAfterWrite)
+                .recordStats()
+                .build();
+        CaffeineCacheMetrics.monitor(meterRegistry, cache, CACHE_NAME);
+    }
+
+    /**
+     * Get the certificate chain of a header.
+     *
+     * @param header the x-client-jwk header value
+     * @return a copy of the chain, client certificate first, or null if the header is missing or has no chain
+     */
+    public X509Certificate[] getCertificatesChain(String header) {
+        if (header == null) {
+            return null;
+        }
+        X509Certificate[] certificatesChain = cache.get(header, this::decode);
+        return certificatesChain != null ? certificatesChain.clone() : null;
+    }
+
+    public void invalidateAll() {
+        cache.invalidateAll();
+    }
+
+    private X509Certificate[] decode(String header) {
+        try {
+            List<X509Certificate> certificatesChain = JWK.parse(header).getParsedX509CertChain();
+            if (certificatesChain == null || certificatesChain.isEmpty()) {
+                log.debug("No certificate chain in the client JWK");
+                return null;
+            }
+            return certificatesChain.toArray(new X509Certificate[0]);
+        } catch (ParseException e) {
+            log.debug("Can't parse the client JWK", e);
+            return null;
+        }
+    }
+}
@@ -0,0 +1,144 @@
+/**
+ * Copyright 2019 ForgeRock AS. All Rights Reserved
+ *
+ * Use of this code requires a commercial software license with ForgeRock AS.
+ * or with one of its affiliates. All use shall be exclusively subject
+ * to such license between the licensee and ForgeRock AS.
+ */
+package com.forgerock.cdr.common.matls;
+
+import com.forgerock.openbanking.common.services.store.tpp.TppStoreService;
+import com.forgerock.openbanking.model.Tpp;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.Expiry;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.web.context.request.RequestAttributes;
+import org.springframework.web.context.request.RequestContextHolder;
+
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Optional;
+
+/**
+ * The TPPs of the client certificates, by certificate subject DN.
+ *
+ * The username and the authorities collectors of a request look up the same TPP, the first lookup is kept in the
+ * request so the second one doesn't go to the store. Across requests the lookups are cached for a while, a TPP that
+ * is not on board yet for a shorter time so it is recognised soon after its registration. A failure of the store
+ * is not cached. When the local {@link TppRegistry} is ready, it answers the lookups instead of the store.
+ */
+@Component
+@Slf4j
+public class TppLookupCache {
+
+    public static final String CACHE_NAME = "tpp.lookups";
+
+    private static final String REQUEST_ATTRIBUTE = TppLookupCache.class.getName() + ".TPPS";
+
+    private final TppStoreService tppStoreService;
+    private final TppRegistry tppRegistry;
+    private final Cache<String, Optional<Tpp>> cache;
+    private final Counter requestHits;
+
+    public TppLookupCache(TppStoreService tppStoreService,
+                          TppRegistry tppRegistry,
+                          @Value("${tpp-lookup-cache.maximum-size:1000}") long maximumSize,
+                          @Value("${tpp-lookup-cache.expire-after-write:PT5M}") Duration expireAfterWrite,
+                          @Value("${tpp-lookup-cache.negative-expire-after-write:PT30S}") Duration negativeExpireAfterWrite,
+                          MeterRegistry meterRegistry) {
+        this.tppStoreService = tppStoreService;
+        this.tppRegistry = tppRegistry;
+        this.cache = Caffeine.newBuilder()
+                .maximumSize(maximumSize)
+                .expireAfter(new WriteExpiry(expireAfterWrite, negativeExpireAfterWrite))
+                .recordStats()
+                .build();
+        CaffeineCacheMetrics.monitor(meterRegistry, cache, CACHE_NAME);
+        this.requestHits = Counter.builder(CACHE_NAME + ".request.hits")
+                .description("The TPP lookups answered by an earlier lookup of the same request")
+                .register(meterRegistry);
+    }
+
+    /**
+     * Find the TPP of a certificate subject DN, empty if the TPP is not on board.
+     */
+    public Optional<Tpp> findBySubject(String subjectDN) {
+        if (tppRegistry.isReady()) {
+            return tppRegistry.findByCn(subjectDN);
+        }
+        Map<String, Optional<Tpp>> requestTpps = requestTpps();
+        if (requestTpps != null) {
+            Optional<Tpp> tpp = requestTpps.get(subjectDN);
+            if (tpp != null) {
+                requestHits.increment();
+                return tpp;
+            }
+        }
+        Optional<Tpp> tpp = cache.get(subjectDN, this::load);
+        if (requestTpps != null) {
+            requestTpps.put(subjectDN, tpp);
+        }
+        return tpp;
+    }
+
+    public void invalidate(String subjectDN) {
+        cache.invalidate(subjectDN);
+    }
+
+    public void invalidateAll() {
+        cache.invalidateAll();
+    }
+
+    private Optional<Tpp> load(String subjectDN) {
+        log.debug("Look up the TPP {}", subjectDN);
+        return tppStoreService.findByCn(subjectDN);
+    }
+
+    @SuppressWarnings("unchecked")
+    private Map<String, Optional<Tpp>> requestTpps() {
+        RequestAttributes requestAttributes = RequestContextHolder.getRequestAttributes();
+        if (requestAttributes == null) {
+            return null;
+        }
+        Map<String, Optional<Tpp>> requestTpps = (Map<String, Optional<Tpp>>) requestAttributes.getAttribute(REQUEST_ATTRIBUTE,
+                RequestAttributes.SCOPE_REQUEST);
+        if (requestTpps == null) {
+            requestTpps = new HashMap<>(2);
+            requestAttributes.setAttribute(REQUEST_ATTRIBUTE, requestTpps, RequestAttributes.SCOPE_REQUEST);
+        }
+        return requestTpps;
+    }
+
+    private static class WriteExpiry implements Expiry<String, Optional<Tpp>> {
+
+        private final long expireAfterWrite;
+        private final long negativeExpireAfterWrite;
+
+        private WriteExpiry(Duration expireAfterWrite, Duration negativeExpireAfterWrite) {
+            this.expireAfterWrite = expireAfterWrite.toNanos();
+            this.negativeExpireAfterWrite = negativeExpireAfterWrite.toNanos();
+        }
+
+        @Override
+        public long expireAfterCreate(String key, Optional<Tpp> value, long currentTime) {
+            return value.isPresent() ? expireAfterWrite : negativeExpireAfterWrite;
+        }
+
+        @Override
+        public long expireAfterUpdate(String key, Optional<Tpp> value, long currentTime, long currentDuration) {
+            return expireAfterCreate(key, value, currentTime);
+        }
+
+        @Override
+        public long expireAfterRead(String key, Optional<Tpp> value, long currentTime, long currentDuration) {
+            return currentDuration;
+        }
+    }
+}
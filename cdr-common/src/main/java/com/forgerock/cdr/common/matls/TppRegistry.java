@@ -0,0 +1,194 @@
+/**
+ * Copyright 2019 ForgeRock AS. All Rights Reserved
+ *
+ * Use of this code requires a commercial software license with ForgeRock AS.
+ * or with one of its affiliates. All use shall be exclusively subject
+ * to such license between the licensee and ForgeRock AS.
+ */
+package com.forgerock.cdr.common.matls;
+
+import com.forgerock.openbanking.model.Tpp;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+import org.springframework.web.client.RestTemplate;
+import org.springframework.web.util.UriComponentsBuilder;
+
+import javax.annotation.PreDestroy;
+import java.net.URI;
+import java.time.Duration;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+
+/**
+ * A local read-only index of the TPPs of rs-store, by certificate CN and by client id.
+ *
+ * Once the application is ready, the snapshot of all the TPPs is loaded, then the changes since the last version
+ * are polled and applied. The index is replaced as a whole by every change, so a lookup never waits and never leaves
+ * the JVM. The changes list the ids of all the TPPs: if one of them isn't in the index, it was missed by the changes
+ * and the snapshot is loaded again. A failed poll keeps the index as it is, until it is older than the maximum staleness and the lookups go
+ * back to the store.
+ */
+@Component
+@Slf4j
+public class TppRegistry {
+
+    static final String SNAPSHOT_PATH = "/api/tpp-registry/snapshot";
+    static final String CHANGES_PATH = "/api/tpp-registry/changes";
+
+    private final RestTemplate restTemplate;
+    private final String rsStoreBaseUrl;
+    private final boolean enabled;
+    private final Duration pollInterval;
+    private final Duration maxStaleness;
+
+    private volatile Index index;
+    private ScheduledExecutorService executor;
+
+    public TppRegistry(RestTemplate restTemplate,
+                       @Value("${rs-store.base-url}") String rsStoreBaseUrl,
+                       @Value("${tpp-registry.enabled:false}") boolean enabled,
+                       @Value("${tpp-registry.poll-interval:PT30S}") Duration pollInterval,
+                       @Value("${tpp-registry.max-staleness:PT5M}") Duration maxStaleness) {
+        this.restTemplate = restTemplate;
+        this.rsStoreBaseUrl = rsStoreBaseUrl;
+        this.enabled = enabled;
+        this.pollInterval = pollInterval;
+        this.maxStaleness = maxStaleness;
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public synchronized void start() {
+        if (!enabled || executor != null) {
+            return;
+        }
+        executor = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "tpp-registry");
+            thread.setDaemon(true);
+            return thread;
+        });
+        executor.scheduleWithFixedDelay(this::refresh, 0, pollInterval.toMillis(), TimeUnit.MILLISECONDS);
+    }
+
+    @PreDestroy
+    public synchronized void stop() {
+        if (executor != null) {
+            executor.shutdownNow();
+            executor = null;
+        }
+    }
+
+    /**
+     * Whether the index is loaded and recent enough to answer the lookups.
+     */
+    public boolean isReady() {
+        Index current = index;
+        return current != null && System.currentTimeMillis() - current.refreshedAt <= maxStaleness.toMillis();
+    }
+
+    public Optional<Tpp> findByCn(String cn) {
+        Index current = index;
+        return current != null ? Optional.ofNullable(current.byCn.get(cn)) : Optional.empty();
+    }
+
+    public Optional<Tpp> findByClientId(String clientId) {
+        Index current = index;
+        return current != null ? Optional.ofNullable(current.byClientId.get(clientId)) : Optional.empty();
+    }
+
+    /**
+     * Load the snapshot if there is no index yet, or apply the changes since its version.
+     */
+    public void refresh() {
+        Index current = index;
+        try {
+            if (current == null) {
+                TppRegistryUpdate snapshot = restTemplate.getForObject(uri(SNAPSHOT_PATH, null), TppRegistryUpdate.class);
+                index = apply(null, snapshot);
+                log.info("Loaded the {} TPPs of the registry at version {}", index.byId.size(), index.version);
+            } else {
+                TppRegistryUpdate changes = restTemplate.getForObject(uri(CHANGES_PATH, current.version), TppRegistryUpdate.class);
+                Index changed = apply(current, changes);
+                if (isMissingTpps(changed, changes)) {
+                    // A TPP of rs-store wasn't found by its changes query, only the snapshot has it
+                    TppRegistryUpdate snapshot = restTemplate.getForObject(uri(SNAPSHOT_PATH, null), TppRegistryUpdate.class);
+                    index = apply(null, snapshot);
+                    log.warn("The TPP changes of the registry since version {} missed some TPPs, reloaded the {} TPPs at "
+                            + "version {}", current.version, index.byId.size(), index.version);
+                    return;
+                }
+                index = changed;
+                log.debug("Applied the TPP changes of the registry since version {}, {} TPPs at version {}", current.version,
+                        index.byId.size(), index.version);
+            }
+        } catch (RuntimeException e) {
+            // Keep the index, the next poll will catch up
+            log.warn("Can't refresh the TPP registry from version {}", current != null ? current.version : null, e);
+        }
+    }
+
+    private URI uri(String path, String since) {
+        UriComponentsBuilder uri = UriComponentsBuilder.fromHttpUrl(rsStoreBaseUrl).path(path);
+        if (since != null) {
+            uri.queryParam("since", since);
+        }
+        return uri.build().encode().toUri();
+    }
+
+    private static boolean isMissingTpps(Index index, TppRegistryUpdate changes) {
+        return changes.getIds() != null && changes.getIds().stream().anyMatch(id -> !index.byId.containsKey(id));
+    }
+
+    private static Index apply(Index current, TppRegistryUpdate update) {
+        Map<String, Tpp> byId = new HashMap<>();
+        if (current != null && !update.isSnapshot()) {
+            byId.putAll(current.byId);
+            if (update.getIds() != null) {
+                byId.keySet().retainAll(new HashSet<>(update.getIds()));
+            }
+        }
+        if (update.getTpps() != null) {
+            for (Tpp tpp : update.getTpps()) {
+                byId.put(tpp.getId(), tpp);
+            }
+        }
+        return new Index(update.getVersion(), byId);
+    }
+
+    private static class Index {
+
+        private final String version;
+        private final long refreshedAt = System.currentTimeMillis();
+        private final Map<String, Tpp> byId;
+        private final Map<String, Tpp> byCn;
+        private final Map<String, Tpp> byClientId;
+
+        private Index(String version, Map<String, Tpp> byId) {
+            this.version = version;
+            this.byId = Collections.unmodifiableMap(byId);
+            this.byCn = index(byId.values(), Tpp::getCertificateCn);
+            this.byClientId = index(byId.values(), Tpp::getClientId);
+        }
+
+        private static Map<String, Tpp> index(Collection<Tpp> tpps, Function<Tpp, String> key) {
+            Map<String, Tpp> index = new HashMap<>(tpps.size() * 2);
+            for (Tpp tpp : tpps) {
+                String value = key.apply(tpp);
+                if (value != null) {
+                    index.put(value, tpp);
+                }
+            }
+            return Collections.unmodifiableMap(index);
+        }
+    }
+}
@@ -0,0 +1,35 @@
+/**
+ * Copyright 2019 ForgeRock AS. All Rights Reserved
+ *
+ * Use of this code requires a commercial software license with ForgeRock AS.
+ * or with one of its affiliates. All use shall be exclusively subject
+ * to such license between the licensee and ForgeRock AS.
+ */
+package com.forgerock.cdr.common.matls;
+
+import com.forgerock.openbanking.model.Tpp;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+/**
+ * The TPPs of the registry of rs-store, all of them for a snapshot, or the ones that changed since a version.
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class TppRegistryUpdate {
+
+    /**
+     * The version of the registry, to ask for the next changes.
+     */
+    private String version;
+    private boolean snapshot;
+    private List<Tpp> tpps;
+    /**
+     * The ids of all the TPPs, for the changes, so that the deleted ones can be removed.
+     */
+    private List<String> ids;
+}
@@ -0,0 +1,104 @@
+/**
+ * Copyright 2019 ForgeRock AS. All Rights Reserved
+ *
+ * Use of this code requires a commercial software license with ForgeRock AS.
+ * or with one of its affiliates. All use shall be exclusively subject
+ * to such license between the licensee and ForgeRock AS.
+ */
+package common.crypto;
+
+import com.forgerock.cdr.common.crypto.BatchCryptoClient;
+import com.forgerock.cdr.common.crypto.BatchSignRequest;
+import com.forgerock.cdr.common.crypto.BatchSignResponse;
+import com.forgerock.cdr.common.crypto.BatchVerifyRequest;
+import com.forgerock.cdr.common.crypto.BatchVerifyResponse;
+import com.nimbusds.jose.jwk.JWKSet;
+import com.nimbusds.jose.jwk.RSAKey;
+import com.nimbusds.jose.jwk.gen.RSAKeyGenerator;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.web.client.RestTemplate;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.BDDMockito.given;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+
+public class BatchCryptoClientTest {
+
+    private static final String SIGN = "https://jwkms:8443/api/crypto/batch/sign";
+    private static final String VERIFY = "https://jwkms:8443/api/crypto/batch/verify";
+
+    private RestTemplate restTemplate;
+    private BatchCryptoClient batchCryptoClient;
+
+    @Before
+    public void setUp() {
+        restTemplate = mock(RestTemplate.class);
+        batchCryptoClient = new BatchCryptoClient(restTemplate, "https://jwkms:8443/", 2);
+    }
+
+    @Test
+    public void shouldSignThePayloadsByBatchesInTheirOrder() {
+        // Given
+        given(restTemplate.postForObject(eq(SIGN), any(BatchSignRequest.class), eq(BatchSignResponse.class)))
+                .willAnswer(invocation -> {
+                    BatchSignRequest request = invocation.getArgument(1);
+                    return new BatchSignResponse(request.getPayloads().stream()
+                            .map(payload -> "jws-" + payload)
+                            .collect(Collectors.toList()));
+                });
+
+        // When
+        List<String> signatures = batchCryptoClient.signDetached(Arrays.asList("1", "2", "3", "4", "5"));
+
+        // Then
+        assertThat(signatures).containsExactly("jws-1", "jws-2", "jws-3", "jws-4", "jws-5");
+        ArgumentCaptor<BatchSignRequest> requests = ArgumentCaptor.forClass(BatchSignRequest.class);
+        verify(restTemplate, times(3)).postForObject(eq(SIGN), requests.capture(), eq(BatchSignResponse.class));
+        assertThat(requests.getAllValues()).extracting(BatchSignRequest::getPayloads)
+                .containsExactly(Arrays.asList("1", "2"), Arrays.asList("3", "4"), Collections.singletonList("5"));
+        assertThat(requests.getAllValues()).allSatisfy(request -> assertThat(request.isDetached()).isTrue());
+    }
+
+    @Test
+    public void shouldFailOnAnIncompleteBatch() {
+        // Given
+        given(restTemplate.postForObject(eq(SIGN), any(BatchSignRequest.class), eq(BatchSignResponse.class)))
+                .willReturn(new BatchSignResponse(Collections.singletonList("jws-1")));
+
+        // When / Then
+        assertThatThrownBy(() -> batchCryptoClient.sign(Arrays.asList("1", "2")))
+                .isInstanceOf(IllegalStateException.class);
+    }
+
+    @Test
+    public void shouldSendThePublicKeysOfTheJwkUri() throws Exception {
+        // Given
+        RSAKey key = new RSAKeyGenerator(2048).keyID("kid-1").generate();
+        given(restTemplate.getForObject("https://rs-api/jwk_uri", String.class)).willReturn(new JWKSet(key).toJSONObject(false).toJSONString());
+        given(restTemplate.postForObject(eq(VERIFY), any(BatchVerifyRequest.class), eq(BatchVerifyResponse.class)))
+                .willReturn(new BatchVerifyResponse(Arrays.asList(true, false)));
+
+        // When
+        List<Boolean> valid = batchCryptoClient.verify("https://rs-api/jwk_uri", Arrays.asList("a.b.c", "d.e.f"));
+
+        // Then
+        assertThat(valid).containsExactly(true, false);
+        ArgumentCaptor<BatchVerifyRequest> request = ArgumentCaptor.forClass(BatchVerifyRequest.class);
+        verify(restTemplate).postForObject(eq(VERIFY), request.capture(), eq(BatchVerifyResponse.class));
+        JWKSet sent = JWKSet.parse(request.getValue().getJwks());
+        assertThat(sent.getKeyByKeyId("kid-1").isPrivate()).isFalse();
+        assertThat(request.getValue().getPayloads()).isNull();
+    }
+}
@@ -0,0 +1,152 @@
+/**
+ * Copyright 2019 ForgeRock AS. All Rights Reserved
+ *
+ * Use of this code requires a commercial software license with ForgeRock AS.
+ * or with one of its affiliates. All use shall be exclusively subject
+ * to such license between the licensee and ForgeRock AS.
+ */
+package common.crypto;
+
+import com.forgerock.cdr.common.crypto.BatchCryptoClient;
+import com.forgerock.cdr.common.crypto.DetachedSignatureHeader;
+import com.forgerock.cdr.common.crypto.LeasedJwsSigner;
+import com.nimbusds.jose.JWSObject;
+import com.nimbusds.jose.crypto.RSASSAVerifier;
+import com.nimbusds.jose.crypto.bc.BouncyCastleProviderSingleton;
+import com.nimbusds.jose.jwk.RSAKey;
+import com.nimbusds.jose.util.Base64URL;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.web.client.RestTemplate;
+
+import java.time.Duration;
+import java.util.function.BooleanSupplier;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * The leased signing against a stub jwkms over HTTP.
+ */
+public class LeasedJwsSignerIntegrationTest {
+
+    private static final String BODY = "{\"Data\":{\"AccountId\":\"22289\"}}";
+
+    private StubJwkms stubJwkms;
+    private SimpleMeterRegistry meterRegistry;
+    private LeasedJwsSigner leasedJwsSigner;
+
+    @Before
+    public void setUp() throws Exception {
+        stubJwkms = new StubJwkms();
+        meterRegistry = new SimpleMeterRegistry();
+    }
+
+    @After
+    public void tearDown() {
+        if (leasedJwsSigner != null) {
+            leasedJwsSigner.stop();
+        }
+        stubJwkms.close();
+    }
+
+    @Test
+    public void shouldSignLocallyWithTheLeasedKey() throws Exception {
+        // Given
+        leasedJwsSigner = signer(true, Duration.ofMinutes(1));
+        leasedJwsSigner.start();
+        await(leasedJwsSigner::isLeased);
+
+        // When
+        String signature = leasedJwsSigner.signDetached(BODY);
+
+        // Then
+        assertThat(verify(signature, BODY, stubJwkms.signingKey())).isTrue();
+        assertThat(stubJwkms.remoteSignatures.get()).isZero();
+        assertThat(signatures("leased")).isEqualTo(1);
+    }
+
+    @Test
+    public void shouldSignWithJwkmsWhenTheLeasedModeIsDisabled() throws Exception {
+        // Given
+        leasedJwsSigner = signer(false, Duration.ofMinutes(1));
+        leasedJwsSigner.start();
+
+        // When
+        String signature = leasedJwsSigner.signDetached(BODY);
+
+        // Then
+        assertThat(verify(signature, BODY, stubJwkms.signingKey())).isTrue();
+        assertThat(stubJwkms.leases.get()).isZero();
+        assertThat(stubJwkms.remoteSignatures.get()).isEqualTo(1);
+        assertThat(signatures("remote")).isEqualTo(1);
+    }
+
+    @Test
+    public void shouldRenewTheLeaseBeforeItExpiresAndSignWithTheRotatedKey() throws Exception {
+        // Given
+        stubJwkms.leaseDuration(Duration.ofMillis(1500));
+        leasedJwsSigner = signer(true, Duration.ofSeconds(1));
+        leasedJwsSigner.start();
+        await(leasedJwsSigner::isLeased);
+        RSAKey rotated = stubJwkms.signingKey();
+        stubJwkms.rotate();
+
+        // When, the second lease is in use once the third one is asked
+        await(() -> stubJwkms.leases.get() >= 3);
+        String signature = leasedJwsSigner.signDetached(BODY);
+
+        // Then
+        assertThat(leasedJwsSigner.isLeased()).isTrue();
+        assertThat(verify(signature, BODY, stubJwkms.signingKey())).isTrue();
+        assertThat(verify(signature, BODY, rotated)).isFalse();
+        assertThat(stubJwkms.remoteSignatures.get()).isZero();
+    }
+
+    @Test
+    public void shouldGoBackToJwkmsOnceTheLeaseExpired() throws Exception {
+        // Given
+        stubJwkms.leaseDuration(Duration.ofMillis(300));
+        leasedJwsSigner = signer(true, Duration.ZERO);
+        assertThat(leasedJwsSigner.renew()).isTrue();
+        stubJwkms.leaseAvailable(false);
+
+        // When
+        await(() -> !leasedJwsSigner.isLeased());
+        String signature = leasedJwsSigner.signDetached(BODY);
+
+        // Then
+        assertThat(leasedJwsSigner.renew()).isFalse();
+        assertThat(verify(signature, BODY, stubJwkms.signingKey())).isTrue();
+        assertThat(stubJwkms.remoteSignatures.get()).isEqualTo(1);
+    }
+
+    private LeasedJwsSigner signer(boolean enabled, Duration renewBefore) {
+        RestTemplate restTemplate = new RestTemplate();
+        BatchCryptoClient batchCryptoClient = new BatchCryptoClient(restTemplate, stubJwkms.root(), 500);
+        return new LeasedJwsSigner(restTemplate, batchCryptoClient, stubJwkms.root(), enabled, renewBefore,
+                Duration.ofMillis(100), meterRegistry);
+    }
+
+    private double signatures(String mode) {
+        return meterRegistry.get("jwkms.signing-key-lease.signatures").tag("mode", mode).counter().count();
+    }
+
+    private static boolean verify(String detachedSignature, String payload, RSAKey key) throws Exception {
+        Base64URL[] parts = JWSObject.parse(detachedSignature).getParsedParts();
+        JWSObject jws = new JWSObject(parts[0], Base64URL.encode(payload), parts[2]);
+        assertThat(jws.getHeader().getCustomParam(DetachedSignatureHeader.OB_ISS)).isEqualTo(StubJwkms.ISSUER);
+        RSASSAVerifier verifier = new RSASSAVerifier(key.toRSAPublicKey(), DetachedSignatureHeader.CRITICAL_PARAMS);
+        verifier.getJCAContext().setProvider(BouncyCastleProviderSingleton.getInstance());
+        return jws.verify(verifier);
+    }
+
+    private static void await(BooleanSupplier condition) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 10_000;
+        while (!condition.getAsBoolean() && System.currentTimeMillis() < deadline) {
+            Thread.sleep(20);
+        }
+        assertThat(condition.getAsBoolean()).isTrue();
+    }
+}
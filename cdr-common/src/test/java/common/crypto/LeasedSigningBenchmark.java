@@ -0,0 +1,88 @@
+/**
+ * Copyright 2019 ForgeRock AS. All Rights Reserved
+ *
+ * Use of this code requires a commercial software license with ForgeRock AS.
+ * or with one of its affiliates. All use shall be exclusively subject
+ * to such license between the licensee and ForgeRock AS.
+ */
+package common.crypto;
+
+import com.forgerock.cdr.common.crypto.BatchCryptoClient;
+import com.forgerock.cdr.common.crypto.LeasedJwsSigner;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.springframework.web.client.RestTemplate;
+
+import java.time.Duration;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The detached signature of an account response, PS256 with an RSA 2048 key, signed by a stub jwkms as with the remote
+ * signing of rs-api, and with the leased key. The stub is local and over plain HTTP, so the remote signing doesn't pay
+ * the network and mTLS costs of a real deployment and the difference is a lower bound.
+ *
+ * Run with: mvn test-compile exec:java -Dexec.mainClass=common.crypto.LeasedSigningBenchmark -Dexec.classpathScope=test
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class LeasedSigningBenchmark {
+
+    private static final String BODY = "{\"Data\":{\"Account\":[{\"AccountId\":\"22289\",\"Currency\":\"GBP\","
+            + "\"Nickname\":\"Bills\",\"Account\":{\"SchemeName\":\"SortCodeAccountNumber\","
+            + "\"Identification\":\"80200110203345\",\"Name\":\"Mr Kevin\"}}]},"
+            + "\"Links\":{\"Self\":\"/accounts/22289\"},\"Meta\":{\"TotalPages\":1}}";
+
+    @Param({"remote", "leased"})
+    private String mode;
+
+    private StubJwkms stubJwkms;
+    private LeasedJwsSigner leasedJwsSigner;
+
+    @Setup
+    public void setup() throws Exception {
+        stubJwkms = new StubJwkms();
+        RestTemplate restTemplate = new RestTemplate();
+        BatchCryptoClient batchCryptoClient = new BatchCryptoClient(restTemplate, stubJwkms.root(), 500);
+        leasedJwsSigner = new LeasedJwsSigner(restTemplate, batchCryptoClient, stubJwkms.root(), true,
+                Duration.ofMinutes(1), Duration.ofSeconds(10), new SimpleMeterRegistry());
+        if ("leased".equals(mode) && !leasedJwsSigner.renew()) {
+            throw new IllegalStateException("No lease from the stub jwkms");
+        }
+    }
+
+    @TearDown
+    public void tearDown() {
+        leasedJwsSigner.stop();
+        stubJwkms.close();
+    }
+
+    @Benchmark
+    public String signDetached() {
+        return leasedJwsSigner.signDetached(BODY);
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder()
+                .include(LeasedSigningBenchmark.class.getSimpleName())
+                .build())
+                .run();
+    }
+}
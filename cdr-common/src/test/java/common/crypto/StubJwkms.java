@@ -0,0 +1,133 @@
+/**
+ * Copyright 2019 ForgeRock AS. All Rights Reserved
+ *
+ * Use of this code requires a commercial software license with ForgeRock AS.
+ * or with one of its affiliates. All use shall be exclusively subject
+ * to such license between the licensee and ForgeRock AS.
+ */
+package common.crypto;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.forgerock.cdr.common.crypto.BatchSignRequest;
+import com.forgerock.cdr.common.crypto.BatchSignResponse;
+import com.forgerock.cdr.common.crypto.DetachedSignatureHeader;
+import com.forgerock.cdr.common.crypto.SigningKeyLease;
+import com.nimbusds.jose.JOSEException;
+import com.nimbusds.jose.JWSAlgorithm;
+import com.nimbusds.jose.JWSHeader;
+import com.nimbusds.jose.JWSObject;
+import com.nimbusds.jose.Payload;
+import com.nimbusds.jose.crypto.RSASSASigner;
+import com.nimbusds.jose.crypto.bc.BouncyCastleProviderSingleton;
+import com.nimbusds.jose.jwk.KeyUse;
+import com.nimbusds.jose.jwk.RSAKey;
+import com.nimbusds.jose.jwk.gen.RSAKeyGenerator;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * The signing key lease and the batch signing endpoints of jwkms, over plain HTTP on a random local port.
+ */
+class StubJwkms implements AutoCloseable {
+
+    static final String ISSUER = "rs-api";
+    static final String TAN = "openbanking.org.uk";
+
+    private final HttpServer server;
+    private final ExecutorService executor = Executors.newFixedThreadPool(4);
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    final AtomicInteger leases = new AtomicInteger();
+    final AtomicInteger remoteSignatures = new AtomicInteger();
+
+    private volatile RSAKey signingKey;
+    private volatile Duration leaseDuration = Duration.ofMinutes(5);
+    private volatile boolean leaseAvailable = true;
+
+    StubJwkms() throws IOException, JOSEException {
+        rotate();
+        server = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+        server.setExecutor(executor);
+        server.createContext("/api/crypto/signing-key-lease", this::lease);
+        server.createContext("/api/crypto/batch/sign", this::sign);
+        server.start();
+    }
+
+    String root() {
+        return "http://localhost:" + server.getAddress().getPort() + "/";
+    }
+
+    RSAKey signingKey() {
+        return signingKey;
+    }
+
+    void rotate() throws JOSEException {
+        signingKey = new RSAKeyGenerator(2048).keyID(UUID.randomUUID().toString()).keyUse(KeyUse.SIGNATURE).generate();
+    }
+
+    void leaseDuration(Duration leaseDuration) {
+        this.leaseDuration = leaseDuration;
+    }
+
+    void leaseAvailable(boolean leaseAvailable) {
+        this.leaseAvailable = leaseAvailable;
+    }
+
+    @Override
+    public void close() {
+        server.stop(0);
+        executor.shutdownNow();
+    }
+
+    private void lease(HttpExchange exchange) throws IOException {
+        if (!leaseAvailable) {
+            respond(exchange, 503, null);
+            return;
+        }
+        leases.incrementAndGet();
+        respond(exchange, 200, new SigningKeyLease(signingKey.toJSONString(), JWSAlgorithm.PS256.getName(), ISSUER, TAN,
+                System.currentTimeMillis() + leaseDuration.toMillis()));
+    }
+
+    private void sign(HttpExchange exchange) throws IOException {
+        BatchSignRequest request = objectMapper.readValue(exchange.getRequestBody(), BatchSignRequest.class);
+        List<String> signatures = new ArrayList<>();
+        try {
+            RSASSASigner signer = new RSASSASigner(signingKey);
+            signer.getJCAContext().setProvider(BouncyCastleProviderSingleton.getInstance());
+            for (String payload : request.getPayloads()) {
+                JWSHeader header = request.isDetached()
+                        ? DetachedSignatureHeader.build(JWSAlgorithm.PS256, signingKey.getKeyID(), ISSUER, TAN,
+                        System.currentTimeMillis() / 1000)
+                        : new JWSHeader.Builder(JWSAlgorithm.PS256).keyID(signingKey.getKeyID()).build();
+                JWSObject jws = new JWSObject(header, new Payload(payload));
+                jws.sign(signer);
+                signatures.add(jws.serialize(request.isDetached()));
+            }
+        } catch (JOSEException e) {
+            respond(exchange, 500, null);
+            return;
+        }
+        remoteSignatures.addAndGet(signatures.size());
+        respond(exchange, 200, new BatchSignResponse(signatures));
+    }
+
+    private void respond(HttpExchange exchange, int status, Object body) throws IOException {
+        byte[] bytes = body != null ? objectMapper.writeValueAsBytes(body) : new byte[0];
+        exchange.getResponseHeaders().add("Content-Type", "application/json");
+        exchange.sendResponseHeaders(status, bytes.length > 0 ? bytes.length : -1);
+        try (OutputStream outputStream = exchange.getResponseBody()) {
+            outputStream.write(bytes);
+        }
+    }
+}
@@ -0,0 +1,166 @@
+/**
+ * Copyright 2019 ForgeRock AS. All Rights Reserved
+ *
+ * Use of this code requires a commercial software license with ForgeRock AS.
+ * or with one of its affiliates. All use shall be exclusively subject
+ * to such license between the licensee and ForgeRock AS.
+ */
+package common.http;
+
+import com.forgerock.cdr.common.http.WebClientFactory;
+import com.forgerock.openbanking.ssl.config.SslConfiguration;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import io.netty.handler.timeout.ReadTimeoutException;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import reactor.core.publisher.Mono;
+import reactor.netty.DisposableServer;
+import reactor.netty.http.client.HttpClient;
+import reactor.netty.http.server.HttpServer;
+
+import java.time.Duration;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.Mockito.mock;
+
+public class WebClientFactoryTest {
+
+    private static final String POOL = "test";
+
+    private DisposableServer server;
+    private Set<Object> serverConnections;
+    private MeterRegistry meterRegistry;
+    private WebClientFactory webClientFactory;
+
+    @Before
+    public void setUp() {
+        serverConnections = ConcurrentHashMap.newKeySet();
+        server = HttpServer.create()
+                .host("localhost")
+                .port(0)
+                .tcpConfiguration(tcpServer -> tcpServer.doOnConnection(connection -> serverConnections.add(connection.channel().id())))
+                .route(routes -> routes
+                        .get("/ok", (request, response) -> response.sendString(Mono.just("ok")))
+                        .get("/slow", (request, response) -> response.sendString(Mono.just("slow").delayElement(Duration.ofSeconds(2)))))
+                .bindNow();
+        meterRegistry = new SimpleMeterRegistry();
+    }
+
+    @After
+    public void tearDown() {
+        webClientFactory.destroy();
+        server.disposeNow();
+    }
+
+    @Test
+    public void shouldReturnTheConnectionToThePool() {
+        // Given
+        HttpClient httpClient = httpClient(Duration.ofMinutes(1), Duration.ofMinutes(10), Duration.ofSeconds(5));
+
+        // When
+        get(httpClient, "/ok");
+        get(httpClient, "/ok");
+
+        // Then
+        eventually(() -> assertThat(connections("idle")).isEqualTo(1));
+        assertThat(connections("active")).isEqualTo(0);
+        assertThat(serverConnections).hasSize(1);
+    }
+
+    @Test
+    public void shouldCloseAnIdleConnection() {
+        // Given
+        HttpClient httpClient = httpClient(Duration.ofMillis(200), Duration.ofMinutes(10), Duration.ofSeconds(5));
+
+        // When
+        get(httpClient, "/ok");
+
+        // Then
+        eventually(() -> assertThat(evictions("idle")).isEqualTo(1));
+        eventually(() -> assertThat(connections("idle")).isEqualTo(0));
+        get(httpClient, "/ok");
+        assertThat(serverConnections).hasSize(2);
+    }
+
+    @Test
+    public void shouldCloseAConnectionOlderThanItsLifeTime() {
+        // Given
+        HttpClient httpClient = httpClient(Duration.ofMinutes(1), Duration.ZERO, Duration.ofSeconds(5));
+
+        // When
+        get(httpClient, "/ok");
+        eventually(() -> assertThat(evictions("lifetime")).isEqualTo(1));
+        get(httpClient, "/ok");
+
+        // Then
+        assertThat(serverConnections).hasSize(2);
+        eventually(() -> assertThat(connections("idle")).isEqualTo(0));
+    }
+
+    @Test
+    public void shouldFailWithoutResponseWithinTheTimeout() {
+        // Given
+        HttpClient httpClient = httpClient(Duration.ofMinutes(1), Duration.ofMinutes(10), Duration.ofMillis(200));
+
+        // When / Then
+        assertThatThrownBy(() -> get(httpClient, "/slow")).isInstanceOf(ReadTimeoutException.class);
+    }
+
+    @Test
+    public void shouldRejectASecondPoolOfTheSameName() {
+        // Given
+        httpClient(Duration.ofMinutes(1), Duration.ofMinutes(10), Duration.ofSeconds(5));
+
+        // When / Then
+        assertThatThrownBy(() -> webClientFactory.httpClient(POOL)).isInstanceOf(IllegalArgumentException.class);
+        assertThat(meterRegistry.find(WebClientFactory.METRICS_PREFIX + ".connections").gauges()).hasSize(2);
+    }
+
+    private HttpClient httpClient(Duration maxIdleTime, Duration maxLifeTime, Duration responseTimeout) {
+        webClientFactory = new WebClientFactory(mock(SslConfiguration.class), meterRegistry, 10, Duration.ofSeconds(5),
+                maxIdleTime, maxLifeTime, Duration.ofSeconds(1), responseTimeout);
+        return webClientFactory.httpClient(POOL);
+    }
+
+    private String get(HttpClient httpClient, String uri) {
+        return httpClient.get()
+                .uri("http://localhost:" + server.port() + uri)
+                .responseContent()
+                .aggregate()
+                .asString()
+                .block(Duration.ofSeconds(10));
+    }
+
+    private static void eventually(Runnable assertion) {
+        long deadline = System.currentTimeMillis() + 5000;
+        while (true) {
+            try {
+                assertion.run();
+                return;
+            } catch (AssertionError e) {
+                if (System.currentTimeMillis() > deadline) {
+                    throw e;
+                }
+                try {
+                    Thread.sleep(20);
+                } catch (InterruptedException interrupted) {
+                    Thread.currentThread().interrupt();
+                    throw e;
+                }
+            }
+        }
+    }
+
+    private double connections(String state) {
+        return meterRegistry.get(WebClientFactory.METRICS_PREFIX + ".connections").tag("pool", POOL).tag("state", state).gauge().value();
+    }
+
+    private double evictions(String reason) {
+        return meterRegistry.get(WebClientFactory.METRICS_PREFIX + ".evictions").tag("pool", POOL).tag("reason", reason).counter().count();
+    }
+}
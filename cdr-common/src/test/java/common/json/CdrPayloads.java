@@ -0,0 +1,102 @@
+/**
+ * Copyright 2019 ForgeRock AS. All Rights Reserved
+ *
+ * Use of this code requires a commercial software license with ForgeRock AS.
+ * or with one of its affiliates. All use shall be exclusively subject
+ * to such license between the licensee and ForgeRock AS.
+ */
+package common.json;
+
+import lombok.Data;
+import org.springframework.util.StreamUtils;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Date;
+import java.util.List;
+
+/**
+ * The CDR banking payloads of the samples in /payloads, shaped as the model of the services.
+ */
+public class CdrPayloads {
+
+    public static byte[] sample(String name) throws IOException {
+        try (InputStream inputStream = CdrPayloads.class.getResourceAsStream("/payloads/" + name + ".json")) {
+            return StreamUtils.copyToByteArray(inputStream);
+        }
+    }
+
+    @Data
+    public static class ResponseBankingAccountList {
+        private BankingAccountList data;
+        private Links links;
+        private Meta meta;
+    }
+
+    @Data
+    public static class BankingAccountList {
+        private List<BankingAccount> accounts;
+    }
+
+    @Data
+    public static class BankingAccount {
+        private String accountId;
+        private String creationDate;
+        private String displayName;
+        private String nickname;
+        private String openStatus;
+        private Boolean isOwned;
+        private String maskedNumber;
+        private String productCategory;
+        private String productName;
+    }
+
+    @Data
+    public static class ResponseBankingTransactionList {
+        private BankingTransactionList data;
+        private Links links;
+        private Meta meta;
+    }
+
+    @Data
+    public static class BankingTransactionList {
+        private List<BankingTransaction> transactions;
+    }
+
+    @Data
+    public static class BankingTransaction {
+        private String accountId;
+        private String transactionId;
+        private Boolean isDetailAvailable;
+        private String type;
+        private String status;
+        private String description;
+        private Date postingDateTime;
+        private Date valueDateTime;
+        private Date executionDateTime;
+        private String amount;
+        private String currency;
+        private String reference;
+        private String merchantName;
+        private String merchantCategoryCode;
+        private String billerCode;
+        private String billerName;
+        private String crn;
+        private String apcaNumber;
+    }
+
+    @Data
+    public static class Links {
+        private String self;
+        private String first;
+        private String prev;
+        private String next;
+        private String last;
+    }
+
+    @Data
+    public static class Meta {
+        private Integer totalRecords;
+        private Integer totalPages;
+    }
+}
@@ -0,0 +1,99 @@
+/**
+ * Copyright 2019 ForgeRock AS. All Rights Reserved
+ *
+ * Use of this code requires a commercial software license with ForgeRock AS.
+ * or with one of its affiliates. All use shall be exclusively subject
+ * to such license between the licensee and ForgeRock AS.
+ */
+package common.json;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.forgerock.cdr.common.json.HighPerformanceJackson;
+import common.json.CdrPayloads.ResponseBankingAccountList;
+import common.json.CdrPayloads.ResponseBankingTransactionList;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+
+import java.text.SimpleDateFormat;
+import java.util.TimeZone;
+import java.util.concurrent.TimeUnit;
+
+import static common.json.CdrPayloads.sample;
+
+/**
+ * Reading and writing of the CDR banking samples, accounts and transactions, by the object mapper of the message
+ * converters with and without the high performance mode. The standard mapper has a SimpleDateFormat in RFC 3339, as
+ * the model configures it. Run it with -prof gc to compare the allocations.
+ *
+ * Run with: mvn test-compile exec:java -Dexec.mainClass=common.json.HighPerformanceJacksonBenchmark -Dexec.classpathScope=test
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class HighPerformanceJacksonBenchmark {
+
+    @Param({"false", "true"})
+    private boolean highPerformance;
+
+    private ObjectMapper objectMapper;
+    private byte[] accounts;
+    private byte[] transactions;
+    private ResponseBankingAccountList accountList;
+    private ResponseBankingTransactionList transactionList;
+
+    @Setup
+    public void setup() throws Exception {
+        SimpleDateFormat rfc3339 = new SimpleDateFormat("yyyy-MM-dd'T'HH:mm:ss.SSSXXX");
+        rfc3339.setTimeZone(TimeZone.getTimeZone("UTC"));
+        objectMapper = new HighPerformanceJackson(highPerformance, new String[]{SimpleDateFormat.class.getName()}).configure(new Jackson2ObjectMapperBuilder()
+                .dateFormat(rfc3339)
+                .build());
+        accounts = sample("accounts");
+        transactions = sample("transactions");
+        accountList = objectMapper.readValue(accounts, ResponseBankingAccountList.class);
+        transactionList = objectMapper.readValue(transactions, ResponseBankingTransactionList.class);
+    }
+
+    @Benchmark
+    public ResponseBankingAccountList readAccounts() throws Exception {
+        return objectMapper.readValue(accounts, ResponseBankingAccountList.class);
+    }
+
+    @Benchmark
+    public byte[] writeAccounts() throws Exception {
+        return objectMapper.writeValueAsBytes(accountList);
+    }
+
+    @Benchmark
+    public ResponseBankingTransactionList readTransactions() throws Exception {
+        return objectMapper.readValue(transactions, ResponseBankingTransactionList.class);
+    }
+
+    @Benchmark
+    public byte[] writeTransactions() throws Exception {
+        return objectMapper.writeValueAsBytes(transactionList);
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder()
+                .include(HighPerformanceJacksonBenchmark.class.getSimpleName())
+                .build())
+                .run();
+    }
+}
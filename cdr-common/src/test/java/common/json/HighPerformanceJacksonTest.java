@@ -0,0 +1,218 @@
+/**
+ * Copyright 2019 ForgeRock AS. All Rights Reserved
+ *
+ * Use of this code requires a commercial software license with ForgeRock AS.
+ * or with one of its affiliates. All use shall be exclusively subject
+ * to such license between the licensee and ForgeRock AS.
+ */
+package common.json;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.type.TypeFactory;
+import com.fasterxml.jackson.module.afterburner.AfterburnerModule;
+import com.forgerock.cdr.common.json.HighPerformanceJackson;
+import com.forgerock.cdr.common.json.Rfc3339DateFormat;
+import common.json.CdrPayloads.BankingAccount;
+import common.json.CdrPayloads.BankingTransaction;
+import common.json.CdrPayloads.ResponseBankingAccountList;
+import common.json.CdrPayloads.ResponseBankingTransactionList;
+import org.junit.Test;
+import org.springframework.http.ResponseEntity;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RestController;
+
+import java.lang.reflect.Type;
+import java.text.DateFormat;
+import java.text.ParseException;
+import java.text.SimpleDateFormat;
+import java.time.Instant;
+import java.util.Collections;
+import java.util.Date;
+import java.util.List;
+import java.util.Set;
+import java.util.TimeZone;
+
+import static common.json.CdrPayloads.sample;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+public class HighPerformanceJacksonTest {
+
+    private static final String[] MODEL_DATE_FORMATS = {ModelDateFormat.class.getName()};
+
+    @Test
+    public void shouldNotChangeTheObjectMapperWhenDisabled() {
+        // Given
+        ObjectMapper objectMapper = new Jackson2ObjectMapperBuilder().build();
+        DateFormat dateFormat = objectMapper.getDateFormat();
+
+        // When
+        new HighPerformanceJackson(false, MODEL_DATE_FORMATS).configure(objectMapper);
+
+        // Then
+        assertThat(objectMapper.getRegisteredModuleIds()).doesNotContain(new AfterburnerModule().getTypeId());
+        assertThat(objectMapper.getDateFormat()).isSameAs(dateFormat);
+    }
+
+    @Test
+    public void shouldRegisterAfterburnerAndTheSharedDateFormat() {
+        // Given
+        ObjectMapper objectMapper = modelObjectMapper();
+
+        // When
+        new HighPerformanceJackson(true, MODEL_DATE_FORMATS).configure(objectMapper);
+
+        // Then
+        assertThat(objectMapper.getRegisteredModuleIds()).contains(new AfterburnerModule().getTypeId());
+        assertThat(objectMapper.getDateFormat()).isInstanceOf(Rfc3339DateFormat.class);
+        assertThat(objectMapper.getDateFormat().clone()).isSameAs(objectMapper.getDateFormat());
+    }
+
+    @Test
+    public void shouldKeepTheDateFormatOfAServiceWithoutTheDatesOfTheModel() {
+        // Given
+        ObjectMapper objectMapper = new Jackson2ObjectMapperBuilder().build();
+        DateFormat dateFormat = objectMapper.getDateFormat();
+
+        // When
+        new HighPerformanceJackson(true, MODEL_DATE_FORMATS).configure(objectMapper);
+
+        // Then
+        assertThat(objectMapper.getRegisteredModuleIds()).contains(new AfterburnerModule().getTypeId());
+        assertThat(objectMapper.getDateFormat()).isSameAs(dateFormat);
+    }
+
+    @Test
+    public void shouldWriteTheSamplesAsTheyAreRead() throws Exception {
+        // Given
+        ObjectMapper objectMapper = new HighPerformanceJackson(true, MODEL_DATE_FORMATS).configure(modelObjectMapper());
+        byte[] transactions = sample("transactions");
+
+        // When
+        ResponseBankingTransactionList response = objectMapper.readValue(transactions, ResponseBankingTransactionList.class);
+
+        // Then
+        BankingTransaction transaction = response.getData().getTransactions().get(0);
+        assertThat(transaction.getPostingDateTime()).isEqualTo(Date.from(Instant.parse("2019-10-01T08:00:00Z")));
+        assertThat(objectMapper.readTree(objectMapper.writeValueAsBytes(response))).isEqualTo(objectMapper.readTree(transactions));
+    }
+
+    @Test
+    public void shouldWriteTheDatesInUtcWithMilliseconds() {
+        // Given
+        Rfc3339DateFormat dateFormat = new Rfc3339DateFormat();
+
+        // When
+        String date = dateFormat.format(Date.from(Instant.parse("2019-10-01T12:30:05.123Z")));
+
+        // Then
+        assertThat(date).isEqualTo("2019-10-01T12:30:05.123Z");
+    }
+
+    @Test
+    public void shouldReadTheRfc3339Variants() throws Exception {
+        // Given
+        Rfc3339DateFormat dateFormat = new Rfc3339DateFormat();
+
+        // When / Then
+        assertThat(dateFormat.parse("2019-10-01T12:30:05.123Z")).isEqualTo(Date.from(Instant.parse("2019-10-01T12:30:05.123Z")));
+        assertThat(dateFormat.parse("2020-02-29T23:59:59.999Z")).isEqualTo(Date.from(Instant.parse("2020-02-29T23:59:59.999Z")));
+        assertThat(dateFormat.parse("2019-10-01")).isEqualTo(Date.from(Instant.parse("2019-10-01T00:00:00Z")));
+        assertThat(dateFormat.parse("2019-10-01T12:30Z")).isEqualTo(Date.from(Instant.parse("2019-10-01T12:30:00Z")));
+        assertThat(dateFormat.parse("2019-10-01T22:30:05+10:00")).isEqualTo(Date.from(Instant.parse("2019-10-01T12:30:05Z")));
+        assertThat(dateFormat.parse("2019-10-01T22:30:05.5+1000")).isEqualTo(Date.from(Instant.parse("2019-10-01T12:30:05.500Z")));
+        assertThat(dateFormat.parse("2019-10-01T12:30:05.123456")).isEqualTo(Date.from(Instant.parse("2019-10-01T12:30:05.123Z")));
+    }
+
+    @Test
+    public void shouldRejectAnInvalidDate() {
+        // Given
+        Rfc3339DateFormat dateFormat = new Rfc3339DateFormat();
+
+        // When / Then
+        assertThatThrownBy(() -> dateFormat.parse("2019-02-29T12:30:05.123Z")).isInstanceOf(ParseException.class);
+        assertThatThrownBy(() -> dateFormat.parse("2019-10-01T-1:30:05.123Z")).isInstanceOf(ParseException.class);
+        assertThatThrownBy(() -> dateFormat.parse("01/10/2019")).isInstanceOf(ParseException.class);
+    }
+
+    @Test
+    public void shouldFindThePayloadTypesOfTheControllers() {
+        // When
+        Set<Type> payloadTypes = HighPerformanceJackson.payloadTypes(Collections.singletonList(new AccountsApiController()));
+
+        // Then
+        TypeFactory typeFactory = TypeFactory.defaultInstance();
+        assertThat(payloadTypes).extracting(typeFactory::constructType).containsExactlyInAnyOrder(
+                typeFactory.constructType(ResponseBankingAccountList.class),
+                typeFactory.constructCollectionType(List.class, BankingAccount.class),
+                typeFactory.constructType(ResponseBankingTransactionList.class));
+    }
+
+    @Test
+    public void shouldWarmUpThePayloadTypes() {
+        // Given
+        ObjectMapper objectMapper = new HighPerformanceJackson(true, MODEL_DATE_FORMATS).configure(modelObjectMapper());
+        Set<Type> payloadTypes = HighPerformanceJackson.payloadTypes(Collections.singletonList(new AccountsApiController()));
+
+        // When
+        int warmedUp = HighPerformanceJackson.warmUp(objectMapper, payloadTypes);
+
+        // Then
+        assertThat(warmedUp).isEqualTo(3);
+    }
+
+    /**
+     * An object mapper with the date format of the model, as the one of rs-api.
+     */
+    private static ObjectMapper modelObjectMapper() {
+        return new Jackson2ObjectMapperBuilder().dateFormat(new ModelDateFormat()).build();
+    }
+
+    /**
+     * Stands for the RFC3339DateFormat of the model.
+     */
+    public static class ModelDateFormat extends SimpleDateFormat {
+
+        public ModelDateFormat() {
+            super("yyyy-MM-dd'T'HH:mm:ss.SSSXXX");
+            setTimeZone(TimeZone.getTimeZone("UTC"));
+        }
+    }
+
+    public interface AccountsApi {
+
+        @PostMapping("/accounts")
+        ResponseEntity<ResponseBankingAccountList> createAccounts(@RequestBody List<BankingAccount> accounts);
+    }
+
+    @RestController
+    public static class AccountsApiController implements AccountsApi {
+
+        @GetMapping("/accounts")
+        public ResponseBankingAccountList getAccounts() {
+            return new ResponseBankingAccountList();
+        }
+
+        @Override
+        public ResponseEntity<ResponseBankingAccountList> createAccounts(List<BankingAccount> accounts) {
+            return ResponseEntity.ok(new ResponseBankingAccountList());
+        }
+
+        @GetMapping("/accounts/{accountId}/transactions")
+        public ResponseEntity<ResponseBankingTransactionList> getTransactions(@PathVariable String accountId) {
+            return ResponseEntity.ok(new ResponseBankingTransactionList());
+        }
+
+        @GetMapping("/accounts/{accountId}/name")
+        public String getName(@PathVariable String accountId) {
+            return accountId;
+        }
+
+        public void notAMapping(BankingTransaction transaction) {
+        }
+    }
+}
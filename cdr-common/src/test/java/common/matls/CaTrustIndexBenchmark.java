@@ -0,0 +1,123 @@
+/**
+ * Copyright 2019 ForgeRock AS. All Rights Reserved
+ *
+ * Use of this code requires a commercial software license with ForgeRock AS.
+ * or with one of its affiliates. All use shall be exclusively subject
+ * to such license between the licensee and ForgeRock AS.
+ */
+package common.matls;
+
+import com.forgerock.cdr.common.matls.CaTrustIndex;
+import com.forgerock.cdr.common.matls.CaTrustIndex.Issuer;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.io.ByteArrayInputStream;
+import java.security.cert.CertificateFactory;
+import java.security.cert.X509Certificate;
+import java.util.concurrent.TimeUnit;
+
+import static common.matls.TestCertificates.EXTERNAL_CA;
+import static common.matls.TestCertificates.INTERNAL_CA;
+import static common.matls.TestCertificates.OB_ROOT_CA;
+import static common.matls.TestCertificates.RS;
+import static common.matls.TestCertificates.certificate;
+import static common.matls.TestCertificates.chain;
+
+/**
+ * The CA checks of the internal and external collectors for one request, as the services did them against the
+ * trust index. The OB chain check of the external collector is constant, the index computes it once.
+ *
+ * Run with: mvn test-compile exec:java -Dexec.mainClass=common.matls.CaTrustIndexBenchmark -Dexec.classpathScope=test
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class CaTrustIndexBenchmark {
+
+    @Param({"chain", "single"})
+    private String presented;
+
+    private X509Certificate internalCA;
+    private X509Certificate externalCA;
+    private X509Certificate[] obCA;
+    private X509Certificate[] certificatesChain;
+    private CaTrustIndex caTrustIndex;
+    private boolean obCAIssuedByExternalCA;
+
+    @Setup
+    public void setup() throws Exception {
+        internalCA = certificate(INTERNAL_CA);
+        externalCA = certificate(EXTERNAL_CA);
+        // The keystore has no OB issuing CA, the root stands for it
+        obCA = new X509Certificate[]{certificate(OB_ROOT_CA), certificate(OB_ROOT_CA)};
+        // The collectors get the chain decoded from the request, not the instances of the keystore
+        certificatesChain = copy("chain".equals(presented) ? chain(RS) : new X509Certificate[]{certificate(RS)});
+        caTrustIndex = CaTrustIndex.builder()
+                .ca(Issuer.FORGEROCK_INTERNAL, internalCA)
+                .ca(Issuer.FORGEROCK_EXTERNAL, externalCA)
+                .ca(Issuer.OPEN_BANKING, obCA)
+                .build();
+        obCAIssuedByExternalCA = caTrustIndex.isIssuedBy(obCA, Issuer.FORGEROCK_EXTERNAL);
+    }
+
+    @Benchmark
+    public int legacyChecks() {
+        int matches = 0;
+        // Internal collector: authorities and username
+        matches += isCertificateIssuedByCA(internalCA, certificatesChain) ? 1 : 0;
+        matches += isCertificateIssuedByCA(internalCA, certificatesChain) ? 1 : 0;
+        // External collector: authorities, OB chain and username
+        matches += isCertificateIssuedByCA(externalCA, certificatesChain) ? 1 : 0;
+        matches += isCertificateIssuedByCA(externalCA, obCA) ? 1 : 0;
+        matches += isCertificateIssuedByCA(externalCA, certificatesChain) ? 1 : 0;
+        return matches;
+    }
+
+    @Benchmark
+    public int indexChecks() {
+        int matches = 0;
+        matches += caTrustIndex.isIssuedBy(certificatesChain, Issuer.FORGEROCK_INTERNAL) ? 1 : 0;
+        matches += caTrustIndex.isIssuedBy(certificatesChain, Issuer.FORGEROCK_INTERNAL) ? 1 : 0;
+        matches += caTrustIndex.isIssuedBy(certificatesChain, Issuer.FORGEROCK_EXTERNAL) ? 1 : 0;
+        matches += obCAIssuedByExternalCA ? 1 : 0;
+        matches += caTrustIndex.isIssuedBy(certificatesChain, Issuer.FORGEROCK_EXTERNAL) ? 1 : 0;
+        return matches;
+    }
+
+    private static X509Certificate[] copy(X509Certificate[] certificates) throws Exception {
+        CertificateFactory certificateFactory = CertificateFactory.getInstance("X.509");
+        X509Certificate[] copy = new X509Certificate[certificates.length];
+        for (int i = 0; i < certificates.length; i++) {
+            copy[i] = (X509Certificate) certificateFactory.generateCertificate(new ByteArrayInputStream(certificates[i].getEncoded()));
+        }
+        return copy;
+    }
+
+    private static boolean isCertificateIssuedByCA(X509Certificate caCertificate, X509Certificate[] certificatesChain) {
+        return (certificatesChain.length > 1 && caCertificate.equals(certificatesChain[1]))
+                || (certificatesChain.length == 1 && caCertificate.getSubjectX500Principal().equals(certificatesChain[0].getIssuerX500Principal()));
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder()
+                .include(CaTrustIndexBenchmark.class.getSimpleName())
+                .build())
+                .run();
+    }
+}
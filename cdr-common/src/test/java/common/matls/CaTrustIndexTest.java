@@ -0,0 +1,114 @@
+/**
+ * Copyright 2019 ForgeRock AS. All Rights Reserved
+ *
+ * Use of this code requires a commercial software license with ForgeRock AS.
+ * or with one of its affiliates. All use shall be exclusively subject
+ * to such license between the licensee and ForgeRock AS.
+ */
+package common.matls;
+
+import com.forgerock.cdr.common.matls.CaTrustIndex;
+import com.forgerock.cdr.common.matls.CaTrustIndex.Issuer;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.security.cert.X509Certificate;
+
+import static common.matls.TestCertificates.EXTERNAL_CA;
+import static common.matls.TestCertificates.INTERNAL_CA;
+import static common.matls.TestCertificates.OB_ROOT_CA;
+import static common.matls.TestCertificates.RS;
+import static common.matls.TestCertificates.certificate;
+import static common.matls.TestCertificates.chain;
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class CaTrustIndexTest {
+
+    private X509Certificate internalCA;
+    private X509Certificate externalCA;
+    private X509Certificate obRootCA;
+    private CaTrustIndex caTrustIndex;
+
+    @Before
+    public void setUp() throws Exception {
+        internalCA = certificate(INTERNAL_CA);
+        externalCA = certificate(EXTERNAL_CA);
+        obRootCA = certificate(OB_ROOT_CA);
+        caTrustIndex = CaTrustIndex.builder()
+                .ca(Issuer.FORGEROCK_INTERNAL, internalCA)
+                .ca(Issuer.FORGEROCK_EXTERNAL, externalCA)
+                .ca(Issuer.OPEN_BANKING, obRootCA)
+                .build();
+    }
+
+    @Test
+    public void shouldClassifyAChainByItsIssuerCertificate() throws Exception {
+        // Given
+        X509Certificate[] chain = chain(RS);
+
+        // When
+        Issuer issuer = caTrustIndex.classify(chain);
+
+        // Then
+        assertThat(issuer).isEqualTo(Issuer.FORGEROCK_INTERNAL);
+        assertThat(caTrustIndex.isIssuedBy(chain, Issuer.FORGEROCK_INTERNAL)).isTrue();
+        assertThat(caTrustIndex.isIssuedBy(chain, Issuer.FORGEROCK_EXTERNAL)).isFalse();
+    }
+
+    @Test
+    public void shouldClassifyASingleCertificateByItsIssuerPrincipal() throws Exception {
+        // Given
+        X509Certificate[] chain = {certificate(RS)};
+
+        // When
+        Issuer issuer = caTrustIndex.classify(chain);
+
+        // Then
+        assertThat(issuer).isEqualTo(Issuer.FORGEROCK_INTERNAL);
+    }
+
+    @Test
+    public void shouldClassifyEachTrustedCa() throws Exception {
+        // Given
+        X509Certificate client = certificate(RS);
+
+        // When
+        Issuer external = caTrustIndex.classify(new X509Certificate[]{client, externalCA});
+        Issuer openBanking = caTrustIndex.classify(new X509Certificate[]{client, obRootCA});
+
+        // Then
+        assertThat(external).isEqualTo(Issuer.FORGEROCK_EXTERNAL);
+        assertThat(openBanking).isEqualTo(Issuer.OPEN_BANKING);
+    }
+
+    @Test
+    public void shouldNotClassifyAChainOfAnUntrustedCa() throws Exception {
+        // Given
+        CaTrustIndex internalOnly = CaTrustIndex.builder()
+                .ca(Issuer.FORGEROCK_INTERNAL, internalCA)
+                .build();
+
+        // When
+        Issuer issuer = internalOnly.classify(new X509Certificate[]{certificate(RS), obRootCA});
+
+        // Then
+        assertThat(issuer).isNull();
+        assertThat(internalOnly.classify(new X509Certificate[0])).isNull();
+        assertThat(internalOnly.classify(null)).isNull();
+    }
+
+    @Test
+    public void shouldKeepTheFirstCaTrustedForASubject() {
+        // Given
+        CaTrustIndex index = CaTrustIndex.builder()
+                .ca(Issuer.FORGEROCK_EXTERNAL, externalCA)
+                .ca(Issuer.OPEN_BANKING, externalCA, null)
+                .build();
+
+        // When
+        Issuer issuer = index.classify(new X509Certificate[]{internalCA, externalCA});
+
+        // Then
+        assertThat(issuer).isEqualTo(Issuer.FORGEROCK_EXTERNAL);
+    }
+}
@@ -0,0 +1,89 @@
+/**
+ * Copyright 2019 ForgeRock AS. All Rights Reserved
+ *
+ * Use of this code requires a commercial software license with ForgeRock AS.
+ * or with one of its affiliates. All use shall be exclusively subject
+ * to such license between the licensee and ForgeRock AS.
+ */
+package common.matls;
+
+import com.forgerock.cdr.common.matls.ClientJwkHeaderCache;
+import com.nimbusds.jose.jwk.JWK;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.security.cert.X509Certificate;
+import java.text.ParseException;
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import static common.matls.TestCertificates.RS;
+import static common.matls.TestCertificates.certificate;
+
+/**
+ * Decoding of the x-client-jwk header by the two PSD2 collectors of a request, each parsing the JWK as the
+ * multi-auth collectors do against the header cache. The header is a new string on every request, as the servlet
+ * container reads it, so the cache hashes it every time.
+ *
+ * Run with: mvn test-compile exec:java -Dexec.mainClass=common.matls.ClientJwkHeaderCacheBenchmark -Dexec.classpathScope=test
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class ClientJwkHeaderCacheBenchmark {
+
+    private static final int COLLECTORS = 2;
+
+    private char[] header;
+    private ClientJwkHeaderCache clientJwkHeaderCache;
+
+    @Setup
+    public void setup() throws Exception {
+        header = JWK.parse(certificate(RS)).toJSONString().toCharArray();
+        clientJwkHeaderCache = new ClientJwkHeaderCache(1000, Duration.ofHours(1), new SimpleMeterRegistry());
+    }
+
+    @Benchmark
+    public int parseInEachCollector() throws ParseException {
+        String request = new String(header);
+        int certificates = 0;
+        for (int i = 0; i < COLLECTORS; i++) {
+            List<X509Certificate> certificatesChain = JWK.parse(request).getParsedX509CertChain();
+            certificates += certificatesChain.size();
+        }
+        return certificates;
+    }
+
+    @Benchmark
+    public int headerCache() {
+        String request = new String(header);
+        int certificates = 0;
+        for (int i = 0; i < COLLECTORS; i++) {
+            certificates += clientJwkHeaderCache.getCertificatesChain(request).length;
+        }
+        return certificates;
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder()
+                .include(ClientJwkHeaderCacheBenchmark.class.getSimpleName())
+                .build())
+                .run();
+    }
+}
@@ -0,0 +1,75 @@
+/**
+ * Copyright 2019 ForgeRock AS. All Rights Reserved
+ *
+ * Use of this code requires a commercial software license with ForgeRock AS.
+ * or with one of its affiliates. All use shall be exclusively subject
+ * to such license between the licensee and ForgeRock AS.
+ */
+package common.matls;
+
+import com.forgerock.cdr.common.matls.ClientJwkHeaderCache;
+import com.nimbusds.jose.jwk.JWK;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.security.cert.X509Certificate;
+import java.time.Duration;
+
+import static common.matls.TestCertificates.RS;
+import static common.matls.TestCertificates.certificate;
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class ClientJwkHeaderCacheTest {
+
+    private MeterRegistry meterRegistry;
+    private ClientJwkHeaderCache clientJwkHeaderCache;
+
+    @Before
+    public void setUp() {
+        meterRegistry = new SimpleMeterRegistry();
+        clientJwkHeaderCache = new ClientJwkHeaderCache(10, Duration.ofHours(1), meterRegistry);
+    }
+
+    @Test
+    public void shouldDecodeTheCertificateOfTheHeader() throws Exception {
+        // Given
+        X509Certificate certificate = certificate(RS);
+        String header = JWK.parse(certificate).toJSONString();
+
+        // When
+        X509Certificate[] certificatesChain = clientJwkHeaderCache.getCertificatesChain(header);
+
+        // Then
+        assertThat(certificatesChain).containsExactly(certificate);
+    }
+
+    @Test
+    public void shouldDecodeAHeaderOnce() throws Exception {
+        // Given
+        String header = JWK.parse(certificate(RS)).toJSONString();
+        X509Certificate[] first = clientJwkHeaderCache.getCertificatesChain(header);
+
+        // When
+        X509Certificate[] second = clientJwkHeaderCache.getCertificatesChain(new String(header));
+
+        // Then
+        assertThat(second).isNotSameAs(first);
+        assertThat(second[0]).isSameAs(first[0]);
+        assertThat(meterRegistry.get("cache.gets").tag("cache", ClientJwkHeaderCache.CACHE_NAME).tag("result", "hit")
+                .functionCounter().count()).isEqualTo(1);
+    }
+
+    @Test
+    public void shouldNotCacheAnInvalidHeader() {
+        // When
+        X509Certificate[] certificatesChain = clientJwkHeaderCache.getCertificatesChain("{\"kty\":\"oct\"");
+        X509Certificate[] missing = clientJwkHeaderCache.getCertificatesChain(null);
+
+        // Then
+        assertThat(certificatesChain).isNull();
+        assertThat(missing).isNull();
+        assertThat(meterRegistry.get("cache.size").tag("cache", ClientJwkHeaderCache.CACHE_NAME).gauge().value()).isZero();
+    }
+}
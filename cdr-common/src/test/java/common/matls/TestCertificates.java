@@ -0,0 +1,47 @@
+/**
+ * Copyright 2019 ForgeRock AS. All Rights Reserved
+ *
+ * Use of this code requires a commercial software license with ForgeRock AS.
+ * or with one of its affiliates. All use shall be exclusively subject
+ * to such license between the licensee and ForgeRock AS.
+ */
+package common.matls;
+
+import java.io.InputStream;
+import java.security.KeyStore;
+import java.security.cert.Certificate;
+import java.security.cert.X509Certificate;
+import java.util.Arrays;
+
+/**
+ * The certificates of the ASPSP keystore: the internal CA and the certificates it issued, the external CA and the
+ * OB root CA.
+ */
+public class TestCertificates {
+
+    public static final String INTERNAL_CA = "obri-internal-ca";
+    public static final String EXTERNAL_CA = "obri-external-ca";
+    public static final String OB_ROOT_CA = "obsandboxrootca";
+    public static final String RS = "rs.aspsp.dev-ob.forgerock.financial";
+
+    private static KeyStore keyStore;
+
+    public static synchronized KeyStore keyStore() throws Exception {
+        if (keyStore == null) {
+            keyStore = KeyStore.getInstance("jks");
+            try (InputStream in = TestCertificates.class.getClassLoader().getResourceAsStream("keystore/keystore.jks")) {
+                keyStore.load(in, "changeit".toCharArray());
+            }
+        }
+        return keyStore;
+    }
+
+    public static X509Certificate certificate(String alias) throws Exception {
+        return (X509Certificate) keyStore().getCertificate(alias);
+    }
+
+    public static X509Certificate[] chain(String alias) throws Exception {
+        Certificate[] chain = keyStore().getCertificateChain(alias);
+        return Arrays.copyOf(chain, chain.length, X509Certificate[].class);
+    }
+}
@@ -0,0 +1,133 @@
+/**
+ * Copyright 2019 ForgeRock AS. All Rights Reserved
+ *
+ * Use of this code requires a commercial software license with ForgeRock AS.
+ * or with one of its affiliates. All use shall be exclusively subject
+ * to such license between the licensee and ForgeRock AS.
+ */
+package common.matls;
+
+import com.forgerock.cdr.common.matls.TppLookupCache;
+import com.forgerock.cdr.common.matls.TppRegistry;
+import com.forgerock.openbanking.common.services.store.tpp.TppStoreService;
+import com.forgerock.openbanking.model.Tpp;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.web.context.request.RequestContextHolder;
+import org.springframework.web.context.request.ServletRequestAttributes;
+
+import java.time.Duration;
+import java.util.Optional;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.BDDMockito.given;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+
+public class TppLookupCacheTest {
+
+    private static final String SUBJECT = "CN=tpp,OU=0015800001041REAAY,O=OpenBanking,C=GB";
+
+    private TppStoreService tppStoreService;
+    private TppRegistry tppRegistry;
+    private MeterRegistry meterRegistry;
+    private TppLookupCache tppLookupCache;
+
+    @Before
+    public void setUp() {
+        tppStoreService = mock(TppStoreService.class);
+        tppRegistry = mock(TppRegistry.class);
+        meterRegistry = new SimpleMeterRegistry();
+        tppLookupCache = new TppLookupCache(tppStoreService, tppRegistry, 10, Duration.ofMinutes(5), Duration.ofSeconds(30), meterRegistry);
+    }
+
+    @After
+    public void tearDown() {
+        RequestContextHolder.resetRequestAttributes();
+    }
+
+    @Test
+    public void shouldLookUpTheTppOnceAcrossRequests() {
+        // Given
+        Tpp tpp = new Tpp();
+        given(tppStoreService.findByCn(SUBJECT)).willReturn(Optional.of(tpp));
+
+        // When
+        Optional<Tpp> first = tppLookupCache.findBySubject(SUBJECT);
+        Optional<Tpp> second = tppLookupCache.findBySubject(SUBJECT);
+
+        // Then
+        assertThat(first).containsSame(tpp);
+        assertThat(second).containsSame(tpp);
+        verify(tppStoreService, times(1)).findByCn(SUBJECT);
+    }
+
+    @Test
+    public void shouldCacheAnUnregisteredTpp() {
+        // Given
+        given(tppStoreService.findByCn(SUBJECT)).willReturn(Optional.empty());
+
+        // When
+        tppLookupCache.findBySubject(SUBJECT);
+        Optional<Tpp> tpp = tppLookupCache.findBySubject(SUBJECT);
+
+        // Then
+        assertThat(tpp).isEmpty();
+        verify(tppStoreService, times(1)).findByCn(SUBJECT);
+    }
+
+    @Test
+    public void shouldKeepTheLookupForTheRestOfTheRequest() {
+        // Given
+        RequestContextHolder.setRequestAttributes(new ServletRequestAttributes(new MockHttpServletRequest()));
+        given(tppStoreService.findByCn(SUBJECT)).willReturn(Optional.of(new Tpp()));
+        tppLookupCache.findBySubject(SUBJECT);
+        tppLookupCache.invalidateAll();
+
+        // When
+        Optional<Tpp> tpp = tppLookupCache.findBySubject(SUBJECT);
+
+        // Then
+        assertThat(tpp).isPresent();
+        verify(tppStoreService, times(1)).findByCn(SUBJECT);
+        assertThat(meterRegistry.get(TppLookupCache.CACHE_NAME + ".request.hits").counter().count()).isEqualTo(1);
+    }
+
+    @Test
+    public void shouldNotCacheAStoreFailure() {
+        // Given
+        given(tppStoreService.findByCn(SUBJECT))
+                .willThrow(new IllegalStateException("rs-store unavailable"))
+                .willReturn(Optional.of(new Tpp()));
+
+        // When
+        assertThatThrownBy(() -> tppLookupCache.findBySubject(SUBJECT)).isInstanceOf(IllegalStateException.class);
+        Optional<Tpp> tpp = tppLookupCache.findBySubject(SUBJECT);
+
+        // Then
+        assertThat(tpp).isPresent();
+        verify(tppStoreService, times(2)).findByCn(SUBJECT);
+    }
+
+    @Test
+    public void shouldLookUpTheTppInTheRegistryOnceReady() {
+        // Given
+        Tpp tpp = new Tpp();
+        given(tppRegistry.isReady()).willReturn(true);
+        given(tppRegistry.findByCn(SUBJECT)).willReturn(Optional.of(tpp));
+
+        // When
+        Optional<Tpp> found = tppLookupCache.findBySubject(SUBJECT);
+
+        // Then
+        assertThat(found).containsSame(tpp);
+        verify(tppStoreService, never()).findByCn(SUBJECT);
+    }
+}
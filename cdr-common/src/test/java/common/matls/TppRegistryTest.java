@@ -0,0 +1,162 @@
+/**
+ * Copyright 2019 ForgeRock AS. All Rights Reserved
+ *
+ * Use of this code requires a commercial software license with ForgeRock AS.
+ * or with one of its affiliates. All use shall be exclusively subject
+ * to such license between the licensee and ForgeRock AS.
+ */
+package common.matls;
+
+import com.forgerock.cdr.common.matls.TppRegistry;
+import com.forgerock.cdr.common.matls.TppRegistryUpdate;
+import com.forgerock.openbanking.model.Tpp;
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.web.client.ResourceAccessException;
+import org.springframework.web.client.RestTemplate;
+
+import java.net.URI;
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.Collections;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.BDDMockito.given;
+import static org.mockito.Mockito.mock;
+
+public class TppRegistryTest {
+
+    private static final URI SNAPSHOT = URI.create("https://rs-store:8443/api/tpp-registry/snapshot");
+
+    private RestTemplate restTemplate;
+    private TppRegistry tppRegistry;
+
+    @Before
+    public void setUp() {
+        restTemplate = mock(RestTemplate.class);
+        tppRegistry = new TppRegistry(restTemplate, "https://rs-store:8443", true, Duration.ofSeconds(30), Duration.ofMinutes(5));
+    }
+
+    @Test
+    public void shouldNotBeReadyBeforeTheSnapshot() {
+        // Given
+        given(restTemplate.getForObject(SNAPSHOT, TppRegistryUpdate.class)).willThrow(new ResourceAccessException("rs-store unavailable"));
+
+        // When
+        tppRegistry.refresh();
+
+        // Then
+        assertThat(tppRegistry.isReady()).isFalse();
+        assertThat(tppRegistry.findByCn("CN=tpp1")).isEmpty();
+    }
+
+    @Test
+    public void shouldIndexTheSnapshotByCnAndClientId() {
+        // Given
+        Tpp tpp1 = tpp("1", "CN=tpp1", "client1");
+        Tpp tpp2 = tpp("2", "CN=tpp2", null);
+        given(restTemplate.getForObject(SNAPSHOT, TppRegistryUpdate.class))
+                .willReturn(new TppRegistryUpdate("100", true, Arrays.asList(tpp1, tpp2), null));
+
+        // When
+        tppRegistry.refresh();
+
+        // Then
+        assertThat(tppRegistry.isReady()).isTrue();
+        assertThat(tppRegistry.findByCn("CN=tpp1")).containsSame(tpp1);
+        assertThat(tppRegistry.findByCn("CN=tpp2")).containsSame(tpp2);
+        assertThat(tppRegistry.findByClientId("client1")).containsSame(tpp1);
+        assertThat(tppRegistry.findByCn("CN=tpp3")).isEmpty();
+    }
+
+    @Test
+    public void shouldApplyTheChangesSinceTheLastVersion() {
+        // Given
+        given(restTemplate.getForObject(SNAPSHOT, TppRegistryUpdate.class)).willReturn(new TppRegistryUpdate("100", true,
+                Arrays.asList(tpp("1", "CN=tpp1", "client1"), tpp("2", "CN=tpp2", "client2")), null));
+        tppRegistry.refresh();
+        Tpp renamed = tpp("1", "CN=tpp1-renewed", "client1");
+        Tpp added = tpp("3", "CN=tpp3", "client3");
+        given(restTemplate.getForObject(eq(changes("100")), eq(TppRegistryUpdate.class)))
+                .willReturn(new TppRegistryUpdate("200", false, Arrays.asList(renamed, added), Arrays.asList("1", "3")));
+
+        // When
+        tppRegistry.refresh();
+
+        // Then
+        assertThat(tppRegistry.findByCn("CN=tpp1")).isEmpty();
+        assertThat(tppRegistry.findByCn("CN=tpp1-renewed")).containsSame(renamed);
+        assertThat(tppRegistry.findByClientId("client1")).containsSame(renamed);
+        assertThat(tppRegistry.findByCn("CN=tpp3")).containsSame(added);
+        assertThat(tppRegistry.findByCn("CN=tpp2")).isEmpty();
+        assertThat(tppRegistry.findByClientId("client2")).isEmpty();
+    }
+
+    @Test
+    public void shouldReloadTheSnapshotWhenTheChangesMissATpp() {
+        // Given
+        Tpp tpp1 = tpp("1", "CN=tpp1", "client1");
+        Tpp missed = tpp("2", "CN=tpp2", "client2");
+        given(restTemplate.getForObject(SNAPSHOT, TppRegistryUpdate.class))
+                .willReturn(new TppRegistryUpdate("100", true, Collections.singletonList(tpp1), null))
+                .willReturn(new TppRegistryUpdate("200", true, Arrays.asList(tpp1, missed), null));
+        tppRegistry.refresh();
+        given(restTemplate.getForObject(eq(changes("100")), eq(TppRegistryUpdate.class)))
+                .willReturn(new TppRegistryUpdate("200", false, Collections.emptyList(), Arrays.asList("1", "2")));
+
+        // When
+        tppRegistry.refresh();
+
+        // Then
+        assertThat(tppRegistry.findByCn("CN=tpp2")).containsSame(missed);
+        assertThat(tppRegistry.findByClientId("client1")).containsSame(tpp1);
+    }
+
+    @Test
+    public void shouldKeepTheIndexWhenAPollFails() {
+        // Given
+        Tpp tpp1 = tpp("1", "CN=tpp1", "client1");
+        given(restTemplate.getForObject(SNAPSHOT, TppRegistryUpdate.class))
+                .willReturn(new TppRegistryUpdate("100", true, Collections.singletonList(tpp1), null));
+        tppRegistry.refresh();
+        given(restTemplate.getForObject(eq(changes("100")), eq(TppRegistryUpdate.class)))
+                .willThrow(new ResourceAccessException("rs-store unavailable"))
+                .willReturn(new TppRegistryUpdate("300", false, Collections.emptyList(), Collections.singletonList("1")));
+
+        // When
+        tppRegistry.refresh();
+        boolean readyAfterFailure = tppRegistry.isReady();
+        tppRegistry.refresh();
+
+        // Then
+        assertThat(readyAfterFailure).isTrue();
+        assertThat(tppRegistry.findByCn("CN=tpp1")).containsSame(tpp1);
+    }
+
+    @Test
+    public void shouldNotBeReadyOnceStale() {
+        // Given
+        TppRegistry staleRegistry = new TppRegistry(restTemplate, "https://rs-store:8443", true, Duration.ofSeconds(30), Duration.ofMillis(-1));
+        given(restTemplate.getForObject(SNAPSHOT, TppRegistryUpdate.class))
+                .willReturn(new TppRegistryUpdate("100", true, Collections.singletonList(tpp("1", "CN=tpp1", "client1")), null));
+
+        // When
+        staleRegistry.refresh();
+
+        // Then
+        assertThat(staleRegistry.isReady()).isFalse();
+    }
+
+    private static URI changes(String since) {
+        return URI.create("https://rs-store:8443/api/tpp-registry/changes?since=" + since);
+    }
+
+    static Tpp tpp(String id, String certificateCn, String clientId) {
+        Tpp tpp = new Tpp();
+        tpp.setId(id);
+        tpp.setCertificateCn(certificateCn);
+        tpp.setClientId(clientId);
+        return tpp;
+    }
+}
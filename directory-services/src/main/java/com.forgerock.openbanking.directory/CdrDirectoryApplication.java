@@ -8,13 +8,14 @@
 package com.forgerock.openbanking.directory;
 
 import brave.Tracer;
+import com.forgerock.cdr.common.http.WebClientFactory;
+import com.forgerock.cdr.common.json.HighPerformanceJackson;
 import com.forgerock.cert.Psd2CertInfo;
 import com.forgerock.cert.psd2.RolesOfPsp;
 import com.forgerock.openbanking.directory.error.ErrorHandler;
 import com.forgerock.openbanking.directory.security.FormValueSanitisationFilter;
 import com.forgerock.openbanking.directory.security.JsonRequestSanitisiationFilter;
 import com.forgerock.openbanking.directory.service.DirectoryUtilsService;
-import com.forgerock.openbanking.jwt.services.CryptoApiClient;
 import com.forgerock.openbanking.model.ApplicationIdentity;
 import com.forgerock.openbanking.model.OBRIRole;
 import com.forgerock.openbanking.model.error.ClientResponseErrorHandler;
@@ -32,7 +33,6 @@ import dev.openbanking4.spring.security.multiauth.configurers.collectors.PSD2Col
 import dev.openbanking4.spring.security.multiauth.configurers.collectors.X509Collector;
 import dev.openbanking4.spring.security.multiauth.model.CertificateHeaderFormat;
 import dev.openbanking4.spring.security.multiauth.model.granttypes.PSD2GrantType;
-import io.netty.handler.ssl.SslContext;
 import lombok.AllArgsConstructor;
 import lombok.Builder;
 import lombok.extern.slf4j.Slf4j;
@@ -51,8 +51,8 @@ import org.springframework.cloud.client.discovery.EnableDiscoveryClient;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.ComponentScan;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.FilterType;
 import org.springframework.data.mongodb.repository.config.EnableMongoRepositories;
-import org.springframework.http.client.reactive.ReactorClientHttpConnector;
 import org.springframework.http.converter.HttpMessageConverter;
 import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
 import org.springframework.http.converter.json.MappingJackson2HttpMessageConverter;
@@ -68,7 +68,8 @@ import org.springframework.security.core.AuthenticationException;
 import org.springframework.security.core.GrantedAuthority;
 import org.springframework.web.client.RestTemplate;
 import org.springframework.web.reactive.function.client.WebClient;
-import reactor.netty.http.client.HttpClient;
+import org.springframework.web.servlet.HandlerExceptionResolver;
+import org.springframework.web.servlet.config.annotation.WebMvcConfigurer;
 import springfox.documentation.swagger2.annotations.EnableSwagger2;
 
 import javax.servlet.Filter;
@@ -87,14 +88,23 @@ import java.util.stream.Collectors;
 @EnableScheduling
 @EnableWebSecurity
 @EnableGlobalMethodSecurity(prePostEnabled = true)
-@ComponentScan(basePackages = {"com.forgerock"})
+@ComponentScan(basePackages = {"com.forgerock"},
+        excludeFilters = @ComponentScan.Filter(type = FilterType.REGEX, pattern = "com\\.forgerock\\.cdr\\.common\\.matls\\..*"))
 @EnableMongoRepositories(basePackages = "com.forgerock")
 public class CdrDirectoryApplication {
 
+    private static final String SESSION_COOKIE_NAME = "obri-session";
+
     @Autowired
     private SslConfiguration sslConfiguration;
+    @Autowired
+    private WebClientFactory webClientFactory;
+    @Autowired
+    private HighPerformanceJackson highPerformanceJackson;
     @Value("${server.ssl.client-certs-key-alias}")
     private String keyAlias;
+    @Value("${directory.json-sanitisation.streaming:false}")
+    private boolean streamingJsonSanitisation;
 
     public static void main(String[] args) {
         SpringApplication.run(CdrDirectoryApplication.class, args);
@@ -114,7 +124,9 @@ public class CdrDirectoryApplication {
 		@Value("${matls.forgerock-external-ca-alias}")
 		private String externalCaAlias;
         @Autowired
-        private CryptoApiClient cryptoApiClient;
+        private SessionCookieDecrypter sessionCookieDecrypter;
+        @Autowired
+        private SessionCookieDecryptionCache sessionCookieDecryptionCache;
         @Autowired
         private AuthenticationProvider authProvider;
 
@@ -141,8 +153,9 @@ public class CdrDirectoryApplication {
                                     .authoritiesCollector(obriExternalCertificates)
                                     .build())
                             .collector(DecryptingJwtCookieCollector.builder()
-                                    .cryptoApiClient(cryptoApiClient)
-                                    .cookieName("obri-session")
+                                    .sessionCookieDecrypter(sessionCookieDecrypter)
+                                    .sessionCookieDecryptionCache(sessionCookieDecryptionCache)
+                                    .cookieName(SESSION_COOKIE_NAME)
                                     .authoritiesCollector(t -> Sets.newHashSet(
                                             OBRIRole.ROLE_SOFTWARE_STATEMENT,
                                             OBRIRole.ROLE_USER))
@@ -165,12 +178,13 @@ public class CdrDirectoryApplication {
     public static class DecryptingJwtCookieCollector extends CustomCookieCollector<JWT> {
 
         @Builder
-        public DecryptingJwtCookieCollector(CustomCookieCollector.AuthoritiesCollector<JWT> authoritiesCollector, String cookieName, CryptoApiClient cryptoApiClient) {
+        public DecryptingJwtCookieCollector(CustomCookieCollector.AuthoritiesCollector<JWT> authoritiesCollector, String cookieName,
+                                            SessionCookieDecrypter sessionCookieDecrypter, SessionCookieDecryptionCache sessionCookieDecryptionCache) {
             super(
                     "jwt-cookie",
                     tokenSerialised -> {
                         try {
-                            return cryptoApiClient.decryptJwe(tokenSerialised);
+                            return sessionCookieDecryptionCache.get(tokenSerialised, sessionCookieDecrypter);
                         } catch (JOSEException e) {
                             throw new BadCredentialsException("Invalid cookie");
                         }
@@ -293,7 +307,7 @@ public class CdrDirectoryApplication {
         MappingJackson2HttpMessageConverter converter = new MappingJackson2HttpMessageConverter();
         Jackson2ObjectMapperBuilder objectMapperBuilder = new Jackson2ObjectMapperBuilder();
         objectMapperBuilderCustomizer.customize(objectMapperBuilder);
-        converter.setObjectMapper(objectMapperBuilder.build());
+        converter.setObjectMapper(highPerformanceJackson.configure(objectMapperBuilder.build()));
         return converter;
     }
 
@@ -313,14 +327,47 @@ public class CdrDirectoryApplication {
     }
     @Bean
     public Filter jsonSanitisationFilter(ErrorHandler errorHandler, Tracer tracer) {
+        if (streamingJsonSanitisation) {
+            return new StreamingJsonSanitisationFilter(new JsonRequestSanitisiationFilter(errorHandler, tracer));
+        }
         return new JsonRequestSanitisiationFilter(errorHandler, tracer);
     }
 
+    @Bean
+    public HandlerExceptionResolver unsafeJsonExceptionResolver(
+            @Qualifier("jsonSanitisationFilter") Filter jsonSanitisationFilter) {
+        if (jsonSanitisationFilter instanceof StreamingJsonSanitisationFilter) {
+            return ((StreamingJsonSanitisationFilter) jsonSanitisationFilter).exceptionResolver();
+        }
+        // The buffered filter rejects the unsafe bodies before the converters
+        return (request, response, handler, ex) -> null;
+    }
+
+    @Bean
+    public WebMvcConfigurer sanitisingMessageConverterConfigurer() {
+        return new WebMvcConfigurer() {
+            @Override
+            public void extendMessageConverters(List<HttpMessageConverter<?>> converters) {
+                if (!streamingJsonSanitisation) {
+                    return;
+                }
+                converters.replaceAll(converter -> converter instanceof MappingJackson2HttpMessageConverter
+                        ? new SanitisingJackson2HttpMessageConverter(((MappingJackson2HttpMessageConverter) converter).getObjectMapper())
+                        : converter);
+            }
+        };
+    }
+
     @Bean
     public Filter formSanitisationFilter(ErrorHandler errorHandler, Tracer tracer) {
         return new FormValueSanitisationFilter(errorHandler, tracer);
     }
 
+    @Bean
+    public Filter sessionCookieLogoutFilter(SessionCookieDecryptionCache sessionCookieDecryptionCache) {
+        return new SessionCookieLogoutFilter(SESSION_COOKIE_NAME, sessionCookieDecryptionCache);
+    }
+
     @Bean
     public AuthenticationProvider authProvider() {
         return new CustomAuthProvider();
@@ -328,12 +375,7 @@ public class CdrDirectoryApplication {
 
     @Bean
     public WebClient webClient() throws Exception {
-
-        SslContext sslContext = sslConfiguration.getSslContextForReactor(keyAlias);
-        HttpClient httpClient = HttpClient.create()
-                .secure(sslContextSpec -> sslContextSpec.sslContext(sslContext));
-        ReactorClientHttpConnector connector = new ReactorClientHttpConnector(httpClient);
-        return WebClient.builder().clientConnector(connector).build();
+        return webClientFactory.matlsWebClient("matls", keyAlias);
     }
 
 }
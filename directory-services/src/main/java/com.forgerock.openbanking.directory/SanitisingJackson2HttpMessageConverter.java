@@ -0,0 +1,64 @@
+/**
+ * Copyright 2019 ForgeRock AS. All Rights Reserved
+ *
+ * Use of this code requires a commercial software license with ForgeRock AS.
+ * or with one of its affiliates. All use shall be exclusively subject
+ * to such license between the licensee and ForgeRock AS.
+ */
+package com.forgerock.openbanking.directory;
+
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.JavaType;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.exc.InvalidDefinitionException;
+import org.springframework.http.HttpInputMessage;
+import org.springframework.http.converter.HttpMessageConversionException;
+import org.springframework.http.converter.HttpMessageNotReadableException;
+import org.springframework.http.converter.json.MappingJackson2HttpMessageConverter;
+import org.springframework.http.converter.json.MappingJacksonInputMessage;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.lang.reflect.Type;
+
+/**
+ * The JSON converter of the request bodies when the sanitisation is streamed: it deserializes the body through a
+ * {@link SanitisingJsonParser}, so that the {@link StreamingJsonSanitisationFilter} doesn't parse it a second time.
+ *
+ * An unsafe body is rejected as an unreadable message, answered by the exception resolver of the filter.
+ */
+public class SanitisingJackson2HttpMessageConverter extends MappingJackson2HttpMessageConverter {
+
+    public SanitisingJackson2HttpMessageConverter(ObjectMapper objectMapper) {
+        super(objectMapper);
+    }
+
+    @Override
+    public Object read(Type type, Class<?> contextClass, HttpInputMessage inputMessage) throws IOException {
+        return readSanitised(getJavaType(type, contextClass), inputMessage);
+    }
+
+    @Override
+    protected Object readInternal(Class<?> clazz, HttpInputMessage inputMessage) throws IOException {
+        return readSanitised(getJavaType(clazz, null), inputMessage);
+    }
+
+    private Object readSanitised(JavaType javaType, HttpInputMessage inputMessage) throws IOException {
+        InputStream body = inputMessage.getBody();
+        SanitisingJsonParser.TextCheck textCheck = StreamingJsonSanitisationFilter.takeOverCurrentRequest();
+        try (JsonParser parser = new SanitisingJsonParser(objectMapper.getFactory().createParser(body), textCheck)) {
+            if (inputMessage instanceof MappingJacksonInputMessage) {
+                Class<?> deserializationView = ((MappingJacksonInputMessage) inputMessage).getDeserializationView();
+                if (deserializationView != null) {
+                    return objectMapper.readerWithView(deserializationView).forType(javaType).readValue(parser);
+                }
+            }
+            return objectMapper.readValue(parser, javaType);
+        } catch (InvalidDefinitionException e) {
+            throw new HttpMessageConversionException("Type definition error: " + e.getType(), e);
+        } catch (JsonProcessingException e) {
+            throw new HttpMessageNotReadableException("JSON parse error: " + e.getOriginalMessage(), e, inputMessage);
+        }
+    }
+}
@@ -0,0 +1,128 @@
+/**
+ * Copyright 2019 ForgeRock AS. All Rights Reserved
+ *
+ * Use of this code requires a commercial software license with ForgeRock AS.
+ * or with one of its affiliates. All use shall be exclusively subject
+ * to such license between the licensee and ForgeRock AS.
+ */
+package com.forgerock.openbanking.directory;
+
+import com.fasterxml.jackson.core.JsonParseException;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.core.util.JsonParserDelegate;
+
+import java.io.IOException;
+
+/**
+ * A parser that rejects the unsafe field names and string values as it reads them, so that a request body is checked
+ * in the pass that deserializes it, without being buffered.
+ *
+ * Whether a text is unsafe is up to the {@link TextCheck}, the rule of the JsonRequestSanitisiationFilter for the
+ * streamed bodies. It is only asked about the texts with a character HTML sanitisers and encoders rewrite, the others
+ * being safe for any of them. The tokens skipped by the deserializer are checked too.
+ */
+public class SanitisingJsonParser extends JsonParserDelegate {
+
+    private static final boolean[] HTML_CHARACTERS = new boolean[128];
+
+    static {
+        for (char c : "\"&'+<=>@`".toCharArray()) {
+            HTML_CHARACTERS[c] = true;
+        }
+    }
+
+    private final TextCheck textCheck;
+
+    public SanitisingJsonParser(JsonParser parser, TextCheck textCheck) {
+        super(parser);
+        this.textCheck = textCheck;
+    }
+
+    @Override
+    public JsonToken nextToken() throws IOException {
+        JsonToken token = delegate.nextToken();
+        if ((token == JsonToken.FIELD_NAME || token == JsonToken.VALUE_STRING)
+                && mayBeUnsafe(delegate.getTextCharacters(), delegate.getTextOffset(), delegate.getTextLength())) {
+            boolean fieldName = token == JsonToken.FIELD_NAME;
+            String text = delegate.getText();
+            if (!textCheck.isSafe(text, fieldName)) {
+                throw new UnsafeJsonException(this, fieldName, text);
+            }
+        }
+        return token;
+    }
+
+    @Override
+    public JsonToken nextValue() throws IOException {
+        JsonToken token = nextToken();
+        if (token == JsonToken.FIELD_NAME) {
+            token = nextToken();
+        }
+        return token;
+    }
+
+    @Override
+    public JsonParser skipChildren() throws IOException {
+        JsonToken token = currentToken();
+        if (token != JsonToken.START_OBJECT && token != JsonToken.START_ARRAY) {
+            return this;
+        }
+        int open = 1;
+        while ((token = nextToken()) != null) {
+            if (token.isStructStart()) {
+                open++;
+            } else if (token.isStructEnd() && --open == 0) {
+                break;
+            }
+        }
+        return this;
+    }
+
+    /**
+     * Whether a text has a control character or a character HTML sanitisers and encoders rewrite, the ones the
+     * {@link TextCheck} is asked about.
+     */
+    public static boolean mayBeUnsafe(char[] text, int offset, int length) {
+        int end = offset + length;
+        for (int i = offset; i < end; i++) {
+            char c = text[i];
+            if (c < 0x20 || c < HTML_CHARACTERS.length && HTML_CHARACTERS[c]) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * The rule telling whether a field name or a string value is safe.
+     */
+    @FunctionalInterface
+    public interface TextCheck {
+
+        boolean isSafe(String text, boolean fieldName) throws IOException;
+    }
+
+    public static class UnsafeJsonException extends JsonParseException {
+
+        private final boolean fieldName;
+        private final String unsafeText;
+
+        public UnsafeJsonException(JsonParser parser, boolean fieldName, String unsafeText) {
+            super(parser, fieldName ? "Unsafe field name" : "Unsafe value");
+            this.fieldName = fieldName;
+            this.unsafeText = unsafeText;
+        }
+
+        /**
+         * Whether the unsafe text is a field name, or else a string value.
+         */
+        public boolean isFieldName() {
+            return fieldName;
+        }
+
+        public String getUnsafeText() {
+            return unsafeText;
+        }
+    }
+}
@@ -0,0 +1,157 @@
+/**
+ * Copyright 2019 ForgeRock AS. All Rights Reserved
+ *
+ * Use of this code requires a commercial software license with ForgeRock AS.
+ * or with one of its affiliates. All use shall be exclusively subject
+ * to such license between the licensee and ForgeRock AS.
+ */
+package com.forgerock.openbanking.directory;
+
+import com.forgerock.openbanking.jwt.services.CryptoApiClient;
+import com.nimbusds.jose.JOSEException;
+import com.nimbusds.jose.crypto.RSADecrypter;
+import com.nimbusds.jose.crypto.RSASSAVerifier;
+import com.nimbusds.jose.crypto.bc.BouncyCastleProviderSingleton;
+import com.nimbusds.jose.jwk.JWK;
+import com.nimbusds.jose.jwk.JWKSet;
+import com.nimbusds.jose.jwk.KeyUse;
+import com.nimbusds.jose.jwk.RSAKey;
+import com.nimbusds.jwt.EncryptedJWT;
+import com.nimbusds.jwt.JWT;
+import com.nimbusds.jwt.SignedJWT;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.web.client.RestTemplate;
+
+import javax.annotation.PostConstruct;
+import java.text.ParseException;
+import java.time.Duration;
+
+/**
+ * Decrypt the session cookies, with the directory keys held in memory when the local decryption is enabled, with the
+ * jwkms crypto API otherwise.
+ *
+ * The keys are fetched from jwkms over mTLS at startup, after the jwkms key rotation and when a cookie uses a key not
+ * fetched yet, at most once per configured interval so that forged key ids don't flood jwkms. A cookie the local keys
+ * can't open is still sent to jwkms, the "directory.session.cookies.remote.decryptions" metric counts them.
+ */
+@Component
+@Slf4j
+public class SessionCookieDecrypter implements SessionCookieDecryptionCache.Decrypter {
+
+    private static final String SESSION_KEYS_ENDPOINT = "api/crypto/session-keys";
+
+    private final CryptoApiClient cryptoApiClient;
+    private final RestTemplate restTemplate;
+    private final String jwkmsRoot;
+    private final boolean localDecryption;
+    private final long minRefreshInterval;
+    private final Counter remoteDecryptions;
+
+    private volatile JWKSet keys = new JWKSet();
+    private volatile long lastRefresh;
+
+    public SessionCookieDecrypter(CryptoApiClient cryptoApiClient,
+                                  RestTemplate restTemplate,
+                                  @Value("${jwkms.root}") String jwkmsRoot,
+                                  @Value("${directory.session-cookie-decryption.local:false}") boolean localDecryption,
+                                  @Value("${directory.session-cookie-decryption.min-refresh-interval:PT1M}") Duration minRefreshInterval,
+                                  MeterRegistry meterRegistry) {
+        this.cryptoApiClient = cryptoApiClient;
+        this.restTemplate = restTemplate;
+        this.jwkmsRoot = jwkmsRoot;
+        this.localDecryption = localDecryption;
+        this.minRefreshInterval = minRefreshInterval.toMillis();
+        this.remoteDecryptions = Counter.builder(SessionCookieDecryptionCache.CACHE_NAME + ".remote.decryptions")
+                .description("The session cookies decrypted by jwkms")
+                .register(meterRegistry);
+    }
+
+    @PostConstruct
+    public void init() {
+        if (localDecryption) {
+            refreshKeys();
+        }
+    }
+
+    /**
+     * Fetch the keys again once jwkms has rotated them.
+     */
+    @Scheduled(cron = "${directory.session-cookie-decryption.refresh-cron:0 5 1 * * *}")
+    public void onKeyRotation() {
+        if (localDecryption) {
+            refreshKeys();
+        }
+    }
+
+    @Override
+    public JWT decrypt(String serialisedCookie) throws JOSEException {
+        if (!localDecryption) {
+            return decryptRemotely(serialisedCookie);
+        }
+        EncryptedJWT encryptedJWT;
+        try {
+            encryptedJWT = EncryptedJWT.parse(serialisedCookie);
+        } catch (ParseException e) {
+            throw new JOSEException("The session cookie is not a JWE", e);
+        }
+        RSAKey decryptionKey = findKey(encryptedJWT.getHeader().getKeyID(), KeyUse.ENCRYPTION);
+        if (decryptionKey == null) {
+            log.debug("No local key {} to decrypt the session cookie", encryptedJWT.getHeader().getKeyID());
+            return decryptRemotely(serialisedCookie);
+        }
+        encryptedJWT.decrypt(new RSADecrypter(decryptionKey));
+
+        SignedJWT signedJWT = encryptedJWT.getPayload().toSignedJWT();
+        if (signedJWT == null) {
+            throw new JOSEException("The session cookie is not signed");
+        }
+        RSAKey verificationKey = findKey(signedJWT.getHeader().getKeyID(), KeyUse.SIGNATURE);
+        if (verificationKey == null) {
+            log.debug("No local key {} to verify the session cookie", signedJWT.getHeader().getKeyID());
+            return decryptRemotely(serialisedCookie);
+        }
+        RSASSAVerifier verifier = new RSASSAVerifier(verificationKey);
+        // nimbus looks PS256 up by its Bouncy Castle name, which the JDK provider does not know
+        verifier.getJCAContext().setProvider(BouncyCastleProviderSingleton.getInstance());
+        if (!signedJWT.verify(verifier)) {
+            throw new JOSEException("Invalid session cookie signature");
+        }
+        return signedJWT;
+    }
+
+    private JWT decryptRemotely(String serialisedCookie) throws JOSEException {
+        remoteDecryptions.increment();
+        return cryptoApiClient.decryptJwe(serialisedCookie);
+    }
+
+    private RSAKey findKey(String keyId, KeyUse keyUse) {
+        if (keyId == null) {
+            return null;
+        }
+        JWK key = keys.getKeyByKeyId(keyId);
+        if (key == null && System.currentTimeMillis() - lastRefresh >= minRefreshInterval) {
+            refreshKeys();
+            key = keys.getKeyByKeyId(keyId);
+        }
+        if (!(key instanceof RSAKey) || !keyUse.equals(key.getKeyUse())) {
+            return null;
+        }
+        return (RSAKey) key;
+    }
+
+    private synchronized void refreshKeys() {
+        lastRefresh = System.currentTimeMillis();
+        try {
+            JWKSet fetched = JWKSet.parse(restTemplate.getForObject(jwkmsRoot + SESSION_KEYS_ENDPOINT, String.class));
+            keys = fetched;
+            log.info("Fetched {} session keys from jwkms", fetched.getKeys().size());
+        } catch (ParseException | RuntimeException e) {
+            log.warn("Can't fetch the session keys from jwkms, keep the {} keys fetched before", keys.getKeys().size(), e);
+        }
+    }
+}
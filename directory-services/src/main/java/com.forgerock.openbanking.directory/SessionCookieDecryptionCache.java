@@ -0,0 +1,159 @@
+/**
+ * Copyright 2019 ForgeRock AS. All Rights Reserved
+ *
+ * Use of this code requires a commercial software license with ForgeRock AS.
+ * or with one of its affiliates. All use shall be exclusively subject
+ * to such license between the licensee and ForgeRock AS.
+ */
+package com.forgerock.openbanking.directory;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.Expiry;
+import com.nimbusds.jose.JOSEException;
+import com.nimbusds.jwt.JWT;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.text.ParseException;
+import java.time.Duration;
+import java.util.Base64;
+import java.util.Date;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The decrypted session cookies, by SHA-256 hash of the serialised cookie.
+ *
+ * A session cookie doesn't change for the whole session, this saves decrypting it on every directory request. A cookie
+ * is kept until its expiration time, at most for the configured time, and is evicted when the session is logged out.
+ * A cookie that can't be decrypted is not cached.
+ *
+ * The "cache.gets" metric with the "hit" result counts the decryptions saved, "directory.session.cookies.decryptions"
+ * counts the decryptions made, by jwkms or locally with the {@link SessionCookieDecrypter}.
+ */
+@Component
+@Slf4j
+public class SessionCookieDecryptionCache {
+
+    public static final String CACHE_NAME = "directory.session.cookies";
+
+    private final Cache<String, JWT> cache;
+    private final Counter decryptions;
+
+    public SessionCookieDecryptionCache(@Value("${directory.session-cookie-cache.maximum-size:10000}") long maximumSize,
+                                        @Value("${directory.session-cookie-cache.max-expire-after-write:PT15M}") Duration maxExpireAfterWrite,
+                                        MeterRegistry meterRegistry) {
+        this.cache = Caffeine.newBuilder()
+                .maximumSize(maximumSize)
+                .expireAfter(new CookieExpiry(maxExpireAfterWrite))
+                .recordStats()
+                .build();
+        CaffeineCacheMetrics.monitor(meterRegistry, cache, CACHE_NAME);
+        this.decryptions = Counter.builder(CACHE_NAME + ".decryptions")
+                .description("The session cookies decrypted")
+                .register(meterRegistry);
+    }
+
+    /**
+     * Get the decrypted session cookie, decrypting it if it is not cached yet. The concurrent requests of a cookie not
+     * cached yet wait for a single decryption.
+     */
+    public JWT get(String serialisedCookie, Decrypter decrypter) throws JOSEException {
+        try {
+            return cache.get(hash(serialisedCookie), key -> {
+                log.debug("Session cookie {} not in cache", key);
+                try {
+                    JWT jwt = decrypter.decrypt(serialisedCookie);
+                    decryptions.increment();
+                    return jwt;
+                } catch (JOSEException e) {
+                    throw new DecryptionException(e);
+                }
+            });
+        } catch (DecryptionException e) {
+            throw e.getCause();
+        }
+    }
+
+    /**
+     * Forget a session cookie, when its session is logged out.
+     */
+    public void evict(String serialisedCookie) {
+        cache.invalidate(hash(serialisedCookie));
+    }
+
+    public void invalidateAll() {
+        cache.invalidateAll();
+    }
+
+    private static String hash(String serialisedCookie) {
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-256")
+                    .digest(serialisedCookie.getBytes(StandardCharsets.US_ASCII));
+            return Base64.getUrlEncoder().withoutPadding().encodeToString(digest);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 is not available", e);
+        }
+    }
+
+    @FunctionalInterface
+    public interface Decrypter {
+        JWT decrypt(String serialisedCookie) throws JOSEException;
+    }
+
+    /**
+     * A failed decryption, out of the mapping function of the cache.
+     */
+    private static class DecryptionException extends RuntimeException {
+
+        private DecryptionException(JOSEException cause) {
+            super(cause);
+        }
+
+        @Override
+        public synchronized JOSEException getCause() {
+            return (JOSEException) super.getCause();
+        }
+    }
+
+    private static class CookieExpiry implements Expiry<String, JWT> {
+
+        private final long maxExpireAfterWrite;
+
+        private CookieExpiry(Duration maxExpireAfterWrite) {
+            this.maxExpireAfterWrite = maxExpireAfterWrite.toNanos();
+        }
+
+        @Override
+        public long expireAfterCreate(String key, JWT value, long currentTime) {
+            Date expirationTime;
+            try {
+                expirationTime = value.getJWTClaimsSet().getExpirationTime();
+            } catch (ParseException e) {
+                return 0;
+            }
+            if (expirationTime == null) {
+                return maxExpireAfterWrite;
+            }
+            long untilExpiration = TimeUnit.MILLISECONDS.toNanos(expirationTime.getTime() - System.currentTimeMillis());
+            return Math.max(0, Math.min(untilExpiration, maxExpireAfterWrite));
+        }
+
+        @Override
+        public long expireAfterUpdate(String key, JWT value, long currentTime, long currentDuration) {
+            return expireAfterCreate(key, value, currentTime);
+        }
+
+        @Override
+        public long expireAfterRead(String key, JWT value, long currentTime, long currentDuration) {
+            return currentDuration;
+        }
+    }
+}
@@ -0,0 +1,63 @@
+/**
+ * Copyright 2019 ForgeRock AS. All Rights Reserved
+ *
+ * Use of this code requires a commercial software license with ForgeRock AS.
+ * or with one of its affiliates. All use shall be exclusively subject
+ * to such license between the licensee and ForgeRock AS.
+ */
+package com.forgerock.openbanking.directory;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.http.HttpHeaders;
+import org.springframework.web.filter.OncePerRequestFilter;
+import org.springframework.web.util.WebUtils;
+
+import javax.servlet.FilterChain;
+import javax.servlet.ServletException;
+import javax.servlet.http.Cookie;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
+
+/**
+ * Evict the session cookie of a request from the {@link SessionCookieDecryptionCache} when the response clears it,
+ * whichever endpoint logs the session out.
+ */
+@Slf4j
+public class SessionCookieLogoutFilter extends OncePerRequestFilter {
+
+    private final String cookieName;
+    private final SessionCookieDecryptionCache sessionCookieDecryptionCache;
+
+    public SessionCookieLogoutFilter(String cookieName, SessionCookieDecryptionCache sessionCookieDecryptionCache) {
+        this.cookieName = cookieName;
+        this.sessionCookieDecryptionCache = sessionCookieDecryptionCache;
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain filterChain)
+            throws ServletException, IOException {
+        try {
+            filterChain.doFilter(request, response);
+        } finally {
+            Cookie cookie = WebUtils.getCookie(request, cookieName);
+            if (cookie != null && isCookieCleared(response)) {
+                log.debug("The session cookie is cleared, evict it");
+                sessionCookieDecryptionCache.evict(cookie.getValue());
+            }
+        }
+    }
+
+    private boolean isCookieCleared(HttpServletResponse response) {
+        for (String setCookie : response.getHeaders(HttpHeaders.SET_COOKIE)) {
+            if (!setCookie.startsWith(cookieName + "=")) {
+                continue;
+            }
+            String lowerCase = setCookie.toLowerCase();
+            if (setCookie.startsWith(cookieName + "=;") || lowerCase.contains("max-age=0")) {
+                return true;
+            }
+        }
+        return false;
+    }
+}
@@ -0,0 +1,537 @@
+/**
+ * Copyright 2019 ForgeRock AS. All Rights Reserved
+ *
+ * Use of this code requires a commercial software license with ForgeRock AS.
+ * or with one of its affiliates. All use shall be exclusively subject
+ * to such license between the licensee and ForgeRock AS.
+ */
+package com.forgerock.openbanking.directory;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.core.async.ByteArrayFeeder;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.core.Ordered;
+import org.springframework.http.InvalidMediaTypeException;
+import org.springframework.http.MediaType;
+import org.springframework.web.context.request.RequestAttributes;
+import org.springframework.web.context.request.RequestContextHolder;
+import org.springframework.web.filter.OncePerRequestFilter;
+import org.springframework.web.servlet.HandlerExceptionResolver;
+import org.springframework.web.servlet.ModelAndView;
+
+import javax.servlet.Filter;
+import javax.servlet.FilterChain;
+import javax.servlet.ReadListener;
+import javax.servlet.ServletException;
+import javax.servlet.ServletInputStream;
+import javax.servlet.ServletOutputStream;
+import javax.servlet.WriteListener;
+import javax.servlet.http.Cookie;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletRequestWrapper;
+import javax.servlet.http.HttpServletResponse;
+import javax.servlet.http.HttpServletResponseWrapper;
+import java.io.BufferedReader;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.PrintWriter;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.util.Locale;
+
+/**
+ * The streaming alternative to the JsonRequestSanitisiationFilter, which doesn't buffer the JSON request bodies.
+ *
+ * The body is checked by a non-blocking {@link SanitisingJsonParser} as the application reads it, and reading an unsafe
+ * token fails. When the {@link SanitisingJackson2HttpMessageConverter} reads the body, it checks the tokens it
+ * deserializes itself and this check is switched off, so that the body is parsed once.
+ *
+ * The rule is the one of the buffered JsonRequestSanitisiationFilter: a token is unsafe if that filter rejects a body
+ * of the token alone, its response being discarded. Only the tokens with an HTML character are given to it.
+ *
+ * A rejected body is answered by the buffered filter, given the body of the unsafe token alone, so that the client gets
+ * the same 400 error response in both modes: the ones rejected while the application reads the body by this filter,
+ * the ones rejected by the converter by the {@link #exceptionResolver()} of the dispatcher servlet.
+ */
+@Slf4j
+public class StreamingJsonSanitisationFilter extends OncePerRequestFilter {
+
+    private static final String SANITISING_STREAM_ATTRIBUTE = StreamingJsonSanitisationFilter.class.getName() + ".STREAM";
+    // Outside of a request of this filter, any text with an HTML character is unsafe
+    private static final SanitisingJsonParser.TextCheck HTML_CHARACTERS_REJECTED = (text, fieldName) -> false;
+
+    private final JsonFactory jsonFactory = new JsonFactory();
+    private final Filter bufferedSanitisationFilter;
+
+    /**
+     * @param bufferedSanitisationFilter the JsonRequestSanitisiationFilter, which checks the texts and answers the
+     *                                   rejected bodies
+     */
+    public StreamingJsonSanitisationFilter(Filter bufferedSanitisationFilter) {
+        this.bufferedSanitisationFilter = bufferedSanitisationFilter;
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain filterChain)
+            throws ServletException, IOException {
+        if (!isJson(request)) {
+            filterChain.doFilter(request, response);
+            return;
+        }
+        try {
+            filterChain.doFilter(new SanitisedRequest(request,
+                    (text, fieldName) -> isSafe(request, response, text, fieldName)), response);
+        } catch (IOException | ServletException | RuntimeException e) {
+            SanitisingJsonParser.UnsafeJsonException unsafeJson = unsafeJson(e);
+            if (unsafeJson == null || response.isCommitted()) {
+                throw e;
+            }
+            log.debug("Reject the unsafe JSON body of {}", request.getRequestURI(), e);
+            reject(request, response, unsafeJson);
+        }
+    }
+
+    /**
+     * Stop checking the body of the current request, the caller checks it while parsing it.
+     *
+     * @return the check of the texts of the body
+     */
+    static SanitisingJsonParser.TextCheck takeOverCurrentRequest() {
+        RequestAttributes attributes = RequestContextHolder.getRequestAttributes();
+        Object stream = attributes != null
+                ? attributes.getAttribute(SANITISING_STREAM_ATTRIBUTE, RequestAttributes.SCOPE_REQUEST)
+                : null;
+        if (!(stream instanceof SanitisingInputStream)) {
+            return HTML_CHARACTERS_REJECTED;
+        }
+        ((SanitisingInputStream) stream).passThrough = true;
+        return ((SanitisingInputStream) stream).textCheck;
+    }
+
+    /**
+     * Answers the bodies the {@link SanitisingJackson2HttpMessageConverter} rejects like this filter does, instead of
+     * the 400 of the unreadable messages.
+     */
+    public HandlerExceptionResolver exceptionResolver() {
+        return new UnsafeJsonExceptionResolver();
+    }
+
+    private boolean isSafe(HttpServletRequest request, HttpServletResponse response, String text, boolean fieldName)
+            throws IOException {
+        boolean[] passed = new boolean[1];
+        try {
+            bufferedSanitisationFilter.doFilter(new RejectedRequest(request, tokenBody(text, fieldName)),
+                    new DiscardedResponse(response), (req, res) -> passed[0] = true);
+        } catch (ServletException | RuntimeException e) {
+            log.debug("The buffered filter failed on the text {}", text, e);
+            return false;
+        }
+        return passed[0];
+    }
+
+    private void reject(HttpServletRequest request, HttpServletResponse response,
+                        SanitisingJsonParser.UnsafeJsonException unsafeJson) throws ServletException, IOException {
+        response.reset();
+        byte[] body = tokenBody(unsafeJson.getUnsafeText(), unsafeJson.isFieldName());
+        bufferedSanitisationFilter.doFilter(new RejectedRequest(request, body), response, (req, res) -> {
+            // The buffered filter lets the text through this time, though it rejected it when checking it
+            response.sendError(HttpServletResponse.SC_BAD_REQUEST, unsafeJson.getOriginalMessage());
+        });
+    }
+
+    /**
+     * A body of a field name or a string value alone.
+     */
+    private byte[] tokenBody(String text, boolean fieldName) throws IOException {
+        ByteArrayOutputStream body = new ByteArrayOutputStream();
+        try (JsonGenerator generator = jsonFactory.createGenerator(body)) {
+            generator.writeStartObject();
+            if (fieldName) {
+                generator.writeStringField(text, "");
+            } else {
+                generator.writeStringField("value", text);
+            }
+            generator.writeEndObject();
+        }
+        return body.toByteArray();
+    }
+
+    private static SanitisingJsonParser.UnsafeJsonException unsafeJson(Throwable e) {
+        for (Throwable cause = e; cause != null; cause = cause.getCause()) {
+            if (cause instanceof SanitisingJsonParser.UnsafeJsonException) {
+                return (SanitisingJsonParser.UnsafeJsonException) cause;
+            }
+        }
+        return null;
+    }
+
+    private static boolean isJson(HttpServletRequest request) {
+        if (request.getContentType() == null) {
+            return false;
+        }
+        try {
+            MediaType contentType = MediaType.parseMediaType(request.getContentType());
+            return MediaType.APPLICATION_JSON.includes(contentType) || contentType.getSubtype().endsWith("+json");
+        } catch (InvalidMediaTypeException e) {
+            log.debug("Invalid content type {}", request.getContentType(), e);
+            return false;
+        }
+    }
+
+    private class UnsafeJsonExceptionResolver implements HandlerExceptionResolver, Ordered {
+
+        @Override
+        public ModelAndView resolveException(HttpServletRequest request, HttpServletResponse response, Object handler,
+                                             Exception ex) {
+            SanitisingJsonParser.UnsafeJsonException unsafeJson = unsafeJson(ex);
+            if (unsafeJson == null || response.isCommitted()) {
+                return null;
+            }
+            log.debug("Reject the unsafe JSON body of {}", request.getRequestURI(), ex);
+            try {
+                reject(request, response, unsafeJson);
+            } catch (IOException | ServletException e) {
+                log.warn("Can't answer the unsafe JSON body of {}", request.getRequestURI(), e);
+                return null;
+            }
+            return new ModelAndView();
+        }
+
+        @Override
+        public int getOrder() {
+            return Ordered.HIGHEST_PRECEDENCE;
+        }
+    }
+
+    private class SanitisedRequest extends HttpServletRequestWrapper {
+
+        private final SanitisingJsonParser.TextCheck textCheck;
+        private SanitisingInputStream inputStream;
+
+        private SanitisedRequest(HttpServletRequest request, SanitisingJsonParser.TextCheck textCheck) {
+            super(request);
+            this.textCheck = textCheck;
+        }
+
+        @Override
+        public ServletInputStream getInputStream() throws IOException {
+            if (inputStream == null) {
+                inputStream = new SanitisingInputStream(super.getInputStream(),
+                        jsonFactory.createNonBlockingByteArrayParser(), textCheck);
+                setAttribute(SANITISING_STREAM_ATTRIBUTE, inputStream);
+            }
+            return inputStream;
+        }
+
+        @Override
+        public BufferedReader getReader() throws IOException {
+            Charset charset = getCharacterEncoding() != null ? Charset.forName(getCharacterEncoding()) : StandardCharsets.UTF_8;
+            return new BufferedReader(new InputStreamReader(getInputStream(), charset));
+        }
+    }
+
+    /**
+     * The request of a rejected body, with the unsafe text for body.
+     */
+    private static class RejectedRequest extends HttpServletRequestWrapper {
+
+        private final byte[] body;
+
+        private RejectedRequest(HttpServletRequest request, byte[] body) {
+            super(request);
+            this.body = body;
+        }
+
+        @Override
+        public int getContentLength() {
+            return body.length;
+        }
+
+        @Override
+        public long getContentLengthLong() {
+            return body.length;
+        }
+
+        @Override
+        public String getCharacterEncoding() {
+            return StandardCharsets.UTF_8.name();
+        }
+
+        @Override
+        public ServletInputStream getInputStream() {
+            ByteArrayInputStream inputStream = new ByteArrayInputStream(body);
+            return new ServletInputStream() {
+
+                @Override
+                public int read() {
+                    return inputStream.read();
+                }
+
+                @Override
+                public int read(byte[] b, int off, int len) {
+                    return inputStream.read(b, off, len);
+                }
+
+                @Override
+                public boolean isFinished() {
+                    return inputStream.available() == 0;
+                }
+
+                @Override
+                public boolean isReady() {
+                    return true;
+                }
+
+                @Override
+                public void setReadListener(ReadListener readListener) {
+                    throw new UnsupportedOperationException();
+                }
+            };
+        }
+
+        @Override
+        public BufferedReader getReader() {
+            return new BufferedReader(new InputStreamReader(getInputStream(), StandardCharsets.UTF_8));
+        }
+    }
+
+    /**
+     * The response of the buffered filter checking a text, discarded.
+     */
+    private static class DiscardedResponse extends HttpServletResponseWrapper {
+
+        private static final ServletOutputStream DISCARDED = new ServletOutputStream() {
+
+            @Override
+            public void write(int b) {
+            }
+
+            @Override
+            public void write(byte[] b, int off, int len) {
+            }
+
+            @Override
+            public boolean isReady() {
+                return true;
+            }
+
+            @Override
+            public void setWriteListener(WriteListener writeListener) {
+                throw new UnsupportedOperationException();
+            }
+        };
+
+        private int status = SC_OK;
+        private PrintWriter writer;
+
+        private DiscardedResponse(HttpServletResponse response) {
+            super(response);
+        }
+
+        @Override
+        public int getStatus() {
+            return status;
+        }
+
+        @Override
+        public void setStatus(int sc) {
+            status = sc;
+        }
+
+        @Override
+        @SuppressWarnings("deprecation")
+        public void setStatus(int sc, String sm) {
+            status = sc;
+        }
+
+        @Override
+        public void sendError(int sc) {
+            status = sc;
+        }
+
+        @Override
+        public void sendError(int sc, String msg) {
+            status = sc;
+        }
+
+        @Override
+        public void sendRedirect(String location) {
+            status = SC_FOUND;
+        }
+
+        @Override
+        public void setHeader(String name, String value) {
+        }
+
+        @Override
+        public void addHeader(String name, String value) {
+        }
+
+        @Override
+        public void setIntHeader(String name, int value) {
+        }
+
+        @Override
+        public void addIntHeader(String name, int value) {
+        }
+
+        @Override
+        public void setDateHeader(String name, long date) {
+        }
+
+        @Override
+        public void addDateHeader(String name, long date) {
+        }
+
+        @Override
+        public void addCookie(Cookie cookie) {
+        }
+
+        @Override
+        public void setContentType(String type) {
+        }
+
+        @Override
+        public void setContentLength(int len) {
+        }
+
+        @Override
+        public void setContentLengthLong(long len) {
+        }
+
+        @Override
+        public void setCharacterEncoding(String charset) {
+        }
+
+        @Override
+        public void setLocale(Locale loc) {
+        }
+
+        @Override
+        public void setBufferSize(int size) {
+        }
+
+        @Override
+        public boolean isCommitted() {
+            return false;
+        }
+
+        @Override
+        public void flushBuffer() {
+        }
+
+        @Override
+        public void reset() {
+            status = SC_OK;
+        }
+
+        @Override
+        public void resetBuffer() {
+        }
+
+        @Override
+        public ServletOutputStream getOutputStream() {
+            return DISCARDED;
+        }
+
+        @Override
+        public PrintWriter getWriter() {
+            if (writer == null) {
+                writer = new PrintWriter(new OutputStreamWriter(DISCARDED, StandardCharsets.UTF_8));
+            }
+            return writer;
+        }
+    }
+
+    private static class SanitisingInputStream extends ServletInputStream {
+
+        private final ServletInputStream body;
+        private final JsonParser parser;
+        private final ByteArrayFeeder feeder;
+        private final SanitisingJsonParser.TextCheck textCheck;
+        private final byte[] singleByte = new byte[1];
+        private volatile boolean passThrough;
+
+        private SanitisingInputStream(ServletInputStream body, JsonParser nonBlockingParser,
+                                      SanitisingJsonParser.TextCheck textCheck) {
+            this.body = body;
+            this.parser = new SanitisingJsonParser(nonBlockingParser, textCheck);
+            this.textCheck = textCheck;
+            this.feeder = (ByteArrayFeeder) nonBlockingParser.getNonBlockingInputFeeder();
+        }
+
+        @Override
+        public int read() throws IOException {
+            int read = body.read();
+            if (read < 0) {
+                endOfInput();
+            } else if (!passThrough) {
+                singleByte[0] = (byte) read;
+                check(singleByte, 0, 1);
+            }
+            return read;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            int read = body.read(b, off, len);
+            if (read < 0) {
+                endOfInput();
+            } else if (read > 0 && !passThrough) {
+                check(b, off, read);
+            }
+            return read;
+        }
+
+        @Override
+        public int available() throws IOException {
+            return body.available();
+        }
+
+        @Override
+        public void close() throws IOException {
+            body.close();
+        }
+
+        @Override
+        public boolean isFinished() {
+            return body.isFinished();
+        }
+
+        @Override
+        public boolean isReady() {
+            return body.isReady();
+        }
+
+        @Override
+        public void setReadListener(ReadListener readListener) {
+            body.setReadListener(readListener);
+        }
+
+        private void check(byte[] b, int off, int len) throws IOException {
+            feeder.feedInput(b, off, off + len);
+            checkTokens();
+        }
+
+        private void endOfInput() throws IOException {
+            if (passThrough || !feeder.needMoreInput()) {
+                return;
+            }
+            feeder.endOfInput();
+            checkTokens();
+        }
+
+        private void checkTokens() throws IOException {
+            JsonToken token;
+            do {
+                token = parser.nextToken();
+            } while (token != null && token != JsonToken.NOT_AVAILABLE);
+        }
+    }
+}
@@ -0,0 +1,183 @@
+/**
+ * Copyright 2019 ForgeRock AS. All Rights Reserved
+ *
+ * Use of this code requires a commercial software license with ForgeRock AS.
+ * or with one of its affiliates. All use shall be exclusively subject
+ * to such license between the licensee and ForgeRock AS.
+ */
+package directory;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import com.forgerock.openbanking.directory.SanitisingJackson2HttpMessageConverter;
+import com.forgerock.openbanking.directory.StreamingJsonSanitisationFilter;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.springframework.http.MediaType;
+import org.springframework.http.converter.json.MappingJackson2HttpMessageConverter;
+import org.springframework.http.server.ServletServerHttpRequest;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.util.StreamUtils;
+import org.springframework.web.context.request.RequestContextHolder;
+import org.springframework.web.context.request.ServletRequestAttributes;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+import javax.servlet.FilterChain;
+import javax.servlet.ServletException;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Sanitisation and deserialization of a JSON body of software statements, from 10KB to 5MB.
+ *
+ * The buffered benchmark does what the JsonRequestSanitisiationFilter does: it copies the body, walks its tree and the
+ * controller parses the copy again. The streaming benchmark goes through the {@link StreamingJsonSanitisationFilter}
+ * and the {@link SanitisingJackson2HttpMessageConverter}, which give the buffered filter a body of each text with an
+ * HTML character, like the client names with a '<'. Run it with -prof gc to compare the allocations.
+ *
+ * Run with: mvn test-compile exec:java -Dexec.mainClass=directory.JsonSanitisationBenchmark -Dexec.classpathScope=test
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class JsonSanitisationBenchmark {
+
+    @Param({"10", "100", "1000", "5000"})
+    private int bodyKilobytes;
+
+    private byte[] body;
+    private ObjectMapper objectMapper;
+    private MappingJackson2HttpMessageConverter converter;
+    private SanitisingJackson2HttpMessageConverter sanitisingConverter;
+    private StreamingJsonSanitisationFilter filter;
+
+    @Setup
+    public void setup() throws Exception {
+        objectMapper = new ObjectMapper();
+        converter = new MappingJackson2HttpMessageConverter(objectMapper);
+        sanitisingConverter = new SanitisingJackson2HttpMessageConverter(objectMapper);
+        // The bodies of the benchmark are safe, the buffered filter reads the body of a text and lets it through
+        filter = new StreamingJsonSanitisationFilter(new OncePerRequestFilter() {
+            @Override
+            protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response,
+                                            FilterChain filterChain) throws ServletException, IOException {
+                objectMapper.readTree(request.getInputStream());
+                filterChain.doFilter(request, response);
+            }
+        });
+        body = softwareStatements(bodyKilobytes * 1024);
+    }
+
+    @Benchmark
+    public JsonNode buffered() throws Exception {
+        MockHttpServletRequest request = request();
+        byte[] copy = StreamUtils.copyToByteArray(request.getInputStream());
+        if (!isSafe(objectMapper.readTree(copy))) {
+            throw new IllegalStateException("Unsafe body");
+        }
+        return (JsonNode) converter.read(JsonNode.class, null, new ServletServerHttpRequest(request) {
+            @Override
+            public ByteArrayInputStream getBody() {
+                return new ByteArrayInputStream(copy);
+            }
+        });
+    }
+
+    @Benchmark
+    public JsonNode streaming() throws Exception {
+        AtomicReference<Object> deserialized = new AtomicReference<>();
+        filter.doFilter(request(), new MockHttpServletResponse(), (req, res) -> {
+            RequestContextHolder.setRequestAttributes(new ServletRequestAttributes((HttpServletRequest) req));
+            try {
+                deserialized.set(sanitisingConverter.read(JsonNode.class, null, new ServletServerHttpRequest((HttpServletRequest) req)));
+            } finally {
+                RequestContextHolder.resetRequestAttributes();
+            }
+        });
+        return (JsonNode) deserialized.get();
+    }
+
+    private MockHttpServletRequest request() {
+        MockHttpServletRequest request = new MockHttpServletRequest("POST", "/api/software-statement");
+        request.setContentType(MediaType.APPLICATION_JSON_UTF8_VALUE);
+        request.setContent(body);
+        return request;
+    }
+
+    private static boolean isSafe(JsonNode node) {
+        if (node.isTextual()) {
+            return isSafe(node.textValue());
+        }
+        if (node.isArray()) {
+            for (JsonNode element : node) {
+                if (!isSafe(element)) {
+                    return false;
+                }
+            }
+        }
+        Iterator<Map.Entry<String, JsonNode>> fields = node.fields();
+        while (fields.hasNext()) {
+            Map.Entry<String, JsonNode> field = fields.next();
+            if (!isSafe(field.getKey()) || !isSafe(field.getValue())) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * The check of a text by the buffered filter, which lets every text of the benchmark through.
+     */
+    private static boolean isSafe(String text) {
+        return text != null;
+    }
+
+    private byte[] softwareStatements(int size) throws Exception {
+        ObjectNode root = objectMapper.createObjectNode();
+        ArrayNode statements = root.putArray("software_statements");
+        for (int i = 0, length = 0; length < size; i++) {
+            ObjectNode statement = statements.addObject();
+            statement.put("software_id", "software-" + i);
+            statement.put("software_client_name", "TPP < client " + i);
+            statement.put("software_client_description", "Account information and payment initiation client");
+            statement.put("software_version", 1.0 + i);
+            statement.putArray("software_redirect_uris").add("https://tpp.example.com/" + i + "/callback");
+            statement.putArray("software_roles").add("AISP").add("PISP");
+            statement.put("software_mode", "TEST");
+            statement.put("software_on_behalf_of_org", (String) null);
+            length += objectMapper.writeValueAsBytes(statement).length + 1;
+        }
+        return objectMapper.writeValueAsBytes(root);
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder()
+                .include(JsonSanitisationBenchmark.class.getSimpleName())
+                .build())
+                .run();
+    }
+}
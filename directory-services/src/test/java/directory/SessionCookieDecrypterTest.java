@@ -0,0 +1,217 @@
+/**
+ * Copyright 2019 ForgeRock AS. All Rights Reserved
+ *
+ * Use of this code requires a commercial software license with ForgeRock AS.
+ * or with one of its affiliates. All use shall be exclusively subject
+ * to such license between the licensee and ForgeRock AS.
+ */
+package directory;
+
+import com.forgerock.openbanking.directory.SessionCookieDecrypter;
+import com.forgerock.openbanking.jwt.services.CryptoApiClient;
+import com.nimbusds.jose.EncryptionMethod;
+import com.nimbusds.jose.JOSEException;
+import com.nimbusds.jose.JWEAlgorithm;
+import com.nimbusds.jose.JWEHeader;
+import com.nimbusds.jose.JWEObject;
+import com.nimbusds.jose.JWSAlgorithm;
+import com.nimbusds.jose.JWSHeader;
+import com.nimbusds.jose.Payload;
+import com.nimbusds.jose.crypto.RSAEncrypter;
+import com.nimbusds.jose.crypto.RSASSASigner;
+import com.nimbusds.jose.crypto.bc.BouncyCastleProviderSingleton;
+import com.nimbusds.jose.jwk.JWK;
+import com.nimbusds.jose.jwk.JWKSet;
+import com.nimbusds.jose.jwk.KeyUse;
+import com.nimbusds.jose.jwk.RSAKey;
+import com.nimbusds.jose.jwk.gen.RSAKeyGenerator;
+import com.nimbusds.jwt.JWT;
+import com.nimbusds.jwt.JWTClaimsSet;
+import com.nimbusds.jwt.SignedJWT;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.http.MediaType;
+import org.springframework.test.web.client.MockRestServiceServer;
+import org.springframework.web.client.RestTemplate;
+
+import java.time.Duration;
+import java.util.Arrays;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.BDDMockito.given;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyZeroInteractions;
+import static org.springframework.http.HttpMethod.GET;
+import static org.springframework.test.web.client.ExpectedCount.once;
+import static org.springframework.test.web.client.match.MockRestRequestMatchers.method;
+import static org.springframework.test.web.client.match.MockRestRequestMatchers.requestTo;
+import static org.springframework.test.web.client.response.MockRestResponseCreators.withServerError;
+import static org.springframework.test.web.client.response.MockRestResponseCreators.withSuccess;
+
+public class SessionCookieDecrypterTest {
+
+    private static final String JWKMS_ROOT = "https://jwkms:8443/";
+    private static final String SESSION_KEYS = JWKMS_ROOT + "api/crypto/session-keys";
+
+    private RSAKey encryptionKey;
+    private RSAKey signingKey;
+    private CryptoApiClient cryptoApiClient;
+    private MockRestServiceServer jwkms;
+    private MeterRegistry meterRegistry;
+    private RestTemplate restTemplate;
+
+    @Before
+    public void setUp() throws Exception {
+        encryptionKey = new RSAKeyGenerator(2048).keyID("enc-1").keyUse(KeyUse.ENCRYPTION).generate();
+        signingKey = new RSAKeyGenerator(2048).keyID("sig-1").keyUse(KeyUse.SIGNATURE).generate();
+        cryptoApiClient = mock(CryptoApiClient.class);
+        restTemplate = new RestTemplate();
+        jwkms = MockRestServiceServer.bindTo(restTemplate).build();
+        meterRegistry = new SimpleMeterRegistry();
+    }
+
+    @Test
+    public void shouldDecryptTheCookieLocally() throws Exception {
+        // Given
+        expectSessionKeys(encryptionKey, signingKey.toPublicJWK());
+        SessionCookieDecrypter decrypter = decrypter(true, Duration.ofMinutes(1));
+
+        // When
+        JWT jwt = decrypter.decrypt(cookie(encryptionKey, signingKey, "alice"));
+
+        // Then
+        assertThat(jwt.getJWTClaimsSet().getSubject()).isEqualTo("alice");
+        jwkms.verify();
+        verifyZeroInteractions(cryptoApiClient);
+    }
+
+    @Test
+    public void shouldFetchTheRotatedKeysForAnUnknownKeyId() throws Exception {
+        // Given
+        RSAKey rotatedKey = new RSAKeyGenerator(2048).keyID("enc-2").keyUse(KeyUse.ENCRYPTION).generate();
+        expectSessionKeys(encryptionKey, signingKey.toPublicJWK());
+        expectSessionKeys(encryptionKey, rotatedKey, signingKey.toPublicJWK());
+        SessionCookieDecrypter decrypter = decrypter(true, Duration.ZERO);
+
+        // When
+        JWT jwt = decrypter.decrypt(cookie(rotatedKey, signingKey, "alice"));
+
+        // Then
+        assertThat(jwt.getJWTClaimsSet().getSubject()).isEqualTo("alice");
+        jwkms.verify();
+        verifyZeroInteractions(cryptoApiClient);
+    }
+
+    @Test
+    public void shouldFetchTheKeysOnRotation() throws Exception {
+        // Given
+        RSAKey rotatedKey = new RSAKeyGenerator(2048).keyID("enc-2").keyUse(KeyUse.ENCRYPTION).generate();
+        expectSessionKeys(encryptionKey, signingKey.toPublicJWK());
+        expectSessionKeys(rotatedKey, signingKey.toPublicJWK());
+        SessionCookieDecrypter decrypter = decrypter(true, Duration.ofHours(1));
+
+        // When
+        decrypter.onKeyRotation();
+        JWT jwt = decrypter.decrypt(cookie(rotatedKey, signingKey, "alice"));
+
+        // Then
+        assertThat(jwt.getJWTClaimsSet().getSubject()).isEqualTo("alice");
+        jwkms.verify();
+    }
+
+    @Test
+    public void shouldAskJwkmsWhenTheKeyIsUnknown() throws Exception {
+        // Given
+        RSAKey otherKey = new RSAKeyGenerator(2048).keyID("enc-other").keyUse(KeyUse.ENCRYPTION).generate();
+        expectSessionKeys(encryptionKey, signingKey.toPublicJWK());
+        SessionCookieDecrypter decrypter = decrypter(true, Duration.ofHours(1));
+        String cookie = cookie(otherKey, signingKey, "alice");
+        JWT remotelyDecrypted = mock(JWT.class);
+        given(cryptoApiClient.decryptJwe(cookie)).willReturn(remotelyDecrypted);
+
+        // When
+        JWT jwt = decrypter.decrypt(cookie);
+
+        // Then
+        assertThat(jwt).isSameAs(remotelyDecrypted);
+        assertThat(meterRegistry.get("directory.session.cookies.remote.decryptions").counter().count()).isEqualTo(1);
+    }
+
+    @Test
+    public void shouldRejectACookieWithAnInvalidSignature() throws Exception {
+        // Given
+        RSAKey forgedKey = new RSAKeyGenerator(2048).keyID(signingKey.getKeyID()).generate();
+        expectSessionKeys(encryptionKey, signingKey.toPublicJWK());
+        SessionCookieDecrypter decrypter = decrypter(true, Duration.ofHours(1));
+
+        // When / Then
+        assertThatThrownBy(() -> decrypter.decrypt(cookie(encryptionKey, forgedKey, "mallory")))
+                .isInstanceOf(JOSEException.class);
+        verifyZeroInteractions(cryptoApiClient);
+    }
+
+    @Test
+    public void shouldAskJwkmsWhenTheKeysCantBeFetched() throws Exception {
+        // Given
+        jwkms.expect(once(), requestTo(SESSION_KEYS)).andExpect(method(GET)).andRespond(withServerError());
+        SessionCookieDecrypter decrypter = decrypter(true, Duration.ofHours(1));
+        String cookie = cookie(encryptionKey, signingKey, "alice");
+        given(cryptoApiClient.decryptJwe(anyString())).willReturn(mock(JWT.class));
+
+        // When
+        decrypter.decrypt(cookie);
+
+        // Then
+        verify(cryptoApiClient).decryptJwe(cookie);
+    }
+
+    @Test
+    public void shouldAskJwkmsWhenTheLocalDecryptionIsDisabled() throws Exception {
+        // Given
+        SessionCookieDecrypter decrypter = decrypter(false, Duration.ofHours(1));
+        String cookie = cookie(encryptionKey, signingKey, "alice");
+        given(cryptoApiClient.decryptJwe(anyString())).willReturn(mock(JWT.class));
+
+        // When
+        decrypter.decrypt(cookie);
+
+        // Then
+        verify(cryptoApiClient).decryptJwe(cookie);
+        jwkms.verify();
+    }
+
+    private SessionCookieDecrypter decrypter(boolean localDecryption, Duration minRefreshInterval) {
+        SessionCookieDecrypter decrypter = new SessionCookieDecrypter(cryptoApiClient, restTemplate, JWKMS_ROOT,
+                localDecryption, minRefreshInterval, meterRegistry);
+        decrypter.init();
+        return decrypter;
+    }
+
+    private void expectSessionKeys(JWK... keys) {
+        jwkms.expect(once(), requestTo(SESSION_KEYS))
+                .andExpect(method(GET))
+                .andRespond(withSuccess(new JWKSet(Arrays.asList(keys)).toJSONObject(false).toJSONString(),
+                        MediaType.APPLICATION_JSON));
+    }
+
+    private static String cookie(RSAKey encryptionKey, RSAKey signingKey, String subject) throws JOSEException {
+        SignedJWT signedJWT = new SignedJWT(new JWSHeader.Builder(JWSAlgorithm.PS256).keyID(signingKey.getKeyID()).build(),
+                new JWTClaimsSet.Builder().subject(subject).build());
+        RSASSASigner signer = new RSASSASigner(signingKey);
+        signer.getJCAContext().setProvider(BouncyCastleProviderSingleton.getInstance());
+        signedJWT.sign(signer);
+        JWEObject jwe = new JWEObject(
+                new JWEHeader.Builder(JWEAlgorithm.RSA_OAEP_256, EncryptionMethod.A128CBC_HS256)
+                        .keyID(encryptionKey.getKeyID())
+                        .contentType("JWT")
+                        .build(),
+                new Payload(signedJWT));
+        jwe.encrypt(new RSAEncrypter(encryptionKey.toRSAPublicKey()));
+        return jwe.serialize();
+    }
+}
@@ -0,0 +1,130 @@
+/**
+ * Copyright 2019 ForgeRock AS. All Rights Reserved
+ *
+ * Use of this code requires a commercial software license with ForgeRock AS.
+ * or with one of its affiliates. All use shall be exclusively subject
+ * to such license between the licensee and ForgeRock AS.
+ */
+package directory;
+
+import com.forgerock.openbanking.directory.SessionCookieDecryptionCache;
+import com.nimbusds.jose.JOSEException;
+import com.nimbusds.jwt.JWT;
+import com.nimbusds.jwt.JWTClaimsSet;
+import com.nimbusds.jwt.PlainJWT;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.time.Duration;
+import java.util.Date;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.BDDMockito.given;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+
+public class SessionCookieDecryptionCacheTest {
+
+    private static final String COOKIE = "eyJlbmMiOiJBMTI4Q0JDLUhTMjU2IiwiYWxnIjoiUlNBLU9BRVAtMjU2In0.a.b.c.d";
+
+    private MeterRegistry meterRegistry;
+    private SessionCookieDecryptionCache sessionCookieDecryptionCache;
+    private SessionCookieDecryptionCache.Decrypter decrypter;
+
+    @Before
+    public void setUp() {
+        meterRegistry = new SimpleMeterRegistry();
+        sessionCookieDecryptionCache = new SessionCookieDecryptionCache(100, Duration.ofMinutes(15), meterRegistry);
+        decrypter = mock(SessionCookieDecryptionCache.Decrypter.class);
+    }
+
+    @Test
+    public void shouldNotDecryptACachedCookieAgain() throws Exception {
+        // Given
+        JWT jwt = jwt(new Date(System.currentTimeMillis() + Duration.ofHours(1).toMillis()));
+        given(decrypter.decrypt(COOKIE)).willReturn(jwt);
+        sessionCookieDecryptionCache.get(COOKIE, decrypter);
+
+        // When
+        JWT cached = sessionCookieDecryptionCache.get(COOKIE, decrypter);
+
+        // Then
+        assertThat(cached).isSameAs(jwt);
+        verify(decrypter, times(1)).decrypt(COOKIE);
+        assertThat(meterRegistry.get(SessionCookieDecryptionCache.CACHE_NAME + ".decryptions").counter().count())
+                .isEqualTo(1);
+    }
+
+    @Test
+    public void shouldNotKeepACookiePastItsExpirationTime() throws Exception {
+        // Given
+        given(decrypter.decrypt(COOKIE)).willReturn(jwt(new Date(System.currentTimeMillis() + 2000)));
+        sessionCookieDecryptionCache.get(COOKIE, decrypter);
+        sessionCookieDecryptionCache.get(COOKIE, decrypter);
+        verify(decrypter, times(1)).decrypt(COOKIE);
+        Thread.sleep(2100);
+
+        // When
+        sessionCookieDecryptionCache.get(COOKIE, decrypter);
+
+        // Then
+        verify(decrypter, times(2)).decrypt(COOKIE);
+    }
+
+    @Test
+    public void shouldNotCacheAnExpiredCookie() throws Exception {
+        // Given
+        given(decrypter.decrypt(COOKIE)).willReturn(jwt(new Date(System.currentTimeMillis() - 1000)));
+        sessionCookieDecryptionCache.get(COOKIE, decrypter);
+
+        // When
+        sessionCookieDecryptionCache.get(COOKIE, decrypter);
+
+        // Then
+        verify(decrypter, times(2)).decrypt(COOKIE);
+    }
+
+    @Test
+    public void shouldNotCacheAFailedDecryption() throws Exception {
+        // Given
+        JWT jwt = jwt(null);
+        given(decrypter.decrypt(COOKIE)).willThrow(new JOSEException("jwkms unavailable")).willReturn(jwt);
+        assertThatThrownBy(() -> sessionCookieDecryptionCache.get(COOKIE, decrypter))
+                .isExactlyInstanceOf(JOSEException.class)
+                .hasMessage("jwkms unavailable");
+
+        // When
+        JWT decrypted = sessionCookieDecryptionCache.get(COOKIE, decrypter);
+
+        // Then
+        assertThat(decrypted).isSameAs(jwt);
+        verify(decrypter, times(2)).decrypt(COOKIE);
+        assertThat(meterRegistry.get(SessionCookieDecryptionCache.CACHE_NAME + ".decryptions").counter().count())
+                .isEqualTo(1);
+    }
+
+    @Test
+    public void shouldDecryptAnEvictedCookieAgain() throws Exception {
+        // Given
+        given(decrypter.decrypt(COOKIE)).willReturn(jwt(null));
+        sessionCookieDecryptionCache.get(COOKIE, decrypter);
+
+        // When
+        sessionCookieDecryptionCache.evict(COOKIE);
+        sessionCookieDecryptionCache.get(COOKIE, decrypter);
+
+        // Then
+        verify(decrypter, times(2)).decrypt(COOKIE);
+    }
+
+    private static JWT jwt(Date expirationTime) {
+        return new PlainJWT(new JWTClaimsSet.Builder()
+                .subject("tpp-user")
+                .expirationTime(expirationTime)
+                .build());
+    }
+}
@@ -0,0 +1,98 @@
+/**
+ * Copyright 2019 ForgeRock AS. All Rights Reserved
+ *
+ * Use of this code requires a commercial software license with ForgeRock AS.
+ * or with one of its affiliates. All use shall be exclusively subject
+ * to such license between the licensee and ForgeRock AS.
+ */
+package directory;
+
+import com.forgerock.openbanking.directory.SessionCookieDecryptionCache;
+import com.forgerock.openbanking.directory.SessionCookieLogoutFilter;
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.http.HttpHeaders;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+
+import javax.servlet.FilterChain;
+import javax.servlet.http.Cookie;
+import javax.servlet.http.HttpServletResponse;
+
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyZeroInteractions;
+
+public class SessionCookieLogoutFilterTest {
+
+    private static final String COOKIE_NAME = "obri-session";
+    private static final String COOKIE = "eyJlbmMiOiJBMTI4Q0JDLUhTMjU2IiwiYWxnIjoiUlNBLU9BRVAtMjU2In0.a.b.c.d";
+
+    private SessionCookieDecryptionCache sessionCookieDecryptionCache;
+    private SessionCookieLogoutFilter sessionCookieLogoutFilter;
+    private MockHttpServletRequest request;
+    private MockHttpServletResponse response;
+
+    @Before
+    public void setUp() {
+        sessionCookieDecryptionCache = mock(SessionCookieDecryptionCache.class);
+        sessionCookieLogoutFilter = new SessionCookieLogoutFilter(COOKIE_NAME, sessionCookieDecryptionCache);
+        request = new MockHttpServletRequest("DELETE", "/api/user/logout");
+        request.setCookies(new Cookie(COOKIE_NAME, COOKIE));
+        response = new MockHttpServletResponse();
+    }
+
+    @Test
+    public void shouldEvictTheCookieClearedByTheResponse() throws Exception {
+        // When
+        sessionCookieLogoutFilter.doFilter(request, response, respond(COOKIE_NAME + "=; Path=/; Max-Age=0"));
+
+        // Then
+        verify(sessionCookieDecryptionCache).evict(COOKIE);
+    }
+
+    @Test
+    public void shouldEvictTheCookieExpiredByTheResponse() throws Exception {
+        // When
+        sessionCookieLogoutFilter.doFilter(request, response, (request, response) -> {
+            Cookie cookie = new Cookie(COOKIE_NAME, "deleted");
+            cookie.setMaxAge(0);
+            ((HttpServletResponse) response).addCookie(cookie);
+        });
+
+        // Then
+        verify(sessionCookieDecryptionCache).evict(COOKIE);
+    }
+
+    @Test
+    public void shouldNotEvictTheCookieWhenTheResponseKeepsIt() throws Exception {
+        // When
+        sessionCookieLogoutFilter.doFilter(request, response, respond("XSRF-TOKEN=; Path=/; Max-Age=0"));
+
+        // Then
+        verifyZeroInteractions(sessionCookieDecryptionCache);
+    }
+
+    @Test
+    public void shouldEvictTheCookieWhenTheLogoutFails() throws Exception {
+        // Given
+        FilterChain failingLogout = (request, response) -> {
+            ((HttpServletResponse) response).addHeader(HttpHeaders.SET_COOKIE, COOKIE_NAME + "=; Path=/");
+            throw new IllegalStateException("The session can't be logged out");
+        };
+
+        // When
+        try {
+            sessionCookieLogoutFilter.doFilter(request, response, failingLogout);
+        } catch (IllegalStateException e) {
+            // Expected
+        }
+
+        // Then
+        verify(sessionCookieDecryptionCache).evict(COOKIE);
+    }
+
+    private static FilterChain respond(String setCookie) {
+        return (request, response) -> ((HttpServletResponse) response).addHeader(HttpHeaders.SET_COOKIE, setCookie);
+    }
+}
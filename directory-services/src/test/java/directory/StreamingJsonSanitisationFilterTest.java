@@ -0,0 +1,347 @@
+/**
+ * Copyright 2019 ForgeRock AS. All Rights Reserved
+ *
+ * Use of this code requires a commercial software license with ForgeRock AS.
+ * or with one of its affiliates. All use shall be exclusively subject
+ * to such license between the licensee and ForgeRock AS.
+ */
+package directory;
+
+import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.forgerock.openbanking.directory.SanitisingJackson2HttpMessageConverter;
+import com.forgerock.openbanking.directory.SanitisingJsonParser;
+import com.forgerock.openbanking.directory.StreamingJsonSanitisationFilter;
+import lombok.Data;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.http.MediaType;
+import org.springframework.http.converter.HttpMessageNotReadableException;
+import org.springframework.http.server.ServletServerHttpRequest;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.util.StreamUtils;
+import org.springframework.web.context.request.RequestContextHolder;
+import org.springframework.web.context.request.ServletRequestAttributes;
+import org.springframework.web.filter.OncePerRequestFilter;
+import org.springframework.web.servlet.ModelAndView;
+import org.springframework.web.util.NestedServletException;
+
+import javax.servlet.FilterChain;
+import javax.servlet.ServletException;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Predicate;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+public class StreamingJsonSanitisationFilterTest {
+
+    private static final String ERROR_RESPONSE = "{\"Code\":\"OBRI.Request.Invalid\"}";
+    // The rule of the buffered filter for these tests: no markup
+    private static final Predicate<String> MARKUP = body -> body.matches("(?s).*<[a-zA-Z/!?].*");
+
+    private BufferedSanitisationFilter bufferedSanitisationFilter;
+    private StreamingJsonSanitisationFilter filter;
+    private SanitisingJackson2HttpMessageConverter converter;
+    private MockHttpServletResponse response;
+    private HttpMessageNotReadableException notReadable;
+
+    @Before
+    public void setUp() {
+        withBufferedFilterRejecting(MARKUP);
+        converter = new SanitisingJackson2HttpMessageConverter(new ObjectMapper());
+        response = new MockHttpServletResponse();
+    }
+
+    @After
+    public void tearDown() {
+        RequestContextHolder.resetRequestAttributes();
+    }
+
+    @Test
+    public void shouldDeserializeASafeBody() throws Exception {
+        // Given
+        MockHttpServletRequest request = jsonRequest("{\"name\":\"a < b\",\"redirect_uris\":[\"https://tpp/cb\"]}");
+
+        // When
+        Object body = deserialize(request, SoftwareStatement.class);
+
+        // Then
+        assertThat(((SoftwareStatement) body).getName()).isEqualTo("a < b");
+        assertThat(bufferedSanitisationFilter.bodies).containsExactly("{\"value\":\"a < b\"}");
+        assertThat(notReadable).isNull();
+    }
+
+    @Test
+    public void shouldNotAskTheBufferedFilterAboutATextWithoutHtmlCharacter() throws Exception {
+        // Given
+        MockHttpServletRequest request = jsonRequest("{\"name\":\"tpp\",\"redirect_uris\":[\"https://tpp/cb\"]}");
+
+        // When
+        deserialize(request, SoftwareStatement.class);
+
+        // Then
+        assertThat(bufferedSanitisationFilter.bodies).isEmpty();
+    }
+
+    @Test
+    public void shouldApplyTheRuleOfTheBufferedFilterToEachText() throws Exception {
+        // Given
+        withBufferedFilterRejecting(body -> body.contains("&"));
+
+        // When
+        Object markup = deserialize(jsonRequest("{\"name\":\"<b>tpp</b>\"}"), SoftwareStatement.class);
+        deserialize(jsonRequest("{\"name\":\"AT&T\"}"), SoftwareStatement.class);
+
+        // Then
+        assertThat(((SoftwareStatement) markup).getName()).isEqualTo("<b>tpp</b>");
+        assertThat(notReadable).hasCauseInstanceOf(SanitisingJsonParser.UnsafeJsonException.class);
+        assertThat(response.getContentAsString()).isEqualTo(ERROR_RESPONSE);
+    }
+
+    @Test
+    public void shouldAnswerAValueRejectedByTheConverterWithTheErrorResponseOfTheBufferedFilter() throws Exception {
+        // Given
+        MockHttpServletRequest request = jsonRequest("{\"name\":\"<script>alert(1)</script>\"}");
+
+        // When
+        deserialize(request, SoftwareStatement.class);
+
+        // Then
+        assertThat(notReadable).hasCauseInstanceOf(SanitisingJsonParser.UnsafeJsonException.class);
+        assertThat(lastBody()).isEqualTo("{\"value\":\"<script>alert(1)</script>\"}");
+        assertThat(response.getStatus()).isEqualTo(400);
+        assertThat(response.getContentAsString()).isEqualTo(ERROR_RESPONSE);
+    }
+
+    @Test
+    public void shouldRejectAnUnsafeFieldName() throws Exception {
+        // Given
+        MockHttpServletRequest request = jsonRequest("{\"<img src=x>\":\"value\"}");
+
+        // When
+        deserialize(request, JsonNode.class);
+
+        // Then
+        assertThat(notReadable).hasCauseInstanceOf(SanitisingJsonParser.UnsafeJsonException.class);
+        assertThat(lastBody()).isEqualTo("{\"<img src=x>\":\"\"}");
+        assertThat(response.getContentAsString()).isEqualTo(ERROR_RESPONSE);
+    }
+
+    @Test
+    public void shouldRejectAnUnsafeValueInAnIgnoredField() throws Exception {
+        // Given
+        MockHttpServletRequest request = jsonRequest("{\"name\":\"tpp\",\"ignored\":{\"nested\":[\"</p>\"]}}");
+
+        // When
+        deserialize(request, SoftwareStatement.class);
+
+        // Then
+        assertThat(notReadable).hasCauseInstanceOf(SanitisingJsonParser.UnsafeJsonException.class);
+    }
+
+    @Test
+    public void shouldLeaveTheOtherUnreadableMessagesToTheDispatcher() throws Exception {
+        // Given
+        MockHttpServletRequest request = jsonRequest("{\"name\":");
+
+        // When
+        deserialize(request, SoftwareStatement.class);
+
+        // Then
+        assertThat(notReadable).isNotNull();
+        assertThat(response.getStatus()).isEqualTo(200);
+        assertThat(response.getContentAsString()).isEmpty();
+    }
+
+    @Test
+    public void shouldRejectEveryTextWithAnHtmlCharacterOutsideOfTheFilter() {
+        // Given
+        MockHttpServletRequest request = jsonRequest("{\"name\":\"a < b\"}");
+
+        // When / Then
+        assertThatThrownBy(() -> converter.read(SoftwareStatement.class, null, new ServletServerHttpRequest(request)))
+                .hasCauseInstanceOf(SanitisingJsonParser.UnsafeJsonException.class);
+    }
+
+    @Test
+    public void shouldAnswerAnUnsafeBodyReadAsBytesWithTheErrorResponseOfTheBufferedFilter() throws Exception {
+        // Given
+        MockHttpServletRequest request = jsonRequest("{\"name\":\"<!-- comment -->\"}");
+
+        // When
+        filter.doFilter(request, response, (req, res) -> {
+            res.setContentType(MediaType.TEXT_PLAIN_VALUE);
+            StreamUtils.copyToByteArray(req.getInputStream());
+        });
+
+        // Then
+        assertThat(lastBody()).isEqualTo("{\"value\":\"<!-- comment -->\"}");
+        assertThat(response.getStatus()).isEqualTo(400);
+        assertThat(response.getContentType()).isNull();
+        assertThat(response.getContentAsString()).isEqualTo(ERROR_RESPONSE);
+    }
+
+    @Test
+    public void shouldAnswerAnUnsafeFieldNameRethrownByTheDispatcher() throws Exception {
+        // Given
+        MockHttpServletRequest request = jsonRequest("{\"<img src=x>\":\"value\"}");
+
+        // When
+        filter.doFilter(request, response, (req, res) -> {
+            try {
+                StreamUtils.copyToByteArray(req.getInputStream());
+            } catch (IOException e) {
+                throw new NestedServletException("Request processing failed", e);
+            }
+        });
+
+        // Then
+        assertThat(lastBody()).isEqualTo("{\"<img src=x>\":\"\"}");
+        assertThat(response.getStatus()).isEqualTo(400);
+        assertThat(response.getContentAsString()).isEqualTo(ERROR_RESPONSE);
+    }
+
+    @Test
+    public void shouldAnswerABadRequestWhenTheBufferedFilterLetsTheUnsafeBodyThroughWhenAnsweringIt() throws Exception {
+        // Given
+        Set<String> checked = new HashSet<>();
+        withBufferedFilterRejecting(checked::add);
+        MockHttpServletRequest request = jsonRequest("{\"name\":\"<?php ?>\"}");
+
+        // When
+        filter.doFilter(request, response, (req, res) -> StreamUtils.copyToByteArray(req.getInputStream()));
+
+        // Then
+        assertThat(response.getStatus()).isEqualTo(400);
+        assertThat(response.getErrorMessage()).isEqualTo("Unsafe value");
+    }
+
+    @Test
+    public void shouldNotAnswerAnUnsafeBodyOnceTheResponseIsCommitted() throws Exception {
+        // Given
+        MockHttpServletRequest request = jsonRequest("{\"name\":\"<b>tpp</b>\"}");
+
+        // When / Then
+        assertThatThrownBy(() -> filter.doFilter(request, response, (req, res) -> {
+            res.flushBuffer();
+            StreamUtils.copyToByteArray(req.getInputStream());
+        })).isInstanceOf(SanitisingJsonParser.UnsafeJsonException.class);
+        assertThat(response.getStatus()).isEqualTo(200);
+        assertThat(response.getContentAsString()).isEmpty();
+    }
+
+    @Test
+    public void shouldPassASafeBodyReadAsBytes() throws Exception {
+        // Given
+        String json = "{\"name\":\"tpp\",\"software_roles\":[\"AISP\",\"PISP\"]}";
+        MockHttpServletRequest request = jsonRequest(json);
+        AtomicReference<String> body = new AtomicReference<>();
+
+        // When
+        filter.doFilter(request, response,
+                (req, res) -> body.set(StreamUtils.copyToString(req.getInputStream(), StandardCharsets.UTF_8)));
+
+        // Then
+        assertThat(body.get()).isEqualTo(json);
+    }
+
+    @Test
+    public void shouldNotCheckABodyWhichIsNotJson() throws Exception {
+        // Given
+        MockHttpServletRequest request = new MockHttpServletRequest("POST", "/api/software-statement");
+        request.setContentType(MediaType.TEXT_PLAIN_VALUE);
+        request.setContent("<b>text</b>".getBytes(StandardCharsets.UTF_8));
+        AtomicReference<String> body = new AtomicReference<>();
+
+        // When
+        filter.doFilter(request, response,
+                (req, res) -> body.set(StreamUtils.copyToString(req.getInputStream(), StandardCharsets.UTF_8)));
+
+        // Then
+        assertThat(body.get()).isEqualTo("<b>text</b>");
+    }
+
+    private void withBufferedFilterRejecting(Predicate<String> rule) {
+        bufferedSanitisationFilter = new BufferedSanitisationFilter(rule);
+        filter = new StreamingJsonSanitisationFilter(bufferedSanitisationFilter);
+    }
+
+    private String lastBody() {
+        return bufferedSanitisationFilter.bodies.get(bufferedSanitisationFilter.bodies.size() - 1);
+    }
+
+    /**
+     * Deserialize the body as the dispatcher servlet does, its unreadable message being resolved by the exception
+     * resolver of the filter, or else left to the default 400 of the dispatcher.
+     */
+    private Object deserialize(MockHttpServletRequest request, Class<?> type) throws Exception {
+        AtomicReference<Object> body = new AtomicReference<>();
+        notReadable = null;
+        response = new MockHttpServletResponse();
+        FilterChain controller = (req, res) -> {
+            RequestContextHolder.setRequestAttributes(new ServletRequestAttributes((HttpServletRequest) req));
+            try {
+                body.set(converter.read(type, null, new ServletServerHttpRequest((HttpServletRequest) req)));
+            } catch (HttpMessageNotReadableException e) {
+                notReadable = e;
+                ModelAndView resolved = filter.exceptionResolver()
+                        .resolveException((HttpServletRequest) req, (HttpServletResponse) res, null, e);
+                assertThat(resolved == null).isEqualTo(!(e.getCause() instanceof SanitisingJsonParser.UnsafeJsonException));
+            }
+        };
+        filter.doFilter(request, response, controller);
+        return body.get();
+    }
+
+    private static MockHttpServletRequest jsonRequest(String json) {
+        MockHttpServletRequest request = new MockHttpServletRequest("POST", "/api/software-statement");
+        request.setContentType(MediaType.APPLICATION_JSON_UTF8_VALUE);
+        request.setContent(json.getBytes(StandardCharsets.UTF_8));
+        return request;
+    }
+
+    /**
+     * The buffered filter of the library, which answers an unsafe body with its error response.
+     */
+    private static class BufferedSanitisationFilter extends OncePerRequestFilter {
+
+        private final Predicate<String> rejects;
+        private final List<String> bodies = Collections.synchronizedList(new ArrayList<>());
+
+        private BufferedSanitisationFilter(Predicate<String> rejects) {
+            this.rejects = rejects;
+        }
+
+        @Override
+        protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response,
+                                        FilterChain filterChain) throws ServletException, IOException {
+            String body = StreamUtils.copyToString(request.getInputStream(), StandardCharsets.UTF_8);
+            bodies.add(body);
+            if (rejects.test(body)) {
+                response.setStatus(HttpServletResponse.SC_BAD_REQUEST);
+                response.getWriter().write(ERROR_RESPONSE);
+            } else {
+                filterChain.doFilter(request, response);
+            }
+        }
+    }
+
+    @Data
+    @JsonIgnoreProperties(ignoreUnknown = true)
+    public static class SoftwareStatement {
+        private String name;
+    }
+}
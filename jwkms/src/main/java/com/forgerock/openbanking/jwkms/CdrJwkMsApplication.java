@@ -7,8 +7,11 @@
  */
 package com.forgerock.openbanking.jwkms;
 
+import com.forgerock.cdr.common.http.WebClientFactory;
+import com.forgerock.cdr.common.json.HighPerformanceJackson;
 import com.forgerock.cert.Psd2CertInfo;
 import com.forgerock.cert.psd2.RolesOfPsp;
+import com.forgerock.openbanking.jwkms.crypto.InternalApplicationResolver;
 import com.forgerock.openbanking.jwkms.service.application.ApplicationService;
 import com.forgerock.openbanking.model.ApplicationIdentity;
 import com.forgerock.openbanking.model.OBRIRole;
@@ -25,16 +28,10 @@ import dev.openbanking4.spring.security.multiauth.configurers.collectors.StaticU
 import dev.openbanking4.spring.security.multiauth.configurers.collectors.X509Collector;
 import dev.openbanking4.spring.security.multiauth.model.CertificateHeaderFormat;
 import dev.openbanking4.spring.security.multiauth.model.granttypes.PSD2GrantType;
-import io.netty.handler.ssl.SslContext;
 import lombok.AllArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import net.javacrumbs.shedlock.core.LockProvider;
 import net.javacrumbs.shedlock.provider.mongo.MongoLockProvider;
-import org.bouncycastle.asn1.x500.RDN;
-import org.bouncycastle.asn1.x500.X500Name;
-import org.bouncycastle.asn1.x500.style.BCStyle;
-import org.bouncycastle.asn1.x500.style.IETFUtils;
-import org.bouncycastle.cert.jcajce.JcaX509CertificateHolder;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Qualifier;
 import org.springframework.beans.factory.annotation.Value;
@@ -45,8 +42,8 @@ import org.springframework.cloud.client.discovery.EnableDiscoveryClient;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.ComponentScan;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.FilterType;
 import org.springframework.data.mongodb.repository.config.EnableMongoRepositories;
-import org.springframework.http.client.reactive.ReactorClientHttpConnector;
 import org.springframework.http.converter.HttpMessageConverter;
 import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
 import org.springframework.http.converter.json.MappingJackson2HttpMessageConverter;
@@ -60,7 +57,6 @@ import org.springframework.security.core.AuthenticationException;
 import org.springframework.security.core.GrantedAuthority;
 import org.springframework.web.client.RestTemplate;
 import org.springframework.web.reactive.function.client.WebClient;
-import reactor.netty.http.client.HttpClient;
 import springfox.documentation.swagger2.annotations.EnableSwagger2;
 
 import java.security.cert.CertificateEncodingException;
@@ -78,7 +74,8 @@ import java.util.stream.Collectors;
 @EnableScheduling
 @EnableGlobalMethodSecurity(prePostEnabled = true)
 @Slf4j
-@ComponentScan(basePackages = {"com.forgerock"})
+@ComponentScan(basePackages = {"com.forgerock"},
+        excludeFilters = @ComponentScan.Filter(type = FilterType.REGEX, pattern = "com\\.forgerock\\.cdr\\.common\\.matls\\..*"))
 @EnableMongoRepositories(basePackages = "com.forgerock")
 public class CdrJwkMsApplication {
 
@@ -94,6 +91,10 @@ public class CdrJwkMsApplication {
     private String externalCaAlias;
     @Autowired
     private SslConfiguration sslConfiguration;
+    @Autowired
+    private WebClientFactory webClientFactory;
+    @Autowired
+    private HighPerformanceJackson highPerformanceJackson;
     @Value("${server.ssl.client-certs-key-alias}")
     private String keyAlias;
 
@@ -176,9 +177,7 @@ public class CdrJwkMsApplication {
             }
             String cnValue = "";
             try {
-                X500Name   x500name = new JcaX509CertificateHolder(certificatesChain[0]).getSubject();
-                RDN cn = x500name.getRDNs(BCStyle.CN)[0];
-                cnValue =  IETFUtils.valueToString(cn.getFirst().getValue());
+                cnValue = InternalApplicationResolver.commonName(certificatesChain[0]);
             } catch (CertificateEncodingException e) {
                 e.printStackTrace();
             }
@@ -255,11 +254,7 @@ public class CdrJwkMsApplication {
 
     @Bean
     public WebClient webClient() throws Exception {
-        SslContext sslContext = sslConfiguration.getSslContextForReactor(keyAlias);
-        HttpClient httpClient = HttpClient.create()
-                .secure(sslContextSpec -> sslContextSpec.sslContext(sslContext));
-        ReactorClientHttpConnector connector = new ReactorClientHttpConnector(httpClient);
-        return WebClient.builder().clientConnector(connector).build();
+        return webClientFactory.matlsWebClient("matls", keyAlias);
     }
 
     @Bean
@@ -282,7 +277,7 @@ public class CdrJwkMsApplication {
         MappingJackson2HttpMessageConverter converter = new MappingJackson2HttpMessageConverter();
         Jackson2ObjectMapperBuilder objectMapperBuilder = new Jackson2ObjectMapperBuilder();
         objectMapperBuilderCustomizer.customize(objectMapperBuilder);
-        converter.setObjectMapper(objectMapperBuilder.build());
+        converter.setObjectMapper(highPerformanceJackson.configure(objectMapperBuilder.build()));
         return converter;
     }
 }
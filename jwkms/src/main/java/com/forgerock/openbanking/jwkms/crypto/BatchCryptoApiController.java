@@ -0,0 +1,102 @@
+/**
+ * Copyright 2019 ForgeRock AS. All Rights Reserved
+ *
+ * Use of this code requires a commercial software license with ForgeRock AS.
+ * or with one of its affiliates. All use shall be exclusively subject
+ * to such license between the licensee and ForgeRock AS.
+ */
+package com.forgerock.openbanking.jwkms.crypto;
+
+import com.forgerock.cdr.common.crypto.BatchSignRequest;
+import com.forgerock.cdr.common.crypto.BatchSignResponse;
+import com.forgerock.cdr.common.crypto.BatchVerifyRequest;
+import com.forgerock.cdr.common.crypto.BatchVerifyResponse;
+import com.forgerock.openbanking.jwkms.model.Application;
+import com.forgerock.openbanking.jwkms.model.JwkMsKey;
+import com.nimbusds.jose.JOSEException;
+import com.nimbusds.jose.jwk.JWKSet;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.security.access.prepost.PreAuthorize;
+import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestMethod;
+import org.springframework.web.bind.annotation.RestController;
+
+import javax.servlet.http.HttpServletRequest;
+import java.text.ParseException;
+import java.util.List;
+
+/**
+ * Signs and verifies many JWS in one call, for the bulk operations of the ForgeRock applications like the detached
+ * signatures of the responses or the statements.
+ *
+ * The payloads are signed with the current signing key of the calling application, authenticated by its certificate
+ * and looked up by the {@link InternalApplicationResolver}.
+ * The signatures are verified with the JWKS the caller resolved from the jwk_uri of the signer.
+ */
+@RestController
+@RequestMapping("/api/crypto/batch")
+@Slf4j
+public class BatchCryptoApiController {
+
+    private final InternalApplicationResolver internalApplicationResolver;
+    private final BatchCryptoService batchCryptoService;
+    private final int maxBatchSize;
+
+    public BatchCryptoApiController(InternalApplicationResolver internalApplicationResolver, BatchCryptoService batchCryptoService,
+                                    @Value("${jwkms.batch-crypto.max-batch-size:500}") int maxBatchSize) {
+        this.internalApplicationResolver = internalApplicationResolver;
+        this.batchCryptoService = batchCryptoService;
+        this.maxBatchSize = maxBatchSize;
+    }
+
+    @PreAuthorize("hasAuthority('ROLE_FORGEROCK_INTERNAL_APP')")
+    @RequestMapping(value = "/sign", method = RequestMethod.POST,
+            consumes = MediaType.APPLICATION_JSON_VALUE, produces = MediaType.APPLICATION_JSON_VALUE)
+    public ResponseEntity<BatchSignResponse> sign(@RequestBody BatchSignRequest request, HttpServletRequest servletRequest) {
+        if (!isValidBatch(request.getPayloads())) {
+            return ResponseEntity.badRequest().build();
+        }
+        Application application = internalApplicationResolver.resolve(servletRequest);
+        JwkMsKey signingKey = application != null ? application.getCurrentSignKey() : null;
+        if (signingKey == null) {
+            return ResponseEntity.notFound().build();
+        }
+        try {
+            List<String> signatures = batchCryptoService.sign(signingKey.getJwk(), application.getIssuerId(),
+                    request.getPayloads(), request.isDetached());
+            log.debug("Signed {} payloads for {}", signatures.size(), application.getIssuerId());
+            return ResponseEntity.ok(new BatchSignResponse(signatures));
+        } catch (JOSEException e) {
+            log.error("Can't sign with the key {} of {}", signingKey.getJwk().getKeyID(), application.getIssuerId(), e);
+            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).build();
+        }
+    }
+
+    @PreAuthorize("hasAuthority('ROLE_FORGEROCK_INTERNAL_APP')")
+    @RequestMapping(value = "/verify", method = RequestMethod.POST,
+            consumes = MediaType.APPLICATION_JSON_VALUE, produces = MediaType.APPLICATION_JSON_VALUE)
+    public ResponseEntity<BatchVerifyResponse> verify(@RequestBody BatchVerifyRequest request) {
+        if (!isValidBatch(request.getSignatures()) || request.getJwks() == null
+                || (request.getPayloads() != null && request.getPayloads().size() != request.getSignatures().size())) {
+            return ResponseEntity.badRequest().build();
+        }
+        JWKSet keys;
+        try {
+            keys = JWKSet.parse(request.getJwks());
+        } catch (ParseException e) {
+            log.debug("Invalid JWKS {}", request.getJwks(), e);
+            return ResponseEntity.badRequest().build();
+        }
+        return ResponseEntity.ok(new BatchVerifyResponse(
+                batchCryptoService.verify(keys, request.getSignatures(), request.getPayloads())));
+    }
+
+    private boolean isValidBatch(List<String> batch) {
+        return batch != null && batch.size() <= maxBatchSize;
+    }
+}
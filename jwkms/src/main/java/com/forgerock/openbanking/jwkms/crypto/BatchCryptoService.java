@@ -0,0 +1,171 @@
+/**
+ * Copyright 2019 ForgeRock AS. All Rights Reserved
+ *
+ * Use of this code requires a commercial software license with ForgeRock AS.
+ * or with one of its affiliates. All use shall be exclusively subject
+ * to such license between the licensee and ForgeRock AS.
+ */
+package com.forgerock.openbanking.jwkms.crypto;
+
+import com.forgerock.cdr.common.crypto.DetachedSignatureHeader;
+import com.nimbusds.jose.JOSEException;
+import com.nimbusds.jose.JWSAlgorithm;
+import com.nimbusds.jose.JWSHeader;
+import com.nimbusds.jose.JWSObject;
+import com.nimbusds.jose.JWSSigner;
+import com.nimbusds.jose.JWSVerifier;
+import com.nimbusds.jose.Payload;
+import com.nimbusds.jose.crypto.ECDSASigner;
+import com.nimbusds.jose.crypto.ECDSAVerifier;
+import com.nimbusds.jose.crypto.RSASSASigner;
+import com.nimbusds.jose.crypto.RSASSAVerifier;
+import com.nimbusds.jose.crypto.bc.BouncyCastleProviderSingleton;
+import com.nimbusds.jose.jwk.ECKey;
+import com.nimbusds.jose.jwk.JWK;
+import com.nimbusds.jose.jwk.JWKSet;
+import com.nimbusds.jose.jwk.RSAKey;
+import com.nimbusds.jose.jwk.source.ImmutableJWKSet;
+import com.nimbusds.jose.proc.JWSVerificationKeySelector;
+import com.nimbusds.jose.proc.SecurityContext;
+import com.nimbusds.jose.util.Base64URL;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PreDestroy;
+import java.security.Key;
+import java.security.interfaces.ECPublicKey;
+import java.security.interfaces.RSAPublicKey;
+import java.text.ParseException;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+/**
+ * Signs and verifies the JWS of a batch in parallel, on a pool sized for the cores of jwkms.
+ *
+ * The detached signatures carry the critical Open Banking claims of the {@link DetachedSignatureHeader}, which the
+ * verification accepts.
+ */
+@Component
+@Slf4j
+public class BatchCryptoService {
+
+    private final JWSAlgorithm defaultAlgorithm;
+    private final String trustAnchor;
+    private final ForkJoinPool pool;
+
+    public BatchCryptoService(@Value("${jwkms.signing.algorithm:PS256}") String defaultAlgorithm,
+                              @Value("${jwkms.tan}") String trustAnchor,
+                              @Value("${jwkms.batch-crypto.parallelism:0}") int parallelism) {
+        this.defaultAlgorithm = JWSAlgorithm.parse(defaultAlgorithm);
+        this.trustAnchor = trustAnchor;
+        this.pool = new ForkJoinPool(parallelism > 0 ? parallelism : Runtime.getRuntime().availableProcessors());
+    }
+
+    /**
+     * The algorithm to sign with a private key: its own or the default signing algorithm of jwkms.
+     */
+    public JWSAlgorithm algorithm(JWK key) {
+        return key.getAlgorithm() != null ? JWSAlgorithm.parse(key.getAlgorithm().getName()) : defaultAlgorithm;
+    }
+
+    public String getTrustAnchor() {
+        return trustAnchor;
+    }
+
+    /**
+     * Sign the payloads with a private key of an application.
+     *
+     * @param issuer the issuer id of the application, for the header of the detached signatures
+     * @return the compact JWS of the payloads, in their order, without their payload if detached
+     */
+    public List<String> sign(JWK key, String issuer, List<String> payloads, boolean detached) throws JOSEException {
+        JWSSigner signer;
+        if (key instanceof RSAKey) {
+            signer = new RSASSASigner((RSAKey) key);
+        } else if (key instanceof ECKey) {
+            signer = new ECDSASigner((ECKey) key);
+        } else {
+            throw new JOSEException("Unsupported signing key type " + key.getKeyType());
+        }
+        signer.getJCAContext().setProvider(BouncyCastleProviderSingleton.getInstance());
+        JWSHeader header = detached
+                ? DetachedSignatureHeader.build(algorithm(key), key.getKeyID(), issuer, trustAnchor, System.currentTimeMillis() / 1000)
+                : new JWSHeader.Builder(algorithm(key)).keyID(key.getKeyID()).build();
+        return pool.submit(() -> payloads.parallelStream()
+                .map(payload -> sign(signer, header, payload, detached))
+                .collect(Collectors.toList()))
+                .join();
+    }
+
+    /**
+     * Verify the signatures with the public keys of a JWKS, selected by the key id and the algorithm of each JWS.
+     *
+     * @param payloads the payloads of detached signatures, in their order, or null
+     * @return whether each signature is valid, in their order
+     */
+    public List<Boolean> verify(JWKSet keys, List<String> signatures, List<String> payloads) {
+        ImmutableJWKSet<SecurityContext> keySource = new ImmutableJWKSet<>(keys.toPublicJWKSet());
+        return pool.submit(() -> IntStream.range(0, signatures.size())
+                .parallel()
+                .mapToObj(i -> verify(keySource, signatures.get(i), payloads != null ? payloads.get(i) : null))
+                .collect(Collectors.toList()))
+                .join();
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        pool.shutdownNow();
+    }
+
+    private static String sign(JWSSigner signer, JWSHeader header, String payload, boolean detached) {
+        JWSObject jws = new JWSObject(header, new Payload(payload));
+        try {
+            jws.sign(signer);
+        } catch (JOSEException e) {
+            throw new IllegalStateException("Can't sign the payload", e);
+        }
+        return jws.serialize(detached);
+    }
+
+    private static JWSVerifier verifier(Key key) throws JOSEException {
+        JWSVerifier verifier;
+        if (key instanceof RSAPublicKey) {
+            verifier = new RSASSAVerifier((RSAPublicKey) key, DetachedSignatureHeader.CRITICAL_PARAMS);
+        } else if (key instanceof ECPublicKey) {
+            verifier = new ECDSAVerifier((ECPublicKey) key, DetachedSignatureHeader.CRITICAL_PARAMS);
+        } else {
+            throw new JOSEException("Unsupported verification key " + key.getAlgorithm());
+        }
+        // nimbus looks PS256 up by its Bouncy Castle name, which the JDK provider does not know
+        verifier.getJCAContext().setProvider(BouncyCastleProviderSingleton.getInstance());
+        return verifier;
+    }
+
+    private boolean verify(ImmutableJWKSet<SecurityContext> keySource, String signature, String payload) {
+        try {
+            JWSObject jws = JWSObject.parse(signature);
+            if (payload != null) {
+                Base64URL[] parts = jws.getParsedParts();
+                jws = new JWSObject(parts[0], Base64URL.encode(payload), parts[2]);
+            }
+            JWSAlgorithm algorithm = jws.getHeader().getAlgorithm();
+            // The public keys of a JWKS can't verify a MAC
+            if (!JWSAlgorithm.Family.RSA.contains(algorithm) && !JWSAlgorithm.Family.EC.contains(algorithm)) {
+                return false;
+            }
+            List<Key> candidates = new JWSVerificationKeySelector<>(algorithm, keySource).selectJWSKeys(jws.getHeader(), null);
+            for (Key candidate : candidates) {
+                if (jws.verify(verifier(candidate))) {
+                    return true;
+                }
+            }
+            return false;
+        } catch (ParseException | JOSEException e) {
+            log.debug("Invalid signature {}", signature, e);
+            return false;
+        }
+    }
+}
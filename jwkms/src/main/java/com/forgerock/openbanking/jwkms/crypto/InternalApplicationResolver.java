@@ -0,0 +1,76 @@
+/**
+ * Copyright 2019 ForgeRock AS. All Rights Reserved
+ *
+ * Use of this code requires a commercial software license with ForgeRock AS.
+ * or with one of its affiliates. All use shall be exclusively subject
+ * to such license between the licensee and ForgeRock AS.
+ */
+package com.forgerock.openbanking.jwkms.crypto;
+
+import com.forgerock.openbanking.jwkms.model.Application;
+import com.forgerock.openbanking.jwkms.service.application.ApplicationService;
+import com.nimbusds.jose.jwk.JWK;
+import lombok.extern.slf4j.Slf4j;
+import org.bouncycastle.asn1.x500.RDN;
+import org.bouncycastle.asn1.x500.X500Name;
+import org.bouncycastle.asn1.x500.style.BCStyle;
+import org.bouncycastle.asn1.x500.style.IETFUtils;
+import org.bouncycastle.cert.jcajce.JcaX509CertificateHolder;
+import org.springframework.stereotype.Component;
+
+import javax.servlet.http.HttpServletRequest;
+import java.security.cert.CertificateEncodingException;
+import java.security.cert.X509Certificate;
+import java.text.ParseException;
+import java.util.List;
+
+/**
+ * The application of an internal caller, by the common name of its certificate.
+ *
+ * The principal of an internal application is its issuer id, which the application service can't look the application
+ * up by, so the application is looked up the way the internal certificates collector does: by the common name of the
+ * certificate of the x-client-jwk header.
+ */
+@Component
+@Slf4j
+public class InternalApplicationResolver {
+
+    public static final String CLIENT_CERTIFICATE_HEADER_NAME = "x-client-jwk";
+
+    private final ApplicationService applicationService;
+
+    public InternalApplicationResolver(ApplicationService applicationService) {
+        this.applicationService = applicationService;
+    }
+
+    /**
+     * The common name of a certificate, the id of the application of an internal certificate.
+     */
+    public static String commonName(X509Certificate certificate) throws CertificateEncodingException {
+        X500Name x500name = new JcaX509CertificateHolder(certificate).getSubject();
+        RDN cn = x500name.getRDNs(BCStyle.CN)[0];
+        return IETFUtils.valueToString(cn.getFirst().getValue());
+    }
+
+    /**
+     * Get the application of the caller.
+     *
+     * @return the application, or null if the request has no certificate or the application is unknown
+     */
+    public Application resolve(HttpServletRequest request) {
+        String header = request.getHeader(CLIENT_CERTIFICATE_HEADER_NAME);
+        if (header == null) {
+            return null;
+        }
+        try {
+            List<X509Certificate> certificatesChain = JWK.parse(header).getParsedX509CertChain();
+            if (certificatesChain == null || certificatesChain.isEmpty()) {
+                return null;
+            }
+            return applicationService.getApplication(commonName(certificatesChain.get(0)));
+        } catch (ParseException | CertificateEncodingException | RuntimeException e) {
+            log.debug("Can't get the application of the client certificate", e);
+            return null;
+        }
+    }
+}
@@ -0,0 +1,39 @@
+/**
+ * Copyright 2019 ForgeRock AS. All Rights Reserved
+ *
+ * Use of this code requires a commercial software license with ForgeRock AS.
+ * or with one of its affiliates. All use shall be exclusively subject
+ * to such license between the licensee and ForgeRock AS.
+ */
+package com.forgerock.openbanking.jwkms.crypto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.index.Indexed;
+import org.springframework.data.mongodb.core.mapping.Document;
+
+import java.util.Date;
+
+/**
+ * The public half of a signing key lent to an application, published in the JWKS of the application until the lease
+ * expires. Mongo deletes it a while after.
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Document(collection = "signingKeyLeases")
+public class LeasedSigningKey {
+
+    @Id
+    private String keyId;
+    @Indexed
+    private String applicationId;
+    /**
+     * The public JWK.
+     */
+    private String publicKey;
+    @Indexed(expireAfterSeconds = 0)
+    private Date expiresAt;
+}
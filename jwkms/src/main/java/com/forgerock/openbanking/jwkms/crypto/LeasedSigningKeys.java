@@ -0,0 +1,63 @@
+/**
+ * Copyright 2019 ForgeRock AS. All Rights Reserved
+ *
+ * Use of this code requires a commercial software license with ForgeRock AS.
+ * or with one of its affiliates. All use shall be exclusively subject
+ * to such license between the licensee and ForgeRock AS.
+ */
+package com.forgerock.openbanking.jwkms.crypto;
+
+import com.forgerock.openbanking.jwkms.jwks.JwksCache;
+import com.nimbusds.jose.jwk.JWK;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.stereotype.Component;
+
+import java.text.ParseException;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+
+/**
+ * The public keys of the signing key leases, shared by the replicas of jwkms: the signatures of a leased key are
+ * verified with the JWKS of its application, whichever replica lent it.
+ */
+@Component
+@Slf4j
+public class LeasedSigningKeys {
+
+    private final MongoTemplate mongoTemplate;
+    private final JwksCache jwksCache;
+
+    public LeasedSigningKeys(MongoTemplate mongoTemplate, JwksCache jwksCache) {
+        this.mongoTemplate = mongoTemplate;
+        this.jwksCache = jwksCache;
+    }
+
+    /**
+     * Publish the public half of a leased key in the JWKS of its application, until the lease expires.
+     */
+    public void publish(String applicationId, JWK leasedKey, long expiresAt) {
+        mongoTemplate.insert(new LeasedSigningKey(leasedKey.getKeyID(), applicationId,
+                leasedKey.toPublicJWK().toJSONString(), new Date(expiresAt)));
+        jwksCache.invalidate(applicationId);
+    }
+
+    /**
+     * The public keys of the leases of an application not expired yet.
+     */
+    public List<JWK> published(String applicationId) {
+        Query query = new Query(Criteria.where("applicationId").is(applicationId).and("expiresAt").gt(new Date()));
+        List<JWK> keys = new ArrayList<>();
+        for (LeasedSigningKey leasedSigningKey : mongoTemplate.find(query, LeasedSigningKey.class)) {
+            try {
+                keys.add(JWK.parse(leasedSigningKey.getPublicKey()));
+            } catch (ParseException e) {
+                log.warn("Can't parse the leased signing key {}", leasedSigningKey.getKeyId(), e);
+            }
+        }
+        return keys;
+    }
+}
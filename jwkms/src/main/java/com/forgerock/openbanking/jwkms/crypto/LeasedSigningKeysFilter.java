@@ -0,0 +1,112 @@
+/**
+ * Copyright 2019 ForgeRock AS. All Rights Reserved
+ *
+ * Use of this code requires a commercial software license with ForgeRock AS.
+ * or with one of its affiliates. All use shall be exclusively subject
+ * to such license between the licensee and ForgeRock AS.
+ */
+package com.forgerock.openbanking.jwkms.crypto;
+
+import com.forgerock.openbanking.jwkms.model.Application;
+import com.nimbusds.jose.jwk.JWK;
+import com.nimbusds.jose.jwk.JWKSet;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
+import org.springframework.http.HttpMethod;
+import org.springframework.stereotype.Component;
+import org.springframework.web.filter.OncePerRequestFilter;
+import org.springframework.web.util.ContentCachingResponseWrapper;
+import org.springframework.web.util.UrlPathHelper;
+
+import javax.servlet.FilterChain;
+import javax.servlet.ServletException;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.text.ParseException;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Adds the public keys of the signing key leases of an application to the JWKS of its jwk_uri endpoints, the one of
+ * /api/application/{applicationId}/jwk_uri and the one /api/jwk/jwk_uri answers the application with.
+ *
+ * It runs inside the JwksCacheFilter, so a cached JWKS has the leased keys too.
+ */
+@Component
+@Order(Ordered.LOWEST_PRECEDENCE)
+@Slf4j
+public class LeasedSigningKeysFilter extends OncePerRequestFilter {
+
+    private static final Pattern APPLICATION_JWK_URI = Pattern.compile("^/api/application/([^/]+)/jwk_uri$");
+    private static final String JWKMS_JWK_URI = "/api/jwk/jwk_uri";
+
+    private final LeasedSigningKeys leasedSigningKeys;
+    private final InternalApplicationResolver internalApplicationResolver;
+    private final UrlPathHelper urlPathHelper = new UrlPathHelper();
+
+    public LeasedSigningKeysFilter(LeasedSigningKeys leasedSigningKeys, InternalApplicationResolver internalApplicationResolver) {
+        this.leasedSigningKeys = leasedSigningKeys;
+        this.internalApplicationResolver = internalApplicationResolver;
+    }
+
+    @Override
+    protected boolean shouldNotFilter(HttpServletRequest request) {
+        return !HttpMethod.GET.matches(request.getMethod());
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain filterChain)
+            throws ServletException, IOException {
+        String applicationId = applicationId(request);
+        List<JWK> leasedKeys = applicationId != null ? leasedSigningKeys.published(applicationId) : null;
+        if (leasedKeys == null || leasedKeys.isEmpty()) {
+            filterChain.doFilter(request, response);
+            return;
+        }
+        ContentCachingResponseWrapper responseWrapper = new ContentCachingResponseWrapper(response);
+        filterChain.doFilter(request, responseWrapper);
+        if (responseWrapper.getStatus() != HttpServletResponse.SC_OK) {
+            responseWrapper.copyBodyToResponse();
+            return;
+        }
+        JWKSet jwks;
+        try {
+            jwks = JWKSet.parse(new String(responseWrapper.getContentAsByteArray(), StandardCharsets.UTF_8));
+        } catch (ParseException e) {
+            log.warn("Can't add the leased signing keys to the JWKS of {}", applicationId, e);
+            responseWrapper.copyBodyToResponse();
+            return;
+        }
+        List<JWK> keys = new ArrayList<>(jwks.getKeys());
+        Set<String> keyIds = new HashSet<>();
+        keys.forEach(key -> keyIds.add(key.getKeyID()));
+        for (JWK leasedKey : leasedKeys) {
+            if (keyIds.add(leasedKey.getKeyID())) {
+                keys.add(leasedKey);
+            }
+        }
+        byte[] body = new JWKSet(keys).toJSONObject(false).toJSONString().getBytes(StandardCharsets.UTF_8);
+        response.setContentLength(body.length);
+        response.getOutputStream().write(body);
+    }
+
+    private String applicationId(HttpServletRequest request) {
+        String path = urlPathHelper.getPathWithinApplication(request);
+        Matcher matcher = APPLICATION_JWK_URI.matcher(path);
+        if (matcher.matches()) {
+            return matcher.group(1);
+        }
+        if (JWKMS_JWK_URI.equals(path)) {
+            Application caller = internalApplicationResolver.resolve(request);
+            return caller != null ? caller.getIssuerId() : null;
+        }
+        return null;
+    }
+}
@@ -0,0 +1,64 @@
+/**
+ * Copyright 2019 ForgeRock AS. All Rights Reserved
+ *
+ * Use of this code requires a commercial software license with ForgeRock AS.
+ * or with one of its affiliates. All use shall be exclusively subject
+ * to such license between the licensee and ForgeRock AS.
+ */
+package com.forgerock.openbanking.jwkms.crypto;
+
+import com.forgerock.openbanking.jwkms.model.Application;
+import com.forgerock.openbanking.jwkms.model.JwkMsKey;
+import com.nimbusds.jose.jwk.JWK;
+import com.nimbusds.jose.jwk.JWKSet;
+import com.nimbusds.jose.jwk.KeyUse;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.security.access.prepost.PreAuthorize;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestMethod;
+import org.springframework.web.bind.annotation.RestController;
+
+import javax.servlet.http.HttpServletRequest;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * The key material a ForgeRock application needs to open its own session cookies without calling the crypto API for
+ * each of them: its private encryption keys and its public signing keys, current and not cleaned up yet.
+ *
+ * Only the internal applications, authenticated by their certificate, can get their own keys. They fetch them again
+ * after each key rotation.
+ */
+@RestController
+@RequestMapping("/api/crypto")
+@Slf4j
+public class SessionKeysApiController {
+
+    private final InternalApplicationResolver internalApplicationResolver;
+
+    public SessionKeysApiController(InternalApplicationResolver internalApplicationResolver) {
+        this.internalApplicationResolver = internalApplicationResolver;
+    }
+
+    @PreAuthorize("hasAuthority('ROLE_FORGEROCK_INTERNAL_APP')")
+    @RequestMapping(value = "/session-keys", method = RequestMethod.GET, produces = MediaType.APPLICATION_JSON_VALUE)
+    public ResponseEntity<String> getSessionKeys(HttpServletRequest request) {
+        Application application = internalApplicationResolver.resolve(request);
+        if (application == null) {
+            return ResponseEntity.notFound().build();
+        }
+        List<JWK> keys = new ArrayList<>();
+        for (JwkMsKey key : application.getKeys().values()) {
+            JWK jwk = key.getJwk();
+            if (KeyUse.ENCRYPTION.equals(jwk.getKeyUse())) {
+                keys.add(jwk);
+            } else if (KeyUse.SIGNATURE.equals(jwk.getKeyUse())) {
+                keys.add(jwk.toPublicJWK());
+            }
+        }
+        log.debug("Send {} session keys to {}", keys.size(), application.getIssuerId());
+        return ResponseEntity.ok(new JWKSet(keys).toJSONObject(false).toJSONString());
+    }
+}
@@ -0,0 +1,114 @@
+/**
+ * Copyright 2019 ForgeRock AS. All Rights Reserved
+ *
+ * Use of this code requires a commercial software license with ForgeRock AS.
+ * or with one of its affiliates. All use shall be exclusively subject
+ * to such license between the licensee and ForgeRock AS.
+ */
+package com.forgerock.openbanking.jwkms.crypto;
+
+import com.forgerock.cdr.common.crypto.SigningKeyLease;
+import com.forgerock.openbanking.jwkms.keys.KeyPairPool;
+import com.forgerock.openbanking.jwkms.model.Application;
+import com.forgerock.openbanking.jwkms.model.JwkMsKey;
+import com.nimbusds.jose.JOSEException;
+import com.nimbusds.jose.JWSAlgorithm;
+import com.nimbusds.jose.jwk.ECKey;
+import com.nimbusds.jose.jwk.JWK;
+import com.nimbusds.jose.jwk.KeyUse;
+import com.nimbusds.jose.jwk.RSAKey;
+import com.nimbusds.jose.jwk.gen.ECKeyGenerator;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.security.access.prepost.PreAuthorize;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestMethod;
+import org.springframework.web.bind.annotation.RestController;
+
+import javax.servlet.http.HttpServletRequest;
+import java.security.KeyPair;
+import java.security.interfaces.RSAPrivateKey;
+import java.security.interfaces.RSAPublicKey;
+import java.time.Duration;
+import java.util.UUID;
+
+/**
+ * Lends a short-lived signing key to a ForgeRock application, so that it signs its JWS, like the detached signatures of
+ * the responses, without calling jwkms for each of them.
+ *
+ * Only the internal applications, authenticated by their certificate, can lease a key. Every lease is a new key pair,
+ * of the type and size of the current signing key of the application: the private key is lent to the application and
+ * the public key is published in the JWKS of the application until the lease expires, so the signatures of a leaked
+ * key don't verify for longer than the lease. The long-term signing key of the application never leaves jwkms. The
+ * lease has the issuer and the trust anchor jwkms puts in the header of the detached signatures, so the leased
+ * signatures have the same header as the ones of jwkms, but for the key id.
+ *
+ * The JWKS cached by the verifiers don't have the key of a new lease yet: they have to fetch the JWKS again for a key
+ * id they don't know.
+ */
+@RestController
+@RequestMapping("/api/crypto")
+@Slf4j
+public class SigningKeyLeaseApiController {
+
+    private final InternalApplicationResolver internalApplicationResolver;
+    private final BatchCryptoService batchCryptoService;
+    private final LeasedSigningKeys leasedSigningKeys;
+    private final KeyPairPool keyPairPool;
+    private final Duration leaseDuration;
+
+    public SigningKeyLeaseApiController(InternalApplicationResolver internalApplicationResolver,
+                                        BatchCryptoService batchCryptoService,
+                                        LeasedSigningKeys leasedSigningKeys,
+                                        KeyPairPool keyPairPool,
+                                        @Value("${jwkms.signing-key-lease.duration:PT5M}") Duration leaseDuration) {
+        this.internalApplicationResolver = internalApplicationResolver;
+        this.batchCryptoService = batchCryptoService;
+        this.leasedSigningKeys = leasedSigningKeys;
+        this.keyPairPool = keyPairPool;
+        this.leaseDuration = leaseDuration;
+    }
+
+    @PreAuthorize("hasAuthority('ROLE_FORGEROCK_INTERNAL_APP')")
+    @RequestMapping(value = "/signing-key-lease", method = RequestMethod.POST, produces = MediaType.APPLICATION_JSON_VALUE)
+    public ResponseEntity<SigningKeyLease> lease(HttpServletRequest request) throws JOSEException {
+        Application application = internalApplicationResolver.resolve(request);
+        JwkMsKey signingKey = application != null ? application.getCurrentSignKey() : null;
+        if (signingKey == null) {
+            return ResponseEntity.notFound().build();
+        }
+        JWSAlgorithm algorithm = batchCryptoService.algorithm(signingKey.getJwk());
+        JWK leasedKey = generate(signingKey.getJwk(), algorithm);
+        long expiresAt = System.currentTimeMillis() + leaseDuration.toMillis();
+        leasedSigningKeys.publish(application.getIssuerId(), leasedKey, expiresAt);
+        log.debug("Lend the signing key {} to {} until {}", leasedKey.getKeyID(), application.getIssuerId(), expiresAt);
+        return ResponseEntity.ok(new SigningKeyLease(leasedKey.toJSONString(), algorithm.getName(),
+                application.getIssuerId(), batchCryptoService.getTrustAnchor(), expiresAt));
+    }
+
+    /**
+     * A new key pair of the type and size of the current signing key.
+     */
+    private JWK generate(JWK currentKey, JWSAlgorithm algorithm) throws JOSEException {
+        String keyId = UUID.randomUUID().toString();
+        if (currentKey instanceof ECKey) {
+            return new ECKeyGenerator(((ECKey) currentKey).getCurve())
+                    .keyID(keyId)
+                    .keyUse(KeyUse.SIGNATURE)
+                    .algorithm(algorithm)
+                    .generate();
+        }
+        if (currentKey instanceof RSAKey) {
+            KeyPair keyPair = keyPairPool.take(currentKey.size());
+            return new RSAKey.Builder((RSAPublicKey) keyPair.getPublic())
+                    .privateKey((RSAPrivateKey) keyPair.getPrivate())
+                    .keyID(keyId)
+                    .keyUse(KeyUse.SIGNATURE)
+                    .algorithm(algorithm)
+                    .build();
+        }
+        throw new JOSEException("Unsupported signing key type " + currentKey.getKeyType());
+    }
+}
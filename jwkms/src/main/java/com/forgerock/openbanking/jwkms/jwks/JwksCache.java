@@ -0,0 +1,112 @@
+/**
+ * Copyright 2019 ForgeRock AS. All Rights Reserved
+ *
+ * Use of this code requires a commercial software license with ForgeRock AS.
+ * or with one of its affiliates. All use shall be exclusively subject
+ * to such license between the licensee and ForgeRock AS.
+ */
+package com.forgerock.openbanking.jwkms.jwks;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Base64;
+import java.util.Collection;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * The serialized JWKS documents of the jwk_uri endpoints, with their strong ETag, by application.
+ *
+ * /api/jwk/jwk_uri answers with the JWKS of its caller, so its documents are kept apart from the ones of
+ * /api/application/{applicationId}/jwk_uri, under the {@link #callerKey(String)} of the calling application, and are
+ * invalidated with them.
+ *
+ * A document is invalidated when this replica rotates the keys of its application, and all of them at the time of the
+ * rotationScheduler and of the keysCleanup. The documents also expire after a while, so that the keys rotated by the
+ * other replicas are published without waiting for the next cleanup.
+ */
+@Component
+@Slf4j
+public class JwksCache {
+
+    private static final String CALLER_PREFIX = "caller:";
+
+    private final Duration timeToLive;
+    private final Map<String, Jwks> documents = new ConcurrentHashMap<>();
+
+    public JwksCache(@Value("${jwkms.jwks-cache.time-to-live:PT1M}") Duration timeToLive) {
+        this.timeToLive = timeToLive;
+    }
+
+    /**
+     * The document of an application, or null if it isn't cached or has expired.
+     */
+    public Jwks get(String applicationId) {
+        Jwks jwks = documents.get(applicationId);
+        if (jwks == null || !Instant.now().isBefore(jwks.getCachedAt().plus(timeToLive))) {
+            return null;
+        }
+        return jwks;
+    }
+
+    public Jwks put(String applicationId, byte[] body, String contentType) {
+        Jwks jwks = new Jwks(body, contentType, etag(body), Instant.now());
+        documents.put(applicationId, jwks);
+        return jwks;
+    }
+
+    public void invalidate(String applicationId) {
+        documents.remove(applicationId);
+        documents.remove(callerKey(applicationId));
+    }
+
+    public void invalidate(Collection<String> applicationIds) {
+        applicationIds.forEach(this::invalidate);
+    }
+
+    /**
+     * The key of the JWKS /api/jwk/jwk_uri answers an application with.
+     */
+    public static String callerKey(String applicationId) {
+        return CALLER_PREFIX + applicationId;
+    }
+
+    @Scheduled(cron = "${jwkms.rotationScheduler}")
+    public void invalidateOnRotation() {
+        log.debug("Invalidate the {} cached JWKS on the key rotation", documents.size());
+        documents.clear();
+    }
+
+    @Scheduled(cron = "${jwkms.keysCleanup}")
+    public void invalidateOnCleanup() {
+        log.debug("Invalidate the {} cached JWKS on the keys cleanup", documents.size());
+        documents.clear();
+    }
+
+    private static String etag(byte[] body) {
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-256").digest(body);
+            return '"' + Base64.getUrlEncoder().withoutPadding().encodeToString(digest) + '"';
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * A serialized JWKS document.
+     */
+    @lombok.Value
+    public static class Jwks {
+        byte[] body;
+        String contentType;
+        String etag;
+        Instant cachedAt;
+    }
+}
@@ -0,0 +1,155 @@
+/**
+ * Copyright 2019 ForgeRock AS. All Rights Reserved
+ *
+ * Use of this code requires a commercial software license with ForgeRock AS.
+ * or with one of its affiliates. All use shall be exclusively subject
+ * to such license between the licensee and ForgeRock AS.
+ */
+package com.forgerock.openbanking.jwkms.jwks;
+
+import com.forgerock.openbanking.jwkms.crypto.InternalApplicationResolver;
+import com.forgerock.openbanking.jwkms.model.Application;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
+import org.springframework.http.CacheControl;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpMethod;
+import org.springframework.stereotype.Component;
+import org.springframework.web.filter.OncePerRequestFilter;
+import org.springframework.web.util.ContentCachingResponseWrapper;
+import org.springframework.web.util.UrlPathHelper;
+
+import javax.servlet.FilterChain;
+import javax.servlet.ServletException;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Serves the JWKS of the jwk_uri endpoints from the {@link JwksCache}, with a strong ETag and a max-age of the
+ * expiration window of the keys, and answers 304 to the clients which already have the document.
+ *
+ * A document missing from the cache is built by the controller of the endpoint and its response cached. Any other
+ * request changing an application, like a forced rotation of its keys, invalidates its document.
+ *
+ * /api/jwk/jwk_uri answers with the keys of the application calling it, so its document is cached by caller, and not
+ * cached at all when the application of the caller can't be resolved.
+ */
+@Component
+// Around the LeasedSigningKeysFilter, so that the leased keys are cached with the JWKS
+@Order(Ordered.LOWEST_PRECEDENCE - 1)
+@Slf4j
+public class JwksCacheFilter extends OncePerRequestFilter {
+
+    private static final Pattern APPLICATION_PATH = Pattern.compile("^/api/application/([^/]+)(/.*)?$");
+    private static final String JWK_URI = "/jwk_uri";
+    private static final String JWKMS_JWK_URI = "/api/jwk/jwk_uri";
+
+    private final JwksCache jwksCache;
+    private final InternalApplicationResolver internalApplicationResolver;
+    private final boolean enabled;
+    private final String cacheControl;
+    private final UrlPathHelper urlPathHelper = new UrlPathHelper();
+
+    public JwksCacheFilter(JwksCache jwksCache,
+                           InternalApplicationResolver internalApplicationResolver,
+                           @Value("${jwkms.jwks-cache.enabled:false}") boolean enabled,
+                           @Value("${jwkms.ExpirationWindowInMillis}") long expirationWindowInMillis) {
+        this.jwksCache = jwksCache;
+        this.internalApplicationResolver = internalApplicationResolver;
+        this.enabled = enabled;
+        this.cacheControl = CacheControl.maxAge(expirationWindowInMillis, TimeUnit.MILLISECONDS).getHeaderValue();
+    }
+
+    @Override
+    protected boolean shouldNotFilter(HttpServletRequest request) {
+        return !enabled;
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain filterChain)
+            throws ServletException, IOException {
+        String path = urlPathHelper.getPathWithinApplication(request);
+        String applicationId = null;
+        boolean jwkUri = false;
+        Matcher matcher = APPLICATION_PATH.matcher(path);
+        if (matcher.matches()) {
+            applicationId = matcher.group(1);
+            jwkUri = JWK_URI.equals(matcher.group(2));
+        } else if (JWKMS_JWK_URI.equals(path) && HttpMethod.GET.matches(request.getMethod())) {
+            Application caller = internalApplicationResolver.resolve(request);
+            if (caller == null) {
+                filterChain.doFilter(request, response);
+                return;
+            }
+            applicationId = JwksCache.callerKey(caller.getIssuerId());
+            jwkUri = true;
+        }
+        if (applicationId == null) {
+            filterChain.doFilter(request, response);
+            return;
+        }
+        if (!HttpMethod.GET.matches(request.getMethod())) {
+            try {
+                filterChain.doFilter(request, response);
+            } finally {
+                jwksCache.invalidate(applicationId);
+            }
+            return;
+        }
+        if (!jwkUri || request.getQueryString() != null) {
+            filterChain.doFilter(request, response);
+            return;
+        }
+
+        JwksCache.Jwks jwks = jwksCache.get(applicationId);
+        if (jwks == null) {
+            ContentCachingResponseWrapper responseWrapper = new ContentCachingResponseWrapper(response);
+            filterChain.doFilter(request, responseWrapper);
+            if (responseWrapper.getStatus() != HttpServletResponse.SC_OK) {
+                responseWrapper.copyBodyToResponse();
+                return;
+            }
+            jwks = jwksCache.put(applicationId, responseWrapper.getContentAsByteArray(), responseWrapper.getContentType());
+            log.debug("Cached the JWKS of '{}' with the ETag {}", applicationId, jwks.getEtag());
+        }
+        write(jwks, request, response);
+    }
+
+    private void write(JwksCache.Jwks jwks, HttpServletRequest request, HttpServletResponse response) throws IOException {
+        response.setHeader(HttpHeaders.ETAG, jwks.getEtag());
+        response.setHeader(HttpHeaders.CACHE_CONTROL, cacheControl);
+        if (matches(request.getHeader(HttpHeaders.IF_NONE_MATCH), jwks.getEtag())) {
+            response.setStatus(HttpServletResponse.SC_NOT_MODIFIED);
+            return;
+        }
+        response.setStatus(HttpServletResponse.SC_OK);
+        if (jwks.getContentType() != null) {
+            response.setContentType(jwks.getContentType());
+        }
+        response.setContentLength(jwks.getBody().length);
+        response.getOutputStream().write(jwks.getBody());
+    }
+
+    private static boolean matches(String ifNoneMatch, String etag) {
+        if (ifNoneMatch == null) {
+            return false;
+        }
+        for (String candidate : ifNoneMatch.split(",")) {
+            candidate = candidate.trim();
+            // If-None-Match uses the weak comparison
+            if (candidate.startsWith("W/")) {
+                candidate = candidate.substring(2);
+            }
+            if (candidate.equals("*") || candidate.equals(etag)) {
+                return true;
+            }
+        }
+        return false;
+    }
+}
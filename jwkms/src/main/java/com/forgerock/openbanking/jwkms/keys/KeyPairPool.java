@@ -0,0 +1,309 @@
+/**
+ * Copyright 2019 ForgeRock AS. All Rights Reserved
+ *
+ * Use of this code requires a commercial software license with ForgeRock AS.
+ * or with one of its affiliates. All use shall be exclusively subject
+ * to such license between the licensee and ForgeRock AS.
+ */
+package com.forgerock.openbanking.jwkms.keys;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.security.KeyPair;
+import java.security.KeyPairGenerator;
+import java.security.NoSuchAlgorithmException;
+import java.security.Provider;
+import java.security.Security;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * RSA key pairs generated ahead of time, so that the registration of an application or a forced rotation doesn't
+ * wait for the generation of its keys.
+ *
+ * There is a pool per key size, refilled up to its capacity by a dedicated thread once its depth falls to the low-water
+ * mark. A key pair is taken from the pool without waiting, or generated on the calling thread when the pool is dry or
+ * doesn't have the key size.
+ *
+ * The application service of the jwkms library generates its keys with the RSA key pair generator of the JCA, so the
+ * pool is registered as the first security provider of the RSA key pair generators, but it only serves the key
+ * generation wrapped in {@link #withPooledKeyPairs(Runnable)}, like the key rotation and the registration of an
+ * application. Anywhere else in the JVM, its generators delegate to the provider the JCA would have picked, and the
+ * generators asked for a given provider, like BouncyCastle, never come from the pool.
+ *
+ * Nothing forces the library to generate with the JCA: a pooled key generation which took no key pair from the pool is
+ * counted by the "jwkms.key-pair-pool.bypassed" metric and logged, the pool is then only a cost and should be disabled.
+ */
+@Component
+@Slf4j
+public class KeyPairPool {
+
+    public static final String METRIC_PREFIX = "jwkms.key-pair-pool";
+    static final String ALGORITHM = "RSA";
+
+    private final boolean enabled;
+    private final int[] keySizes;
+    private final int capacity;
+    private final int lowWaterMark;
+    private final MeterRegistry meterRegistry;
+    private final Provider generatorProvider;
+    private final Map<Integer, Pool> pools = new ConcurrentHashMap<>();
+    private final Counter unpooled;
+    private final Counter bypassed;
+    private final ThreadLocal<Scope> serving = new ThreadLocal<>();
+
+    private volatile boolean running;
+    private ExecutorService executor;
+    private PooledKeyPairProvider pooledKeyPairProvider;
+
+    public KeyPairPool(@Value("${jwkms.key-pair-pool.enabled:false}") boolean enabled,
+                       @Value("${jwkms.key-pair-pool.key-sizes:2048,4096}") int[] keySizes,
+                       @Value("${jwkms.key-pair-pool.capacity:32}") int capacity,
+                       @Value("${jwkms.key-pair-pool.low-water-mark:8}") int lowWaterMark,
+                       MeterRegistry meterRegistry) throws NoSuchAlgorithmException {
+        this.enabled = enabled;
+        this.keySizes = keySizes;
+        this.capacity = capacity;
+        this.lowWaterMark = lowWaterMark;
+        this.meterRegistry = meterRegistry;
+        // The provider the key pairs are actually generated with, before the pool becomes the first one
+        this.generatorProvider = KeyPairGenerator.getInstance(ALGORITHM).getProvider();
+        this.unpooled = Counter.builder(METRIC_PREFIX + ".unpooled")
+                .description("The key pairs generated on the calling thread for a key size without pool")
+                .register(meterRegistry);
+        this.bypassed = Counter.builder(METRIC_PREFIX + ".bypassed")
+                .description("The pooled key generations which didn't take any key pair from the pool")
+                .register(meterRegistry);
+    }
+
+    @PostConstruct
+    public synchronized void start() {
+        if (!enabled || running) {
+            return;
+        }
+        AtomicInteger threads = new AtomicInteger();
+        executor = Executors.newFixedThreadPool(keySizes.length, runnable -> {
+            Thread thread = new Thread(runnable, "key-pair-pool-" + threads.incrementAndGet());
+            thread.setDaemon(true);
+            thread.setPriority(Thread.MIN_PRIORITY);
+            return thread;
+        });
+        for (int keySize : keySizes) {
+            pools.put(keySize, new Pool(keySize));
+        }
+        // The pools are all there before a key pair is taken from them
+        running = true;
+        pools.values().forEach(this::refill);
+        pooledKeyPairProvider = new PooledKeyPairProvider(this);
+        Security.insertProviderAt(pooledKeyPairProvider, 1);
+        log.info("Started the pools of RSA key pairs of sizes {}", pools.keySet());
+    }
+
+    @PreDestroy
+    public synchronized void stop() {
+        if (!running) {
+            return;
+        }
+        running = false;
+        Security.removeProvider(pooledKeyPairProvider.getName());
+        executor.shutdownNow();
+        try {
+            executor.awaitTermination(10, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        pools.clear();
+    }
+
+    /**
+     * Take a key pair from the pool, or generate it if the pool is dry.
+     */
+    public KeyPair take(int keySize) {
+        Pool pool = running ? pools.get(keySize) : null;
+        if (pool == null) {
+            unpooled.increment();
+            return generate(keySize);
+        }
+        long start = System.nanoTime();
+        KeyPair keyPair = pool.keyPairs.poll();
+        if (pool.keyPairs.size() <= lowWaterMark) {
+            refill(pool);
+        }
+        if (keyPair == null) {
+            pool.misses.increment();
+            keyPair = generate(keySize);
+        }
+        pool.wait.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+        return keyPair;
+    }
+
+    /**
+     * Run a key generation with the RSA key pairs of the pool: the RSA key pair generators of the JCA the calling thread
+     * gets without asking for a provider take their key pairs from the pool.
+     *
+     * @return the number of key pairs the key generation took from the pool
+     */
+    public int withPooledKeyPairs(Runnable keyGeneration) {
+        int served;
+        try (Serving scope = serve()) {
+            keyGeneration.run();
+            served = scope.served();
+        }
+        if (running && served == 0) {
+            bypassed.increment();
+            log.warn("A pooled key generation didn't take any key pair from the pool, it doesn't generate its RSA keys "
+                    + "with the key pair generator of the JCA");
+        }
+        return served;
+    }
+
+    /**
+     * Serve the RSA key pair generators of the calling thread from the pool, until the returned scope is closed.
+     */
+    public Serving serve() {
+        Scope scope = new Scope(serving.get());
+        serving.set(scope);
+        return scope;
+    }
+
+    /**
+     * Whether the RSA key pair generators of the calling thread are served by the pool.
+     */
+    public boolean isServing() {
+        return running && serving.get() != null;
+    }
+
+    /**
+     * The key pair of an RSA key pair generator of the JCA, from the pool if the calling thread is served by it.
+     */
+    KeyPair generateForJca(int keySize) {
+        Scope scope = serving.get();
+        if (!running || scope == null) {
+            return generate(keySize);
+        }
+        scope.served++;
+        return take(keySize);
+    }
+
+    /**
+     * The number of key pairs ready for a key size.
+     */
+    public int depth(int keySize) {
+        Pool pool = pools.get(keySize);
+        return pool != null ? pool.keyPairs.size() : 0;
+    }
+
+    KeyPair generate(int keySize) {
+        try {
+            KeyPairGenerator generator = KeyPairGenerator.getInstance(ALGORITHM, generatorProvider);
+            generator.initialize(keySize);
+            return generator.generateKeyPair();
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("The provider " + generatorProvider.getName() + " can't generate RSA key pairs", e);
+        }
+    }
+
+    Provider getGeneratorProvider() {
+        return generatorProvider;
+    }
+
+    private void refill(Pool pool) {
+        if (!running || !pool.refilling.compareAndSet(false, true)) {
+            return;
+        }
+        executor.execute(() -> {
+            try {
+                while (running && pool.keyPairs.remainingCapacity() > 0) {
+                    pool.keyPairs.offer(generate(pool.keySize));
+                }
+            } catch (RuntimeException e) {
+                log.warn("Can't refill the pool of RSA {} key pairs", pool.keySize, e);
+            } finally {
+                pool.refilling.set(false);
+            }
+            // A key pair taken while the refill was ending
+            if (pool.keyPairs.size() <= lowWaterMark) {
+                refill(pool);
+            }
+        });
+    }
+
+    /**
+     * The key generation served by the pool, on the thread which opened it.
+     */
+    public interface Serving extends AutoCloseable {
+
+        /**
+         * The number of key pairs taken from the pool in this scope so far.
+         */
+        int served();
+
+        @Override
+        void close();
+    }
+
+    private class Scope implements Serving {
+
+        private final Scope previous;
+        private int served;
+
+        private Scope(Scope previous) {
+            this.previous = previous;
+        }
+
+        @Override
+        public int served() {
+            return served;
+        }
+
+        @Override
+        public void close() {
+            if (previous != null) {
+                serving.set(previous);
+            } else {
+                serving.remove();
+            }
+        }
+    }
+
+    private class Pool {
+
+        private final int keySize;
+        private final BlockingQueue<KeyPair> keyPairs = new ArrayBlockingQueue<>(capacity);
+        private final AtomicBoolean refilling = new AtomicBoolean();
+        private final Counter misses;
+        private final Timer wait;
+
+        private Pool(int keySize) {
+            this.keySize = keySize;
+            String size = Integer.toString(keySize);
+            Gauge.builder(METRIC_PREFIX + ".depth", keyPairs, BlockingQueue::size)
+                    .description("The key pairs ready in the pool")
+                    .tag("size", size)
+                    .register(meterRegistry);
+            this.misses = Counter.builder(METRIC_PREFIX + ".misses")
+                    .description("The key pairs generated on the calling thread as the pool was dry")
+                    .tag("size", size)
+                    .register(meterRegistry);
+            this.wait = Timer.builder(METRIC_PREFIX + ".wait")
+                    .description("The time to get a key pair, from the pool or generated as the pool was dry")
+                    .tag("size", size)
+                    .register(meterRegistry);
+        }
+    }
+}
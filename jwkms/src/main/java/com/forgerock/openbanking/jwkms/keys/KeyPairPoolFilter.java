@@ -0,0 +1,51 @@
+/**
+ * Copyright 2019 ForgeRock AS. All Rights Reserved
+ *
+ * Use of this code requires a commercial software license with ForgeRock AS.
+ * or with one of its affiliates. All use shall be exclusively subject
+ * to such license between the licensee and ForgeRock AS.
+ */
+package com.forgerock.openbanking.jwkms.keys;
+
+import org.springframework.http.HttpMethod;
+import org.springframework.stereotype.Component;
+import org.springframework.web.filter.OncePerRequestFilter;
+import org.springframework.web.util.UrlPathHelper;
+
+import javax.servlet.FilterChain;
+import javax.servlet.ServletException;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
+
+/**
+ * Serves the keys generated by the requests changing an application, like its registration or a forced rotation of its
+ * keys, from the {@link KeyPairPool}.
+ */
+@Component
+public class KeyPairPoolFilter extends OncePerRequestFilter {
+
+    private static final String APPLICATION_PATH = "/api/application";
+
+    private final KeyPairPool keyPairPool;
+    private final UrlPathHelper urlPathHelper = new UrlPathHelper();
+
+    public KeyPairPoolFilter(KeyPairPool keyPairPool) {
+        this.keyPairPool = keyPairPool;
+    }
+
+    @Override
+    protected boolean shouldNotFilter(HttpServletRequest request) {
+        String path = urlPathHelper.getPathWithinApplication(request);
+        return HttpMethod.GET.matches(request.getMethod())
+                || !(path.equals(APPLICATION_PATH) || path.startsWith(APPLICATION_PATH + "/"));
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain filterChain)
+            throws ServletException, IOException {
+        try (KeyPairPool.Serving ignored = keyPairPool.serve()) {
+            filterChain.doFilter(request, response);
+        }
+    }
+}
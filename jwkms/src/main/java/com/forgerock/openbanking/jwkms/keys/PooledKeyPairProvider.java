@@ -0,0 +1,82 @@
+/**
+ * Copyright 2019 ForgeRock AS. All Rights Reserved
+ *
+ * Use of this code requires a commercial software license with ForgeRock AS.
+ * or with one of its affiliates. All use shall be exclusively subject
+ * to such license between the licensee and ForgeRock AS.
+ */
+package com.forgerock.openbanking.jwkms.keys;
+
+import java.security.InvalidAlgorithmParameterException;
+import java.security.KeyPair;
+import java.security.KeyPairGenerator;
+import java.security.KeyPairGeneratorSpi;
+import java.security.NoSuchAlgorithmException;
+import java.security.Provider;
+import java.security.SecureRandom;
+import java.security.spec.AlgorithmParameterSpec;
+import java.security.spec.RSAKeyGenParameterSpec;
+
+/**
+ * The security provider of the RSA key pair generators served by the {@link KeyPairPool}.
+ *
+ * In the key generation of {@link KeyPairPool#withPooledKeyPairs(Runnable)}, a generator takes its key pair from the
+ * pool for the usual public exponent. Outside of it, or for any other parameters, it delegates to the provider the
+ * pool generates with, the one the JCA picks without the pool. The generators asked for a given provider, like
+ * BouncyCastle, are not served by the pool.
+ */
+class PooledKeyPairProvider extends Provider {
+
+    static final String NAME = "JwkMsKeyPairPool";
+    private static final int DEFAULT_KEY_SIZE = 2048;
+
+    PooledKeyPairProvider(KeyPairPool keyPairPool) {
+        super(NAME, 1.0, "RSA key pairs from the jwkms key pair pool");
+        putService(new Service(this, "KeyPairGenerator", KeyPairPool.ALGORITHM, PooledKeyPairGenerator.class.getName(), null, null) {
+            @Override
+            public Object newInstance(Object constructorParameter) {
+                return new PooledKeyPairGenerator(keyPairPool);
+            }
+        });
+    }
+
+    static class PooledKeyPairGenerator extends KeyPairGeneratorSpi {
+
+        private final KeyPairPool keyPairPool;
+        private int keySize = DEFAULT_KEY_SIZE;
+        private KeyPairGenerator delegate;
+
+        PooledKeyPairGenerator(KeyPairPool keyPairPool) {
+            this.keyPairPool = keyPairPool;
+        }
+
+        @Override
+        public void initialize(int keySize, SecureRandom random) {
+            this.keySize = keySize;
+            this.delegate = null;
+        }
+
+        @Override
+        public void initialize(AlgorithmParameterSpec params, SecureRandom random) throws InvalidAlgorithmParameterException {
+            if (params instanceof RSAKeyGenParameterSpec
+                    && RSAKeyGenParameterSpec.F4.equals(((RSAKeyGenParameterSpec) params).getPublicExponent())) {
+                initialize(((RSAKeyGenParameterSpec) params).getKeysize(), random);
+                return;
+            }
+            try {
+                delegate = KeyPairGenerator.getInstance(KeyPairPool.ALGORITHM, keyPairPool.getGeneratorProvider());
+            } catch (NoSuchAlgorithmException e) {
+                throw new InvalidAlgorithmParameterException(e);
+            }
+            delegate.initialize(params, random);
+        }
+
+        @Override
+        public KeyPair generateKeyPair() {
+            if (delegate != null) {
+                return delegate.generateKeyPair();
+            }
+            return keyPairPool.generateForJca(keySize);
+        }
+    }
+}
@@ -0,0 +1,26 @@
+/**
+ * Copyright 2019 ForgeRock AS. All Rights Reserved
+ *
+ * Use of this code requires a commercial software license with ForgeRock AS.
+ * or with one of its affiliates. All use shall be exclusively subject
+ * to such license between the licensee and ForgeRock AS.
+ */
+package com.forgerock.openbanking.jwkms.rotation;
+
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+
+/**
+ * Rotates the keys of a batch of applications, for the {@link KeyRotationEngine}.
+ */
+public interface ApplicationKeyRotator {
+
+    /**
+     * Rotate the keys of some applications and save them.
+     *
+     * @param applicationIds the ids of the applications of the batch
+     * @param pool the pool to generate the keys on
+     * @return the number of applications rotated, the others having failed
+     */
+    int rotate(List<String> applicationIds, ForkJoinPool pool);
+}
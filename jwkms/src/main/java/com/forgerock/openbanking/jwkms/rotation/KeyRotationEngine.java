@@ -0,0 +1,213 @@
+/**
+ * Copyright 2019 ForgeRock AS. All Rights Reserved
+ *
+ * Use of this code requires a commercial software license with ForgeRock AS.
+ * or with one of its affiliates. All use shall be exclusively subject
+ * to such license between the licensee and ForgeRock AS.
+ */
+package com.forgerock.openbanking.jwkms.rotation;
+
+import com.forgerock.openbanking.jwkms.model.Application;
+import lombok.extern.slf4j.Slf4j;
+import org.bson.Document;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.scheduling.support.CronSequenceGenerator;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PreDestroy;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.stream.Collectors;
+
+/**
+ * The rotation of the keys of all the applications, shared by the jwkms replicas.
+ *
+ * The applications are split in groups by the hash of their id, so every replica rotates the groups the others haven't
+ * taken yet, starting from a random group. A replica takes a group of a run with a {@link KeyRotationGroup} document,
+ * named after the scheduled time of the run, holds it while it rotates the group by renewing it after every batch, and
+ * marks it as rotated once done: a replica starting late never rotates a group of the same run again, and another
+ * replica only takes over a group whose replica didn't renew it for the claim timeout, like one that stopped. The
+ * applications of a group are rotated by batches, the keys of a batch being generated in parallel on a bounded pool.
+ *
+ * The engine replaces the key rotation job of the jwkms library, which rotates every application under a single lock:
+ * when the engine is enabled, that job must be disabled with a jwkms.rotationScheduler of "-", otherwise the keys would
+ * be rotated twice.
+ */
+@Component
+@Slf4j
+public class KeyRotationEngine {
+
+    private static final String ID = "_id";
+    // The replicas start a run at its scheduled time, give or take a few seconds
+    private static final long RUN_START_DELAY = 60_000;
+    private static final Duration RETENTION = Duration.ofDays(7);
+
+    private final MongoTemplate mongoTemplate;
+    private final ApplicationKeyRotator applicationKeyRotator;
+    private final boolean enabled;
+    private final int groups;
+    private final int batchSize;
+    private final Duration claimTimeout;
+    private final String cron;
+    private final String owner = UUID.randomUUID().toString();
+    private final ForkJoinPool pool;
+
+    public KeyRotationEngine(MongoTemplate mongoTemplate, ApplicationKeyRotator applicationKeyRotator,
+                             @Value("${jwkms.rotation-engine.enabled:false}") boolean enabled,
+                             @Value("${jwkms.rotation-engine.groups:16}") int groups,
+                             @Value("${jwkms.rotation-engine.parallelism:4}") int parallelism,
+                             @Value("${jwkms.rotation-engine.batch-size:100}") int batchSize,
+                             @Value("${jwkms.rotation-engine.claim-timeout:PT5M}") Duration claimTimeout,
+                             @Value("${jwkms.rotation-engine.cron:0 0 1 * * *}") String cron,
+                             @Value("${jwkms.rotationScheduler}") String rotationScheduler) {
+        if (enabled && !Scheduled.CRON_DISABLED.equals(rotationScheduler)) {
+            throw new IllegalStateException("The rotation engine replaces the key rotation job of the library, "
+                    + "set jwkms.rotationScheduler to \"-\" instead of \"" + rotationScheduler + "\"");
+        }
+        this.mongoTemplate = mongoTemplate;
+        this.applicationKeyRotator = applicationKeyRotator;
+        this.enabled = enabled;
+        this.groups = groups;
+        this.batchSize = batchSize;
+        this.claimTimeout = claimTimeout;
+        this.cron = cron;
+        this.pool = new ForkJoinPool(parallelism);
+    }
+
+    @Scheduled(cron = "${jwkms.rotation-engine.cron:0 0 1 * * *}")
+    public void rotateAll() {
+        if (!enabled) {
+            return;
+        }
+        long start = System.currentTimeMillis();
+        Date runId = scheduledTime(cron, new Date(start));
+        int rotated = rotate(runId, applicationIds());
+        log.info("Rotated the keys of {} applications of the run of {} in {}ms", rotated, runId.toInstant(),
+                System.currentTimeMillis() - start);
+    }
+
+    /**
+     * The scheduled time of the run started now, the same for all the replicas.
+     */
+    public static Date scheduledTime(String cron, Date now) {
+        return new CronSequenceGenerator(cron).next(new Date(now.getTime() - RUN_START_DELAY));
+    }
+
+    /**
+     * Rotate the keys of the applications of the groups of a run no replica has taken.
+     *
+     * @param runId the scheduled time of the run
+     * @return the number of applications rotated by this replica
+     */
+    public int rotate(Date runId, List<String> applicationIds) {
+        List<List<String>> applicationsByGroup = new ArrayList<>(groups);
+        for (int group = 0; group < groups; group++) {
+            applicationsByGroup.add(new ArrayList<>());
+        }
+        for (String applicationId : applicationIds) {
+            applicationsByGroup.get(group(applicationId)).add(applicationId);
+        }
+        int rotated = 0;
+        int first = ThreadLocalRandom.current().nextInt(groups);
+        for (int i = 0; i < groups; i++) {
+            int group = (first + i) % groups;
+            List<String> groupApplicationIds = applicationsByGroup.get(group);
+            if (groupApplicationIds.isEmpty()) {
+                continue;
+            }
+            if (!claim(runId, group)) {
+                log.debug("The group {} of the key rotation is taken by another replica", group);
+                continue;
+            }
+            rotated += rotateGroup(KeyRotationGroup.id(runId, group), group, groupApplicationIds);
+        }
+        return rotated;
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        pool.shutdownNow();
+    }
+
+    private int group(String applicationId) {
+        return Math.floorMod(applicationId.hashCode(), groups);
+    }
+
+    private int rotateGroup(String id, int group, List<String> applicationIds) {
+        int rotated = 0;
+        for (int from = 0; from < applicationIds.size(); from += batchSize) {
+            List<String> batch = applicationIds.subList(from, Math.min(from + batchSize, applicationIds.size()));
+            try {
+                rotated += applicationKeyRotator.rotate(batch, pool);
+            } catch (RuntimeException e) {
+                // The next batches are independent
+                log.error("Can't rotate the keys of a batch of {} applications of the group {}", batch.size(), group, e);
+            }
+            if (!hold(id, Update.update(KeyRotationGroup.HELD_UNTIL, heldUntil()))) {
+                log.warn("The group {} of the key rotation was taken over by another replica after {} applications",
+                        group, rotated);
+                return rotated;
+            }
+        }
+        hold(id, Update.update(KeyRotationGroup.COMPLETED_AT, new Date()));
+        log.debug("Rotated the keys of {} of the {} applications of the group {}", rotated, applicationIds.size(), group);
+        return rotated;
+    }
+
+    /**
+     * Take a group of a run, unless it was rotated or another replica holds it.
+     */
+    private boolean claim(Date runId, int group) {
+        Query query = new Query(Criteria.where(ID).is(KeyRotationGroup.id(runId, group))
+                .and(KeyRotationGroup.COMPLETED_AT).is(null)
+                .and(KeyRotationGroup.HELD_UNTIL).lt(new Date()));
+        Update update = new Update()
+                .set(KeyRotationGroup.OWNER, owner)
+                .set(KeyRotationGroup.HELD_UNTIL, heldUntil())
+                .setOnInsert(KeyRotationGroup.RUN_ID, runId)
+                .setOnInsert(KeyRotationGroup.GROUP, group)
+                .setOnInsert(KeyRotationGroup.EXPIRES_AT, new Date(runId.getTime() + RETENTION.toMillis()));
+        try {
+            // The upsert of a group of the run which doesn't match inserts it again, failing on its id
+            mongoTemplate.upsert(query, update, KeyRotationGroup.class);
+            return true;
+        } catch (DuplicateKeyException e) {
+            return false;
+        }
+    }
+
+    /**
+     * Update a group this replica holds.
+     *
+     * @return false if another replica took it over
+     */
+    private boolean hold(String id, Update update) {
+        Query query = new Query(Criteria.where(ID).is(id)
+                .and(KeyRotationGroup.OWNER).is(owner)
+                .and(KeyRotationGroup.COMPLETED_AT).is(null));
+        return mongoTemplate.updateFirst(query, update, KeyRotationGroup.class).getMatchedCount() > 0;
+    }
+
+    private Date heldUntil() {
+        return new Date(System.currentTimeMillis() + claimTimeout.toMillis());
+    }
+
+    private List<String> applicationIds() {
+        Query query = new Query();
+        query.fields().include(ID);
+        return mongoTemplate.find(query, Document.class, mongoTemplate.getCollectionName(Application.class)).stream()
+                .map(document -> String.valueOf(document.get(ID)))
+                .collect(Collectors.toList());
+    }
+}
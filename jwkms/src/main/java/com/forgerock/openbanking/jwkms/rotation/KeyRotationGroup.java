@@ -0,0 +1,52 @@
+/**
+ * Copyright 2019 ForgeRock AS. All Rights Reserved
+ *
+ * Use of this code requires a commercial software license with ForgeRock AS.
+ * or with one of its affiliates. All use shall be exclusively subject
+ * to such license between the licensee and ForgeRock AS.
+ */
+package com.forgerock.openbanking.jwkms.rotation;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.index.Indexed;
+import org.springframework.data.mongodb.core.mapping.Document;
+
+import java.util.Date;
+
+/**
+ * A group of applications of a run of the {@link KeyRotationEngine}: the replica rotating it, until when it holds it,
+ * and when it was rotated.
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Document(collection = "keyRotationGroups")
+public class KeyRotationGroup {
+
+    public static final String RUN_ID = "runId";
+    public static final String GROUP = "group";
+    public static final String OWNER = "owner";
+    public static final String HELD_UNTIL = "heldUntil";
+    public static final String COMPLETED_AT = "completedAt";
+    public static final String EXPIRES_AT = "expiresAt";
+
+    /**
+     * The scheduled time of the run and the group.
+     */
+    @Id
+    private String id;
+    private Date runId;
+    private int group;
+    private String owner;
+    private Date heldUntil;
+    private Date completedAt;
+    @Indexed(expireAfterSeconds = 0)
+    private Date expiresAt;
+
+    public static String id(Date runId, int group) {
+        return runId.toInstant() + "-" + group;
+    }
+}
@@ -0,0 +1,79 @@
+/**
+ * Copyright 2019 ForgeRock AS. All Rights Reserved
+ *
+ * Use of this code requires a commercial software license with ForgeRock AS.
+ * or with one of its affiliates. All use shall be exclusively subject
+ * to such license between the licensee and ForgeRock AS.
+ */
+package com.forgerock.openbanking.jwkms.rotation;
+
+import com.forgerock.openbanking.jwkms.jwks.JwksCache;
+import com.forgerock.openbanking.jwkms.keys.KeyPairPool;
+import com.forgerock.openbanking.jwkms.model.Application;
+import com.forgerock.openbanking.jwkms.service.application.ApplicationService;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.stereotype.Component;
+
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.ForkJoinPool;
+import java.util.stream.Collectors;
+
+/**
+ * Rotates the signing and transport keys of the applications of a batch in parallel with the application service, with
+ * the RSA key pairs of the {@link KeyPairPool}, then invalidates the cached JWKS of the applications rotated.
+ *
+ * The application service saves an application once its keys are rotated, as it does for the key rotation job of the
+ * library, so the rotator doesn't write the applications again: the gain of the engine is the parallel generation of
+ * the key pairs and the groups shared by the replicas, not fewer writes.
+ */
+@Component
+@Slf4j
+public class MongoApplicationKeyRotator implements ApplicationKeyRotator {
+
+    private static final String ID = "_id";
+
+    private final MongoTemplate mongoTemplate;
+    private final ApplicationService applicationService;
+    private final JwksCache jwksCache;
+    private final KeyPairPool keyPairPool;
+
+    public MongoApplicationKeyRotator(MongoTemplate mongoTemplate, ApplicationService applicationService, JwksCache jwksCache,
+                                      KeyPairPool keyPairPool) {
+        this.mongoTemplate = mongoTemplate;
+        this.applicationService = applicationService;
+        this.jwksCache = jwksCache;
+        this.keyPairPool = keyPairPool;
+    }
+
+    @Override
+    public int rotate(List<String> applicationIds, ForkJoinPool pool) {
+        List<Application> applications = mongoTemplate.find(new Query(Criteria.where(ID).in(applicationIds)), Application.class);
+        List<String> rotated = pool.submit(() -> applications.parallelStream()
+                .map(this::rotate)
+                .filter(Objects::nonNull)
+                .collect(Collectors.toList()))
+                .join();
+        if (!rotated.isEmpty()) {
+            jwksCache.invalidate(rotated);
+        }
+        return rotated.size();
+    }
+
+    private String rotate(Application application) {
+        try {
+            keyPairPool.withPooledKeyPairs(() -> {
+                applicationService.rotateKeys(application);
+                applicationService.rotateTransportKeys(application);
+            });
+            return application.getIssuerId();
+        } catch (RuntimeException e) {
+            // The application keeps its keys until the next rotation
+            log.error("Can't rotate the keys of the application {}", application.getIssuerId(), e);
+            return null;
+        }
+    }
+}
@@ -0,0 +1,126 @@
+/**
+ * Copyright 2019 ForgeRock AS. All Rights Reserved
+ *
+ * Use of this code requires a commercial software license with ForgeRock AS.
+ * or with one of its affiliates. All use shall be exclusively subject
+ * to such license between the licensee and ForgeRock AS.
+ */
+package jwkms.crypto;
+
+import com.forgerock.cdr.common.crypto.BatchSignRequest;
+import com.forgerock.cdr.common.crypto.BatchSignResponse;
+import com.forgerock.cdr.common.crypto.BatchVerifyRequest;
+import com.forgerock.cdr.common.crypto.BatchVerifyResponse;
+import com.forgerock.cdr.common.crypto.DetachedSignatureHeader;
+import com.forgerock.openbanking.jwkms.crypto.BatchCryptoApiController;
+import com.forgerock.openbanking.jwkms.crypto.BatchCryptoService;
+import com.forgerock.openbanking.jwkms.crypto.InternalApplicationResolver;
+import com.forgerock.openbanking.jwkms.model.Application;
+import com.forgerock.openbanking.jwkms.model.JwkMsKey;
+import com.forgerock.openbanking.jwkms.service.application.ApplicationService;
+import com.nimbusds.jose.JWSObject;
+import com.nimbusds.jose.jwk.JWKSet;
+import com.nimbusds.jose.jwk.RSAKey;
+import com.nimbusds.jose.jwk.gen.RSAKeyGenerator;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.mock.web.MockHttpServletRequest;
+
+import java.util.Arrays;
+import java.util.Collections;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.BDDMockito.given;
+import static org.mockito.Mockito.mock;
+
+public class BatchCryptoApiControllerTest {
+
+    private static MockHttpServletRequest rsApi;
+
+    private ApplicationService applicationService;
+    private BatchCryptoService batchCryptoService;
+    private BatchCryptoApiController batchCryptoApiController;
+
+    @BeforeClass
+    public static void certificate() throws Exception {
+        rsApi = ClientCertificates.request("POST", "/api/crypto/batch/sign", "rs-api");
+    }
+
+    @Before
+    public void setUp() {
+        applicationService = mock(ApplicationService.class);
+        batchCryptoService = new BatchCryptoService("PS256", "openbanking.org.uk", 2);
+        batchCryptoApiController = new BatchCryptoApiController(new InternalApplicationResolver(applicationService),
+                batchCryptoService, 3);
+    }
+
+    @After
+    public void tearDown() {
+        batchCryptoService.shutdown();
+    }
+
+    @Test
+    public void shouldSignWithTheCurrentSigningKeyOfTheCaller() throws Exception {
+        // Given
+        RSAKey key = new RSAKeyGenerator(2048).keyID("kid-1").generate();
+        given(applicationService.getApplication("rs-api")).willReturn(application(key));
+
+        // When
+        ResponseEntity<BatchSignResponse> signed = batchCryptoApiController.sign(
+                new BatchSignRequest(Arrays.asList("a", "b"), true), rsApi);
+        ResponseEntity<BatchVerifyResponse> verified = batchCryptoApiController.verify(
+                new BatchVerifyRequest(new JWKSet(key.toPublicJWK()).toString(),
+                        signed.getBody().getSignatures(), Arrays.asList("a", "b")));
+
+        // Then
+        assertThat(signed.getStatusCode()).isEqualTo(HttpStatus.OK);
+        assertThat(signed.getBody().getSignatures()).hasSize(2);
+        assertThat(JWSObject.parse(signed.getBody().getSignatures().get(0)).getHeader()
+                .getCustomParam(DetachedSignatureHeader.OB_ISS)).isEqualTo("forgerock-rs");
+        assertThat(verified.getBody().getValid()).containsExactly(true, true);
+    }
+
+    @Test
+    public void shouldRejectABatchLargerThanTheMaximum() {
+        // When
+        ResponseEntity<BatchSignResponse> response = batchCryptoApiController.sign(
+                new BatchSignRequest(Arrays.asList("a", "b", "c", "d"), false), rsApi);
+
+        // Then
+        assertThat(response.getStatusCode()).isEqualTo(HttpStatus.BAD_REQUEST);
+    }
+
+    @Test
+    public void shouldNotSignForAnUnknownApplication() {
+        // When
+        ResponseEntity<BatchSignResponse> response = batchCryptoApiController.sign(
+                new BatchSignRequest(Collections.singletonList("a"), false), rsApi);
+
+        // Then
+        assertThat(response.getStatusCode()).isEqualTo(HttpStatus.NOT_FOUND);
+    }
+
+    @Test
+    public void shouldRejectAnInvalidJwks() {
+        // When
+        ResponseEntity<BatchVerifyResponse> response = batchCryptoApiController.verify(
+                new BatchVerifyRequest("{\"keys\":", Collections.singletonList("a.b.c"), null));
+
+        // Then
+        assertThat(response.getStatusCode()).isEqualTo(HttpStatus.BAD_REQUEST);
+    }
+
+    private static Application application(RSAKey key) {
+        JwkMsKey jwkMsKey = new JwkMsKey();
+        jwkMsKey.setJwk(key);
+        Application application = new Application();
+        application.setIssuerId("forgerock-rs");
+        application.getKeys().put(key.getKeyID(), jwkMsKey);
+        application.setCurrentSignKid(key.getKeyID());
+        return application;
+    }
+}
@@ -0,0 +1,143 @@
+/**
+ * Copyright 2019 ForgeRock AS. All Rights Reserved
+ *
+ * Use of this code requires a commercial software license with ForgeRock AS.
+ * or with one of its affiliates. All use shall be exclusively subject
+ * to such license between the licensee and ForgeRock AS.
+ */
+package jwkms.crypto;
+
+import com.forgerock.cdr.common.crypto.DetachedSignatureHeader;
+import com.forgerock.openbanking.jwkms.crypto.BatchCryptoService;
+import com.nimbusds.jose.JWSAlgorithm;
+import com.nimbusds.jose.JWSHeader;
+import com.nimbusds.jose.JWSObject;
+import com.nimbusds.jose.Payload;
+import com.nimbusds.jose.crypto.MACSigner;
+import com.nimbusds.jose.jwk.JWKSet;
+import com.nimbusds.jose.jwk.KeyUse;
+import com.nimbusds.jose.jwk.RSAKey;
+import com.nimbusds.jose.jwk.gen.RSAKeyGenerator;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.within;
+
+public class BatchCryptoServiceTest {
+
+    private static final String TAN = "openbanking.org.uk";
+
+    private static RSAKey signingKey;
+    private static RSAKey otherKey;
+
+    private BatchCryptoService batchCryptoService;
+
+    @BeforeClass
+    public static void generateKeys() throws Exception {
+        signingKey = new RSAKeyGenerator(2048).keyID("kid-1").keyUse(KeyUse.SIGNATURE).generate();
+        otherKey = new RSAKeyGenerator(2048).keyID("kid-2").keyUse(KeyUse.SIGNATURE).generate();
+    }
+
+    @Before
+    public void setUp() {
+        batchCryptoService = new BatchCryptoService("PS256", TAN, 4);
+    }
+
+    @After
+    public void tearDown() {
+        batchCryptoService.shutdown();
+    }
+
+    @Test
+    public void shouldSignThePayloadsInTheirOrder() throws Exception {
+        // Given
+        List<String> payloads = payloads(50);
+
+        // When
+        List<String> signatures = batchCryptoService.sign(signingKey, "rs-api", payloads, false);
+
+        // Then
+        assertThat(signatures).hasSize(50);
+        for (int i = 0; i < payloads.size(); i++) {
+            JWSObject jws = JWSObject.parse(signatures.get(i));
+            assertThat(jws.getPayload().toString()).isEqualTo(payloads.get(i));
+            assertThat(jws.getHeader().getAlgorithm()).isEqualTo(JWSAlgorithm.PS256);
+            assertThat(jws.getHeader().getKeyID()).isEqualTo("kid-1");
+        }
+        assertThat(batchCryptoService.verify(new JWKSet(signingKey), signatures, null)).containsOnly(true);
+    }
+
+    @Test
+    public void shouldVerifyTheDetachedSignaturesWithTheirPayloads() throws Exception {
+        // Given
+        List<String> payloads = payloads(10);
+        List<String> signatures = batchCryptoService.sign(signingKey, "rs-api", payloads, true);
+        List<String> tampered = new ArrayList<>(payloads);
+        tampered.set(3, "{\"amount\":\"1000000\"}");
+
+        // When
+        List<Boolean> valid = batchCryptoService.verify(new JWKSet(signingKey.toPublicJWK()), signatures, tampered);
+
+        // Then
+        assertThat(signatures).allSatisfy(signature -> assertThat(signature).contains(".."));
+        JWSHeader header = JWSObject.parse(signatures.get(0)).getHeader();
+        assertThat(header.getCustomParam(DetachedSignatureHeader.OB_ISS)).isEqualTo("rs-api");
+        assertThat(header.getCustomParam(DetachedSignatureHeader.OB_TAN)).isEqualTo(TAN);
+        assertThat(((Number) header.getCustomParam(DetachedSignatureHeader.OB_IAT)).longValue())
+                .isCloseTo(System.currentTimeMillis() / 1000, within(5L));
+        assertThat(header.getCriticalParams()).isEqualTo(DetachedSignatureHeader.CRITICAL_PARAMS);
+        assertThat(valid).hasSize(10).containsOnlyOnce(false);
+        assertThat(valid.get(3)).isFalse();
+    }
+
+    @Test
+    public void shouldNotVerifyTheSignaturesOfAKeyMissingFromTheJwks() throws Exception {
+        // Given
+        List<String> signatures = batchCryptoService.sign(otherKey, "rs-api", payloads(2), false);
+
+        // When
+        List<Boolean> valid = batchCryptoService.verify(new JWKSet(signingKey.toPublicJWK()), signatures, null);
+
+        // Then
+        assertThat(valid).containsExactly(false, false);
+    }
+
+    @Test
+    public void shouldNotVerifyAMacOrAMalformedSignature() throws Exception {
+        // Given
+        JWSObject mac = new JWSObject(new JWSHeader.Builder(JWSAlgorithm.HS256).keyID("kid-1").build(), new Payload("{}"));
+        mac.sign(new MACSigner(new byte[32]));
+
+        // When
+        List<Boolean> valid = batchCryptoService.verify(new JWKSet(signingKey.toPublicJWK()),
+                Arrays.asList(mac.serialize(), "not a JWS"), null);
+
+        // Then
+        assertThat(valid).containsExactly(false, false);
+    }
+
+    @Test
+    public void shouldSignAnEmptyBatch() throws Exception {
+        // When
+        List<String> signatures = batchCryptoService.sign(signingKey, "rs-api", Collections.emptyList(), false);
+
+        // Then
+        assertThat(signatures).isEmpty();
+    }
+
+    private static List<String> payloads(int count) {
+        List<String> payloads = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            payloads.add("{\"transactionId\":\"" + i + "\"}");
+        }
+        return payloads;
+    }
+}
@@ -0,0 +1,58 @@
+/**
+ * Copyright 2019 ForgeRock AS. All Rights Reserved
+ *
+ * Use of this code requires a commercial software license with ForgeRock AS.
+ * or with one of its affiliates. All use shall be exclusively subject
+ * to such license between the licensee and ForgeRock AS.
+ */
+package jwkms.crypto;
+
+import com.forgerock.openbanking.jwkms.crypto.InternalApplicationResolver;
+import com.nimbusds.jose.jwk.RSAKey;
+import com.nimbusds.jose.util.Base64;
+import org.bouncycastle.asn1.x500.X500Name;
+import org.bouncycastle.cert.jcajce.JcaX509CertificateConverter;
+import org.bouncycastle.cert.jcajce.JcaX509v3CertificateBuilder;
+import org.bouncycastle.operator.jcajce.JcaContentSignerBuilder;
+import org.springframework.mock.web.MockHttpServletRequest;
+
+import java.math.BigInteger;
+import java.security.KeyPair;
+import java.security.KeyPairGenerator;
+import java.security.cert.X509Certificate;
+import java.security.interfaces.RSAPublicKey;
+import java.util.Collections;
+import java.util.Date;
+
+/**
+ * The requests of the internal applications, with the certificate the gateway puts in the x-client-jwk header.
+ */
+public final class ClientCertificates {
+
+    private ClientCertificates() {
+    }
+
+    /**
+     * A request of the application of a certificate common name.
+     */
+    public static MockHttpServletRequest request(String method, String path, String commonName) throws Exception {
+        MockHttpServletRequest request = new MockHttpServletRequest(method, path);
+        request.addHeader(InternalApplicationResolver.CLIENT_CERTIFICATE_HEADER_NAME, clientJwk(commonName));
+        return request;
+    }
+
+    private static String clientJwk(String commonName) throws Exception {
+        KeyPairGenerator generator = KeyPairGenerator.getInstance("RSA");
+        generator.initialize(1024);
+        KeyPair keyPair = generator.generateKeyPair();
+        X500Name subject = new X500Name("CN=" + commonName + ",OU=forgerock.financial,O=ForgeRock");
+        long now = System.currentTimeMillis();
+        X509Certificate certificate = new JcaX509CertificateConverter().getCertificate(new JcaX509v3CertificateBuilder(
+                subject, BigInteger.ONE, new Date(now), new Date(now + 3_600_000), subject, keyPair.getPublic())
+                .build(new JcaContentSignerBuilder("SHA256withRSA").build(keyPair.getPrivate())));
+        return new RSAKey.Builder((RSAPublicKey) keyPair.getPublic())
+                .x509CertChain(Collections.singletonList(Base64.encode(certificate.getEncoded())))
+                .build()
+                .toJSONString();
+    }
+}
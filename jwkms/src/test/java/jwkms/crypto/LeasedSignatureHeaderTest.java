@@ -0,0 +1,144 @@
+/**
+ * Copyright 2019 ForgeRock AS. All Rights Reserved
+ *
+ * Use of this code requires a commercial software license with ForgeRock AS.
+ * or with one of its affiliates. All use shall be exclusively subject
+ * to such license between the licensee and ForgeRock AS.
+ */
+package jwkms.crypto;
+
+import com.forgerock.cdr.common.crypto.BatchCryptoClient;
+import com.forgerock.cdr.common.crypto.DetachedSignatureHeader;
+import com.forgerock.cdr.common.crypto.LeasedJwsSigner;
+import com.forgerock.cdr.common.crypto.SigningKeyLease;
+import com.forgerock.openbanking.jwkms.crypto.BatchCryptoService;
+import com.forgerock.openbanking.jwkms.crypto.InternalApplicationResolver;
+import com.forgerock.openbanking.jwkms.crypto.LeasedSigningKeys;
+import com.forgerock.openbanking.jwkms.crypto.SigningKeyLeaseApiController;
+import com.forgerock.openbanking.jwkms.keys.KeyPairPool;
+import com.forgerock.openbanking.jwkms.model.Application;
+import com.forgerock.openbanking.jwkms.model.JwkMsKey;
+import com.forgerock.openbanking.jwkms.service.application.ApplicationService;
+import com.nimbusds.jose.JWSHeader;
+import com.nimbusds.jose.JWSObject;
+import com.nimbusds.jose.jwk.JWK;
+import com.nimbusds.jose.jwk.JWKSet;
+import com.nimbusds.jose.jwk.KeyUse;
+import com.nimbusds.jose.jwk.RSAKey;
+import com.nimbusds.jose.jwk.gen.RSAKeyGenerator;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import net.minidev.json.JSONObject;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.web.client.RestTemplate;
+
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.Collections;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.within;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.BDDMockito.given;
+import static org.mockito.Mockito.mock;
+
+/**
+ * The detached signatures of an application signing with its leased key, against the ones jwkms signs with the long-term key.
+ */
+public class LeasedSignatureHeaderTest {
+
+    private static final String BODY = "{\"Data\":{\"AccountId\":\"22289\"}}";
+
+    private RSAKey signingKey;
+    private JWK leasedKey;
+    private BatchCryptoService batchCryptoService;
+    private LeasedJwsSigner leasedJwsSigner;
+
+    @Before
+    public void setUp() throws Exception {
+        signingKey = new RSAKeyGenerator(2048).keyID("kid-1").keyUse(KeyUse.SIGNATURE).generate();
+        JwkMsKey jwkMsKey = new JwkMsKey();
+        jwkMsKey.setJwk(signingKey);
+        Application application = new Application();
+        application.setIssuerId("rs-api");
+        application.getKeys().put(signingKey.getKeyID(), jwkMsKey);
+        application.setCurrentSignKid(signingKey.getKeyID());
+        ApplicationService applicationService = mock(ApplicationService.class);
+        given(applicationService.getApplication("rs-api")).willReturn(application);
+        batchCryptoService = new BatchCryptoService("PS256", "openbanking.org.uk", 1);
+        SigningKeyLease lease = new SigningKeyLeaseApiController(new InternalApplicationResolver(applicationService),
+                batchCryptoService, mock(LeasedSigningKeys.class),
+                new KeyPairPool(false, new int[]{2048}, 1, 0, new SimpleMeterRegistry()), Duration.ofMinutes(5))
+                .lease(ClientCertificates.request("POST", "/api/crypto/signing-key-lease", "rs-api"))
+                .getBody();
+        leasedKey = JWK.parse(lease.getKey());
+
+        RestTemplate restTemplate = mock(RestTemplate.class);
+        given(restTemplate.postForObject(anyString(), any(), eq(SigningKeyLease.class))).willReturn(lease);
+        leasedJwsSigner = new LeasedJwsSigner(restTemplate, mock(BatchCryptoClient.class), "https://jwkms/", true,
+                Duration.ofMinutes(1), Duration.ofSeconds(10), new SimpleMeterRegistry());
+    }
+
+    @After
+    public void tearDown() {
+        leasedJwsSigner.stop();
+        batchCryptoService.shutdown();
+    }
+
+    @Test
+    public void shouldSignTheDetachedSignaturesWithTheHeaderOfJwkms() throws Exception {
+        // Given
+        assertThat(leasedJwsSigner.renew()).isTrue();
+
+        // When
+        String leased = leasedJwsSigner.signDetached(BODY);
+        String remote = batchCryptoService.sign(signingKey, "rs-api", Collections.singletonList(BODY), true).get(0);
+
+        // Then
+        JWSHeader leasedHeader = JWSObject.parse(leased).getHeader();
+        JWSHeader remoteHeader = JWSObject.parse(remote).getHeader();
+        assertThat(withoutIatAndKid(leasedHeader)).isEqualTo(withoutIatAndKid(remoteHeader));
+        assertThat(leasedHeader.getKeyID()).isEqualTo(leasedKey.getKeyID());
+        assertThat(leasedHeader.getCriticalParams()).containsExactlyInAnyOrder(DetachedSignatureHeader.OB_IAT,
+                DetachedSignatureHeader.OB_ISS, DetachedSignatureHeader.OB_TAN);
+        assertThat(leasedHeader.getCustomParam(DetachedSignatureHeader.OB_ISS)).isEqualTo("rs-api");
+        assertThat(leasedHeader.getCustomParam(DetachedSignatureHeader.OB_TAN)).isEqualTo("openbanking.org.uk");
+        assertThat(iat(leasedHeader)).isCloseTo(iat(remoteHeader), within(5L));
+        JWKSet published = new JWKSet(Arrays.asList(signingKey.toPublicJWK(), leasedKey.toPublicJWK()));
+        assertThat(batchCryptoService.verify(published, Arrays.asList(leased, remote), Arrays.asList(BODY, BODY)))
+                .containsExactly(true, true);
+    }
+
+    @Test
+    public void shouldSignTheAttachedJwsWithTheHeaderOfJwkms() throws Exception {
+        // Given
+        assertThat(leasedJwsSigner.renew()).isTrue();
+
+        // When
+        String leased = leasedJwsSigner.sign(BODY);
+        String remote = batchCryptoService.sign(signingKey, "rs-api", Collections.singletonList(BODY), false).get(0);
+
+        // Then
+        JSONObject leasedHeader = JWSObject.parse(leased).getHeader().toJSONObject();
+        JSONObject remoteHeader = JWSObject.parse(remote).getHeader().toJSONObject();
+        assertThat(leasedHeader.remove("kid")).isEqualTo(leasedKey.getKeyID());
+        remoteHeader.remove("kid");
+        assertThat(leasedHeader).isEqualTo(remoteHeader);
+    }
+
+    private static JSONObject withoutIatAndKid(JWSHeader header) {
+        JSONObject json = header.toJSONObject();
+        json.remove(DetachedSignatureHeader.OB_IAT);
+        json.remove("kid");
+        // The order of the critical claims doesn't matter
+        json.put("crit", header.getCriticalParams());
+        return json;
+    }
+
+    private static long iat(JWSHeader header) {
+        return ((Number) header.getCustomParam(DetachedSignatureHeader.OB_IAT)).longValue();
+    }
+}
@@ -0,0 +1,148 @@
+/**
+ * Copyright 2019 ForgeRock AS. All Rights Reserved
+ *
+ * Use of this code requires a commercial software license with ForgeRock AS.
+ * or with one of its affiliates. All use shall be exclusively subject
+ * to such license between the licensee and ForgeRock AS.
+ */
+package jwkms.crypto;
+
+import com.forgerock.openbanking.jwkms.crypto.InternalApplicationResolver;
+import com.forgerock.openbanking.jwkms.crypto.LeasedSigningKeys;
+import com.forgerock.openbanking.jwkms.crypto.LeasedSigningKeysFilter;
+import com.forgerock.openbanking.jwkms.model.Application;
+import com.forgerock.openbanking.jwkms.service.application.ApplicationService;
+import com.nimbusds.jose.jwk.JWK;
+import com.nimbusds.jose.jwk.JWKSet;
+import com.nimbusds.jose.jwk.RSAKey;
+import com.nimbusds.jose.jwk.gen.RSAKeyGenerator;
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import org.springframework.http.MediaType;
+import org.springframework.mock.web.MockFilterChain;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+
+import javax.servlet.http.HttpServlet;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
+import java.util.Collections;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.BDDMockito.given;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+
+public class LeasedSigningKeysFilterTest {
+
+    private static RSAKey signingKey;
+    private static RSAKey leasedKey;
+
+    private LeasedSigningKeys leasedSigningKeys;
+    private LeasedSigningKeysFilter leasedSigningKeysFilter;
+
+    @BeforeClass
+    public static void generateKeys() throws Exception {
+        signingKey = new RSAKeyGenerator(2048).keyID("kid-1").generate().toPublicJWK();
+        leasedKey = new RSAKeyGenerator(2048).keyID("leased-1").generate().toPublicJWK();
+    }
+
+    @Before
+    public void setUp() {
+        ApplicationService applicationService = mock(ApplicationService.class);
+        Application application = new Application();
+        application.setIssuerId("forgerock-rs");
+        given(applicationService.getApplication("rs-api")).willReturn(application);
+        leasedSigningKeys = mock(LeasedSigningKeys.class);
+        leasedSigningKeysFilter = new LeasedSigningKeysFilter(leasedSigningKeys,
+                new InternalApplicationResolver(applicationService));
+    }
+
+    @Test
+    public void shouldAddTheLeasedKeysToTheJwksOfTheApplication() throws Exception {
+        // Given
+        given(leasedSigningKeys.published("forgerock-rs")).willReturn(Collections.singletonList(leasedKey));
+
+        // When
+        MockHttpServletResponse response = get(new MockHttpServletRequest("GET", "/api/application/forgerock-rs/jwk_uri"),
+                HttpServletResponse.SC_OK);
+
+        // Then
+        JWKSet jwks = JWKSet.parse(response.getContentAsString());
+        assertThat(jwks.getKeys()).extracting(JWK::getKeyID).containsExactly("kid-1", "leased-1");
+        assertThat(jwks.getKeyByKeyId("leased-1").isPrivate()).isFalse();
+        assertThat(response.getContentLength()).isEqualTo(response.getContentAsByteArray().length);
+    }
+
+    @Test
+    public void shouldAddTheLeasedKeysToTheJwksOfTheCaller() throws Exception {
+        // Given
+        given(leasedSigningKeys.published("forgerock-rs")).willReturn(Collections.singletonList(leasedKey));
+
+        // When
+        MockHttpServletResponse response = get(ClientCertificates.request("GET", "/api/jwk/jwk_uri", "rs-api"),
+                HttpServletResponse.SC_OK);
+
+        // Then
+        assertThat(JWKSet.parse(response.getContentAsString()).getKeys()).extracting(JWK::getKeyID)
+                .containsExactly("kid-1", "leased-1");
+    }
+
+    @Test
+    public void shouldLeaveTheJwksOfAnApplicationWithoutLease() throws Exception {
+        // Given
+        given(leasedSigningKeys.published("forgerock-rs")).willReturn(Collections.emptyList());
+
+        // When
+        MockHttpServletResponse response = get(new MockHttpServletRequest("GET", "/api/application/forgerock-rs/jwk_uri"),
+                HttpServletResponse.SC_OK);
+
+        // Then
+        assertThat(response.getContentAsString()).isEqualTo(jwks());
+    }
+
+    @Test
+    public void shouldLeaveAnError() throws Exception {
+        // Given
+        given(leasedSigningKeys.published("forgerock-rs")).willReturn(Collections.singletonList(leasedKey));
+
+        // When
+        MockHttpServletResponse response = get(new MockHttpServletRequest("GET", "/api/application/forgerock-rs/jwk_uri"),
+                HttpServletResponse.SC_NOT_FOUND);
+
+        // Then
+        assertThat(response.getStatus()).isEqualTo(HttpServletResponse.SC_NOT_FOUND);
+        assertThat(response.getContentAsString()).isEqualTo(jwks());
+    }
+
+    @Test
+    public void shouldLeaveTheOtherEndpoints() throws Exception {
+        // When
+        get(new MockHttpServletRequest("GET", "/api/application/forgerock-rs/key/kid-1"), HttpServletResponse.SC_OK);
+        get(new MockHttpServletRequest("GET", "/api/jwk/jwk_uri"), HttpServletResponse.SC_OK);
+
+        // Then
+        verify(leasedSigningKeys, never()).published(anyString());
+    }
+
+    private MockHttpServletResponse get(MockHttpServletRequest request, int status) throws Exception {
+        MockHttpServletResponse response = new MockHttpServletResponse();
+        leasedSigningKeysFilter.doFilter(request, response, new MockFilterChain(new HttpServlet() {
+            @Override
+            protected void doGet(HttpServletRequest request, HttpServletResponse response) throws IOException {
+                response.setStatus(status);
+                response.setContentType(MediaType.APPLICATION_JSON_UTF8_VALUE);
+                response.getWriter().write(jwks());
+            }
+        }));
+        return response;
+    }
+
+    private static String jwks() {
+        return new JWKSet(signingKey).toJSONObject(false).toJSONString();
+    }
+}
@@ -0,0 +1,79 @@
+/**
+ * Copyright 2019 ForgeRock AS. All Rights Reserved
+ *
+ * Use of this code requires a commercial software license with ForgeRock AS.
+ * or with one of its affiliates. All use shall be exclusively subject
+ * to such license between the licensee and ForgeRock AS.
+ */
+package jwkms.crypto;
+
+import com.forgerock.openbanking.jwkms.crypto.LeasedSigningKey;
+import com.forgerock.openbanking.jwkms.crypto.LeasedSigningKeys;
+import com.forgerock.openbanking.jwkms.jwks.JwksCache;
+import com.nimbusds.jose.jwk.JWK;
+import com.nimbusds.jose.jwk.RSAKey;
+import com.nimbusds.jose.jwk.gen.RSAKeyGenerator;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Query;
+
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.BDDMockito.given;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+
+public class LeasedSigningKeysTest {
+
+    private MongoTemplate mongoTemplate;
+    private JwksCache jwksCache;
+    private LeasedSigningKeys leasedSigningKeys;
+
+    @Before
+    public void setUp() {
+        mongoTemplate = mock(MongoTemplate.class);
+        jwksCache = new JwksCache(Duration.ofMinutes(1));
+        leasedSigningKeys = new LeasedSigningKeys(mongoTemplate, jwksCache);
+    }
+
+    @Test
+    public void shouldPublishOnlyThePublicKeyUntilTheLeaseExpires() throws Exception {
+        // Given
+        RSAKey leasedKey = new RSAKeyGenerator(2048).keyID("leased-1").generate();
+        jwksCache.put("forgerock-rs", "{}".getBytes(), "application/json");
+
+        // When
+        leasedSigningKeys.publish("forgerock-rs", leasedKey, 1_000L);
+
+        // Then
+        ArgumentCaptor<LeasedSigningKey> published = ArgumentCaptor.forClass(LeasedSigningKey.class);
+        verify(mongoTemplate).insert(published.capture());
+        assertThat(published.getValue().getKeyId()).isEqualTo("leased-1");
+        assertThat(published.getValue().getApplicationId()).isEqualTo("forgerock-rs");
+        assertThat(published.getValue().getExpiresAt().getTime()).isEqualTo(1_000L);
+        assertThat(JWK.parse(published.getValue().getPublicKey())).isEqualTo(leasedKey.toPublicJWK());
+        assertThat(jwksCache.get("forgerock-rs")).isNull();
+    }
+
+    @Test
+    public void shouldSkipAKeyThatCantBeParsed() throws Exception {
+        // Given
+        RSAKey leasedKey = new RSAKeyGenerator(2048).keyID("leased-1").generate().toPublicJWK();
+        given(mongoTemplate.find(any(Query.class), eq(LeasedSigningKey.class))).willReturn(Arrays.asList(
+                new LeasedSigningKey("leased-1", "forgerock-rs", leasedKey.toJSONString(), null),
+                new LeasedSigningKey("leased-2", "forgerock-rs", "not a key", null)));
+
+        // When
+        List<JWK> published = leasedSigningKeys.published("forgerock-rs");
+
+        // Then
+        assertThat(published).containsExactly(leasedKey);
+    }
+}
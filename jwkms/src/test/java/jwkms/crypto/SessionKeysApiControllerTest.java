@@ -0,0 +1,122 @@
+/**
+ * Copyright 2019 ForgeRock AS. All Rights Reserved
+ *
+ * Use of this code requires a commercial software license with ForgeRock AS.
+ * or with one of its affiliates. All use shall be exclusively subject
+ * to such license between the licensee and ForgeRock AS.
+ */
+package jwkms.crypto;
+
+import com.forgerock.openbanking.jwkms.crypto.InternalApplicationResolver;
+import com.forgerock.openbanking.jwkms.crypto.SessionKeysApiController;
+import com.forgerock.openbanking.jwkms.model.Application;
+import com.forgerock.openbanking.jwkms.model.JwkMsKey;
+import com.forgerock.openbanking.jwkms.service.application.ApplicationService;
+import com.nimbusds.jose.jwk.JWK;
+import com.nimbusds.jose.jwk.JWKSet;
+import com.nimbusds.jose.jwk.KeyUse;
+import com.nimbusds.jose.jwk.RSAKey;
+import com.nimbusds.jose.jwk.gen.RSAKeyGenerator;
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.mock.web.MockHttpServletRequest;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.BDDMockito.given;
+import static org.mockito.Mockito.mock;
+
+public class SessionKeysApiControllerTest {
+
+    private static RSAKey encryptionKey;
+    private static RSAKey signingKey;
+
+    private ApplicationService applicationService;
+    private SessionKeysApiController sessionKeysApiController;
+
+    @BeforeClass
+    public static void generateKeys() throws Exception {
+        encryptionKey = new RSAKeyGenerator(2048).keyID("enc-1").keyUse(KeyUse.ENCRYPTION).generate();
+        signingKey = new RSAKeyGenerator(2048).keyID("sig-1").keyUse(KeyUse.SIGNATURE).generate();
+    }
+
+    @Before
+    public void setUp() {
+        applicationService = mock(ApplicationService.class);
+        sessionKeysApiController = new SessionKeysApiController(new InternalApplicationResolver(applicationService));
+    }
+
+    @Test
+    public void shouldSendThePrivateEncryptionKeysAndThePublicSigningKeys() throws Exception {
+        // Given
+        given(applicationService.getApplication("rs-api")).willReturn(application());
+
+        // When
+        ResponseEntity<String> response = sessionKeysApiController.getSessionKeys(request("rs-api"));
+
+        // Then
+        assertThat(response.getStatusCode()).isEqualTo(HttpStatus.OK);
+        JWKSet keys = JWKSet.parse(response.getBody());
+        assertThat(keys.getKeys()).hasSize(2);
+        JWK encryption = keys.getKeyByKeyId("enc-1");
+        assertThat(encryption.isPrivate()).isTrue();
+        assertThat(((RSAKey) encryption).toPrivateKey()).isEqualTo(encryptionKey.toPrivateKey());
+        JWK signing = keys.getKeyByKeyId("sig-1");
+        assertThat(signing.isPrivate()).isFalse();
+        assertThat(((RSAKey) signing).toPublicKey()).isEqualTo(signingKey.toPublicKey());
+    }
+
+    @Test
+    public void shouldLookTheApplicationUpByTheCommonNameOfItsCertificate() throws Exception {
+        // Given, the principal of the application is its issuer id
+        given(applicationService.getApplication("rs-api")).willReturn(application());
+
+        // When
+        ResponseEntity<String> response = sessionKeysApiController.getSessionKeys(request("rs-api"));
+        ResponseEntity<String> byIssuerId = sessionKeysApiController.getSessionKeys(request("forgerock-rs"));
+
+        // Then
+        assertThat(response.getStatusCode()).isEqualTo(HttpStatus.OK);
+        assertThat(byIssuerId.getStatusCode()).isEqualTo(HttpStatus.NOT_FOUND);
+    }
+
+    @Test
+    public void shouldNotFindTheKeysOfAnUnknownApplication() throws Exception {
+        // When
+        ResponseEntity<String> response = sessionKeysApiController.getSessionKeys(request("unknown"));
+
+        // Then
+        assertThat(response.getStatusCode()).isEqualTo(HttpStatus.NOT_FOUND);
+    }
+
+    @Test
+    public void shouldNotFindTheKeysWithoutClientCertificate() {
+        // When
+        ResponseEntity<String> response = sessionKeysApiController.getSessionKeys(
+                new MockHttpServletRequest("GET", "/api/crypto/session-keys"));
+
+        // Then
+        assertThat(response.getStatusCode()).isEqualTo(HttpStatus.NOT_FOUND);
+    }
+
+    private static MockHttpServletRequest request(String commonName) throws Exception {
+        return ClientCertificates.request("GET", "/api/crypto/session-keys", commonName);
+    }
+
+    private static Application application() {
+        Application application = new Application();
+        application.setIssuerId("forgerock-rs");
+        application.getKeys().put(encryptionKey.getKeyID(), key(encryptionKey));
+        application.getKeys().put(signingKey.getKeyID(), key(signingKey));
+        application.setCurrentSignKid(signingKey.getKeyID());
+        return application;
+    }
+
+    private static JwkMsKey key(JWK jwk) {
+        JwkMsKey jwkMsKey = new JwkMsKey();
+        jwkMsKey.setJwk(jwk);
+        return jwkMsKey;
+    }
+}
@@ -0,0 +1,163 @@
+/**
+ * Copyright 2019 ForgeRock AS. All Rights Reserved
+ *
+ * Use of this code requires a commercial software license with ForgeRock AS.
+ * or with one of its affiliates. All use shall be exclusively subject
+ * to such license between the licensee and ForgeRock AS.
+ */
+package jwkms.crypto;
+
+import com.forgerock.cdr.common.crypto.SigningKeyLease;
+import com.forgerock.openbanking.jwkms.crypto.BatchCryptoService;
+import com.forgerock.openbanking.jwkms.crypto.InternalApplicationResolver;
+import com.forgerock.openbanking.jwkms.crypto.LeasedSigningKeys;
+import com.forgerock.openbanking.jwkms.crypto.SigningKeyLeaseApiController;
+import com.forgerock.openbanking.jwkms.keys.KeyPairPool;
+import com.forgerock.openbanking.jwkms.model.Application;
+import com.forgerock.openbanking.jwkms.model.JwkMsKey;
+import com.forgerock.openbanking.jwkms.service.application.ApplicationService;
+import com.nimbusds.jose.JWSAlgorithm;
+import com.nimbusds.jose.jwk.Curve;
+import com.nimbusds.jose.jwk.ECKey;
+import com.nimbusds.jose.jwk.JWK;
+import com.nimbusds.jose.jwk.RSAKey;
+import com.nimbusds.jose.jwk.gen.ECKeyGenerator;
+import com.nimbusds.jose.jwk.gen.RSAKeyGenerator;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.mock.web.MockHttpServletRequest;
+
+import java.time.Duration;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.BDDMockito.given;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+
+public class SigningKeyLeaseApiControllerTest {
+
+    private static RSAKey signingKey;
+    private static MockHttpServletRequest rsApi;
+
+    private ApplicationService applicationService;
+    private BatchCryptoService batchCryptoService;
+    private LeasedSigningKeys leasedSigningKeys;
+    private SigningKeyLeaseApiController signingKeyLeaseApiController;
+
+    @BeforeClass
+    public static void generateKey() throws Exception {
+        signingKey = new RSAKeyGenerator(2048).keyID("kid-1").generate();
+        rsApi = ClientCertificates.request("POST", "/api/crypto/signing-key-lease", "rs-api");
+    }
+
+    @Before
+    public void setUp() throws Exception {
+        applicationService = mock(ApplicationService.class);
+        batchCryptoService = new BatchCryptoService("PS256", "openbanking.org.uk", 1);
+        leasedSigningKeys = mock(LeasedSigningKeys.class);
+        signingKeyLeaseApiController = new SigningKeyLeaseApiController(new InternalApplicationResolver(applicationService),
+                batchCryptoService, leasedSigningKeys, new KeyPairPool(false, new int[]{2048}, 1, 0, new SimpleMeterRegistry()),
+                Duration.ofMinutes(5));
+    }
+
+    @After
+    public void tearDown() {
+        batchCryptoService.shutdown();
+    }
+
+    @Test
+    public void shouldLendANewKeyInsteadOfTheSigningKeyOfTheCaller() throws Exception {
+        // Given
+        given(applicationService.getApplication("rs-api")).willReturn(application(signingKey));
+        long start = System.currentTimeMillis();
+
+        // When
+        ResponseEntity<SigningKeyLease> response = signingKeyLeaseApiController.lease(rsApi);
+
+        // Then
+        assertThat(response.getStatusCode()).isEqualTo(HttpStatus.OK);
+        RSAKey key = (RSAKey) JWK.parse(response.getBody().getKey());
+        assertThat(key.getKeyID()).isNotEqualTo("kid-1");
+        assertThat(key.isPrivate()).isTrue();
+        assertThat(key.size()).isEqualTo(2048);
+        assertThat(key.getModulus()).isNotEqualTo(signingKey.getModulus());
+        assertThat(response.getBody().getAlgorithm()).isEqualTo("PS256");
+        assertThat(response.getBody().getIssuer()).isEqualTo("forgerock-rs");
+        assertThat(response.getBody().getTrustAnchor()).isEqualTo("openbanking.org.uk");
+        assertThat(response.getBody().getExpiresAt()).isBetween(start + 299_000, System.currentTimeMillis() + 300_000);
+    }
+
+    @Test
+    public void shouldPublishThePublicKeyOfTheLeaseUntilItExpires() throws Exception {
+        // Given
+        given(applicationService.getApplication("rs-api")).willReturn(application(signingKey));
+
+        // When
+        SigningKeyLease lease = signingKeyLeaseApiController.lease(rsApi).getBody();
+
+        // Then
+        ArgumentCaptor<JWK> published = ArgumentCaptor.forClass(JWK.class);
+        verify(leasedSigningKeys).publish(eq("forgerock-rs"), published.capture(), eq(lease.getExpiresAt()));
+        assertThat(published.getValue().toPublicJWK()).isEqualTo(JWK.parse(lease.getKey()).toPublicJWK());
+    }
+
+    @Test
+    public void shouldLendANewKeyForEveryLease() throws Exception {
+        // Given
+        given(applicationService.getApplication("rs-api")).willReturn(application(signingKey));
+
+        // When
+        String first = JWK.parse(signingKeyLeaseApiController.lease(rsApi).getBody().getKey()).getKeyID();
+        String second = JWK.parse(signingKeyLeaseApiController.lease(rsApi).getBody().getKey()).getKeyID();
+
+        // Then
+        assertThat(first).isNotEqualTo(second);
+    }
+
+    @Test
+    public void shouldLendAKeyOfTheCurveOfAnEllipticCurveSigningKey() throws Exception {
+        // Given
+        ECKey ecSigningKey = new ECKeyGenerator(Curve.P_256).keyID("kid-ec").algorithm(JWSAlgorithm.ES256).generate();
+        given(applicationService.getApplication("rs-api")).willReturn(application(ecSigningKey));
+
+        // When
+        SigningKeyLease lease = signingKeyLeaseApiController.lease(rsApi).getBody();
+
+        // Then
+        ECKey key = (ECKey) JWK.parse(lease.getKey());
+        assertThat(key.getCurve()).isEqualTo(Curve.P_256);
+        assertThat(key.isPrivate()).isTrue();
+        assertThat(lease.getAlgorithm()).isEqualTo("ES256");
+    }
+
+    @Test
+    public void shouldNotLendAKeyToAnUnknownApplication() throws Exception {
+        // When
+        ResponseEntity<SigningKeyLease> response = signingKeyLeaseApiController.lease(rsApi);
+
+        // Then
+        assertThat(response.getStatusCode()).isEqualTo(HttpStatus.NOT_FOUND);
+        verify(leasedSigningKeys, never()).publish(anyString(), any(), anyLong());
+    }
+
+    private static Application application(JWK currentSigningKey) {
+        JwkMsKey jwkMsKey = new JwkMsKey();
+        jwkMsKey.setJwk(currentSigningKey);
+        Application application = new Application();
+        application.setIssuerId("forgerock-rs");
+        application.getKeys().put(currentSigningKey.getKeyID(), jwkMsKey);
+        application.setCurrentSignKid(currentSigningKey.getKeyID());
+        return application;
+    }
+}
@@ -0,0 +1,213 @@
+/**
+ * Copyright 2019 ForgeRock AS. All Rights Reserved
+ *
+ * Use of this code requires a commercial software license with ForgeRock AS.
+ * or with one of its affiliates. All use shall be exclusively subject
+ * to such license between the licensee and ForgeRock AS.
+ */
+package jwkms.jwks;
+
+import com.forgerock.openbanking.jwkms.crypto.InternalApplicationResolver;
+import com.forgerock.openbanking.jwkms.jwks.JwksCache;
+import com.forgerock.openbanking.jwkms.jwks.JwksCacheFilter;
+import com.forgerock.openbanking.jwkms.model.Application;
+import com.forgerock.openbanking.jwkms.service.application.ApplicationService;
+import jwkms.crypto.ClientCertificates;
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.mock.web.MockFilterChain;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+
+import javax.servlet.http.HttpServlet;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.BDDMockito.given;
+import static org.mockito.Mockito.mock;
+
+public class JwksCacheFilterTest {
+
+    private static final String JWKS = "{\"keys\":[{\"kty\":\"RSA\",\"kid\":\"1\"}]}";
+
+    private JwksCache jwksCache;
+    private JwksCacheFilter jwksCacheFilter;
+    private AtomicInteger calls;
+
+    @Before
+    public void setUp() {
+        ApplicationService applicationService = mock(ApplicationService.class);
+        given(applicationService.getApplication("rs-api")).willReturn(application("forgerock-rs"));
+        given(applicationService.getApplication("as-api")).willReturn(application("forgerock-as"));
+        jwksCache = new JwksCache(Duration.ofMinutes(1));
+        jwksCacheFilter = new JwksCacheFilter(jwksCache, new InternalApplicationResolver(applicationService), true, 7200000);
+        calls = new AtomicInteger();
+    }
+
+    @Test
+    public void shouldBuildTheJwksOnceThenServeItFromTheCache() throws Exception {
+        // Given
+        MockHttpServletResponse first = get("/api/application/app-1/jwk_uri", null);
+
+        // When
+        MockHttpServletResponse second = get("/api/application/app-1/jwk_uri", null);
+
+        // Then
+        assertThat(calls.get()).isEqualTo(1);
+        assertThat(first.getContentAsString()).isEqualTo(JWKS);
+        assertThat(second.getContentAsString()).isEqualTo(JWKS);
+        assertThat(second.getContentType()).startsWith(MediaType.APPLICATION_JSON_VALUE);
+        assertThat(second.getContentLength()).isEqualTo(JWKS.length());
+        assertThat(second.getHeader(HttpHeaders.ETAG)).startsWith("\"").isEqualTo(first.getHeader(HttpHeaders.ETAG));
+        assertThat(second.getHeader(HttpHeaders.CACHE_CONTROL)).isEqualTo("max-age=7200");
+    }
+
+    @Test
+    public void shouldAnswerNotModifiedToTheClientWithTheDocument() throws Exception {
+        // Given
+        String etag = get("/api/application/app-1/jwk_uri", null).getHeader(HttpHeaders.ETAG);
+
+        // When
+        MockHttpServletResponse response = get("/api/application/app-1/jwk_uri", "\"other\", " + etag);
+
+        // Then
+        assertThat(response.getStatus()).isEqualTo(HttpServletResponse.SC_NOT_MODIFIED);
+        assertThat(response.getContentAsByteArray()).isEmpty();
+        assertThat(response.getHeader(HttpHeaders.ETAG)).isEqualTo(etag);
+        assertThat(calls.get()).isEqualTo(1);
+    }
+
+    @Test
+    public void shouldInvalidateTheJwksOfAnApplicationChanged() throws Exception {
+        // Given
+        get("/api/application/app-1/jwk_uri", null);
+        get("/api/application/app-2/jwk_uri", null);
+
+        // When
+        MockHttpServletRequest rotation = new MockHttpServletRequest("PUT", "/api/application/app-1/key/rotate");
+        jwksCacheFilter.doFilter(rotation, new MockHttpServletResponse(), new MockFilterChain());
+
+        // Then
+        assertThat(jwksCache.get("app-1")).isNull();
+        assertThat(jwksCache.get("app-2")).isNotNull();
+    }
+
+    @Test
+    public void shouldNotCacheAnError() throws Exception {
+        // Given
+        MockHttpServletResponse notFound = new MockHttpServletResponse();
+        jwksCacheFilter.doFilter(new MockHttpServletRequest("GET", "/api/application/unknown/jwk_uri"), notFound,
+                new MockFilterChain(new HttpServlet() {
+                    @Override
+                    protected void doGet(HttpServletRequest request, HttpServletResponse response) throws IOException {
+                        response.sendError(HttpServletResponse.SC_NOT_FOUND);
+                    }
+                }));
+
+        // When
+        MockHttpServletResponse response = get("/api/application/unknown/jwk_uri", null);
+
+        // Then
+        assertThat(notFound.getStatus()).isEqualTo(HttpServletResponse.SC_NOT_FOUND);
+        assertThat(notFound.getHeader(HttpHeaders.ETAG)).isNull();
+        assertThat(response.getContentAsString()).isEqualTo(JWKS);
+    }
+
+    @Test
+    public void shouldCacheTheJwksOfTheCallerByCaller() throws Exception {
+        // Given
+        MockHttpServletResponse rsApi = get(ClientCertificates.request("GET", "/api/jwk/jwk_uri", "rs-api"), "rs");
+
+        // When
+        MockHttpServletResponse asApi = get(ClientCertificates.request("GET", "/api/jwk/jwk_uri", "as-api"), "as");
+        MockHttpServletResponse rsApiAgain = get(ClientCertificates.request("GET", "/api/jwk/jwk_uri", "rs-api"), "other");
+
+        // Then
+        assertThat(calls.get()).isEqualTo(2);
+        assertThat(rsApi.getContentAsString()).contains("\"rs\"");
+        assertThat(asApi.getContentAsString()).contains("\"as\"");
+        assertThat(rsApiAgain.getContentAsString()).isEqualTo(rsApi.getContentAsString());
+        assertThat(jwksCache.get(JwksCache.callerKey("forgerock-rs"))).isNotNull();
+        assertThat(jwksCache.get(JwksCache.callerKey("forgerock-as"))).isNotNull();
+    }
+
+    @Test
+    public void shouldNotCacheTheJwksOfAnUnknownCaller() throws Exception {
+        // When
+        get(new MockHttpServletRequest("GET", "/api/jwk/jwk_uri"), "anonymous");
+        get(ClientCertificates.request("GET", "/api/jwk/jwk_uri", "unknown"), "unknown");
+        MockHttpServletResponse response = get(new MockHttpServletRequest("GET", "/api/jwk/jwk_uri"), "anonymous");
+
+        // Then
+        assertThat(calls.get()).isEqualTo(3);
+        assertThat(response.getHeader(HttpHeaders.ETAG)).isNull();
+        assertThat(response.getContentAsString()).contains("\"anonymous\"");
+    }
+
+    @Test
+    public void shouldInvalidateTheJwksOfTheCallerWithItsApplication() throws Exception {
+        // Given
+        get(ClientCertificates.request("GET", "/api/jwk/jwk_uri", "rs-api"), "rs");
+
+        // When
+        MockHttpServletRequest rotation = new MockHttpServletRequest("PUT", "/api/application/forgerock-rs/key/rotate");
+        jwksCacheFilter.doFilter(rotation, new MockHttpServletResponse(), new MockFilterChain());
+
+        // Then
+        assertThat(jwksCache.get(JwksCache.callerKey("forgerock-rs"))).isNull();
+    }
+
+    @Test
+    public void shouldLeaveTheOtherEndpoints() throws Exception {
+        // When
+        get("/api/application/app-1/key/kid-1", null);
+
+        // Then
+        assertThat(jwksCache.get("app-1")).isNull();
+    }
+
+    /**
+     * Get the JWKS of /api/jwk/jwk_uri, with a key id telling which caller it was built for.
+     */
+    private MockHttpServletResponse get(MockHttpServletRequest request, String keyId) throws Exception {
+        MockHttpServletResponse response = new MockHttpServletResponse();
+        jwksCacheFilter.doFilter(request, response, new MockFilterChain(new HttpServlet() {
+            @Override
+            protected void doGet(HttpServletRequest request, HttpServletResponse response) throws IOException {
+                calls.incrementAndGet();
+                response.setContentType(MediaType.APPLICATION_JSON_UTF8_VALUE);
+                response.getWriter().write("{\"keys\":[{\"kty\":\"RSA\",\"kid\":\"" + keyId + "\"}]}");
+            }
+        }));
+        return response;
+    }
+
+    private static Application application(String issuerId) {
+        Application application = new Application();
+        application.setIssuerId(issuerId);
+        return application;
+    }
+
+    private MockHttpServletResponse get(String path, String ifNoneMatch) throws Exception {
+        MockHttpServletRequest request = new MockHttpServletRequest("GET", path);
+        if (ifNoneMatch != null) {
+            request.addHeader(HttpHeaders.IF_NONE_MATCH, ifNoneMatch);
+        }
+        MockHttpServletResponse response = new MockHttpServletResponse();
+        jwksCacheFilter.doFilter(request, response, new MockFilterChain(new HttpServlet() {
+            @Override
+            protected void doGet(HttpServletRequest request, HttpServletResponse response) throws IOException {
+                calls.incrementAndGet();
+                response.setContentType(MediaType.APPLICATION_JSON_UTF8_VALUE);
+                response.getWriter().write(JWKS);
+            }
+        }));
+        return response;
+    }
+}
@@ -0,0 +1,82 @@
+/**
+ * Copyright 2019 ForgeRock AS. All Rights Reserved
+ *
+ * Use of this code requires a commercial software license with ForgeRock AS.
+ * or with one of its affiliates. All use shall be exclusively subject
+ * to such license between the licensee and ForgeRock AS.
+ */
+package jwkms.jwks;
+
+import com.forgerock.openbanking.jwkms.jwks.JwksCache;
+import org.junit.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class JwksCacheTest {
+
+    private static final byte[] JWKS = "{\"keys\":[]}".getBytes(StandardCharsets.UTF_8);
+
+    @Test
+    public void shouldExpireTheDocumentsAfterTheirTimeToLive() {
+        // Given
+        JwksCache expired = new JwksCache(Duration.ZERO);
+        JwksCache live = new JwksCache(Duration.ofMinutes(1));
+
+        // When
+        expired.put("app-1", JWKS, null);
+        live.put("app-1", JWKS, null);
+
+        // Then
+        assertThat(expired.get("app-1")).isNull();
+        assertThat(live.get("app-1")).isNotNull();
+    }
+
+    @Test
+    public void shouldTagTheSameDocumentWithTheSameEtag() {
+        // Given
+        JwksCache jwksCache = new JwksCache(Duration.ofMinutes(1));
+
+        // When
+        String first = jwksCache.put("app-1", JWKS, null).getEtag();
+        String second = jwksCache.put("app-2", JWKS.clone(), null).getEtag();
+        String other = jwksCache.put("app-3", "{\"keys\":[{}]}".getBytes(StandardCharsets.UTF_8), null).getEtag();
+
+        // Then
+        assertThat(first).isEqualTo(second).isNotEqualTo(other);
+    }
+
+    @Test
+    public void shouldInvalidateAllTheDocumentsOnTheKeysCleanup() {
+        // Given
+        JwksCache jwksCache = new JwksCache(Duration.ofMinutes(1));
+        jwksCache.put("app-1", JWKS, null);
+        jwksCache.put(JwksCache.callerKey("app-2"), JWKS, null);
+
+        // When
+        jwksCache.invalidateOnCleanup();
+
+        // Then
+        assertThat(jwksCache.get("app-1")).isNull();
+        assertThat(jwksCache.get(JwksCache.callerKey("app-2"))).isNull();
+    }
+
+    @Test
+    public void shouldInvalidateTheJwksAnApplicationIsAnsweredWithAsTheCaller() {
+        // Given
+        JwksCache jwksCache = new JwksCache(Duration.ofMinutes(1));
+        jwksCache.put("app-1", JWKS, null);
+        jwksCache.put(JwksCache.callerKey("app-1"), JWKS, null);
+        jwksCache.put(JwksCache.callerKey("app-2"), JWKS, null);
+
+        // When
+        jwksCache.invalidate("app-1");
+
+        // Then
+        assertThat(jwksCache.get("app-1")).isNull();
+        assertThat(jwksCache.get(JwksCache.callerKey("app-1"))).isNull();
+        assertThat(jwksCache.get(JwksCache.callerKey("app-2"))).isNotNull();
+    }
+}
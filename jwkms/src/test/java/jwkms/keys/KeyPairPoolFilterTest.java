@@ -0,0 +1,75 @@
+/**
+ * Copyright 2019 ForgeRock AS. All Rights Reserved
+ *
+ * Use of this code requires a commercial software license with ForgeRock AS.
+ * or with one of its affiliates. All use shall be exclusively subject
+ * to such license between the licensee and ForgeRock AS.
+ */
+package jwkms.keys;
+
+import com.forgerock.openbanking.jwkms.keys.KeyPairPool;
+import com.forgerock.openbanking.jwkms.keys.KeyPairPoolFilter;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class KeyPairPoolFilterTest {
+
+    private KeyPairPool keyPairPool;
+    private KeyPairPoolFilter keyPairPoolFilter;
+
+    @Before
+    public void setUp() throws Exception {
+        keyPairPool = new KeyPairPool(true, new int[]{512}, 1, 0, new SimpleMeterRegistry());
+        keyPairPool.start();
+        keyPairPoolFilter = new KeyPairPoolFilter(keyPairPool);
+    }
+
+    @After
+    public void tearDown() {
+        keyPairPool.stop();
+    }
+
+    @Test
+    public void shouldServeTheRegistrationOfAnApplicationFromThePool() throws Exception {
+        // When
+        List<Boolean> served = filter(new MockHttpServletRequest("POST", "/api/application"));
+
+        // Then
+        assertThat(served).containsExactly(true);
+        assertThat(keyPairPool.isServing()).isFalse();
+    }
+
+    @Test
+    public void shouldServeAForcedRotationFromThePool() throws Exception {
+        // When
+        List<Boolean> served = filter(new MockHttpServletRequest("PUT", "/api/application/app-1/signing/reset"));
+
+        // Then
+        assertThat(served).containsExactly(true);
+    }
+
+    @Test
+    public void shouldNotServeTheOtherRequestsFromThePool() throws Exception {
+        // When
+        List<Boolean> served = filter(new MockHttpServletRequest("GET", "/api/application/app-1/jwk_uri"));
+        served.addAll(filter(new MockHttpServletRequest("POST", "/api/crypto/signClaims")));
+
+        // Then
+        assertThat(served).containsExactly(false, false);
+    }
+
+    private List<Boolean> filter(MockHttpServletRequest request) throws Exception {
+        List<Boolean> served = new ArrayList<>();
+        keyPairPoolFilter.doFilter(request, new MockHttpServletResponse(), (req, res) -> served.add(keyPairPool.isServing()));
+        return served;
+    }
+}
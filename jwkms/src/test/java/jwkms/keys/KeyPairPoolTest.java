@@ -0,0 +1,288 @@
+/**
+ * Copyright 2019 ForgeRock AS. All Rights Reserved
+ *
+ * Use of this code requires a commercial software license with ForgeRock AS.
+ * or with one of its affiliates. All use shall be exclusively subject
+ * to such license between the licensee and ForgeRock AS.
+ */
+package jwkms.keys;
+
+import com.forgerock.openbanking.jwkms.keys.KeyPairPool;
+import com.nimbusds.jose.JOSEException;
+import com.nimbusds.jose.crypto.bc.BouncyCastleProviderSingleton;
+import com.nimbusds.jose.jwk.KeyUse;
+import com.nimbusds.jose.jwk.RSAKey;
+import com.nimbusds.jose.jwk.gen.RSAKeyGenerator;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.math.BigInteger;
+import java.security.KeyPair;
+import java.security.KeyPairGenerator;
+import java.security.interfaces.RSAPublicKey;
+import java.security.spec.RSAKeyGenParameterSpec;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class KeyPairPoolTest {
+
+    private static final int KEY_SIZE = 512;
+    private static final int CAPACITY = 4;
+
+    private SimpleMeterRegistry meterRegistry;
+    private KeyPairPool keyPairPool;
+
+    @Before
+    public void setUp() throws Exception {
+        meterRegistry = new SimpleMeterRegistry();
+        keyPairPool = new KeyPairPool(true, new int[]{KEY_SIZE}, CAPACITY, 1, meterRegistry);
+    }
+
+    @After
+    public void tearDown() {
+        keyPairPool.stop();
+    }
+
+    @Test
+    public void shouldFillThePoolOnStart() throws Exception {
+        // When
+        keyPairPool.start();
+
+        // Then
+        awaitFull();
+        assertThat(meterRegistry.get(KeyPairPool.METRIC_PREFIX + ".depth").tag("size", "512").gauge().value())
+                .isEqualTo(CAPACITY);
+    }
+
+    @Test
+    public void shouldTakeAReadyKeyPairThenRefillBelowTheLowWaterMark() throws Exception {
+        // Given
+        keyPairPool.start();
+        awaitFull();
+
+        // When
+        for (int i = 0; i < CAPACITY - 1; i++) {
+            assertThat(publicKey(keyPairPool.take(KEY_SIZE)).getModulus().bitLength()).isEqualTo(KEY_SIZE);
+        }
+
+        // Then
+        awaitFull();
+        assertThat(misses()).isZero();
+        assertThat(waits(KEY_SIZE)).isEqualTo(CAPACITY - 1);
+    }
+
+    @Test
+    public void shouldGenerateTheKeyPairWhenThePoolIsDry() throws Exception {
+        // Given
+        keyPairPool.start();
+        awaitFull();
+
+        // When
+        for (int i = 0; i < CAPACITY * 3; i++) {
+            assertThat(keyPairPool.take(KEY_SIZE)).isNotNull();
+        }
+
+        // Then
+        assertThat(misses()).isPositive();
+    }
+
+    @Test
+    public void shouldGenerateTheKeyPairOfASizeWithoutPool() {
+        // Given
+        keyPairPool.start();
+
+        // When
+        KeyPair keyPair = keyPairPool.take(1024);
+
+        // Then
+        assertThat(publicKey(keyPair).getModulus().bitLength()).isEqualTo(1024);
+        assertThat(meterRegistry.get(KeyPairPool.METRIC_PREFIX + ".unpooled").counter().count()).isEqualTo(1);
+    }
+
+    @Test
+    public void shouldServeTheJcaKeyPairGeneratorsOfAPooledKeyGeneration() throws Exception {
+        // Given
+        keyPairPool.start();
+        awaitFull();
+        KeyPairGenerator generator = KeyPairGenerator.getInstance("RSA");
+        generator.initialize(KEY_SIZE);
+        List<KeyPair> keyPairs = new ArrayList<>();
+
+        // When
+        int served = keyPairPool.withPooledKeyPairs(() -> keyPairs.add(generator.generateKeyPair()));
+
+        // Then
+        assertThat(publicKey(keyPairs.get(0)).getModulus().bitLength()).isEqualTo(KEY_SIZE);
+        assertThat(served).isEqualTo(1);
+        assertThat(waits(KEY_SIZE)).isEqualTo(1);
+        assertThat(bypassed()).isZero();
+    }
+
+    @Test
+    public void shouldServeTheNimbusKeyGeneratorOfAPooledKeyGeneration() throws Exception {
+        // Given
+        KeyPairPool pool = new KeyPairPool(true, new int[]{2048}, 1, 0, meterRegistry);
+        pool.start();
+        List<RSAKey> keys = new ArrayList<>();
+
+        // When
+        try {
+            pool.withPooledKeyPairs(() -> {
+                try {
+                    keys.add(new RSAKeyGenerator(2048).keyUse(KeyUse.SIGNATURE).generate());
+                } catch (JOSEException e) {
+                    throw new IllegalStateException(e);
+                }
+            });
+        } finally {
+            pool.stop();
+        }
+
+        // Then
+        assertThat(keys.get(0).size()).isEqualTo(2048);
+        assertThat(waits(2048)).isEqualTo(1);
+    }
+
+    @Test
+    public void shouldNotServeTheJcaKeyPairGeneratorsOutsideOfAPooledKeyGeneration() throws Exception {
+        // Given
+        keyPairPool.start();
+        awaitFull();
+        KeyPairGenerator generator = KeyPairGenerator.getInstance("RSA");
+        generator.initialize(KEY_SIZE);
+
+        // When
+        KeyPair keyPair = generator.generateKeyPair();
+
+        // Then
+        assertThat(publicKey(keyPair).getModulus().bitLength()).isEqualTo(KEY_SIZE);
+        assertThat(keyPairPool.isServing()).isFalse();
+        assertThat(waits(KEY_SIZE)).isZero();
+        assertThat(keyPairPool.depth(KEY_SIZE)).isEqualTo(CAPACITY);
+    }
+
+    @Test
+    public void shouldNotServeTheKeyPairGeneratorsOfAnotherProvider() throws Exception {
+        // Given
+        keyPairPool.start();
+        KeyPairGenerator generator = KeyPairGenerator.getInstance("RSA", BouncyCastleProviderSingleton.getInstance());
+        generator.initialize(KEY_SIZE);
+        List<KeyPair> keyPairs = new ArrayList<>();
+
+        // When
+        int served = keyPairPool.withPooledKeyPairs(() -> keyPairs.add(generator.generateKeyPair()));
+
+        // Then
+        assertThat(publicKey(keyPairs.get(0)).getModulus().bitLength()).isEqualTo(KEY_SIZE);
+        assertThat(served).isZero();
+        assertThat(waits(KEY_SIZE)).isZero();
+        assertThat(bypassed()).isEqualTo(1);
+    }
+
+    @Test
+    public void shouldCountTheKeyPairsOfTheScopeOnly() throws Exception {
+        // Given
+        keyPairPool.start();
+        KeyPairGenerator generator = KeyPairGenerator.getInstance("RSA");
+        generator.initialize(KEY_SIZE);
+
+        // When
+        int served;
+        int outer;
+        try (KeyPairPool.Serving scope = keyPairPool.serve()) {
+            generator.generateKeyPair();
+            served = keyPairPool.withPooledKeyPairs(() -> {
+                generator.generateKeyPair();
+                generator.generateKeyPair();
+            });
+            outer = scope.served();
+        }
+
+        // Then
+        assertThat(served).isEqualTo(2);
+        assertThat(outer).isEqualTo(1);
+        assertThat(keyPairPool.isServing()).isFalse();
+    }
+
+    @Test
+    public void shouldGenerateTheKeyPairsOnceStopped() throws Exception {
+        // Given
+        keyPairPool.start();
+        awaitFull();
+        KeyPairGenerator generator = KeyPairGenerator.getInstance("RSA");
+        generator.initialize(KEY_SIZE);
+        keyPairPool.stop();
+        List<KeyPair> keyPairs = new ArrayList<>();
+
+        // When
+        int served = keyPairPool.withPooledKeyPairs(() -> keyPairs.add(generator.generateKeyPair()));
+        KeyPair taken = keyPairPool.take(KEY_SIZE);
+
+        // Then
+        assertThat(publicKey(keyPairs.get(0)).getModulus().bitLength()).isEqualTo(KEY_SIZE);
+        assertThat(served).isZero();
+        assertThat(publicKey(taken).getModulus().bitLength()).isEqualTo(KEY_SIZE);
+        assertThat(keyPairPool.depth(KEY_SIZE)).isZero();
+        assertThat(bypassed()).isZero();
+    }
+
+    @Test
+    public void shouldDelegateTheJcaKeyPairGeneratorsWithAnotherExponent() throws Exception {
+        // Given
+        keyPairPool.start();
+        KeyPairGenerator generator = KeyPairGenerator.getInstance("RSA");
+        generator.initialize(new RSAKeyGenParameterSpec(KEY_SIZE, BigInteger.valueOf(3)));
+        List<KeyPair> keyPairs = new ArrayList<>();
+
+        // When
+        keyPairPool.withPooledKeyPairs(() -> keyPairs.add(generator.generateKeyPair()));
+        KeyPair keyPair = keyPairs.get(0);
+
+        // Then
+        assertThat(publicKey(keyPair).getPublicExponent()).isEqualTo(BigInteger.valueOf(3));
+        assertThat(waits(KEY_SIZE)).isZero();
+    }
+
+    @Test
+    public void shouldGenerateTheKeyPairsWhenDisabled() throws Exception {
+        // Given
+        KeyPairPool disabled = new KeyPairPool(false, new int[]{KEY_SIZE}, CAPACITY, 1, meterRegistry);
+        disabled.start();
+
+        // When
+        KeyPair keyPair = disabled.take(KEY_SIZE);
+
+        // Then
+        assertThat(keyPair).isNotNull();
+        assertThat(disabled.depth(KEY_SIZE)).isZero();
+        assertThat(KeyPairGenerator.getInstance("RSA").getProvider().getName()).isNotEqualTo("JwkMsKeyPairPool");
+    }
+
+    private void awaitFull() throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 30_000;
+        while (keyPairPool.depth(KEY_SIZE) < CAPACITY && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+        assertThat(keyPairPool.depth(KEY_SIZE)).isEqualTo(CAPACITY);
+    }
+
+    private long waits(int keySize) {
+        return meterRegistry.get(KeyPairPool.METRIC_PREFIX + ".wait").tag("size", Integer.toString(keySize)).timer().count();
+    }
+
+    private double bypassed() {
+        return meterRegistry.get(KeyPairPool.METRIC_PREFIX + ".bypassed").counter().count();
+    }
+
+    private double misses() {
+        return meterRegistry.get(KeyPairPool.METRIC_PREFIX + ".misses").tag("size", "512").counter().count();
+    }
+
+    private static RSAPublicKey publicKey(KeyPair keyPair) {
+        return (RSAPublicKey) keyPair.getPublic();
+    }
+}
@@ -0,0 +1,153 @@
+/**
+ * Copyright 2019 ForgeRock AS. All Rights Reserved
+ *
+ * Use of this code requires a commercial software license with ForgeRock AS.
+ * or with one of its affiliates. All use shall be exclusively subject
+ * to such license between the licensee and ForgeRock AS.
+ */
+package jwkms.rotation;
+
+import com.forgerock.openbanking.jwkms.rotation.ApplicationKeyRotator;
+import com.forgerock.openbanking.jwkms.rotation.KeyRotationEngine;
+import com.mongodb.MongoClient;
+import com.mongodb.MongoClientURI;
+import com.mongodb.client.MongoCollection;
+import com.mongodb.client.model.Filters;
+import com.mongodb.client.model.Updates;
+import com.nimbusds.jose.JOSEException;
+import com.nimbusds.jose.JWSAlgorithm;
+import com.nimbusds.jose.jwk.KeyUse;
+import com.nimbusds.jose.jwk.RSAKey;
+import com.nimbusds.jose.jwk.gen.RSAKeyGenerator;
+import org.bson.Document;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.springframework.data.mongodb.core.MongoTemplate;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+/**
+ * The nightly rotation of the keys of 10K applications, one application at a time as the rotationScheduler does, and
+ * by the rotation engine, the key pairs of a batch being generated in parallel. Each application gets a new RSA 2048
+ * PS256 signing key in a benchmark collection, saved on its own as the application service does.
+ *
+ * The sequential rotation takes several minutes, so each mode is measured once. It needs a local Mongo, or the one of
+ * -Dmongo.uri=mongodb://host:27017/jwkms-benchmark.
+ *
+ * Run with: mvn test-compile exec:java -Dexec.mainClass=jwkms.rotation.KeyRotationEngineBenchmark -Dexec.classpathScope=test
+ */
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 0)
+@Measurement(iterations = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class KeyRotationEngineBenchmark {
+
+    private static final String COLLECTION = "benchmarkApplication";
+
+    @Param({"10000"})
+    private int applications;
+
+    @Param({"sequential", "engine"})
+    private String mode;
+
+    private MongoClient mongoClient;
+    private MongoCollection<Document> collection;
+    private List<String> applicationIds;
+    private KeyRotationEngine keyRotationEngine;
+
+    @Setup(Level.Trial)
+    public void setup() {
+        MongoClientURI uri = new MongoClientURI(System.getProperty("mongo.uri", "mongodb://localhost:27017/jwkms-benchmark"));
+        mongoClient = new MongoClient(uri);
+        MongoTemplate mongoTemplate = new MongoTemplate(mongoClient, uri.getDatabase());
+        collection = mongoTemplate.getCollection(COLLECTION);
+        collection.drop();
+        List<Document> documents = new ArrayList<>(applications);
+        for (int i = 0; i < applications; i++) {
+            documents.add(new Document("_id", UUID.randomUUID().toString()).append("keys", new Document()));
+        }
+        collection.insertMany(documents);
+        applicationIds = documents.stream().map(document -> document.getString("_id")).collect(Collectors.toList());
+        boolean sequential = "sequential".equals(mode);
+        keyRotationEngine = new KeyRotationEngine(mongoTemplate, new BenchmarkRotator(collection),
+                true, 16, sequential ? 1 : Runtime.getRuntime().availableProcessors(), sequential ? 1 : 100,
+                Duration.ofHours(1), "0 0 1 * * *", "-");
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        keyRotationEngine.shutdown();
+        collection.drop();
+        mongoClient.close();
+    }
+
+    @Benchmark
+    public int rotate() {
+        // A run of its own for every measure
+        return keyRotationEngine.rotate(new Date(), applicationIds);
+    }
+
+    /**
+     * Replaces the signing key of the applications of a batch by a new one.
+     */
+    private static class BenchmarkRotator implements ApplicationKeyRotator {
+
+        private final MongoCollection<Document> collection;
+
+        private BenchmarkRotator(MongoCollection<Document> collection) {
+            this.collection = collection;
+        }
+
+        @Override
+        public int rotate(List<String> applicationIds, ForkJoinPool pool) {
+            return pool.submit(() -> applicationIds.parallelStream()
+                    .mapToLong(applicationId -> collection.updateOne(Filters.eq("_id", applicationId),
+                            Updates.set("keys", Document.parse(signingKey().toJSONString()))).getModifiedCount())
+                    .sum())
+                    .join()
+                    .intValue();
+        }
+
+        private static RSAKey signingKey() {
+            try {
+                return new RSAKeyGenerator(2048)
+                        .keyID(UUID.randomUUID().toString())
+                        .keyUse(KeyUse.SIGNATURE)
+                        .algorithm(JWSAlgorithm.PS256)
+                        .generate();
+            } catch (JOSEException e) {
+                throw new IllegalStateException(e);
+            }
+        }
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder()
+                .include(KeyRotationEngineBenchmark.class.getSimpleName())
+                .build())
+                .run();
+    }
+}
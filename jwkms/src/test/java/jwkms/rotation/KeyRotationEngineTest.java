@@ -0,0 +1,213 @@
+/**
+ * Copyright 2019 ForgeRock AS. All Rights Reserved
+ *
+ * Use of this code requires a commercial software license with ForgeRock AS.
+ * or with one of its affiliates. All use shall be exclusively subject
+ * to such license between the licensee and ForgeRock AS.
+ */
+package jwkms.rotation;
+
+import com.forgerock.openbanking.jwkms.rotation.ApplicationKeyRotator;
+import com.forgerock.openbanking.jwkms.rotation.KeyRotationEngine;
+import com.forgerock.openbanking.jwkms.rotation.KeyRotationGroup;
+import com.mongodb.client.result.UpdateResult;
+import org.bson.Document;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Date;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.argThat;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.BDDMockito.given;
+import static org.mockito.BDDMockito.willThrow;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+
+public class KeyRotationEngineTest {
+
+    private static final int GROUPS = 4;
+    private static final Date RUN_ID = Date.from(Instant.parse("2026-10-17T01:00:00Z"));
+
+    private MongoTemplate mongoTemplate;
+    private List<List<String>> batches;
+    private ApplicationKeyRotator applicationKeyRotator;
+    private KeyRotationEngine keyRotationEngine;
+
+    @Before
+    public void setUp() {
+        mongoTemplate = mock(MongoTemplate.class);
+        given(mongoTemplate.updateFirst(any(Query.class), any(Update.class), eq(KeyRotationGroup.class)))
+                .willReturn(UpdateResult.acknowledged(1, 1L, null));
+        batches = Collections.synchronizedList(new ArrayList<>());
+        applicationKeyRotator = (applicationIds, pool) -> {
+            batches.add(new ArrayList<>(applicationIds));
+            return applicationIds.size();
+        };
+        keyRotationEngine = engine(applicationKeyRotator);
+    }
+
+    @After
+    public void tearDown() {
+        keyRotationEngine.shutdown();
+    }
+
+    @Test
+    public void shouldRotateEveryGroupOfTheRunByBatchesThenMarkItRotated() {
+        // Given
+        List<String> applicationIds = applicationIds(50);
+
+        // When
+        int rotated = keyRotationEngine.rotate(RUN_ID, applicationIds);
+
+        // Then
+        assertThat(rotated).isEqualTo(50);
+        assertThat(batches).allSatisfy(batch -> assertThat(batch.size()).isLessThanOrEqualTo(5));
+        assertThat(batches.stream().flatMap(List::stream)).containsExactlyInAnyOrderElementsOf(applicationIds);
+        ArgumentCaptor<Query> claims = ArgumentCaptor.forClass(Query.class);
+        verify(mongoTemplate, times(GROUPS)).upsert(claims.capture(), any(Update.class), eq(KeyRotationGroup.class));
+        assertThat(claims.getAllValues()).extracting(query -> query.getQueryObject().get("_id"))
+                .containsExactlyInAnyOrder("2026-10-17T01:00:00Z-0", "2026-10-17T01:00:00Z-1", "2026-10-17T01:00:00Z-2",
+                        "2026-10-17T01:00:00Z-3");
+        verify(mongoTemplate, times(GROUPS)).updateFirst(any(Query.class), argThat(KeyRotationEngineTest::isCompletion),
+                eq(KeyRotationGroup.class));
+    }
+
+    @Test
+    public void shouldOnlyClaimAGroupNotRotatedNorHeldByAnotherReplica() {
+        // Given
+        Instant start = Instant.ofEpochMilli(System.currentTimeMillis());
+
+        // When
+        keyRotationEngine.rotate(RUN_ID, applicationIds(1));
+
+        // Then
+        ArgumentCaptor<Query> claim = ArgumentCaptor.forClass(Query.class);
+        ArgumentCaptor<Update> update = ArgumentCaptor.forClass(Update.class);
+        verify(mongoTemplate).upsert(claim.capture(), update.capture(), eq(KeyRotationGroup.class));
+        Document query = claim.getValue().getQueryObject();
+        assertThat(query).containsEntry(KeyRotationGroup.COMPLETED_AT, null);
+        assertThat(((Document) query.get(KeyRotationGroup.HELD_UNTIL)).get("$lt")).isInstanceOf(Date.class);
+        Document set = (Document) update.getValue().getUpdateObject().get("$set");
+        assertThat(((Date) set.get(KeyRotationGroup.HELD_UNTIL)).toInstant())
+                .isAfterOrEqualTo(start.plus(Duration.ofMinutes(5)));
+        Document setOnInsert = (Document) update.getValue().getUpdateObject().get("$setOnInsert");
+        assertThat(setOnInsert).containsEntry(KeyRotationGroup.RUN_ID, RUN_ID);
+    }
+
+    @Test
+    public void shouldLeaveTheGroupsTakenOrRotatedByAnotherReplica() {
+        // Given
+        List<String> applicationIds = applicationIds(50);
+        willThrow(new DuplicateKeyException("E11000")).given(mongoTemplate).upsert(
+                argThat(query -> query != null && "2026-10-17T01:00:00Z-1".equals(query.getQueryObject().get("_id"))),
+                any(Update.class), eq(KeyRotationGroup.class));
+
+        // When
+        int rotated = keyRotationEngine.rotate(RUN_ID, applicationIds);
+
+        // Then
+        List<String> otherGroups = applicationIds.stream()
+                .filter(applicationId -> Math.floorMod(applicationId.hashCode(), GROUPS) != 1)
+                .collect(Collectors.toList());
+        assertThat(rotated).isEqualTo(otherGroups.size()).isLessThan(50);
+        assertThat(batches.stream().flatMap(List::stream)).containsExactlyInAnyOrderElementsOf(otherGroups);
+        verify(mongoTemplate, times(GROUPS - 1)).updateFirst(any(Query.class),
+                argThat(KeyRotationEngineTest::isCompletion), eq(KeyRotationGroup.class));
+    }
+
+    @Test
+    public void shouldStopRotatingAGroupTakenOverByAnotherReplica() {
+        // Given
+        given(mongoTemplate.updateFirst(any(Query.class), any(Update.class), eq(KeyRotationGroup.class)))
+                .willReturn(UpdateResult.acknowledged(0, 0L, null));
+        KeyRotationEngine engine = new KeyRotationEngine(mongoTemplate, applicationKeyRotator, true, 1, 2, 5,
+                Duration.ofMinutes(5), "0 0 1 * * *", "-");
+
+        // When
+        int rotated = engine.rotate(RUN_ID, applicationIds(50));
+        engine.shutdown();
+
+        // Then
+        assertThat(rotated).isEqualTo(5);
+        assertThat(batches).hasSize(1);
+        verify(mongoTemplate, never()).updateFirst(any(Query.class), argThat(KeyRotationEngineTest::isCompletion),
+                eq(KeyRotationGroup.class));
+    }
+
+    @Test
+    public void shouldGoOnAfterAFailedBatch() {
+        // Given
+        List<String> failedBatch = new ArrayList<>();
+        KeyRotationEngine engine = engine((applicationIds, pool) -> {
+            if (applicationIds.contains("application-0")) {
+                failedBatch.addAll(applicationIds);
+                throw new IllegalStateException("Mongo unavailable");
+            }
+            return applicationIds.size();
+        });
+
+        // When
+        int rotated = engine.rotate(RUN_ID, applicationIds(50));
+        engine.shutdown();
+
+        // Then
+        assertThat(failedBatch).isNotEmpty();
+        assertThat(rotated).isEqualTo(50 - failedBatch.size());
+        verify(mongoTemplate, times(GROUPS)).updateFirst(any(Query.class), argThat(KeyRotationEngineTest::isCompletion),
+                eq(KeyRotationGroup.class));
+    }
+
+    @Test
+    public void shouldNameTheRunAfterItsScheduledTime() {
+        // Given
+        String cron = "0 0/15 * * * *";
+
+        // When
+        Date onTime = KeyRotationEngine.scheduledTime(cron, Date.from(Instant.parse("2026-10-17T01:00:00.020Z")));
+        Date late = KeyRotationEngine.scheduledTime(cron, Date.from(Instant.parse("2026-10-17T01:00:20Z")));
+
+        // Then
+        assertThat(onTime).isEqualTo(late).isEqualTo(Date.from(Instant.parse("2026-10-17T01:00:00Z")));
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void shouldNotRotateTheKeysAlongWithTheLibraryJob() {
+        // When
+        new KeyRotationEngine(mongoTemplate, applicationKeyRotator, true, GROUPS, 2, 5, Duration.ofMinutes(5),
+                "0 0 1 * * *", "0 0 1 * * *");
+    }
+
+    private KeyRotationEngine engine(ApplicationKeyRotator rotator) {
+        return new KeyRotationEngine(mongoTemplate, rotator, true, GROUPS, 2, 5, Duration.ofMinutes(5), "0 0 1 * * *",
+                "-");
+    }
+
+    private static boolean isCompletion(Update update) {
+        return update != null && update.modifies(KeyRotationGroup.COMPLETED_AT);
+    }
+
+    private static List<String> applicationIds(int count) {
+        List<String> applicationIds = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            applicationIds.add("application-" + i);
+        }
+        return applicationIds;
+    }
+}
@@ -0,0 +1,160 @@
+/**
+ * Copyright 2019 ForgeRock AS. All Rights Reserved
+ *
+ * Use of this code requires a commercial software license with ForgeRock AS.
+ * or with one of its affiliates. All use shall be exclusively subject
+ * to such license between the licensee and ForgeRock AS.
+ */
+package jwkms.rotation;
+
+import com.forgerock.openbanking.jwkms.jwks.JwksCache;
+import com.forgerock.openbanking.jwkms.keys.KeyPairPool;
+import com.forgerock.openbanking.jwkms.model.Application;
+import com.forgerock.openbanking.jwkms.rotation.MongoApplicationKeyRotator;
+import com.forgerock.openbanking.jwkms.service.application.ApplicationService;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.ArgumentCaptor;
+import org.mockito.InOrder;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Query;
+
+import java.security.KeyPairGenerator;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ForkJoinPool;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.BDDMockito.given;
+import static org.mockito.BDDMockito.willAnswer;
+import static org.mockito.BDDMockito.willThrow;
+import static org.mockito.Mockito.inOrder;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyNoMoreInteractions;
+
+public class MongoApplicationKeyRotatorTest {
+
+    private MongoTemplate mongoTemplate;
+    private ApplicationService applicationService;
+    private JwksCache jwksCache;
+    private SimpleMeterRegistry meterRegistry;
+    private KeyPairPool keyPairPool;
+    private ForkJoinPool pool;
+    private MongoApplicationKeyRotator mongoApplicationKeyRotator;
+
+    @Before
+    public void setUp() throws Exception {
+        mongoTemplate = mock(MongoTemplate.class);
+        applicationService = mock(ApplicationService.class);
+        jwksCache = mock(JwksCache.class);
+        meterRegistry = new SimpleMeterRegistry();
+        keyPairPool = new KeyPairPool(true, new int[]{512}, 1, 0, meterRegistry);
+        keyPairPool.start();
+        pool = new ForkJoinPool(4);
+        mongoApplicationKeyRotator = new MongoApplicationKeyRotator(mongoTemplate, applicationService, jwksCache, keyPairPool);
+    }
+
+    @After
+    public void tearDown() {
+        pool.shutdownNow();
+        keyPairPool.stop();
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    public void shouldRotateTheBatchOnThePoolAndLeaveTheSaveToTheApplicationService() {
+        // Given
+        List<Application> applications = Arrays.asList(application("app-1"), application("app-2"), application("app-3"));
+        given(mongoTemplate.find(any(Query.class), eq(Application.class))).willReturn(applications);
+        Set<String> threads = ConcurrentHashMap.newKeySet();
+        Set<Boolean> servedByThePool = ConcurrentHashMap.newKeySet();
+        willAnswer(invocation -> threads.add(Thread.currentThread().getName())).given(applicationService).rotateKeys(any());
+        willAnswer(invocation -> servedByThePool.add(keyPairPool.isServing())).given(applicationService).rotateTransportKeys(any());
+
+        // When
+        int rotated = mongoApplicationKeyRotator.rotate(Arrays.asList("app-1", "app-2", "app-3"), pool);
+
+        // Then
+        assertThat(rotated).isEqualTo(3);
+        assertThat(threads).allSatisfy(thread -> assertThat(thread).startsWith("ForkJoinPool-"));
+        assertThat(servedByThePool).containsExactly(true);
+        for (Application application : applications) {
+            InOrder inOrder = inOrder(applicationService);
+            inOrder.verify(applicationService).rotateKeys(application);
+            inOrder.verify(applicationService).rotateTransportKeys(application);
+        }
+        // The application service saved each application, the rotator doesn't write them again
+        verify(mongoTemplate).find(any(Query.class), eq(Application.class));
+        verifyNoMoreInteractions(mongoTemplate);
+        ArgumentCaptor<Collection<String>> invalidated = ArgumentCaptor.forClass(Collection.class);
+        verify(jwksCache).invalidate(invalidated.capture());
+        assertThat(invalidated.getValue()).containsExactlyInAnyOrder("app-1", "app-2", "app-3");
+    }
+
+    @Test
+    public void shouldServeTheJcaKeyGenerationOfTheApplicationServiceFromThePool() {
+        // Given
+        given(mongoTemplate.find(any(Query.class), eq(Application.class)))
+                .willReturn(Collections.singletonList(application("app-1")));
+        // The RSA key pair generator of the JCA, without provider, as the application service generates its keys
+        willAnswer(invocation -> {
+            KeyPairGenerator generator = KeyPairGenerator.getInstance("RSA");
+            generator.initialize(512);
+            return generator.generateKeyPair();
+        }).given(applicationService).rotateKeys(any());
+
+        // When
+        mongoApplicationKeyRotator.rotate(Collections.singletonList("app-1"), pool);
+
+        // Then
+        assertThat(meterRegistry.get(KeyPairPool.METRIC_PREFIX + ".wait").tag("size", "512").timer().count())
+                .isEqualTo(1);
+        assertThat(meterRegistry.get(KeyPairPool.METRIC_PREFIX + ".bypassed").counter().count()).isZero();
+    }
+
+    @Test
+    public void shouldNotCountAnApplicationThatFailedToRotate() {
+        // Given
+        Application failing = application("app-2");
+        given(mongoTemplate.find(any(Query.class), eq(Application.class)))
+                .willReturn(Arrays.asList(application("app-1"), failing));
+        willThrow(new IllegalStateException("No CA")).given(applicationService).rotateTransportKeys(failing);
+
+        // When
+        int rotated = mongoApplicationKeyRotator.rotate(Arrays.asList("app-1", "app-2"), pool);
+
+        // Then
+        assertThat(rotated).isEqualTo(1);
+        verify(jwksCache).invalidate(Collections.singletonList("app-1"));
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    public void shouldNotInvalidateTheCacheWhenNothingWasRotated() {
+        // Given
+        given(mongoTemplate.find(any(Query.class), eq(Application.class))).willReturn(Collections.emptyList());
+
+        // When
+        int rotated = mongoApplicationKeyRotator.rotate(Collections.singletonList("app-1"), pool);
+
+        // Then
+        assertThat(rotated).isZero();
+        verify(jwksCache, never()).invalidate(any(Collection.class));
+    }
+
+    private static Application application(String issuerId) {
+        Application application = new Application();
+        application.setIssuerId(issuerId);
+        return application;
+    }
+}
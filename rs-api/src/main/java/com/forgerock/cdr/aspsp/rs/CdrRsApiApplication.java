@@ -7,9 +7,15 @@
  */
 package com.forgerock.cdr.aspsp.rs;
 
+import com.forgerock.cdr.common.http.WebClientFactory;
+import com.forgerock.cdr.common.json.HighPerformanceJackson;
+import com.forgerock.cdr.common.matls.CaTrustIndex;
+import com.forgerock.cdr.common.matls.CaTrustIndex.Issuer;
+import com.forgerock.cdr.common.matls.ClientJwkCollector;
+import com.forgerock.cdr.common.matls.ClientJwkHeaderCache;
+import com.forgerock.cdr.common.matls.TppLookupCache;
 import com.forgerock.cert.Psd2CertInfo;
 import com.forgerock.cert.psd2.RolesOfPsp;
-import com.forgerock.openbanking.common.services.store.tpp.TppStoreService;
 import com.forgerock.openbanking.model.OBRIRole;
 import com.forgerock.openbanking.model.Tpp;
 import com.forgerock.openbanking.model.error.ClientResponseErrorHandler;
@@ -19,9 +25,7 @@ import com.forgerock.openbanking.ssl.services.keystore.KeyStoreService;
 import dev.openbanking4.spring.security.multiauth.configurers.MultiAuthenticationCollectorConfigurer;
 import dev.openbanking4.spring.security.multiauth.configurers.collectors.PSD2Collector;
 import dev.openbanking4.spring.security.multiauth.configurers.collectors.X509Collector;
-import dev.openbanking4.spring.security.multiauth.model.CertificateHeaderFormat;
 import dev.openbanking4.spring.security.multiauth.model.granttypes.PSD2GrantType;
-import io.netty.handler.ssl.SslContext;
 import lombok.AllArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.bouncycastle.asn1.x500.RDN;
@@ -41,7 +45,6 @@ import org.springframework.context.annotation.ComponentScan;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.core.io.Resource;
 import org.springframework.data.mongodb.repository.config.EnableMongoRepositories;
-import org.springframework.http.client.reactive.ReactorClientHttpConnector;
 import org.springframework.http.converter.HttpMessageConverter;
 import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
 import org.springframework.http.converter.json.MappingJackson2HttpMessageConverter;
@@ -55,7 +58,6 @@ import org.springframework.security.core.AuthenticationException;
 import org.springframework.security.core.GrantedAuthority;
 import org.springframework.web.client.RestTemplate;
 import org.springframework.web.reactive.function.client.WebClient;
-import reactor.netty.http.client.HttpClient;
 import springfox.documentation.swagger2.annotations.EnableSwagger2;
 
 import java.io.IOException;
@@ -90,6 +92,10 @@ public class CdrRsApiApplication {
     private String externalCaAlias;
     @Autowired
     private SslConfiguration sslConfiguration;
+    @Autowired
+    private WebClientFactory webClientFactory;
+    @Autowired
+    private HighPerformanceJackson highPerformanceJackson;
     @Value("${server.ssl.client-certs-key-alias}")
     private String keyAlias;
 
@@ -112,7 +118,10 @@ public class CdrRsApiApplication {
         private X509Certificate[] obCA;
 
         @Autowired
-        private TppStoreService tppStoreService;
+        private TppLookupCache tppLookupCache;
+
+        @Autowired
+        private ClientJwkHeaderCache clientJwkHeaderCache;
 
         @Override
         protected void configure(HttpSecurity http) throws Exception {
@@ -120,8 +129,14 @@ public class CdrRsApiApplication {
             X509Certificate internalCACertificate = (X509Certificate) keyStoreService.getKeyStore().getCertificate(internalCaAlias);
             X509Certificate externalCACertificate = (X509Certificate) keyStoreService.getKeyStore().getCertificate(externalCaAlias);
 
-            OBRIInternalCertificates obriInternalCertificates = new OBRIInternalCertificates(internalCACertificate);
-            OBRIExternalCertificates obriExternalCertificates = new OBRIExternalCertificates(externalCACertificate, tppStoreService, obCA);
+            CaTrustIndex caTrustIndex = CaTrustIndex.builder()
+                    .ca(Issuer.FORGEROCK_INTERNAL, internalCACertificate)
+                    .ca(Issuer.FORGEROCK_EXTERNAL, externalCACertificate)
+                    .ca(Issuer.OPEN_BANKING, obCA)
+                    .build();
+            OBRIInternalCertificates obriInternalCertificates = new OBRIInternalCertificates(caTrustIndex);
+            OBRIExternalCertificates obriExternalCertificates = new OBRIExternalCertificates(caTrustIndex, tppLookupCache,
+                    caTrustIndex.isIssuedBy(obCA, Issuer.FORGEROCK_EXTERNAL));
 
             http
 
@@ -132,14 +147,14 @@ public class CdrRsApiApplication {
                     .and()
                     .authenticationProvider(new CustomAuthProvider())
                     .apply(new MultiAuthenticationCollectorConfigurer<HttpSecurity>()
-                            .collector(PSD2Collector.psd2Builder()
-                                    .collectFromHeader(CertificateHeaderFormat.JWK)
+                            .collector(ClientJwkCollector.builder()
+                                    .clientJwkHeaderCache(clientJwkHeaderCache)
                                     .headerName(CLIENT_CERTIFICATE_HEADER_NAME)
                                     .usernameCollector(obriInternalCertificates)
                                     .authoritiesCollector(obriInternalCertificates)
                                     .build())
-                            .collector(PSD2Collector.psd2Builder()
-                                    .collectFromHeader(CertificateHeaderFormat.JWK)
+                            .collector(ClientJwkCollector.builder()
+                                    .clientJwkHeaderCache(clientJwkHeaderCache)
                                     .headerName(CLIENT_CERTIFICATE_HEADER_NAME)
                                     .usernameCollector(obriExternalCertificates)
                                     .authoritiesCollector(obriExternalCertificates)
@@ -175,7 +190,7 @@ public class CdrRsApiApplication {
     @AllArgsConstructor
     public static class OBRIInternalCertificates implements PSD2Collector.AuthoritiesCollector, X509Collector.UsernameCollector {
 
-        private X509Certificate caCertificate;
+        private CaTrustIndex caTrustIndex;
 
         @Override
         public Set<GrantedAuthority> getAuthorities(X509Certificate[] certificatesChain, Psd2CertInfo psd2CertInfo, RolesOfPsp roles) {
@@ -200,8 +215,7 @@ public class CdrRsApiApplication {
         }
 
         private boolean isCertificateIssuedByCA(X509Certificate[] certificatesChain) {
-            return (certificatesChain.length > 1 && caCertificate.equals(certificatesChain[1]))
-                    || (certificatesChain.length == 1 && caCertificate.getSubjectX500Principal().equals(certificatesChain[0].getIssuerX500Principal()));
+            return caTrustIndex.isIssuedBy(certificatesChain, Issuer.FORGEROCK_INTERNAL);
         }
     }
 
@@ -209,9 +223,9 @@ public class CdrRsApiApplication {
     @AllArgsConstructor
     public static class OBRIExternalCertificates implements PSD2Collector.AuthoritiesCollector, X509Collector.UsernameCollector {
 
-        private X509Certificate caCertificate;
-        private TppStoreService tppStoreService;
-        private X509Certificate[] obCA;
+        private CaTrustIndex caTrustIndex;
+        private TppLookupCache tppLookupCache;
+        private boolean obCAIssuedByCA;
 
         @Override
         public Set<GrantedAuthority> getAuthorities(X509Certificate[] certificatesChain, Psd2CertInfo psd2CertInfo, RolesOfPsp roles) {
@@ -227,13 +241,13 @@ public class CdrRsApiApplication {
                 authorities.add(OBRIRole.ROLE_FORGEROCK_EXTERNAL_APP);
                 authorities.add(OBRIRole.ROLE_TPP);
             }
-            if (isCertificateIssuedByCA(obCA)) {
+            if (obCAIssuedByCA) {
                 authorities.add(OBRIRole.ROLE_TPP);
             }
 
             if (authorities.contains(OBRIRole.ROLE_TPP)) {
                 String cn = certificatesChain[0].getSubjectDN().getName();
-                Optional<Tpp> optionalTpp = tppStoreService.findByCn(cn);
+                Optional<Tpp> optionalTpp = tppLookupCache.findBySubject(cn);
                 if (!optionalTpp.isPresent()) {
                     log.debug("TPP not found. This TPP {} is not on board yet", cn);
                     authorities.add(OBRIRole.UNREGISTERED_TPP);
@@ -253,7 +267,7 @@ public class CdrRsApiApplication {
 
             String subject = certificatesChain[0].getSubjectDN().getName();
 
-            Optional<Tpp> optionalTpp = tppStoreService.findByCn(subject);
+            Optional<Tpp> optionalTpp = tppLookupCache.findBySubject(subject);
             if (!optionalTpp.isPresent()) {
                 log.debug("TPP not found. This TPP {} is not on board yet", subject);
                 try {
@@ -269,8 +283,7 @@ public class CdrRsApiApplication {
         }
 
         private boolean isCertificateIssuedByCA(X509Certificate[] certificatesChain) {
-            return (certificatesChain.length > 1 && caCertificate.equals(certificatesChain[1]))
-                    || (certificatesChain.length == 1 && caCertificate.getSubjectX500Principal().equals(certificatesChain[0].getIssuerX500Principal()));
+            return caTrustIndex.isIssuedBy(certificatesChain, Issuer.FORGEROCK_EXTERNAL);
         }
     }
 
@@ -307,17 +320,12 @@ public class CdrRsApiApplication {
         MappingJackson2HttpMessageConverter converter = new MappingJackson2HttpMessageConverter();
         Jackson2ObjectMapperBuilder objectMapperBuilder = new Jackson2ObjectMapperBuilder();
         objectMapperBuilderCustomizer.customize(objectMapperBuilder);
-        converter.setObjectMapper(objectMapperBuilder.build());
+        converter.setObjectMapper(highPerformanceJackson.configure(objectMapperBuilder.build()));
         return converter;
     }
 
     @Bean
     public WebClient webClient() throws Exception {
-
-        SslContext sslContext = sslConfiguration.getSslContextForReactor(keyAlias);
-        HttpClient httpClient = HttpClient.create()
-                .secure(sslContextSpec -> sslContextSpec.sslContext(sslContext));
-        ReactorClientHttpConnector connector = new ReactorClientHttpConnector(httpClient);
-        return WebClient.builder().clientConnector(connector).build();
+        return webClientFactory.matlsWebClient("matls", keyAlias);
     }
 }
@@ -0,0 +1,72 @@
+/**
+ * Copyright 2019 ForgeRock AS. All Rights Reserved
+ *
+ * Use of this code requires a commercial software license with ForgeRock AS.
+ * or with one of its affiliates. All use shall be exclusively subject
+ * to such license between the licensee and ForgeRock AS.
+ */
+package com.forgerock.cdr.aspsp.rs.signature;
+
+import com.forgerock.cdr.common.crypto.LeasedJwsSigner;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpStatus;
+import org.springframework.stereotype.Component;
+import org.springframework.web.filter.OncePerRequestFilter;
+import org.springframework.web.util.ContentCachingResponseWrapper;
+
+import javax.servlet.FilterChain;
+import javax.servlet.ServletException;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * The leased-key mode of the detached signatures: the x-jws-signature of the successful responses is signed by rs-api
+ * with the signing key it leased from jwkms, instead of one jwkms call per response.
+ */
+@Component
+@Slf4j
+public class LeasedDetachedSignatureFilter extends OncePerRequestFilter {
+
+    static final String DETACHED_SIGNATURE_HEADER = "x-jws-signature";
+
+    private final LeasedJwsSigner leasedJwsSigner;
+    private final boolean enabled;
+
+    public LeasedDetachedSignatureFilter(LeasedJwsSigner leasedJwsSigner,
+                                         @Value("${rs.detached-signature.leased-key:false}") boolean enabled) {
+        this.leasedJwsSigner = leasedJwsSigner;
+        this.enabled = enabled;
+    }
+
+    @Override
+    protected boolean shouldNotFilter(HttpServletRequest request) {
+        return !enabled;
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain filterChain)
+            throws ServletException, IOException {
+        ContentCachingResponseWrapper responseWrapper = new ContentCachingResponseWrapper(response);
+        try {
+            filterChain.doFilter(request, responseWrapper);
+            byte[] body = responseWrapper.getContentAsByteArray();
+            if (body.length > 0 && HttpStatus.valueOf(responseWrapper.getStatus()).is2xxSuccessful()) {
+                sign(body, response);
+            }
+        } finally {
+            responseWrapper.copyBodyToResponse();
+        }
+    }
+
+    private void sign(byte[] body, HttpServletResponse response) {
+        try {
+            response.setHeader(DETACHED_SIGNATURE_HEADER, leasedJwsSigner.signDetached(new String(body, StandardCharsets.UTF_8)));
+        } catch (RuntimeException e) {
+            // Neither the leased key nor jwkms could sign, the TPP gets the response without its signature
+            log.error("Can't sign the detached signature of a {} response", response.getStatus(), e);
+        }
+    }
+}
@@ -0,0 +1,123 @@
+/**
+ * Copyright 2019 ForgeRock AS. All Rights Reserved
+ *
+ * Use of this code requires a commercial software license with ForgeRock AS.
+ * or with one of its affiliates. All use shall be exclusively subject
+ * to such license between the licensee and ForgeRock AS.
+ */
+package rs.signature;
+
+import com.forgerock.cdr.aspsp.rs.signature.LeasedDetachedSignatureFilter;
+import com.forgerock.cdr.common.crypto.LeasedJwsSigner;
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+
+import javax.servlet.FilterChain;
+import javax.servlet.http.HttpServletResponse;
+import java.nio.charset.StandardCharsets;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.BDDMockito.given;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verifyZeroInteractions;
+
+public class LeasedDetachedSignatureFilterTest {
+
+    private static final String DETACHED_SIGNATURE_HEADER = "x-jws-signature";
+    private static final String BODY = "{\"data\":{\"accountId\":\"22289\"}}";
+
+    private LeasedJwsSigner leasedJwsSigner;
+    private LeasedDetachedSignatureFilter leasedDetachedSignatureFilter;
+    private MockHttpServletRequest request;
+    private MockHttpServletResponse response;
+
+    @Before
+    public void setUp() {
+        leasedJwsSigner = mock(LeasedJwsSigner.class);
+        leasedDetachedSignatureFilter = new LeasedDetachedSignatureFilter(leasedJwsSigner, true);
+        request = new MockHttpServletRequest("GET", "/cds-au/v1/banking/accounts");
+        response = new CommittedOnWriteResponse();
+    }
+
+    @Test
+    public void shouldSignASuccessfulResponseBeforeItsBodyIsSent() throws Exception {
+        // Given
+        given(leasedJwsSigner.signDetached(BODY)).willReturn("eyJhbGciOiJQUzI1NiJ9..c2lnbmF0dXJl");
+
+        // When
+        leasedDetachedSignatureFilter.doFilter(request, response, respond(200, BODY));
+
+        // Then
+        assertThat(response.getHeader(DETACHED_SIGNATURE_HEADER)).isEqualTo("eyJhbGciOiJQUzI1NiJ9..c2lnbmF0dXJl");
+        assertThat(response.isCommitted()).isTrue();
+        assertThat(response.getContentAsString()).isEqualTo(BODY);
+    }
+
+    @Test
+    public void shouldNotSignAnErrorResponse() throws Exception {
+        // When
+        leasedDetachedSignatureFilter.doFilter(request, response, respond(400, "{\"errors\":[]}"));
+
+        // Then
+        verifyZeroInteractions(leasedJwsSigner);
+        assertThat(response.getHeader(DETACHED_SIGNATURE_HEADER)).isNull();
+        assertThat(response.getStatus()).isEqualTo(400);
+        assertThat(response.getContentAsString()).isEqualTo("{\"errors\":[]}");
+    }
+
+    @Test
+    public void shouldSendTheResponseWithoutSignatureWhenTheSigningFails() throws Exception {
+        // Given
+        given(leasedJwsSigner.signDetached(anyString())).willThrow(new IllegalStateException("jwkms unavailable"));
+
+        // When
+        leasedDetachedSignatureFilter.doFilter(request, response, respond(200, BODY));
+
+        // Then
+        assertThat(response.getHeader(DETACHED_SIGNATURE_HEADER)).isNull();
+        assertThat(response.getStatus()).isEqualTo(200);
+        assertThat(response.getContentAsString()).isEqualTo(BODY);
+    }
+
+    @Test
+    public void shouldNotFilterWhenTheLeasedModeIsDisabled() throws Exception {
+        // Given
+        leasedDetachedSignatureFilter = new LeasedDetachedSignatureFilter(leasedJwsSigner, false);
+
+        // When
+        leasedDetachedSignatureFilter.doFilter(request, response, respond(200, BODY));
+
+        // Then
+        verifyZeroInteractions(leasedJwsSigner);
+        assertThat(response.getContentAsString()).isEqualTo(BODY);
+    }
+
+    private static FilterChain respond(int status, String body) {
+        return (request, response) -> {
+            ((HttpServletResponse) response).setStatus(status);
+            response.getOutputStream().write(body.getBytes(StandardCharsets.UTF_8));
+        };
+    }
+
+    /**
+     * A response committed by the first byte of its body, which rejects the headers set after, as a servlet container
+     * ignores them.
+     */
+    private static class CommittedOnWriteResponse extends MockHttpServletResponse {
+
+        private CommittedOnWriteResponse() {
+            setBufferSize(1);
+        }
+
+        @Override
+        public void setHeader(String name, String value) {
+            if (isCommitted()) {
+                throw new IllegalStateException("The header " + name + " is set after the response was committed");
+            }
+            super.setHeader(name, value);
+        }
+    }
+}
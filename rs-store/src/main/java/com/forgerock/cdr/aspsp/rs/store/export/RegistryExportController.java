@@ -0,0 +1,95 @@
+/**
+ * Copyright 2019 ForgeRock AS. All Rights Reserved
+ *
+ * Use of this code requires a commercial software license with ForgeRock AS.
+ * or with one of its affiliates. All use shall be exclusively subject
+ * to such license between the licensee and ForgeRock AS.
+ */
+package com.forgerock.cdr.aspsp.rs.store.export;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.forgerock.openbanking.common.model.onboarding.ManualRegistrationApplication;
+import com.forgerock.openbanking.model.Tpp;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.util.CloseableIterator;
+import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.http.converter.json.MappingJackson2HttpMessageConverter;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+
+import java.util.Date;
+
+/**
+ * The export of the registry, for the audits: the TPPs and the manual registration applications as newline
+ * delimited JSON, one document per line, optionally only the ones modified since a date.
+ *
+ * The documents are read from a Mongo cursor and written as they come, without the HAL links of the repositories.
+ * The output stream blocks while the client is behind, which holds the cursor back, so the memory used doesn't
+ * depend on the size of the export.
+ */
+@RestController
+@RequestMapping("/api/export")
+@Slf4j
+public class RegistryExportController {
+
+    public static final MediaType APPLICATION_NDJSON = MediaType.valueOf("application/x-ndjson");
+
+    private final MongoTemplate mongoTemplate;
+    private final ObjectMapper objectMapper;
+    private final String modifiedField;
+
+    public RegistryExportController(MongoTemplate mongoTemplate,
+                                    @Qualifier("mappingJacksonHttpMessageConverter") MappingJackson2HttpMessageConverter converter,
+                                    @Value("${rs.registry.modified-field:updated}") String modifiedField) {
+        this.mongoTemplate = mongoTemplate;
+        this.objectMapper = converter.getObjectMapper();
+        this.modifiedField = modifiedField;
+    }
+
+    @GetMapping("/tpps")
+    public ResponseEntity<StreamingResponseBody> exportTpps(
+            @RequestParam(value = "since", required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) Date since) {
+        return export(Tpp.class, since);
+    }
+
+    @GetMapping("/manual-registration-applications")
+    public ResponseEntity<StreamingResponseBody> exportManualRegistrationApplications(
+            @RequestParam(value = "since", required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) Date since) {
+        return export(ManualRegistrationApplication.class, since);
+    }
+
+    private <T> ResponseEntity<StreamingResponseBody> export(Class<T> type, Date since) {
+        Query query = since != null ? new Query(Criteria.where(modifiedField).gte(since)) : new Query();
+        // The documents are flushed with the buffer of the generator, not one by one
+        ObjectWriter writer = objectMapper.writerFor(type).without(SerializationFeature.FLUSH_AFTER_WRITE_VALUE);
+        return ResponseEntity.ok()
+                .contentType(APPLICATION_NDJSON)
+                .body(outputStream -> {
+                    long exported = 0;
+                    try (JsonGenerator generator = writer.getFactory().createGenerator(outputStream);
+                         CloseableIterator<T> documents = mongoTemplate.stream(query, type)) {
+                        // The lines are separated by the raw new lines, not by the default space between root values
+                        generator.setRootValueSeparator(null);
+                        while (documents.hasNext()) {
+                            writer.writeValue(generator, documents.next());
+                            generator.writeRaw('\n');
+                            exported++;
+                        }
+                    }
+                    log.debug("Exported {} {} modified since {}", exported, type.getSimpleName(), since);
+                });
+    }
+}
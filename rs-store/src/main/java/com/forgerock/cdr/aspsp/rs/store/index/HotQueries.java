@@ -0,0 +1,96 @@
+/**
+ * Copyright 2019 ForgeRock AS. All Rights Reserved
+ *
+ * Use of this code requires a commercial software license with ForgeRock AS.
+ * or with one of its affiliates. All use shall be exclusively subject
+ * to such license between the licensee and ForgeRock AS.
+ */
+package com.forgerock.cdr.aspsp.rs.store.index;
+
+import com.forgerock.cdr.aspsp.rs.store.paging.CursorPagingProperties;
+import com.forgerock.cdr.aspsp.rs.store.paging.CursorPagingProperties.PagedCollection;
+import com.forgerock.openbanking.common.model.onboarding.ManualRegistrationApplication;
+import com.forgerock.openbanking.model.Tpp;
+import org.bson.Document;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Date;
+import java.util.List;
+
+/**
+ * The hot queries of the store: the derived queries of the repositories that every request or onboarding runs, the
+ * reads of the registry modified since a date, for its changes and exports, and the reads of the banking collections
+ * by account and date range, most recent first.
+ */
+@Component
+public class HotQueries {
+
+    private static final String ID = "_id";
+
+    private final MongoTemplate mongoTemplate;
+    private final CursorPagingProperties cursorPagingProperties;
+    private final String modifiedField;
+
+    public HotQueries(MongoTemplate mongoTemplate, CursorPagingProperties cursorPagingProperties,
+                      @Value("${rs.registry.modified-field:updated}") String modifiedField) {
+        this.mongoTemplate = mongoTemplate;
+        this.cursorPagingProperties = cursorPagingProperties;
+        this.modifiedField = modifiedField;
+    }
+
+    public List<HotQuery> all() {
+        List<HotQuery> queries = new ArrayList<>();
+        String tpps = mongoTemplate.getCollectionName(Tpp.class);
+        // findByCertificateCn, on the authentication of every TPP request
+        queries.add(equality("tpp by certificateCn", tpps, "certificateCn"));
+        // findByClientId, on the registration and the token requests
+        queries.add(equality("tpp by clientId", tpps, "clientId"));
+        String applications = mongoTemplate.getCollectionName(ManualRegistrationApplication.class);
+        // findByUserId, on the onboarding UI
+        queries.add(equality("manual registration application by userId", applications, "userId"));
+        queries.add(modifiedSince("tpp by " + modifiedField, tpps));
+        queries.add(modifiedSince("manual registration application by " + modifiedField, applications));
+        cursorPagingProperties.getCollections().forEach((name, pagedCollection) -> queries.add(byAccountAndDate(name, pagedCollection)));
+        return queries;
+    }
+
+    private static HotQuery equality(String name, String collection, String field) {
+        return HotQuery.builder()
+                .name(name)
+                .collection(collection)
+                .index(new Document(field, 1))
+                .filter(new Document(field, ""))
+                .build();
+    }
+
+    private HotQuery modifiedSince(String name, String collection) {
+        return HotQuery.builder()
+                .name(name)
+                .collection(collection)
+                .index(new Document(modifiedField, 1))
+                .filter(new Document(modifiedField, new Document("$gte", new Date())))
+                .build();
+    }
+
+    /**
+     * The queries by account id and date range of the repositories and of the keyset paging share the same index,
+     * the date and the _id being descending for the most recent first.
+     */
+    private static HotQuery byAccountAndDate(String name, PagedCollection pagedCollection) {
+        String accountField = pagedCollection.getAccountField();
+        String sortField = pagedCollection.getSortField();
+        Date now = new Date();
+        return HotQuery.builder()
+                .name(name + " by " + accountField + " and " + sortField)
+                .collection(pagedCollection.getCollection())
+                .index(new Document(accountField, 1).append(sortField, -1).append(ID, -1))
+                .filter(new Document(accountField, new Document("$in", Collections.singletonList("")))
+                        .append(sortField, new Document("$gte", now).append("$lte", now)))
+                .sort(new Document(sortField, -1).append(ID, -1))
+                .build();
+    }
+}
@@ -0,0 +1,33 @@
+/**
+ * Copyright 2019 ForgeRock AS. All Rights Reserved
+ *
+ * Use of this code requires a commercial software license with ForgeRock AS.
+ * or with one of its affiliates. All use shall be exclusively subject
+ * to such license between the licensee and ForgeRock AS.
+ */
+package com.forgerock.cdr.aspsp.rs.store.index;
+
+import lombok.Builder;
+import lombok.Value;
+import org.bson.Document;
+
+/**
+ * A frequent query of a collection and the index it needs.
+ *
+ * The filter and the sort have the shape of the query, with sample values of the right types, so that its plan can be
+ * explained.
+ */
+@Value
+@Builder
+public class HotQuery {
+
+    private final String name;
+    private final String collection;
+    /**
+     * The keys of the index, in order, with 1 for ascending and -1 for descending.
+     */
+    private final Document index;
+    private final Document filter;
+    @Builder.Default
+    private final Document sort = new Document();
+}
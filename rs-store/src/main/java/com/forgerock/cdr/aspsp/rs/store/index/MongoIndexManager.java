@@ -0,0 +1,113 @@
+/**
+ * Copyright 2019 ForgeRock AS. All Rights Reserved
+ *
+ * Use of this code requires a commercial software license with ForgeRock AS.
+ * or with one of its affiliates. All use shall be exclusively subject
+ * to such license between the licensee and ForgeRock AS.
+ */
+package com.forgerock.cdr.aspsp.rs.store.index;
+
+import lombok.extern.slf4j.Slf4j;
+import org.bson.Document;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.dao.DataAccessException;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.index.CompoundIndexDefinition;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Creates the indexes of the hot queries on startup, then checks that none of them is run with a collection scan.
+ *
+ * The indexes are created in the background, so that the store serves the requests while a large collection is being
+ * indexed, and an index that already exists is left as it is. The plans are only logged, an index being possibly still
+ * in progress.
+ */
+@Component
+@Slf4j
+public class MongoIndexManager {
+
+    private final MongoTemplate mongoTemplate;
+    private final HotQueries hotQueries;
+    private final boolean enabled;
+    private final boolean verify;
+
+    public MongoIndexManager(MongoTemplate mongoTemplate, HotQueries hotQueries,
+                             @Value("${rs.indexes.enabled:true}") boolean enabled,
+                             @Value("${rs.indexes.verify:true}") boolean verify) {
+        this.mongoTemplate = mongoTemplate;
+        this.hotQueries = hotQueries;
+        this.enabled = enabled;
+        this.verify = verify;
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void onApplicationReady() {
+        if (!enabled) {
+            return;
+        }
+        List<HotQuery> queries = hotQueries.all();
+        ensureIndexes(queries);
+        if (verify) {
+            for (QueryPlan plan : explain(queries)) {
+                if (plan.isCollectionScan()) {
+                    log.warn("The query {} of {} scans the collection: {}", plan.getQuery().getName(),
+                            plan.getQuery().getCollection(), plan.getStages());
+                } else {
+                    log.debug("The query {} of {} is run with {}", plan.getQuery().getName(),
+                            plan.getQuery().getCollection(), plan.getStages());
+                }
+            }
+        }
+    }
+
+    /**
+     * Create the missing indexes of some queries.
+     *
+     * @return the number of indexes ensured, the others having failed
+     */
+    public int ensureIndexes(List<HotQuery> queries) {
+        int ensured = 0;
+        for (HotQuery query : queries) {
+            try {
+                String name = mongoTemplate.indexOps(query.getCollection())
+                        .ensureIndex(new CompoundIndexDefinition(query.getIndex()).background());
+                log.info("Ensured the index {} of {} for the query {}", name, query.getCollection(), query.getName());
+                ensured++;
+            } catch (DataAccessException e) {
+                // An index with the same keys and other options, to be reconciled by hand
+                log.warn("Can't ensure the index {} of {} for the query {}", query.getIndex().toJson(),
+                        query.getCollection(), query.getName(), e);
+            }
+        }
+        return ensured;
+    }
+
+    /**
+     * Explain the winning plans of some queries, without running them.
+     *
+     * @return the plans of the queries explained, the others having failed
+     */
+    public List<QueryPlan> explain(List<HotQuery> queries) {
+        List<QueryPlan> plans = new ArrayList<>();
+        for (HotQuery query : queries) {
+            Document find = new Document("find", query.getCollection())
+                    .append("filter", query.getFilter())
+                    .append("sort", query.getSort());
+            try {
+                Document explain = mongoTemplate.executeCommand(new Document("explain", find)
+                        .append("verbosity", "queryPlanner"));
+                plans.add(QueryPlan.of(query, explain));
+            } catch (RuntimeException e) {
+                // The plans are only logged, a query that can't be explained, by a user without the explain
+                // privilege for example, mustn't stop the startup
+                log.warn("Can't explain the query {} of {}", query.getName(), query.getCollection(), e);
+            }
+        }
+        return plans;
+    }
+}
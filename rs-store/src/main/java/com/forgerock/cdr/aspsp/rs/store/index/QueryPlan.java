@@ -0,0 +1,70 @@
+/**
+ * Copyright 2019 ForgeRock AS. All Rights Reserved
+ *
+ * Use of this code requires a commercial software license with ForgeRock AS.
+ * or with one of its affiliates. All use shall be exclusively subject
+ * to such license between the licensee and ForgeRock AS.
+ */
+package com.forgerock.cdr.aspsp.rs.store.index;
+
+import lombok.Value;
+import org.bson.Document;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * The winning plan of a hot query, as the stages Mongo runs it with, from the first one to the index or collection
+ * scans.
+ */
+@Value
+public class QueryPlan {
+
+    public static final String COLLECTION_SCAN = "COLLSCAN";
+
+    private final HotQuery query;
+    private final List<String> stages;
+
+    /**
+     * Read the winning plan of the output of an explain command, from a standalone server or from every shard.
+     */
+    public static QueryPlan of(HotQuery query, Document explain) {
+        List<String> stages = new ArrayList<>();
+        Document queryPlanner = explain.get("queryPlanner", Document.class);
+        if (queryPlanner != null) {
+            addStages(queryPlanner.get("winningPlan", Document.class), stages);
+        }
+        return new QueryPlan(query, stages);
+    }
+
+    public boolean isCollectionScan() {
+        return stages.contains(COLLECTION_SCAN);
+    }
+
+    private static void addStages(Document plan, List<String> stages) {
+        if (plan == null) {
+            return;
+        }
+        String stage = plan.getString("stage");
+        if (stage != null) {
+            stages.add(stage);
+        }
+        // The slot based engine wraps the plan
+        addStages(plan.get("queryPlan", Document.class), stages);
+        addStages(plan.get("inputStage", Document.class), stages);
+        addAllStages(plan.get("inputStages"), "", stages);
+        // The plans of the shards of a sharded collection
+        addAllStages(plan.get("shards"), "winningPlan", stages);
+    }
+
+    private static void addAllStages(Object plans, String field, List<String> stages) {
+        if (!(plans instanceof List)) {
+            return;
+        }
+        for (Object plan : (List<?>) plans) {
+            if (plan instanceof Document) {
+                addStages(field.isEmpty() ? (Document) plan : ((Document) plan).get(field, Document.class), stages);
+            }
+        }
+    }
+}
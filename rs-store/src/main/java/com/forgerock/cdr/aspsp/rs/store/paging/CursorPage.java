@@ -0,0 +1,36 @@
+/**
+ * Copyright 2019 ForgeRock AS. All Rights Reserved
+ *
+ * Use of this code requires a commercial software license with ForgeRock AS.
+ * or with one of its affiliates. All use shall be exclusively subject
+ * to such license between the licensee and ForgeRock AS.
+ */
+package com.forgerock.cdr.aspsp.rs.store.paging;
+
+import lombok.Builder;
+import lombok.Value;
+import org.bson.Document;
+
+import java.util.List;
+
+/**
+ * A page of documents, with the cursor of the next page if there's one.
+ */
+@Value
+@Builder
+public class CursorPage {
+
+    private final List<Document> documents;
+    private final PageCursor nextCursor;
+    private final int page;
+    private final int pageSize;
+    private final long totalRecords;
+
+    public int getTotalPages() {
+        return (int) ((totalRecords + pageSize - 1) / pageSize);
+    }
+
+    public boolean hasNext() {
+        return nextCursor != null;
+    }
+}
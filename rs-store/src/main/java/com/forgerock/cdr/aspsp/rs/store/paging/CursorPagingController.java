@@ -0,0 +1,139 @@
+/**
+ * Copyright 2019 ForgeRock AS. All Rights Reserved
+ *
+ * Use of this code requires a commercial software license with ForgeRock AS.
+ * or with one of its affiliates. All use shall be exclusively subject
+ * to such license between the licensee and ForgeRock AS.
+ */
+package com.forgerock.cdr.aspsp.rs.store.paging;
+
+import lombok.extern.slf4j.Slf4j;
+import org.bson.Document;
+import org.bson.types.ObjectId;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.HttpStatus;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.server.ResponseStatusException;
+import org.springframework.web.servlet.support.ServletUriComponentsBuilder;
+import org.springframework.web.util.UriComponentsBuilder;
+
+import java.time.OffsetDateTime;
+import java.util.Date;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+
+/**
+ * The banking collections of some accounts, most recent first, with the CDR paging: the page and page-size
+ * parameters, the links and the meta.
+ *
+ * The next link carries the cursor of the next page, so that following the next links reads each page from the index
+ * in constant time. The other links only have a page number and are read by offset.
+ */
+@RestController
+@RequestMapping("/api/paging")
+@ConditionalOnProperty(name = "rs.page.cursor.enabled", havingValue = "true")
+@Slf4j
+public class CursorPagingController {
+
+    static final String CURSOR = "cursor";
+    static final String PAGE = "page";
+    static final String PAGE_SIZE = "page-size";
+    private static final int MAX_PAGE_SIZE = 1000;
+
+    private final KeysetPager keysetPager;
+    private final CursorPagingProperties properties;
+
+    public CursorPagingController(KeysetPager keysetPager, CursorPagingProperties properties) {
+        this.keysetPager = keysetPager;
+        this.properties = properties;
+    }
+
+    @GetMapping("/{collection}")
+    public Map<String, Object> find(@PathVariable("collection") String collection,
+                                    @RequestParam("accountId") List<String> accountIds,
+                                    @RequestParam(value = "oldest-time", required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) OffsetDateTime oldestTime,
+                                    @RequestParam(value = "newest-time", required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) OffsetDateTime newestTime,
+                                    @RequestParam(value = PAGE, defaultValue = "1") int page,
+                                    @RequestParam(value = PAGE_SIZE, required = false) Integer pageSize,
+                                    @RequestParam(value = CURSOR, required = false) String cursor) {
+        CursorPagingProperties.PagedCollection pagedCollection = properties.getCollections().get(collection);
+        if (pagedCollection == null) {
+            throw new ResponseStatusException(HttpStatus.NOT_FOUND, "No cursor paging for " + collection);
+        }
+        int size = pageSize != null ? pageSize : pagedCollection.getPageSize();
+        if (page < 1 || size < 1 || size > MAX_PAGE_SIZE) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Invalid page " + page + " of size " + size);
+        }
+
+        Criteria filter = Criteria.where(pagedCollection.getAccountField()).in(accountIds);
+        if (oldestTime != null || newestTime != null) {
+            filter = filter.and(pagedCollection.getSortField());
+            if (oldestTime != null) {
+                filter = filter.gte(Date.from(oldestTime.toInstant()));
+            }
+            if (newestTime != null) {
+                filter = filter.lte(Date.from(newestTime.toInstant()));
+            }
+        }
+        CursorPage cursorPage = keysetPager.find(pagedCollection.getCollection(), filter, pagedCollection.getSortField(),
+                cursor != null ? PageCursor.decode(cursor) : null, page, size);
+
+        Map<String, Object> data = new LinkedHashMap<>();
+        data.put(collection, cursorPage.getDocuments().stream().map(CursorPagingController::toResource).collect(Collectors.toList()));
+        Map<String, Object> meta = new LinkedHashMap<>();
+        meta.put("totalRecords", cursorPage.getTotalRecords());
+        meta.put("totalPages", cursorPage.getTotalPages());
+        Map<String, Object> response = new LinkedHashMap<>();
+        response.put("data", data);
+        response.put("links", links(ServletUriComponentsBuilder.fromCurrentRequest(), cursorPage));
+        response.put("meta", meta);
+        return response;
+    }
+
+    /**
+     * The CDR links of a page, from the URI of its request.
+     */
+    public static Map<String, String> links(UriComponentsBuilder request, CursorPage cursorPage) {
+        int lastPage = Math.max(cursorPage.getTotalPages(), 1);
+        Map<String, String> links = new LinkedHashMap<>();
+        links.put("self", request.build().toUriString());
+        links.put("first", page(request, 1, cursorPage.getPageSize(), null));
+        links.put("prev", cursorPage.getPage() > 1 ? page(request, cursorPage.getPage() - 1, cursorPage.getPageSize(), null) : null);
+        links.put("next", cursorPage.hasNext()
+                ? page(request, cursorPage.getPage() + 1, cursorPage.getPageSize(), cursorPage.getNextCursor().encode())
+                : null);
+        links.put("last", page(request, lastPage, cursorPage.getPageSize(), null));
+        return links;
+    }
+
+    private static String page(UriComponentsBuilder request, int page, int pageSize, String cursor) {
+        UriComponentsBuilder builder = request.cloneBuilder()
+                .replaceQueryParam(PAGE, page)
+                .replaceQueryParam(PAGE_SIZE, pageSize)
+                .replaceQueryParam(CURSOR);
+        if (cursor != null) {
+            builder.queryParam(CURSOR, cursor);
+        }
+        return builder.build().toUriString();
+    }
+
+    private static Map<String, Object> toResource(Document document) {
+        Map<String, Object> resource = new LinkedHashMap<>();
+        Object id = document.get(KeysetPager.ID);
+        resource.put("id", id instanceof ObjectId ? ((ObjectId) id).toHexString() : id);
+        document.forEach((field, value) -> {
+            if (!KeysetPager.ID.equals(field) && !"_class".equals(field)) {
+                resource.put(field, value);
+            }
+        });
+        return resource;
+    }
+}
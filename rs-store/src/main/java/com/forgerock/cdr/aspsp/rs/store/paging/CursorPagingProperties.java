@@ -0,0 +1,44 @@
+/**
+ * Copyright 2019 ForgeRock AS. All Rights Reserved
+ *
+ * Use of this code requires a commercial software license with ForgeRock AS.
+ * or with one of its affiliates. All use shall be exclusively subject
+ * to such license between the licensee and ForgeRock AS.
+ */
+package com.forgerock.cdr.aspsp.rs.store.paging;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * The banking collections served with cursor paging, by the name of their endpoint.
+ */
+@Component
+@ConfigurationProperties(prefix = "rs.page.cursor")
+@Data
+public class CursorPagingProperties {
+
+    private boolean enabled;
+    private Map<String, PagedCollection> collections = new HashMap<>();
+
+    @Data
+    public static class PagedCollection {
+        /**
+         * The Mongo collection of the documents.
+         */
+        private String collection;
+        /**
+         * The field of the account of a document.
+         */
+        private String accountField = "accountId";
+        /**
+         * The date field of the sort, most recent first, and of the oldest-time and newest-time filters.
+         */
+        private String sortField;
+        private int pageSize = 10;
+    }
+}
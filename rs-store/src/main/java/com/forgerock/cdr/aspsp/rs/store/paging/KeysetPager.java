@@ -0,0 +1,97 @@
+/**
+ * Copyright 2019 ForgeRock AS. All Rights Reserved
+ *
+ * Use of this code requires a commercial software license with ForgeRock AS.
+ * or with one of its affiliates. All use shall be exclusively subject
+ * to such license between the licensee and ForgeRock AS.
+ */
+package com.forgerock.cdr.aspsp.rs.store.paging;
+
+import lombok.extern.slf4j.Slf4j;
+import org.bson.Document;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.stereotype.Component;
+
+import java.util.List;
+
+/**
+ * Keyset paging of a Mongo collection, sorted by a field then by _id, both descending.
+ *
+ * With a cursor, a page is read from the index position of the last document of the previous page, whatever the page
+ * number, instead of skipping all the previous documents as the offset paging does. The documents without the sort
+ * field come last, as Mongo sorts the nulls first. Without a cursor, for the first page or a page link built without
+ * one, the page is read by offset. The documents are only counted without a cursor: the cursor of the next page carries
+ * the total of the first one. The collection needs an index on the filter fields, then the sort field and _id,
+ * which the MongoIndexManager creates for the paged collections.
+ */
+@Component
+@Slf4j
+public class KeysetPager {
+
+    static final String ID = "_id";
+
+    private final MongoTemplate mongoTemplate;
+
+    public KeysetPager(MongoTemplate mongoTemplate) {
+        this.mongoTemplate = mongoTemplate;
+    }
+
+    /**
+     * Read a page.
+     *
+     * @param collection the collection name
+     * @param filter the documents to page through
+     * @param sortField the field of the sort, before _id
+     * @param cursor the cursor of the page, or null to read it by offset
+     * @param page the page number, from 1
+     * @param pageSize the maximum number of documents of the page
+     */
+    public CursorPage find(String collection, Criteria filter, String sortField, PageCursor cursor, int page, int pageSize) {
+        Query query = new Query(cursor != null ? new Criteria().andOperator(filter, after(sortField, cursor)) : filter)
+                .with(Sort.by(Sort.Direction.DESC, sortField, ID))
+                .limit(pageSize + 1);
+        if (cursor == null && page > 1) {
+            query.skip((long) (page - 1) * pageSize);
+        }
+        log.debug("Read the page {} of {}: {}", page, collection, query);
+        List<Document> documents = mongoTemplate.find(query, Document.class, collection);
+        long totalRecords = cursor != null ? cursor.getTotalRecords() : mongoTemplate.count(new Query(filter), collection);
+        PageCursor nextCursor = null;
+        if (documents.size() > pageSize) {
+            documents = documents.subList(0, pageSize);
+            Document last = documents.get(pageSize - 1);
+            nextCursor = new PageCursor(value(last, sortField), last.get(ID), totalRecords);
+        }
+        return CursorPage.builder()
+                .documents(documents)
+                .nextCursor(nextCursor)
+                .page(page)
+                .pageSize(pageSize)
+                .totalRecords(totalRecords)
+                .build();
+    }
+
+    private static Object value(Document document, String path) {
+        Object value = document;
+        for (String field : path.split("\\.")) {
+            if (!(value instanceof Document)) {
+                return null;
+            }
+            value = ((Document) value).get(field);
+        }
+        return value;
+    }
+
+    private static Criteria after(String sortField, PageCursor cursor) {
+        if (cursor.getSortValue() == null) {
+            return Criteria.where(sortField).is(null).and(ID).lt(cursor.getId());
+        }
+        return new Criteria().orOperator(
+                Criteria.where(sortField).lt(cursor.getSortValue()),
+                Criteria.where(sortField).is(cursor.getSortValue()).and(ID).lt(cursor.getId()),
+                Criteria.where(sortField).is(null));
+    }
+}
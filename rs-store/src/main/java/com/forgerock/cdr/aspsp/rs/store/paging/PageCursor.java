@@ -0,0 +1,89 @@
+/**
+ * Copyright 2019 ForgeRock AS. All Rights Reserved
+ *
+ * Use of this code requires a commercial software license with ForgeRock AS.
+ * or with one of its affiliates. All use shall be exclusively subject
+ * to such license between the licensee and ForgeRock AS.
+ */
+package com.forgerock.cdr.aspsp.rs.store.paging;
+
+import lombok.EqualsAndHashCode;
+import lombok.Getter;
+import lombok.ToString;
+import org.bson.Document;
+import org.bson.json.JsonParseException;
+import org.bson.types.ObjectId;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+import java.util.Date;
+
+/**
+ * The position of a page in a collection sorted by a field then by _id, both descending: the sort value and the _id
+ * of the last document of the previous page. It also carries the total number of documents counted for the first
+ * page, so that the next pages aren't counted again.
+ *
+ * The token is opaque to the clients, it's the base64url of the values in extended JSON, so that their BSON types
+ * are kept. As the token isn't signed, only the scalar values a sort field or an _id can have are decoded: a document
+ * value would be read by Mongo as query operators, a regular expression as a pattern.
+ */
+@Getter
+@EqualsAndHashCode
+@ToString
+public class PageCursor {
+
+    private static final String SORT_VALUE = "s";
+    private static final String ID = "i";
+    private static final String TOTAL_RECORDS = "t";
+
+    private final Object sortValue;
+    private final Object id;
+    private final long totalRecords;
+
+    public PageCursor(Object sortValue, Object id, long totalRecords) {
+        if (id == null) {
+            throw new IllegalArgumentException("A page cursor needs an _id");
+        }
+        if (!isScalar(sortValue) || !isScalar(id)) {
+            throw new IllegalArgumentException("A page cursor needs scalar values");
+        }
+        if (totalRecords < 0) {
+            throw new IllegalArgumentException("A page cursor needs a total of records of at least 0");
+        }
+        this.sortValue = sortValue;
+        this.id = id;
+        this.totalRecords = totalRecords;
+    }
+
+    public String encode() {
+        String json = new Document(SORT_VALUE, sortValue).append(ID, id).append(TOTAL_RECORDS, totalRecords).toJson();
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(json.getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * Decode a token.
+     *
+     * @throws InvalidPageCursorException if the token wasn't encoded by {@link #encode()}
+     */
+    public static PageCursor decode(String token) {
+        try {
+            Document document = Document.parse(new String(Base64.getUrlDecoder().decode(token), StandardCharsets.UTF_8));
+            if (document.size() != 3 || !document.containsKey(SORT_VALUE) || document.get(ID) == null
+                    || !(document.get(TOTAL_RECORDS) instanceof Long)) {
+                throw new InvalidPageCursorException(token);
+            }
+            return new PageCursor(document.get(SORT_VALUE), document.get(ID), document.getLong(TOTAL_RECORDS));
+        } catch (IllegalArgumentException | JsonParseException e) {
+            throw new InvalidPageCursorException(token);
+        }
+    }
+
+    private static boolean isScalar(Object value) {
+        return value == null
+                || value instanceof String
+                || value instanceof Date
+                || value instanceof ObjectId
+                || value instanceof Number
+                || value instanceof Boolean;
+    }
+}
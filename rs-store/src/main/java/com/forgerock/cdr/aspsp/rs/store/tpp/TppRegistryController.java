@@ -0,0 +1,153 @@
+/**
+ * Copyright 2019 ForgeRock AS. All Rights Reserved
+ *
+ * Use of this code requires a commercial software license with ForgeRock AS.
+ * or with one of its affiliates. All use shall be exclusively subject
+ * to such license between the licensee and ForgeRock AS.
+ */
+package com.forgerock.cdr.aspsp.rs.store.tpp;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.forgerock.openbanking.model.Tpp;
+import lombok.extern.slf4j.Slf4j;
+import org.bson.Document;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.mapping.MappingException;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.util.CloseableIterator;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.http.converter.json.MappingJackson2HttpMessageConverter;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.util.Date;
+
+/**
+ * The registry of the TPPs, for the local indexes of the services: a snapshot of all the TPPs, then the TPPs that
+ * changed since the version of the previous response.
+ *
+ * The TPPs are streamed from a Mongo cursor. The changes are found on the last modified date of the auditing, less an
+ * overlap for the writes in flight and the clocks of the instances, and come with the ids of all the TPPs for the
+ * deletions.
+ *
+ * The TPPs are deleted from their collection, with nothing left to find the deletions since a version, so every poll
+ * of the changes costs a read of the whole _id index and a list of all the ids: it grows with the number of TPPs, not
+ * with the number of changes, about 40 bytes of JSON a TPP for every service instance every poll interval. This is
+ * fine for the registries of a few thousand TPPs; a registry much larger than that would need tombstones of the
+ * deleted TPPs instead.
+ */
+@RestController
+@RequestMapping("/api/tpp-registry")
+@Slf4j
+public class TppRegistryController {
+
+    private static final String ID = "_id";
+
+    private final MongoTemplate mongoTemplate;
+    private final ObjectWriter tppWriter;
+    private final String modifiedField;
+    private final Duration overlap;
+
+    public TppRegistryController(MongoTemplate mongoTemplate,
+                                 @Qualifier("mappingJacksonHttpMessageConverter") MappingJackson2HttpMessageConverter converter,
+                                 @Value("${rs.registry.modified-field:updated}") String modifiedField,
+                                 @Value("${rs.tpp-registry.overlap:PT1M}") Duration overlap) {
+        this.mongoTemplate = mongoTemplate;
+        // The TPPs are flushed with the buffer of the generator, not one by one
+        this.tppWriter = converter.getObjectMapper().writerFor(Tpp.class).without(SerializationFeature.FLUSH_AFTER_WRITE_VALUE);
+        this.modifiedField = requireProperty(mongoTemplate, modifiedField);
+        this.overlap = overlap;
+    }
+
+    /**
+     * The changes are found on the modified field, so a field the TPPs don't have would find none of them.
+     */
+    private static String requireProperty(MongoTemplate mongoTemplate, String modifiedField) {
+        try {
+            mongoTemplate.getConverter().getMappingContext().getPersistentPropertyPath(modifiedField, Tpp.class);
+        } catch (MappingException e) {
+            throw new IllegalStateException("The modified field " + modifiedField + " isn't a property of the TPPs", e);
+        }
+        return modifiedField;
+    }
+
+    @GetMapping("/snapshot")
+    public ResponseEntity<StreamingResponseBody> snapshot() {
+        long version = System.currentTimeMillis();
+        log.debug("Stream the snapshot of the TPP registry at version {}", version);
+        return json(generator -> {
+            writeHeader(generator, version, true);
+            writeTpps(generator, new Query());
+        });
+    }
+
+    @GetMapping("/changes")
+    public ResponseEntity<StreamingResponseBody> changes(@RequestParam("since") long since) {
+        long version = System.currentTimeMillis();
+        Date modifiedSince = new Date(since - overlap.toMillis());
+        log.debug("Stream the changes of the TPP registry modified since {}, at version {}", modifiedSince, version);
+        return json(generator -> {
+            writeHeader(generator, version, false);
+            writeTpps(generator, new Query(Criteria.where(modifiedField).gte(modifiedSince)));
+            writeIds(generator);
+        });
+    }
+
+    private ResponseEntity<StreamingResponseBody> json(RegistryWriter registryWriter) {
+        return ResponseEntity.ok()
+                .contentType(MediaType.APPLICATION_JSON_UTF8)
+                .body(outputStream -> {
+                    try (JsonGenerator generator = tppWriter.getFactory().createGenerator(outputStream)) {
+                        generator.writeStartObject();
+                        registryWriter.write(generator);
+                        generator.writeEndObject();
+                    }
+                });
+    }
+
+    private static void writeHeader(JsonGenerator generator, long version, boolean snapshot) throws IOException {
+        generator.writeStringField("version", Long.toString(version));
+        generator.writeBooleanField("snapshot", snapshot);
+    }
+
+    private void writeTpps(JsonGenerator generator, Query query) throws IOException {
+        generator.writeArrayFieldStart("tpps");
+        try (CloseableIterator<Tpp> tpps = mongoTemplate.stream(query, Tpp.class)) {
+            while (tpps.hasNext()) {
+                tppWriter.writeValue(generator, tpps.next());
+            }
+        }
+        generator.writeEndArray();
+    }
+
+    /**
+     * The ids of all the TPPs, read on every poll of the changes.
+     */
+    private void writeIds(JsonGenerator generator) throws IOException {
+        Query query = new Query();
+        query.fields().include(ID);
+        generator.writeArrayFieldStart("ids");
+        try (CloseableIterator<Document> ids = mongoTemplate.stream(query, Document.class, mongoTemplate.getCollectionName(Tpp.class))) {
+            while (ids.hasNext()) {
+                generator.writeString(String.valueOf(ids.next().get(ID)));
+            }
+        }
+        generator.writeEndArray();
+    }
+
+    private interface RegistryWriter {
+
+        void write(JsonGenerator generator) throws IOException;
+    }
+}
@@ -0,0 +1,124 @@
+/**
+ * Copyright 2019 ForgeRock AS. All Rights Reserved
+ *
+ * Use of this code requires a commercial software license with ForgeRock AS.
+ * or with one of its affiliates. All use shall be exclusively subject
+ * to such license between the licensee and ForgeRock AS.
+ */
+package store.export;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.forgerock.cdr.aspsp.rs.store.export.RegistryExportController;
+import com.forgerock.openbanking.common.model.onboarding.ManualRegistrationApplication;
+import com.forgerock.openbanking.model.Tpp;
+import org.bson.Document;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.util.CloseableIterator;
+import org.springframework.http.ResponseEntity;
+import org.springframework.http.converter.json.MappingJackson2HttpMessageConverter;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Date;
+import java.util.Iterator;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.BDDMockito.given;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+
+public class RegistryExportControllerTest {
+
+    private MongoTemplate mongoTemplate;
+    private ObjectMapper objectMapper;
+    private RegistryExportController registryExportController;
+
+    @Before
+    public void setUp() {
+        mongoTemplate = mock(MongoTemplate.class);
+        MappingJackson2HttpMessageConverter converter = new MappingJackson2HttpMessageConverter();
+        objectMapper = converter.getObjectMapper();
+        registryExportController = new RegistryExportController(mongoTemplate, converter, "updated");
+    }
+
+    @Test
+    public void shouldExportAllTheTppsAsOneLinePerTpp() throws Exception {
+        // Given
+        given(mongoTemplate.stream(any(Query.class), eq(Tpp.class)))
+                .willReturn(iterator(Arrays.asList(tpp("1", "CN=tpp1"), tpp("2", "CN=tpp2"))));
+
+        // When
+        ResponseEntity<StreamingResponseBody> response = registryExportController.exportTpps(null);
+
+        // Then
+        assertThat(response.getHeaders().getContentType()).isEqualTo(RegistryExportController.APPLICATION_NDJSON);
+        String export = write(response);
+        assertThat(export).endsWith("\n");
+        String[] lines = export.split("\n");
+        assertThat(lines).hasSize(2);
+        assertThat(objectMapper.readValue(lines[0], Tpp.class).getCertificateCn()).isEqualTo("CN=tpp1");
+        assertThat(objectMapper.readValue(lines[1], Tpp.class).getCertificateCn()).isEqualTo("CN=tpp2");
+        ArgumentCaptor<Query> query = ArgumentCaptor.forClass(Query.class);
+        verify(mongoTemplate).stream(query.capture(), eq(Tpp.class));
+        assertThat(query.getValue().getQueryObject()).isEmpty();
+    }
+
+    @Test
+    public void shouldExportTheApplicationsModifiedSinceADate() throws Exception {
+        // Given
+        Date since = new Date(1_570_000_000_000L);
+        given(mongoTemplate.stream(any(Query.class), eq(ManualRegistrationApplication.class)))
+                .willReturn(iterator(Collections.emptyList()));
+
+        // When
+        String export = write(registryExportController.exportManualRegistrationApplications(since));
+
+        // Then
+        assertThat(export).isEmpty();
+        ArgumentCaptor<Query> query = ArgumentCaptor.forClass(Query.class);
+        verify(mongoTemplate).stream(query.capture(), eq(ManualRegistrationApplication.class));
+        assertThat(query.getValue().getQueryObject()).isEqualTo(new Document("updated", new Document("$gte", since)));
+    }
+
+    private static String write(ResponseEntity<StreamingResponseBody> response) throws Exception {
+        ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+        response.getBody().writeTo(outputStream);
+        return new String(outputStream.toByteArray(), StandardCharsets.UTF_8);
+    }
+
+    private static Tpp tpp(String id, String certificateCn) {
+        Tpp tpp = new Tpp();
+        tpp.setId(id);
+        tpp.setCertificateCn(certificateCn);
+        return tpp;
+    }
+
+    private static <T> CloseableIterator<T> iterator(List<T> values) {
+        Iterator<T> iterator = values.iterator();
+        return new CloseableIterator<T>() {
+            @Override
+            public boolean hasNext() {
+                return iterator.hasNext();
+            }
+
+            @Override
+            public T next() {
+                return iterator.next();
+            }
+
+            @Override
+            public void close() {
+            }
+        };
+    }
+}
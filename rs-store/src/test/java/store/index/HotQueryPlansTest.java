@@ -0,0 +1,103 @@
+/**
+ * Copyright 2019 ForgeRock AS. All Rights Reserved
+ *
+ * Use of this code requires a commercial software license with ForgeRock AS.
+ * or with one of its affiliates. All use shall be exclusively subject
+ * to such license between the licensee and ForgeRock AS.
+ */
+package store.index;
+
+import com.forgerock.cdr.aspsp.rs.store.index.HotQueries;
+import com.forgerock.cdr.aspsp.rs.store.index.HotQuery;
+import com.forgerock.cdr.aspsp.rs.store.index.MongoIndexManager;
+import com.forgerock.cdr.aspsp.rs.store.index.QueryPlan;
+import com.forgerock.cdr.aspsp.rs.store.paging.CursorPagingProperties;
+import com.forgerock.cdr.aspsp.rs.store.paging.CursorPagingProperties.PagedCollection;
+import com.mongodb.MongoClient;
+import com.mongodb.MongoClientOptions;
+import com.mongodb.MongoClientURI;
+import com.mongodb.MongoException;
+import org.bson.Document;
+import org.junit.After;
+import org.junit.Assume;
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.data.mongodb.core.MongoTemplate;
+
+import java.util.List;
+import java.util.stream.Collectors;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * The plans of the hot queries on a Mongo with the indexes of the manager, none of them may scan a collection.
+ *
+ * It needs a local Mongo, or the one of -Dmongo.uri=mongodb://host:27017/rs-store-index-test, and is skipped without.
+ * The database is dropped after the test.
+ */
+public class HotQueryPlansTest {
+
+    private MongoClient mongoClient;
+    private MongoTemplate mongoTemplate;
+    private HotQueries hotQueries;
+
+    @Before
+    public void setUp() {
+        MongoClientURI uri = new MongoClientURI(System.getProperty("mongo.uri", "mongodb://localhost:27017/rs-store-index-test"),
+                MongoClientOptions.builder().serverSelectionTimeout(2000));
+        mongoClient = new MongoClient(uri);
+        try {
+            mongoClient.getDatabase(uri.getDatabase()).runCommand(new Document("ping", 1));
+        } catch (MongoException e) {
+            mongoClient.close();
+            Assume.assumeNoException("No Mongo at " + uri, e);
+        }
+        mongoTemplate = new MongoTemplate(mongoClient, uri.getDatabase());
+        hotQueries = new HotQueries(mongoTemplate, cursorPagingProperties(), "updated");
+    }
+
+    @After
+    public void tearDown() {
+        if (mongoTemplate != null) {
+            mongoTemplate.getDb().drop();
+            mongoClient.close();
+        }
+    }
+
+    @Test
+    public void shouldNotScanACollectionForAnyHotQuery() {
+        // Given
+        MongoIndexManager mongoIndexManager = new MongoIndexManager(mongoTemplate, hotQueries, true, true);
+        List<HotQuery> queries = hotQueries.all();
+        for (HotQuery query : queries) {
+            mongoTemplate.getCollection(query.getCollection()).insertOne(new Document("seed", true));
+        }
+
+        // When
+        mongoIndexManager.ensureIndexes(queries);
+        List<QueryPlan> plans = mongoIndexManager.explain(queries);
+
+        // Then
+        assertThat(plans.stream().filter(QueryPlan::isCollectionScan).map(plan -> plan.getQuery().getName())
+                .collect(Collectors.toList()))
+                .as("The hot queries scanning a collection")
+                .isEmpty();
+    }
+
+    /**
+     * The paged collections of rs-store.yml.
+     */
+    private static CursorPagingProperties cursorPagingProperties() {
+        CursorPagingProperties cursorPagingProperties = new CursorPagingProperties();
+        cursorPagingProperties.getCollections().put("transactions", pagedCollection("fRTransaction", "bookingDateTime"));
+        cursorPagingProperties.getCollections().put("statements", pagedCollection("fRStatement", "startDateTime"));
+        return cursorPagingProperties;
+    }
+
+    private static PagedCollection pagedCollection(String collection, String sortField) {
+        PagedCollection pagedCollection = new PagedCollection();
+        pagedCollection.setCollection(collection);
+        pagedCollection.setSortField(sortField);
+        return pagedCollection;
+    }
+}
@@ -0,0 +1,185 @@
+/**
+ * Copyright 2019 ForgeRock AS. All Rights Reserved
+ *
+ * Use of this code requires a commercial software license with ForgeRock AS.
+ * or with one of its affiliates. All use shall be exclusively subject
+ * to such license between the licensee and ForgeRock AS.
+ */
+package store.index;
+
+import com.forgerock.cdr.aspsp.rs.store.index.HotQueries;
+import com.forgerock.cdr.aspsp.rs.store.index.HotQuery;
+import com.forgerock.cdr.aspsp.rs.store.index.MongoIndexManager;
+import com.forgerock.cdr.aspsp.rs.store.index.QueryPlan;
+import com.forgerock.cdr.aspsp.rs.store.paging.CursorPagingProperties;
+import com.forgerock.cdr.aspsp.rs.store.paging.CursorPagingProperties.PagedCollection;
+import org.bson.Document;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.data.mongodb.UncategorizedMongoDbException;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.index.IndexDefinition;
+import org.springframework.data.mongodb.core.index.IndexOperations;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.BDDMockito.given;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+
+public class MongoIndexManagerTest {
+
+    private MongoTemplate mongoTemplate;
+    private HotQueries hotQueries;
+    private IndexOperations indexOperations;
+
+    @Before
+    public void setUp() {
+        mongoTemplate = mock(MongoTemplate.class);
+        indexOperations = mock(IndexOperations.class);
+        given(mongoTemplate.indexOps(anyString())).willReturn(indexOperations);
+        given(mongoTemplate.getCollectionName(any())).willAnswer(invocation -> ((Class<?>) invocation.getArgument(0)).getSimpleName());
+        PagedCollection transactions = new PagedCollection();
+        transactions.setCollection("fRTransaction");
+        transactions.setSortField("bookingDateTime");
+        CursorPagingProperties cursorPagingProperties = new CursorPagingProperties();
+        cursorPagingProperties.getCollections().put("transactions", transactions);
+        hotQueries = new HotQueries(mongoTemplate, cursorPagingProperties, "updated");
+    }
+
+    @Test
+    public void shouldDeclareTheIndexesOfTheHotQueries() {
+        // When
+        List<HotQuery> queries = hotQueries.all();
+
+        // Then
+        assertThat(queries).extracting(HotQuery::getIndex).containsExactly(
+                new Document("certificateCn", 1),
+                new Document("clientId", 1),
+                new Document("userId", 1),
+                new Document("updated", 1),
+                new Document("updated", 1),
+                new Document("accountId", 1).append("bookingDateTime", -1).append("_id", -1));
+        assertThat(queries.get(5).getCollection()).isEqualTo("fRTransaction");
+        assertThat(queries.get(5).getSort()).isEqualTo(new Document("bookingDateTime", -1).append("_id", -1));
+    }
+
+    @Test
+    public void shouldEnsureTheIndexesInTheBackground() {
+        // Given
+        MongoIndexManager mongoIndexManager = new MongoIndexManager(mongoTemplate, hotQueries, true, false);
+        given(indexOperations.ensureIndex(any())).willThrow(new DataIntegrityViolationException("Index with name: clientId_1 already exists with different options"))
+                .willReturn("index");
+
+        // When
+        int ensured = mongoIndexManager.ensureIndexes(hotQueries.all());
+
+        // Then
+        assertThat(ensured).isEqualTo(5);
+        ArgumentCaptor<IndexDefinition> index = ArgumentCaptor.forClass(IndexDefinition.class);
+        verify(mongoTemplate).indexOps("fRTransaction");
+        verify(indexOperations, times(6)).ensureIndex(index.capture());
+        assertThat(index.getValue().getIndexKeys()).isEqualTo(new Document("accountId", 1).append("bookingDateTime", -1).append("_id", -1));
+        assertThat(index.getValue().getIndexOptions()).containsEntry("background", true);
+    }
+
+    @Test
+    public void shouldNotTouchTheIndexesWhenDisabled() {
+        // Given
+        MongoIndexManager mongoIndexManager = new MongoIndexManager(mongoTemplate, hotQueries, false, true);
+
+        // When
+        mongoIndexManager.onApplicationReady();
+
+        // Then
+        verify(mongoTemplate, never()).indexOps(anyString());
+        verify(mongoTemplate, never()).executeCommand(any(Document.class));
+    }
+
+    @Test
+    public void shouldExplainTheQueriesWithoutRunningThem() {
+        // Given
+        MongoIndexManager mongoIndexManager = new MongoIndexManager(mongoTemplate, hotQueries, true, true);
+        HotQuery query = hotQueries.all().get(5);
+        given(mongoTemplate.executeCommand(any(Document.class))).willReturn(explain(stage("FETCH", stage("IXSCAN"))));
+
+        // When
+        List<QueryPlan> plans = mongoIndexManager.explain(Collections.singletonList(query));
+
+        // Then
+        ArgumentCaptor<Document> command = ArgumentCaptor.forClass(Document.class);
+        verify(mongoTemplate).executeCommand(command.capture());
+        assertThat(command.getValue()).isEqualTo(new Document("explain", new Document("find", "fRTransaction")
+                .append("filter", query.getFilter())
+                .append("sort", query.getSort()))
+                .append("verbosity", "queryPlanner"));
+        assertThat(plans).extracting(QueryPlan::getStages).containsExactly(Arrays.asList("FETCH", "IXSCAN"));
+        assertThat(plans.get(0).isCollectionScan()).isFalse();
+    }
+
+    @Test
+    public void shouldStartWhenAQueryCannotBeExplained() {
+        // Given
+        MongoIndexManager mongoIndexManager = new MongoIndexManager(mongoTemplate, hotQueries, true, true);
+        given(indexOperations.ensureIndex(any())).willReturn("index");
+        given(mongoTemplate.executeCommand(any(Document.class)))
+                .willThrow(new UncategorizedMongoDbException("not authorized on rs-store to execute command explain", null))
+                .willReturn(explain(stage("FETCH", stage("IXSCAN"))));
+
+        // When
+        mongoIndexManager.onApplicationReady();
+        List<QueryPlan> plans = mongoIndexManager.explain(hotQueries.all());
+
+        // Then
+        verify(mongoTemplate, times(12)).executeCommand(any(Document.class));
+        assertThat(plans).hasSize(6);
+    }
+
+    @Test
+    public void shouldFindTheCollectionScansOfTheNestedPlans() {
+        // Given
+        Document sortMerge = stage("SORT_MERGE")
+                .append("inputStages", Arrays.asList(stage("IXSCAN"), stage("COLLSCAN")));
+        Document sharded = stage("SHARD_MERGE")
+                .append("shards", Arrays.asList(
+                        new Document("winningPlan", stage("FETCH", stage("IXSCAN"))),
+                        new Document("winningPlan", stage("SORT", stage("COLLSCAN")))));
+
+        // When
+        QueryPlan sortMergePlan = QueryPlan.of(null, explain(sortMerge));
+        QueryPlan shardedPlan = QueryPlan.of(null, explain(sharded));
+        QueryPlan emptyPlan = QueryPlan.of(null, explain(stage("EOF")));
+
+        // Then
+        assertThat(sortMergePlan.getStages()).containsExactly("SORT_MERGE", "IXSCAN", "COLLSCAN");
+        assertThat(sortMergePlan.isCollectionScan()).isTrue();
+        assertThat(shardedPlan.getStages()).containsExactly("SHARD_MERGE", "FETCH", "IXSCAN", "SORT", "COLLSCAN");
+        assertThat(shardedPlan.isCollectionScan()).isTrue();
+        assertThat(emptyPlan.isCollectionScan()).isFalse();
+    }
+
+    private static Document explain(Document winningPlan) {
+        return new Document("queryPlanner", new Document("winningPlan", winningPlan));
+    }
+
+    private static Document stage(String stage) {
+        return stage(stage, null);
+    }
+
+    private static Document stage(String stage, Document inputStage) {
+        Document plan = new Document("stage", stage);
+        if (inputStage != null) {
+            plan.append("inputStage", inputStage);
+        }
+        return plan;
+    }
+}
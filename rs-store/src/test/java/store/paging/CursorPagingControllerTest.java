@@ -0,0 +1,124 @@
+/**
+ * Copyright 2019 ForgeRock AS. All Rights Reserved
+ *
+ * Use of this code requires a commercial software license with ForgeRock AS.
+ * or with one of its affiliates. All use shall be exclusively subject
+ * to such license between the licensee and ForgeRock AS.
+ */
+package store.paging;
+
+import com.forgerock.cdr.aspsp.rs.store.paging.CursorPage;
+import com.forgerock.cdr.aspsp.rs.store.paging.CursorPagingController;
+import com.forgerock.cdr.aspsp.rs.store.paging.CursorPagingProperties;
+import com.forgerock.cdr.aspsp.rs.store.paging.KeysetPager;
+import com.forgerock.cdr.aspsp.rs.store.paging.PageCursor;
+import org.bson.Document;
+import org.bson.types.ObjectId;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.web.context.request.RequestContextHolder;
+import org.springframework.web.context.request.ServletRequestAttributes;
+import org.springframework.web.server.ResponseStatusException;
+import org.springframework.web.util.UriComponentsBuilder;
+
+import java.util.Collections;
+import java.util.Date;
+import java.util.List;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.assertj.core.api.Assertions.entry;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.ArgumentMatchers.isNull;
+import static org.mockito.BDDMockito.given;
+import static org.mockito.Mockito.mock;
+
+public class CursorPagingControllerTest {
+
+    private KeysetPager keysetPager;
+    private CursorPagingController controller;
+
+    @Before
+    public void setUp() {
+        CursorPagingProperties.PagedCollection transactions = new CursorPagingProperties.PagedCollection();
+        transactions.setCollection("fRTransaction");
+        transactions.setSortField("bookingDateTime");
+        CursorPagingProperties properties = new CursorPagingProperties();
+        properties.setCollections(Collections.singletonMap("transactions", transactions));
+        keysetPager = mock(KeysetPager.class);
+        controller = new CursorPagingController(keysetPager, properties);
+
+        MockHttpServletRequest request = new MockHttpServletRequest("GET", "/api/paging/transactions");
+        request.setQueryString("accountId=account-1");
+        RequestContextHolder.setRequestAttributes(new ServletRequestAttributes(request));
+    }
+
+    @After
+    public void tearDown() {
+        RequestContextHolder.resetRequestAttributes();
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    public void shouldAnswerTheCdrPagingContract() {
+        // Given
+        ObjectId id = new ObjectId();
+        Document transaction = new Document("_id", id).append("_class", "FRTransaction").append("accountId", "account-1");
+        PageCursor nextCursor = new PageCursor(new Date(), id, 25);
+        given(keysetPager.find(eq("fRTransaction"), any(), eq("bookingDateTime"), isNull(), eq(1), eq(10)))
+                .willReturn(page(1, 25, Collections.singletonList(transaction), nextCursor));
+
+        // When
+        Map<String, Object> response = controller.find("transactions", Collections.singletonList("account-1"), null, null, 1, null, null);
+
+        // Then
+        List<Map<String, Object>> transactions = (List<Map<String, Object>>) ((Map<String, Object>) response.get("data")).get("transactions");
+        assertThat(transactions).hasSize(1);
+        assertThat(transactions.get(0)).containsExactly(entry("id", id.toHexString()), entry("accountId", "account-1"));
+        assertThat((Map<String, Object>) response.get("meta")).containsEntry("totalRecords", 25L).containsEntry("totalPages", 3);
+        assertThat((Map<String, String>) response.get("links")).containsEntry("next",
+                "http://localhost/api/paging/transactions?accountId=account-1&page=2&page-size=10&cursor=" + nextCursor.encode());
+    }
+
+    @Test
+    public void shouldLinkTheOtherPagesWithoutCursor() {
+        // Given
+        UriComponentsBuilder request = UriComponentsBuilder.fromUriString("https://rs-store/api/paging/transactions?accountId=a&page=2&page-size=10&cursor=abc");
+
+        // When
+        Map<String, String> links = CursorPagingController.links(request, page(2, 25, Collections.emptyList(), null));
+
+        // Then
+        assertThat(links).containsEntry("self", "https://rs-store/api/paging/transactions?accountId=a&page=2&page-size=10&cursor=abc")
+                .containsEntry("first", "https://rs-store/api/paging/transactions?accountId=a&page=1&page-size=10")
+                .containsEntry("prev", "https://rs-store/api/paging/transactions?accountId=a&page=1&page-size=10")
+                .containsEntry("next", null)
+                .containsEntry("last", "https://rs-store/api/paging/transactions?accountId=a&page=3&page-size=10");
+    }
+
+    @Test
+    public void shouldRejectAnUnknownCollection() {
+        assertThatThrownBy(() -> controller.find("accounts", Collections.singletonList("account-1"), null, null, 1, null, null))
+                .isInstanceOf(ResponseStatusException.class);
+    }
+
+    @Test
+    public void shouldRejectATooLargePage() {
+        assertThatThrownBy(() -> controller.find("transactions", Collections.singletonList("account-1"), null, null, 1, 1001, null))
+                .isInstanceOf(ResponseStatusException.class);
+    }
+
+    private static CursorPage page(int page, long totalRecords, List<Document> documents, PageCursor nextCursor) {
+        return CursorPage.builder()
+                .documents(documents)
+                .nextCursor(nextCursor)
+                .page(page)
+                .pageSize(10)
+                .totalRecords(totalRecords)
+                .build();
+    }
+}
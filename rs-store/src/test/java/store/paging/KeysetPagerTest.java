@@ -0,0 +1,194 @@
+/**
+ * Copyright 2019 ForgeRock AS. All Rights Reserved
+ *
+ * Use of this code requires a commercial software license with ForgeRock AS.
+ * or with one of its affiliates. All use shall be exclusively subject
+ * to such license between the licensee and ForgeRock AS.
+ */
+package store.paging;
+
+import com.forgerock.cdr.aspsp.rs.store.paging.CursorPage;
+import com.forgerock.cdr.aspsp.rs.store.paging.InvalidPageCursorException;
+import com.forgerock.cdr.aspsp.rs.store.paging.KeysetPager;
+import com.forgerock.cdr.aspsp.rs.store.paging.PageCursor;
+import org.bson.Document;
+import org.bson.types.ObjectId;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.Date;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.BDDMockito.given;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+
+public class KeysetPagerTest {
+
+    private static final String COLLECTION = "transactions";
+    private static final String SORT_FIELD = "bookingDateTime";
+
+    private MongoTemplate mongoTemplate;
+    private KeysetPager keysetPager;
+
+    @Before
+    public void setUp() {
+        mongoTemplate = mock(MongoTemplate.class);
+        keysetPager = new KeysetPager(mongoTemplate);
+    }
+
+    @Test
+    public void shouldReadTheFirstPageWithTheCursorOfTheNext() {
+        // Given
+        List<Document> documents = transactions(3);
+        given(mongoTemplate.find(any(Query.class), eq(Document.class), eq(COLLECTION))).willReturn(documents);
+        given(mongoTemplate.count(any(Query.class), eq(COLLECTION))).willReturn(25L);
+
+        // When
+        CursorPage page = keysetPager.find(COLLECTION, accounts(), SORT_FIELD, null, 1, 2);
+
+        // Then
+        Query query = query();
+        assertThat(query.getSkip()).isEqualTo(0);
+        assertThat(query.getLimit()).isEqualTo(3);
+        assertThat(query.getSortObject()).isEqualTo(new Document(SORT_FIELD, -1).append("_id", -1));
+        assertThat(page.getDocuments()).containsExactly(documents.get(0), documents.get(1));
+        assertThat(page.getNextCursor()).isEqualTo(new PageCursor(documents.get(1).get(SORT_FIELD), documents.get(1).get("_id"), 25));
+        assertThat(page.getTotalRecords()).isEqualTo(25);
+        assertThat(page.getTotalPages()).isEqualTo(13);
+    }
+
+    @Test
+    public void shouldReadAPageAfterTheCursor() {
+        // Given
+        Date bookingDateTime = new Date(1_500_000_000_000L);
+        ObjectId id = new ObjectId();
+        given(mongoTemplate.find(any(Query.class), eq(Document.class), eq(COLLECTION))).willReturn(transactions(1));
+
+        // When
+        CursorPage page = keysetPager.find(COLLECTION, accounts(), SORT_FIELD, new PageCursor(bookingDateTime, id, 5000), 500, 10);
+
+        // Then
+        Query query = query();
+        assertThat(query.getSkip()).isEqualTo(0);
+        assertThat(query.getQueryObject()).isEqualTo(new Criteria().andOperator(accounts(), new Criteria().orOperator(
+                Criteria.where(SORT_FIELD).lt(bookingDateTime),
+                Criteria.where(SORT_FIELD).is(bookingDateTime).and("_id").lt(id),
+                Criteria.where(SORT_FIELD).is(null))).getCriteriaObject());
+        assertThat(page.hasNext()).isFalse();
+        assertThat(page.getTotalRecords()).isEqualTo(5000);
+    }
+
+    @Test
+    public void shouldCountTheDocumentsOnlyForThePageWithoutCursor() {
+        // Given
+        given(mongoTemplate.find(any(Query.class), eq(Document.class), eq(COLLECTION)))
+                .willReturn(transactions(3), transactions(3));
+        given(mongoTemplate.count(any(Query.class), eq(COLLECTION))).willReturn(25L);
+        PageCursor cursor = keysetPager.find(COLLECTION, accounts(), SORT_FIELD, null, 1, 2).getNextCursor();
+
+        // When
+        CursorPage page = keysetPager.find(COLLECTION, accounts(), SORT_FIELD, PageCursor.decode(cursor.encode()), 2, 2);
+
+        // Then
+        verify(mongoTemplate).count(any(Query.class), eq(COLLECTION));
+        assertThat(page.getTotalRecords()).isEqualTo(25);
+        assertThat(page.getNextCursor().getTotalRecords()).isEqualTo(25);
+    }
+
+    @Test
+    public void shouldReadThePagesWithoutSortValueAfterACursorWithout() {
+        // Given
+        ObjectId id = new ObjectId();
+        given(mongoTemplate.find(any(Query.class), eq(Document.class), eq(COLLECTION))).willReturn(transactions(1));
+
+        // When
+        keysetPager.find(COLLECTION, accounts(), SORT_FIELD, new PageCursor(null, id, 20), 2, 10);
+
+        // Then
+        assertThat(query().getQueryObject()).isEqualTo(new Criteria().andOperator(accounts(),
+                Criteria.where(SORT_FIELD).is(null).and("_id").lt(id)).getCriteriaObject());
+    }
+
+    @Test
+    public void shouldReadAPageWithoutCursorByOffset() {
+        // Given
+        given(mongoTemplate.find(any(Query.class), eq(Document.class), eq(COLLECTION))).willReturn(transactions(1));
+
+        // When
+        keysetPager.find(COLLECTION, accounts(), SORT_FIELD, null, 4, 10);
+
+        // Then
+        assertThat(query().getSkip()).isEqualTo(30);
+    }
+
+    @Test
+    public void shouldKeepTheTypesOfTheCursorValues() {
+        // Given
+        PageCursor dated = new PageCursor(new Date(1_500_000_000_123L), new ObjectId(), 25);
+        PageCursor undated = new PageCursor(null, "79a1694a-6627-4ed7-aa11-97be8178fc69", 0);
+
+        // When / Then
+        assertThat(PageCursor.decode(dated.encode())).isEqualTo(dated);
+        assertThat(PageCursor.decode(undated.encode())).isEqualTo(undated);
+        assertThat(dated.encode()).doesNotContain("=", "+", "/");
+    }
+
+    @Test
+    public void shouldRejectAnInvalidCursor() {
+        assertThatThrownBy(() -> PageCursor.decode("not a cursor")).isInstanceOf(InvalidPageCursorException.class);
+        assertThatThrownBy(() -> PageCursor.decode("eyJhIjoxfQ")).isInstanceOf(InvalidPageCursorException.class);
+    }
+
+    @Test
+    public void shouldRejectACursorWithQueryOperators() {
+        assertThatThrownBy(() -> PageCursor.decode(token("{\"s\": {\"$ne\": null}, \"i\": 1, \"t\": {\"$numberLong\": \"1\"}}")))
+                .isInstanceOf(InvalidPageCursorException.class);
+        assertThatThrownBy(() -> PageCursor.decode(token("{\"s\": null, \"i\": {\"$gt\": \"\"}, \"t\": {\"$numberLong\": \"1\"}}")))
+                .isInstanceOf(InvalidPageCursorException.class);
+        assertThatThrownBy(() -> PageCursor.decode(token("{\"s\": [1], \"i\": 1, \"t\": {\"$numberLong\": \"1\"}}")))
+                .isInstanceOf(InvalidPageCursorException.class);
+        assertThatThrownBy(() -> PageCursor.decode(token("{\"s\": {\"$regex\": \".*\", \"$options\": \"\"}, \"i\": 1, \"t\": {\"$numberLong\": \"1\"}}")))
+                .isInstanceOf(InvalidPageCursorException.class);
+        assertThatThrownBy(() -> PageCursor.decode(token("{\"s\": null, \"i\": 1, \"t\": {\"$numberLong\": \"-1\"}}")))
+                .isInstanceOf(InvalidPageCursorException.class);
+        assertThat(PageCursor.decode(token("{\"s\": \"2019-01-01\", \"i\": 1, \"t\": {\"$numberLong\": \"1\"}}")))
+                .isEqualTo(new PageCursor("2019-01-01", 1, 1));
+    }
+
+    private static String token(String json) {
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(json.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private Query query() {
+        ArgumentCaptor<Query> query = ArgumentCaptor.forClass(Query.class);
+        verify(mongoTemplate).find(query.capture(), eq(Document.class), eq(COLLECTION));
+        return query.getValue();
+    }
+
+    private static Criteria accounts() {
+        return Criteria.where("accountId").in(Arrays.asList("account-1", "account-2"));
+    }
+
+    private static List<Document> transactions(int count) {
+        List<Document> transactions = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            transactions.add(new Document("_id", new ObjectId())
+                    .append("accountId", "account-1")
+                    .append(SORT_FIELD, new Date(1_500_000_000_000L - i * 60_000L)));
+        }
+        return transactions;
+    }
+}
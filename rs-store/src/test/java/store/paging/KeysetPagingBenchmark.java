@@ -0,0 +1,135 @@
+/**
+ * Copyright 2019 ForgeRock AS. All Rights Reserved
+ *
+ * Use of this code requires a commercial software license with ForgeRock AS.
+ * or with one of its affiliates. All use shall be exclusively subject
+ * to such license between the licensee and ForgeRock AS.
+ */
+package store.paging;
+
+import com.forgerock.cdr.aspsp.rs.store.paging.CursorPage;
+import com.forgerock.cdr.aspsp.rs.store.paging.KeysetPager;
+import com.forgerock.cdr.aspsp.rs.store.paging.PageCursor;
+import com.mongodb.MongoClient;
+import com.mongodb.MongoClientURI;
+import com.mongodb.client.MongoCollection;
+import com.mongodb.client.model.IndexOptions;
+import com.mongodb.client.model.Indexes;
+import org.bson.Document;
+import org.bson.types.ObjectId;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Reading a page of the transactions of an account with years of history, by offset and by cursor, from the first
+ * page to the last ones. The collection is seeded on the first run with 1M transactions over 10 accounts, 900K of
+ * them in the first account.
+ *
+ * It needs a local Mongo, or the one of -Dmongo.uri=mongodb://host:27017/rs-store-benchmark.
+ *
+ * Run with: mvn test-compile exec:java -Dexec.mainClass=store.paging.KeysetPagingBenchmark -Dexec.classpathScope=test
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class KeysetPagingBenchmark {
+
+    private static final String COLLECTION = "benchmarkTransaction";
+    private static final String ACCOUNT = "account-0";
+    private static final String SORT_FIELD = "bookingDateTime";
+    private static final int TRANSACTIONS = 1_000_000;
+    private static final int PAGE_SIZE = 25;
+
+    @Param({"1", "100", "4000", "36000"})
+    private int page;
+
+    private MongoClient mongoClient;
+    private KeysetPager keysetPager;
+    private PageCursor cursor;
+
+    @Setup(Level.Trial)
+    public void setup() {
+        MongoClientURI uri = new MongoClientURI(System.getProperty("mongo.uri", "mongodb://localhost:27017/rs-store-benchmark"));
+        mongoClient = new MongoClient(uri);
+        MongoTemplate mongoTemplate = new MongoTemplate(mongoClient, uri.getDatabase());
+        seed(mongoTemplate.getCollection(COLLECTION));
+        keysetPager = new KeysetPager(mongoTemplate);
+        // The cursor the next link of the previous page gives
+        cursor = page > 1 ? keysetPager.find(COLLECTION, account(), SORT_FIELD, null, page - 1, PAGE_SIZE).getNextCursor() : null;
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        mongoClient.close();
+    }
+
+    @Benchmark
+    public CursorPage offset() {
+        return keysetPager.find(COLLECTION, account(), SORT_FIELD, null, page, PAGE_SIZE);
+    }
+
+    @Benchmark
+    public CursorPage cursor() {
+        return keysetPager.find(COLLECTION, account(), SORT_FIELD, cursor, page, PAGE_SIZE);
+    }
+
+    private static Criteria account() {
+        return Criteria.where("accountId").is(ACCOUNT);
+    }
+
+    private static void seed(MongoCollection<Document> collection) {
+        if (collection.countDocuments() == TRANSACTIONS) {
+            return;
+        }
+        collection.drop();
+        long now = System.currentTimeMillis();
+        List<Document> batch = new ArrayList<>();
+        for (int i = 0; i < TRANSACTIONS; i++) {
+            // 90% of the transactions in the first account, one every 2 minutes, some at the same time
+            String accountId = i % 10 == 9 ? "account-" + (1 + i % 9) : ACCOUNT;
+            batch.add(new Document("_id", new ObjectId())
+                    .append("accountId", accountId)
+                    .append(SORT_FIELD, new Date(now - (i / 2) * 120_000L))
+                    .append("transactionId", "transaction-" + i)
+                    .append("amount", String.valueOf(i % 1000) + ".00")
+                    .append("description", "Transaction " + i));
+            if (batch.size() == 10_000) {
+                collection.insertMany(batch);
+                batch.clear();
+            }
+        }
+        collection.createIndex(Indexes.compoundIndex(Indexes.ascending("accountId"), Indexes.descending(SORT_FIELD, "_id")),
+                new IndexOptions().name("accountId_bookingDateTime_id"));
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder()
+                .include(KeysetPagingBenchmark.class.getSimpleName())
+                .build())
+                .run();
+    }
+}
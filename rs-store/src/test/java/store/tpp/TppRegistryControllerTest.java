@@ -0,0 +1,143 @@
+/**
+ * Copyright 2019 ForgeRock AS. All Rights Reserved
+ *
+ * Use of this code requires a commercial software license with ForgeRock AS.
+ * or with one of its affiliates. All use shall be exclusively subject
+ * to such license between the licensee and ForgeRock AS.
+ */
+package store.tpp;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.forgerock.cdr.aspsp.rs.store.tpp.TppRegistryController;
+import com.forgerock.cdr.common.matls.TppRegistryUpdate;
+import com.forgerock.openbanking.model.Tpp;
+import org.bson.Document;
+import org.bson.types.ObjectId;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.convert.MappingMongoConverter;
+import org.springframework.data.mongodb.core.convert.NoOpDbRefResolver;
+import org.springframework.data.mongodb.core.mapping.MongoMappingContext;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.util.CloseableIterator;
+import org.springframework.http.ResponseEntity;
+import org.springframework.http.converter.json.MappingJackson2HttpMessageConverter;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+
+import java.io.ByteArrayOutputStream;
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Date;
+import java.util.Iterator;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.BDDMockito.given;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+
+public class TppRegistryControllerTest {
+
+    private MongoTemplate mongoTemplate;
+    private MappingJackson2HttpMessageConverter converter;
+    private ObjectMapper objectMapper;
+    private TppRegistryController tppRegistryController;
+
+    @Before
+    public void setUp() {
+        mongoTemplate = mock(MongoTemplate.class);
+        given(mongoTemplate.getCollectionName(Tpp.class)).willReturn("tpp");
+        given(mongoTemplate.getConverter()).willReturn(new MappingMongoConverter(NoOpDbRefResolver.INSTANCE, new MongoMappingContext()));
+        converter = new MappingJackson2HttpMessageConverter();
+        objectMapper = converter.getObjectMapper();
+        tppRegistryController = new TppRegistryController(mongoTemplate, converter, "updated", Duration.ofMinutes(1));
+    }
+
+    @Test
+    public void shouldStreamTheSnapshotOfAllTheTpps() throws Exception {
+        // Given
+        given(mongoTemplate.stream(any(Query.class), eq(Tpp.class))).willReturn(iterator(Arrays.asList(
+                tpp("1", "CN=tpp1", "client1"), tpp("2", "CN=tpp2", "client2"))));
+        long before = System.currentTimeMillis();
+
+        // When
+        TppRegistryUpdate snapshot = read(tppRegistryController.snapshot());
+
+        // Then
+        assertThat(snapshot.isSnapshot()).isTrue();
+        assertThat(Long.parseLong(snapshot.getVersion())).isBetween(before, System.currentTimeMillis());
+        assertThat(snapshot.getTpps()).extracting(Tpp::getCertificateCn).containsExactly("CN=tpp1", "CN=tpp2");
+        assertThat(snapshot.getIds()).isNull();
+        ArgumentCaptor<Query> query = ArgumentCaptor.forClass(Query.class);
+        verify(mongoTemplate).stream(query.capture(), eq(Tpp.class));
+        assertThat(query.getValue().getQueryObject()).isEmpty();
+    }
+
+    @Test
+    public void shouldStreamTheChangesSinceAVersionWithAllTheIds() throws Exception {
+        // Given
+        ObjectId deletedLater = new ObjectId();
+        given(mongoTemplate.stream(any(Query.class), eq(Tpp.class)))
+                .willReturn(iterator(Collections.singletonList(tpp("1", "CN=tpp1-renewed", "client1"))));
+        given(mongoTemplate.stream(any(Query.class), eq(Document.class), eq("tpp")))
+                .willReturn(iterator(Arrays.asList(new Document("_id", "1"), new Document("_id", deletedLater))));
+
+        // When
+        TppRegistryUpdate changes = read(tppRegistryController.changes(1_570_000_000_000L));
+
+        // Then
+        assertThat(changes.isSnapshot()).isFalse();
+        assertThat(changes.getTpps()).extracting(Tpp::getCertificateCn).containsExactly("CN=tpp1-renewed");
+        assertThat(changes.getIds()).containsExactly("1", deletedLater.toHexString());
+        ArgumentCaptor<Query> query = ArgumentCaptor.forClass(Query.class);
+        verify(mongoTemplate).stream(query.capture(), eq(Tpp.class));
+        assertThat(query.getValue().getQueryObject())
+                .isEqualTo(new Document("updated", new Document("$gte", new Date(1_570_000_000_000L - 60_000))));
+    }
+
+    @Test
+    public void shouldRejectAModifiedFieldTheTppsDoNotHave() {
+        assertThatThrownBy(() -> new TppRegistryController(mongoTemplate, converter, "lastModified", Duration.ofMinutes(1)))
+                .isInstanceOf(IllegalStateException.class)
+                .hasMessageContaining("lastModified");
+    }
+
+    private TppRegistryUpdate read(ResponseEntity<StreamingResponseBody> response) throws Exception {
+        ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+        response.getBody().writeTo(outputStream);
+        return objectMapper.readValue(outputStream.toByteArray(), TppRegistryUpdate.class);
+    }
+
+    private static Tpp tpp(String id, String certificateCn, String clientId) {
+        Tpp tpp = new Tpp();
+        tpp.setId(id);
+        tpp.setCertificateCn(certificateCn);
+        tpp.setClientId(clientId);
+        return tpp;
+    }
+
+    private static <T> CloseableIterator<T> iterator(List<T> values) {
+        Iterator<T> iterator = values.iterator();
+        return new CloseableIterator<T>() {
+            @Override
+            public boolean hasNext() {
+                return iterator.hasNext();
+            }
+
+            @Override
+            public T next() {
+                return iterator.next();
+            }
+
+            @Override
+            public void close() {
+            }
+        };
+    }
+}
@@ -7,6 +7,12 @@
  */
 package com.forgerock.cdr.rs.ui;
 
+import com.forgerock.cdr.common.http.WebClientFactory;
+import com.forgerock.cdr.common.json.HighPerformanceJackson;
+import com.forgerock.cdr.common.matls.CaTrustIndex;
+import com.forgerock.cdr.common.matls.CaTrustIndex.Issuer;
+import com.forgerock.cdr.common.matls.ClientJwkCollector;
+import com.forgerock.cdr.common.matls.ClientJwkHeaderCache;
 import com.forgerock.cert.Psd2CertInfo;
 import com.forgerock.cert.psd2.RolesOfPsp;
 import com.forgerock.openbanking.common.services.store.tpp.TppStoreService;
@@ -19,9 +25,7 @@ import com.forgerock.openbanking.ssl.services.keystore.KeyStoreService;
 import dev.openbanking4.spring.security.multiauth.configurers.MultiAuthenticationCollectorConfigurer;
 import dev.openbanking4.spring.security.multiauth.configurers.collectors.PSD2Collector;
 import dev.openbanking4.spring.security.multiauth.configurers.collectors.X509Collector;
-import dev.openbanking4.spring.security.multiauth.model.CertificateHeaderFormat;
 import dev.openbanking4.spring.security.multiauth.model.granttypes.PSD2GrantType;
-import io.netty.handler.ssl.SslContext;
 import lombok.AllArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.bouncycastle.asn1.x500.RDN;
@@ -40,7 +44,6 @@ import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.core.io.Resource;
 import org.springframework.data.mongodb.repository.config.EnableMongoRepositories;
-import org.springframework.http.client.reactive.ReactorClientHttpConnector;
 import org.springframework.http.converter.HttpMessageConverter;
 import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
 import org.springframework.http.converter.json.MappingJackson2HttpMessageConverter;
@@ -52,7 +55,6 @@ import org.springframework.security.core.AuthenticationException;
 import org.springframework.security.core.GrantedAuthority;
 import org.springframework.web.client.RestTemplate;
 import org.springframework.web.reactive.function.client.WebClient;
-import reactor.netty.http.client.HttpClient;
 
 import java.io.IOException;
 import java.io.InputStream;
@@ -83,6 +85,10 @@ public class CdrRsUiApplication {
 	private String externalCaAlias;
 	@Autowired
 	private SslConfiguration sslConfiguration;
+	@Autowired
+	private WebClientFactory webClientFactory;
+	@Autowired
+	private HighPerformanceJackson highPerformanceJackson;
 	@Value("${server.ssl.client-certs-key-alias}")
 	private String keyAlias;
 
@@ -107,14 +113,23 @@ public class CdrRsUiApplication {
 		@Autowired
 		private TppStoreService tppStoreService;
 
+		@Autowired
+		private ClientJwkHeaderCache clientJwkHeaderCache;
+
 		@Override
 		protected void configure(HttpSecurity http) throws Exception {
 			loadOBCertificates();
 			X509Certificate internalCACertificate = (X509Certificate) keyStoreService.getKeyStore().getCertificate(internalCaAlias);
 			X509Certificate externalCACertificate = (X509Certificate) keyStoreService.getKeyStore().getCertificate(externalCaAlias);
 
-			OBRIInternalCertificates obriInternalCertificates = new OBRIInternalCertificates(internalCACertificate);
-			OBRIExternalCertificates obriExternalCertificates = new OBRIExternalCertificates(externalCACertificate, tppStoreService, obCA);
+			CaTrustIndex caTrustIndex = CaTrustIndex.builder()
+					.ca(Issuer.FORGEROCK_INTERNAL, internalCACertificate)
+					.ca(Issuer.FORGEROCK_EXTERNAL, externalCACertificate)
+					.ca(Issuer.OPEN_BANKING, obCA)
+					.build();
+			OBRIInternalCertificates obriInternalCertificates = new OBRIInternalCertificates(caTrustIndex);
+			OBRIExternalCertificates obriExternalCertificates = new OBRIExternalCertificates(caTrustIndex, tppStoreService,
+					caTrustIndex.isIssuedBy(obCA, Issuer.FORGEROCK_EXTERNAL));
 
 			http
 
@@ -125,14 +140,14 @@ public class CdrRsUiApplication {
 					.and()
 					.authenticationProvider(new CustomAuthProvider())
 					.apply(new MultiAuthenticationCollectorConfigurer<HttpSecurity>()
-							.collector(PSD2Collector.psd2Builder()
-									.collectFromHeader(CertificateHeaderFormat.JWK)
+							.collector(ClientJwkCollector.builder()
+									.clientJwkHeaderCache(clientJwkHeaderCache)
 									.headerName(CLIENT_CERTIFICATE_HEADER_NAME)
 									.usernameCollector(obriInternalCertificates)
 									.authoritiesCollector(obriInternalCertificates)
 									.build())
-							.collector(PSD2Collector.psd2Builder()
-									.collectFromHeader(CertificateHeaderFormat.JWK)
+							.collector(ClientJwkCollector.builder()
+									.clientJwkHeaderCache(clientJwkHeaderCache)
 									.headerName(CLIENT_CERTIFICATE_HEADER_NAME)
 									.usernameCollector(obriExternalCertificates)
 									.authoritiesCollector(obriExternalCertificates)
@@ -168,7 +183,7 @@ public class CdrRsUiApplication {
 	@AllArgsConstructor
 	public static class OBRIInternalCertificates implements PSD2Collector.AuthoritiesCollector, X509Collector.UsernameCollector {
 
-		private X509Certificate caCertificate;
+		private CaTrustIndex caTrustIndex;
 
 		@Override
 		public Set<GrantedAuthority> getAuthorities(X509Certificate[] certificatesChain, Psd2CertInfo psd2CertInfo, RolesOfPsp roles) {
@@ -193,8 +208,7 @@ public class CdrRsUiApplication {
 		}
 
 		private boolean isCertificateIssuedByCA(X509Certificate[] certificatesChain) {
-			return (certificatesChain.length > 1 && caCertificate.equals(certificatesChain[1]))
-					|| (certificatesChain.length == 1 && caCertificate.getSubjectX500Principal().equals(certificatesChain[0].getIssuerX500Principal()));
+			return caTrustIndex.isIssuedBy(certificatesChain, Issuer.FORGEROCK_INTERNAL);
 		}
 	}
 
@@ -202,9 +216,9 @@ public class CdrRsUiApplication {
 	@AllArgsConstructor
 	public static class OBRIExternalCertificates implements PSD2Collector.AuthoritiesCollector, X509Collector.UsernameCollector {
 
-		private X509Certificate caCertificate;
+		private CaTrustIndex caTrustIndex;
 		private TppStoreService tppStoreService;
-		private X509Certificate[] obCA;
+		private boolean obCAIssuedByCA;
 
 		@Override
 		public Set<GrantedAuthority> getAuthorities(X509Certificate[] certificatesChain, Psd2CertInfo psd2CertInfo, RolesOfPsp roles) {
@@ -220,7 +234,7 @@ public class CdrRsUiApplication {
 				authorities.add(OBRIRole.ROLE_FORGEROCK_EXTERNAL_APP);
 				authorities.add(OBRIRole.ROLE_TPP);
 			}
-			if (isCertificateIssuedByCA(obCA)) {
+			if (obCAIssuedByCA) {
 				authorities.add(OBRIRole.ROLE_TPP);
 			}
 
@@ -262,8 +276,7 @@ public class CdrRsUiApplication {
 		}
 
 		private boolean isCertificateIssuedByCA(X509Certificate[] certificatesChain) {
-			return (certificatesChain.length > 1 && caCertificate.equals(certificatesChain[1]))
-					|| (certificatesChain.length == 1 && caCertificate.getSubjectX500Principal().equals(certificatesChain[0].getIssuerX500Principal()));
+			return caTrustIndex.isIssuedBy(certificatesChain, Issuer.FORGEROCK_EXTERNAL);
 		}
 	}
 
@@ -300,17 +313,12 @@ public class CdrRsUiApplication {
 		MappingJackson2HttpMessageConverter converter = new MappingJackson2HttpMessageConverter();
 		Jackson2ObjectMapperBuilder objectMapperBuilder = new Jackson2ObjectMapperBuilder();
 		objectMapperBuilderCustomizer.customize(objectMapperBuilder);
-		converter.setObjectMapper(objectMapperBuilder.build());
+		converter.setObjectMapper(highPerformanceJackson.configure(objectMapperBuilder.build()));
 		return converter;
 	}
 
 	@Bean
 	public WebClient webClient() throws Exception {
-
-		SslContext sslContext = sslConfiguration.getSslContextForReactor(keyAlias);
-		HttpClient httpClient = HttpClient.create()
-				.secure(sslContextSpec -> sslContextSpec.sslContext(sslContext));
-		ReactorClientHttpConnector connector = new ReactorClientHttpConnector(httpClient);
-		return WebClient.builder().clientConnector(connector).build();
+		return webClientFactory.matlsWebClient("matls", keyAlias);
 	}
 }
\ No newline at end of file
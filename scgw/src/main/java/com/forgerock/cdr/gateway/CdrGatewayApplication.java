@@ -14,6 +14,9 @@ import com.forgerock.cdr.gateway.config.SslConfiguration;
 import com.forgerock.cdr.gateway.config.SslConfigurationFailure;
 import com.forgerock.cdr.gateway.filters.AddCertificateHeaderGatewayFilter;
 import com.forgerock.cdr.gateway.filters.AddInteractionIdHeaderGatewayFilter;
+import com.forgerock.cdr.gateway.routing.RouteDispatchTable;
+import com.forgerock.cdr.gateway.routing.RouteGuard;
+import io.netty.handler.ssl.SslContext;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.boot.SpringApplication;
@@ -30,10 +33,12 @@ import org.springframework.cloud.gateway.support.ipresolver.XForwardedRemoteAddr
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Primary;
 import org.springframework.http.HttpMethod;
+import org.springframework.http.client.reactive.ReactorClientHttpConnector;
 import org.springframework.http.codec.ServerCodecConfigurer;
 import org.springframework.http.codec.support.DefaultServerCodecConfigurer;
 import org.springframework.web.client.RestTemplate;
 import org.springframework.web.reactive.function.client.WebClient;
+import reactor.netty.http.client.HttpClient;
 
 import java.util.function.Function;
 
@@ -117,25 +122,25 @@ public class CdrGatewayApplication {
     public RouteLocator routeLocator(RouteLocatorBuilder builder) {
         String dynamicRegWhitelist = isDynamicRegistrationEnable ? "0.0.0.0/0" : forgerockWhitelist;
         return builder.routes()
-                .route(rewriteExternalActuatorToInternal("jwkms." + dnsHostRoot + "**", "https://jwkms:" + jwkmsPort))
-                .route(rewriteExternalActuatorToInternal("matls.rs.aspsp." + dnsHostRoot + "**", "https://rs-api:" + rsApiPort))
-                .route(rewriteExternalActuatorToInternal("rs.aspsp." + dnsHostRoot + "**", "https://rs-api:" + rsApiPort))
-                .route(rewriteExternalActuatorToInternal("as.aspsp." + dnsHostRoot + "**", "https://as-api:" + asApiPort))
-                .route(rewriteExternalActuatorToInternal("service.directory." + dnsHostRoot + "**", "https://directory-services:" + directoryServicePort))
-                .route(rewriteExternalActuatorToInternal("matls.service.directory." + dnsHostRoot + "**", "https://directory-services:" + directoryServicePort))
-                .route(rewriteExternalActuatorToInternal("service.metrics." + dnsHostRoot + "**", "https://metrics-services:" + metricsServicePort))
-                .route(rewriteExternalActuatorToInternal("rcs.aspsp." + dnsHostRoot + "**", "https://rs-rcs:" + rcsPort))
-                .route(rewriteExternalActuatorToInternal("tpp-core." + dnsHostRoot + "**", "https://tpp-core:" + tppCorePort))
-                .route(rewriteExternalActuatorToInternal("shop." + dnsHostRoot + "**", "https://shop:" + shopUiPort))
-                .route(rewriteExternalActuatorToInternal("account." + dnsHostRoot + "**", "https://account:" + accountUIPort))
-                .route(rewriteExternalActuatorToInternal("service.bank." + dnsHostRoot + "**", "https://rs-ui:" + rsUiPort))
-                .route(rewriteExternalActuatorToInternal("matls.service.bank." + dnsHostRoot + "**", "https://rs-ui:" + rsUiPort))
-                .route(rewriteExternalActuatorToInternal("docs." + dnsHostRoot + "**", "https://docs:" + docsPort))
-                .route(rewriteExternalActuatorToInternal("admin." + dnsHostRoot + "**", "https://admin:" + adminPort))
-                .route(rewriteExternalActuatorToInternal("monitoring." + dnsHostRoot + "**", "https://monitoring:" + monitoringPort))
-                .route(rewriteExternalActuatorToInternal("service.register." + dnsHostRoot + "**", "https://register:" + registerPort))
-                .route(rewriteExternalActuatorToInternal("rs-simulator.aspsp." + dnsHostRoot + "**", "https://rs-simulator:" + rsSimulatorPort))
-                .route(r ->
+                .route("jwkms-actuator", rewriteExternalActuatorToInternal("jwkms." + dnsHostRoot + "**", "https://jwkms:" + jwkmsPort))
+                .route("matls-rs-api-actuator", rewriteExternalActuatorToInternal("matls.rs.aspsp." + dnsHostRoot + "**", "https://rs-api:" + rsApiPort))
+                .route("rs-api-actuator", rewriteExternalActuatorToInternal("rs.aspsp." + dnsHostRoot + "**", "https://rs-api:" + rsApiPort))
+                .route("as-api-actuator", rewriteExternalActuatorToInternal("as.aspsp." + dnsHostRoot + "**", "https://as-api:" + asApiPort))
+                .route("directory-actuator", rewriteExternalActuatorToInternal("service.directory." + dnsHostRoot + "**", "https://directory-services:" + directoryServicePort))
+                .route("matls-directory-actuator", rewriteExternalActuatorToInternal("matls.service.directory." + dnsHostRoot + "**", "https://directory-services:" + directoryServicePort))
+                .route("metrics-actuator", rewriteExternalActuatorToInternal("service.metrics." + dnsHostRoot + "**", "https://metrics-services:" + metricsServicePort))
+                .route("rcs-actuator", rewriteExternalActuatorToInternal("rcs.aspsp." + dnsHostRoot + "**", "https://rs-rcs:" + rcsPort))
+                .route("tpp-core-actuator", rewriteExternalActuatorToInternal("tpp-core." + dnsHostRoot + "**", "https://tpp-core:" + tppCorePort))
+                .route("shop-actuator", rewriteExternalActuatorToInternal("shop." + dnsHostRoot + "**", "https://shop:" + shopUiPort))
+                .route("account-actuator", rewriteExternalActuatorToInternal("account." + dnsHostRoot + "**", "https://account:" + accountUIPort))
+                .route("rs-ui-actuator", rewriteExternalActuatorToInternal("service.bank." + dnsHostRoot + "**", "https://rs-ui:" + rsUiPort))
+                .route("matls-rs-ui-actuator", rewriteExternalActuatorToInternal("matls.service.bank." + dnsHostRoot + "**", "https://rs-ui:" + rsUiPort))
+                .route("docs-actuator", rewriteExternalActuatorToInternal("docs." + dnsHostRoot + "**", "https://docs:" + docsPort))
+                .route("admin-actuator", rewriteExternalActuatorToInternal("admin." + dnsHostRoot + "**", "https://admin:" + adminPort))
+                .route("monitoring-actuator", rewriteExternalActuatorToInternal("monitoring." + dnsHostRoot + "**", "https://monitoring:" + monitoringPort))
+                .route("register-actuator", rewriteExternalActuatorToInternal("service.register." + dnsHostRoot + "**", "https://register:" + registerPort))
+                .route("rs-simulator-actuator", rewriteExternalActuatorToInternal("rs-simulator.aspsp." + dnsHostRoot + "**", "https://rs-simulator:" + rsSimulatorPort))
+                .route("am", r ->
                         r
                                 .host("am." + dnsHostRoot + "**")
 
@@ -147,7 +152,7 @@ public class CdrGatewayApplication {
                                 )
                                 .uri(amRoute)
                 )
-                .route(r ->
+                .route("as-api-jwk-uri", r ->
                         r
                                 .host("as.aspsp." + dnsHostRoot + "**")
                                 .and()
@@ -161,7 +166,7 @@ public class CdrGatewayApplication {
                                 )
                                 .uri("https://as-api:" + asApiPort)
                 )
-                .route(r ->
+                .route("matls-as-api-access-token", r ->
                         r
                                 .host("matls.as.aspsp." + dnsHostRoot + "**")
                                 .and()
@@ -176,7 +181,7 @@ public class CdrGatewayApplication {
                                         .rewritePath("/oauth2/realms/root/realms/openbanking/(?<segment>.*)", "/oauth2/${segment}")
                                 )
                                 .uri("https://as-api:" + asApiPort)
-                ).route(r ->
+                ).route("matls-as-api-authorize", r ->
                         r
                                 .path("/oauth2/authorize")
                                 .or()
@@ -189,7 +194,7 @@ public class CdrGatewayApplication {
                                         .rewritePath("/oauth2/realms/root/realms/openbanking/(?<segment>.*)", "/oauth2/${segment}")
                                 )
                                 .uri("https://as-api:" + asApiPort)
-                ).route(r ->                        r
+                ).route("as-api-authorize", r ->                        r
                                 .path("/oauth2/authorize")
                                 .or()
                                 .path("/oauth2/rest/authorize")
@@ -204,7 +209,7 @@ public class CdrGatewayApplication {
                                 )
                                 .uri("https://as-api:" + asApiPort)
                 )
-                .route(r ->                        r
+                .route("as-api-access-token", r ->                        r
                         .path("/oauth2/access_token")
                         .or()
                         .path("/oauth2/realms/root/realms/openbanking/access_token")
@@ -216,7 +221,7 @@ public class CdrGatewayApplication {
                                 .rewritePath("/oauth2/realms/root/realms/openbanking/(?<segment>.*)", "/oauth2/${segment}")
                         )
                         .uri("https://as-api:" + asApiPort)
-                ).route(r ->
+                ).route("as-api-open-banking", r ->
                         r
                                 .path("/open-banking/register").negate()
                                 .and()
@@ -233,7 +238,7 @@ public class CdrGatewayApplication {
                                         .preserveHostHeader()
                                 )
                                 .uri("https://as-api:" + asApiPort)
-                ).route(r ->
+                ).route("as-api-register", r ->
                         r
                                 .remoteAddr(xForwardedRemoteAddressResolver, dynamicRegWhitelist)
                                 .and()
@@ -246,7 +251,7 @@ public class CdrGatewayApplication {
                                         .preserveHostHeader()
                                 )
                                 .uri("https://as-api:" + asApiPort)
-                ).route(r ->
+                ).route("matls-am", r ->
                         r
                                 .path("/open-banking/register")
                                 .negate()
@@ -260,7 +265,7 @@ public class CdrGatewayApplication {
                                         .addRequestHeader("host", amMatlsHostname)
                                         .preserveHostHeader())
                                 .uri(amRoute)
-                ).route(r ->
+                ).route("as-api-openid-configuration", r ->
                         r
                                 .host("as.aspsp." + dnsHostRoot + "**")
                                 .and()
@@ -269,7 +274,7 @@ public class CdrGatewayApplication {
                                         .filter(addInteractionIdHeaderGatewayFilter, 0)
                                 )
                                 .uri("https://as-api:" + asApiPort)
-                ).route(r ->
+                ).route("as-am", r ->
                         r
                                 .host("as.aspsp." + dnsHostRoot + "**")
                                 .filters(f -> f
@@ -282,7 +287,7 @@ public class CdrGatewayApplication {
                                         .preserveHostHeader()
                                 )
                                 .uri(amRoute)
-                ).route(r -> {
+                ).route("rs-api-banking", r -> {
                             BooleanSpec booleanSpec = r
                                     .host("rs.aspsp." + dnsHostRoot + "**")
                                     .and()
@@ -295,7 +300,7 @@ public class CdrGatewayApplication {
                             );
                             return booleanSpec.uri("https://rs-api:" + rsApiPort);
                         }
-                ).route(r -> {
+                ).route("rs-api", r -> {
                             BooleanSpec booleanSpec = r
                                     .host("rs.aspsp." + dnsHostRoot + "**")
                                     .and()
@@ -308,7 +313,7 @@ public class CdrGatewayApplication {
                     ;
                             return booleanSpec.uri("https://rs-api:" + rsApiPort);
                         }
-                ).route(r -> {
+                ).route("matls-rs-api-banking", r -> {
                             BooleanSpec booleanSpec = r
                                     .host("matls.rs.aspsp." + dnsHostRoot + "**")
                                     .and()
@@ -321,7 +326,7 @@ public class CdrGatewayApplication {
                             );
                             return booleanSpec.uri("https://rs-api:" + rsApiPort);
                         }
-                ).route(r -> {
+                ).route("matls-rs-api", r -> {
                             BooleanSpec booleanSpec = r
                                     .host("matls.rs.aspsp." + dnsHostRoot + "**")
                                     .and()
@@ -334,7 +339,7 @@ public class CdrGatewayApplication {
                             ;
                             return booleanSpec.uri("https://rs-api:" + rsApiPort);
                         }
-                ).route(r ->
+                ).route("jwkms", r ->
                         r
                                 .host("jwkms." + dnsHostRoot + "**")
                                 .and()
@@ -343,7 +348,7 @@ public class CdrGatewayApplication {
                                         .filter(addInteractionIdHeaderGatewayFilter, 0)
                                         .filter(addCertificateHeaderGatewayFilter))
                                 .uri("https://jwkms:" + jwkmsPort)
-                ).route(r ->
+                ).route("directory", r ->
                         r
                                 .host("service.directory." + dnsHostRoot + "**")
                                 .or()
@@ -352,7 +357,7 @@ public class CdrGatewayApplication {
                                         .filter(addInteractionIdHeaderGatewayFilter)
                                         .filter(addCertificateHeaderGatewayFilter))
                                 .uri("https://directory-services:" + directoryServicePort)
-                ).route(r ->
+                ).route("metrics", r ->
                         r
                                 .host("service.metrics." + dnsHostRoot + "**")
                                 .and()
@@ -361,7 +366,7 @@ public class CdrGatewayApplication {
                                         .filter(addInteractionIdHeaderGatewayFilter)
                                 )
                                 .uri("https://metrics-services:" + metricsServicePort)
-                ).route(r ->
+                ).route("rcs", r ->
                         r
                                 .host("rcs.aspsp." + dnsHostRoot + "**")
                                 .and()
@@ -370,7 +375,7 @@ public class CdrGatewayApplication {
                                         .filter(addInteractionIdHeaderGatewayFilter)
                                 )
                                 .uri("https://rs-rcs:" + rcsPort)
-                ).route(r ->
+                ).route("tpp-core", r ->
                         r
                                 .host("tpp-core." + dnsHostRoot + "**")
                                 .and()
@@ -379,7 +384,7 @@ public class CdrGatewayApplication {
                                         .filter(addInteractionIdHeaderGatewayFilter)
                                 )
                                 .uri("https://tpp-core:" + tppCorePort)
-                ).route(r ->
+                ).route("shop", r ->
                         r
                                 .host("shop." + dnsHostRoot + "**")
                                 .and()
@@ -388,7 +393,7 @@ public class CdrGatewayApplication {
                                         .filter(addInteractionIdHeaderGatewayFilter)
                                 )
                                 .uri("https://shop:" + shopUiPort)
-                ).route(r ->
+                ).route("account", r ->
                         r
                                 .host("account." + dnsHostRoot + "**")
                                 .and()
@@ -397,7 +402,7 @@ public class CdrGatewayApplication {
                                         .filter(addInteractionIdHeaderGatewayFilter)
                                 )
                                 .uri("https://account:" + accountUIPort)
-                ).route(r ->
+                ).route("rs-ui", r ->
                         r
                                 .host("service.bank." + dnsHostRoot + "**")
                                 .and()
@@ -407,7 +412,7 @@ public class CdrGatewayApplication {
                                         .filter(addCertificateHeaderGatewayFilter)
                                 )
                                 .uri("https://rs-ui:" + rsUiPort)
-                ).route(r ->
+                ).route("admin", r ->
                         r
                                 .host("admin." + dnsHostRoot + "**")
                                 .and()
@@ -416,7 +421,7 @@ public class CdrGatewayApplication {
                                         .filter(addInteractionIdHeaderGatewayFilter, 0)
                                 )
                                 .uri("https://admin:" + adminPort)
-                ).route(r ->
+                ).route("docs", r ->
                         r
                                 .host("docs." + dnsHostRoot + "**")
                                 .and()
@@ -425,7 +430,7 @@ public class CdrGatewayApplication {
                                         .filter(addInteractionIdHeaderGatewayFilter, 0)
                                 )
                                 .uri("https://docs:" + docsPort)
-                ).route(r ->
+                ).route("monitoring", r ->
                         r
                                 .host("monitoring." + dnsHostRoot + "**")
                                 .and()
@@ -434,7 +439,7 @@ public class CdrGatewayApplication {
                                         .filter(addInteractionIdHeaderGatewayFilter, 0)
                                 )
                                 .uri("https://monitoring:" + monitoringPort)
-                ).route(r ->
+                ).route("matls-rs-ui", r ->
                         r
                                 .host("matls.service.bank." + dnsHostRoot + "**")
                                 .and()
@@ -444,7 +449,7 @@ public class CdrGatewayApplication {
                                         .filter(addCertificateHeaderGatewayFilter)
                                 )
                                 .uri("https://rs-ui:" + rsUiPort)
-                ).route(r ->
+                ).route("register", r ->
                         r
                                 .host("service.register." + dnsHostRoot + "**")
                                 .and()
@@ -458,6 +463,101 @@ public class CdrGatewayApplication {
                 .build();
     }
 
+    /**
+     * The host and path guards of the routes declared in {@link #routeLocator(RouteLocatorBuilder)}, used by the
+     * indexed route dispatch. Any change to a route predicate must be reflected here.
+     */
+    @Bean
+    public RouteDispatchTable routeDispatchTable() {
+        String as = "as.aspsp." + dnsHostRoot + "**";
+        String matlsAs = "matls.as.aspsp." + dnsHostRoot + "**";
+        return new RouteDispatchTable()
+                .guard(externalActuatorGuard("jwkms-actuator", "jwkms." + dnsHostRoot + "**"))
+                .guard(externalActuatorGuard("matls-rs-api-actuator", "matls.rs.aspsp." + dnsHostRoot + "**"))
+                .guard(externalActuatorGuard("rs-api-actuator", "rs.aspsp." + dnsHostRoot + "**"))
+                .guard(externalActuatorGuard("as-api-actuator", as))
+                .guard(externalActuatorGuard("directory-actuator", "service.directory." + dnsHostRoot + "**"))
+                .guard(externalActuatorGuard("matls-directory-actuator", "matls.service.directory." + dnsHostRoot + "**"))
+                .guard(externalActuatorGuard("metrics-actuator", "service.metrics." + dnsHostRoot + "**"))
+                .guard(externalActuatorGuard("rcs-actuator", "rcs.aspsp." + dnsHostRoot + "**"))
+                .guard(externalActuatorGuard("tpp-core-actuator", "tpp-core." + dnsHostRoot + "**"))
+                .guard(externalActuatorGuard("shop-actuator", "shop." + dnsHostRoot + "**"))
+                .guard(externalActuatorGuard("account-actuator", "account." + dnsHostRoot + "**"))
+                .guard(externalActuatorGuard("rs-ui-actuator", "service.bank." + dnsHostRoot + "**"))
+                .guard(externalActuatorGuard("matls-rs-ui-actuator", "matls.service.bank." + dnsHostRoot + "**"))
+                .guard(externalActuatorGuard("docs-actuator", "docs." + dnsHostRoot + "**"))
+                .guard(externalActuatorGuard("admin-actuator", "admin." + dnsHostRoot + "**"))
+                .guard(externalActuatorGuard("monitoring-actuator", "monitoring." + dnsHostRoot + "**"))
+                .guard(externalActuatorGuard("register-actuator", "service.register." + dnsHostRoot + "**"))
+                .guard(externalActuatorGuard("rs-simulator-actuator", "rs-simulator.aspsp." + dnsHostRoot + "**"))
+                .guard(RouteGuard.route("am")
+                        .when("am." + dnsHostRoot + "**"))
+                .guard(RouteGuard.route("as-api-jwk-uri")
+                        .when(as, "/api/jwk/jwk_uri")
+                        .when(RouteGuard.ANY_HOST, "/oauth2/realms/root/realms/openbanking/connect/jwk_uri"))
+                .guard(RouteGuard.route("matls-as-api-access-token")
+                        .when(matlsAs, "/oauth2/access_token")
+                        .when(RouteGuard.ANY_HOST, "/oauth2/realms/root/realms/openbanking/access_token"))
+                .guard(RouteGuard.route("matls-as-api-authorize")
+                        .when(matlsAs, "/oauth2/authorize", "/oauth2/realms/root/realms/openbanking/authorize"))
+                .guard(RouteGuard.route("as-api-authorize")
+                        .when(as, "/oauth2/authorize", "/oauth2/rest/authorize", "/oauth2/realms/root/realms/openbanking/authorize"))
+                .guard(RouteGuard.route("as-api-access-token")
+                        .when(as, "/oauth2/access_token", "/oauth2/realms/root/realms/openbanking/access_token"))
+                .guard(RouteGuard.route("as-api-open-banking")
+                        .when(matlsAs, "/open-banking/**")
+                        .when(as, "/open-banking/**")
+                        .when(RouteGuard.ANY_HOST, "/oauth2/.well-known/openid-configuration"))
+                .guard(RouteGuard.route("as-api-register")
+                        .when(matlsAs, "/open-banking/register"))
+                .guard(RouteGuard.route("matls-am")
+                        .when(matlsAs))
+                .guard(RouteGuard.route("as-api-openid-configuration")
+                        .when(as, "/oauth2/.well-known/openid-configuration"))
+                .guard(RouteGuard.route("as-am")
+                        .when(as))
+                .guard(RouteGuard.route("rs-api-banking")
+                        .when("rs.aspsp." + dnsHostRoot + "**", "/banking/**"))
+                .guard(RouteGuard.route("rs-api")
+                        .when("rs.aspsp." + dnsHostRoot + "**", "/**"))
+                .guard(RouteGuard.route("matls-rs-api-banking")
+                        .when("matls.rs.aspsp." + dnsHostRoot + "**", "/banking/**"))
+                .guard(RouteGuard.route("matls-rs-api")
+                        .when("matls.rs.aspsp." + dnsHostRoot + "**", "/**"))
+                .guard(RouteGuard.route("jwkms")
+                        .when("jwkms." + dnsHostRoot + "**", "/**"))
+                .guard(RouteGuard.route("directory")
+                        .when("service.directory." + dnsHostRoot + "**")
+                        .when("matls.service.directory." + dnsHostRoot + "**"))
+                .guard(RouteGuard.route("metrics")
+                        .when("service.metrics." + dnsHostRoot + "**", "/**"))
+                .guard(RouteGuard.route("rcs")
+                        .when("rcs.aspsp." + dnsHostRoot + "**", "/**"))
+                .guard(RouteGuard.route("tpp-core")
+                        .when("tpp-core." + dnsHostRoot + "**", "/**"))
+                .guard(RouteGuard.route("shop")
+                        .when("shop." + dnsHostRoot + "**", "/**"))
+                .guard(RouteGuard.route("account")
+                        .when("account." + dnsHostRoot + "**", "/**"))
+                .guard(RouteGuard.route("rs-ui")
+                        .when("service.bank." + dnsHostRoot + "**", "/**"))
+                .guard(RouteGuard.route("admin")
+                        .when("admin." + dnsHostRoot + "**", "/**"))
+                .guard(RouteGuard.route("docs")
+                        .when("docs." + dnsHostRoot + "**", "/**"))
+                .guard(RouteGuard.route("monitoring")
+                        .when("monitoring." + dnsHostRoot + "**", "/**"))
+                .guard(RouteGuard.route("matls-rs-ui")
+                        .when("matls.service.bank." + dnsHostRoot + "**", "/**"))
+                .guard(RouteGuard.route("register")
+                        .when("service.register." + dnsHostRoot + "**", "/**"));
+    }
+
+    private RouteGuard externalActuatorGuard(String routeId, String externalHost) {
+        return RouteGuard.route(routeId)
+                .when(externalHost, "/external/actuator/health", "/external/actuator/info");
+    }
+
     private Function<PredicateSpec, Route.AsyncBuilder> rewriteExternalActuatorToInternal(String externalHost, String internalHost) {
         return r -> r
                 .path("/external/actuator/health")
@@ -479,6 +579,14 @@ public class CdrGatewayApplication {
         return new RestTemplate(sslConfiguration.factory(keyAlias, false));
     }
 
+    @Bean
+    public WebClient matlsWebClient(SslConfiguration sslConfiguration) throws SslConfigurationFailure {
+        SslContext sslContext = sslConfiguration.getSslContextForReactor(keyAlias);
+        HttpClient httpClient = HttpClient.create()
+                .secure(sslContextSpec -> sslContextSpec.sslContext(sslContext));
+        return WebClient.builder().clientConnector(new ReactorClientHttpConnector(httpClient)).build();
+    }
+
     @Bean
     @Primary
     public ServerCodecConfigurer serverCodecConfigurer() {
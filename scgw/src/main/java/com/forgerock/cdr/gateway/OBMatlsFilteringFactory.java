@@ -11,7 +11,6 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.cloud.gateway.filter.GatewayFilter;
 import org.springframework.cloud.gateway.filter.factory.GatewayFilterFactory;
-import org.springframework.http.server.reactive.ServerHttpRequest;
 import org.springframework.stereotype.Component;
 
 @Component
@@ -24,10 +23,7 @@ public class OBMatlsFilteringFactory implements GatewayFilterFactory {
 
             LOGGER.debug("Coucou!");
 
-            ServerHttpRequest request = exchange.getRequest().mutate()
-                    .build();
-
-            return chain.filter(exchange.mutate().request(request).build());
+            return chain.filter(exchange);
         };
     }
 }
@@ -0,0 +1,70 @@
+/**
+ * Copyright 2019 ForgeRock AS. All Rights Reserved
+ *
+ * Use of this code requires a commercial software license with ForgeRock AS.
+ * or with one of its affiliates. All use shall be exclusively subject
+ * to such license between the licensee and ForgeRock AS.
+ */
+package com.forgerock.cdr.gateway.cache;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.nimbusds.jose.JOSEException;
+import com.nimbusds.jose.util.X509CertUtils;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.security.cert.X509Certificate;
+import java.time.Duration;
+
+/**
+ * The header values derived from a client certificate, by certificate SHA-256 thumbprint.
+ *
+ * The same TPP certificates are presented over and over, this saves the JWK conversion and the PEM serialisation
+ * on every request.
+ */
+@Component
+@Slf4j
+public class CertificateHeaderCache {
+
+    public static final String CACHE_NAME = "gateway.certificate.headers";
+
+    private final Cache<String, CertificateHeaders> cache;
+
+    public CertificateHeaderCache(@Value("${gateway.certificate-cache.maximum-size:1000}") long maximumSize,
+                                  @Value("${gateway.certificate-cache.expire-after-write:PT1H}") Duration expireAfterWrite,
+                                  MeterRegistry meterRegistry) {
+        this.cache = Caffeine.newBuilder()
+                .maximumSize(maximumSize)
+                .expireAfterWrite(expireAfterWrite)
+                .recordStats()
+                .build();
+        CaffeineCacheMetrics.monitor(meterRegistry, cache, CACHE_NAME);
+    }
+
+    /**
+     * Get the headers of a certificate, loading them if they are not cached yet.
+     */
+    public CertificateHeaders get(X509Certificate certificate, Loader loader) throws JOSEException {
+        String thumbprint = X509CertUtils.computeSHA256Thumbprint(certificate).toString();
+        CertificateHeaders headers = cache.getIfPresent(thumbprint);
+        if (headers == null) {
+            log.debug("Certificate {} not in cache", thumbprint);
+            headers = loader.load(certificate);
+            cache.put(thumbprint, headers);
+        }
+        return headers;
+    }
+
+    public void invalidateAll() {
+        cache.invalidateAll();
+    }
+
+    @FunctionalInterface
+    public interface Loader {
+        CertificateHeaders load(X509Certificate certificate) throws JOSEException;
+    }
+}
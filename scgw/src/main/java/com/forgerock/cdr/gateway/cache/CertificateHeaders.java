@@ -0,0 +1,35 @@
+/**
+ * Copyright 2019 ForgeRock AS. All Rights Reserved
+ *
+ * Use of this code requires a commercial software license with ForgeRock AS.
+ * or with one of its affiliates. All use shall be exclusively subject
+ * to such license between the licensee and ForgeRock AS.
+ */
+package com.forgerock.cdr.gateway.cache;
+
+public class CertificateHeaders {
+
+    private final String jwk;
+    private final String pem;
+
+    public CertificateHeaders(String jwk, String pem) {
+        this.jwk = jwk;
+        this.pem = pem;
+    }
+
+    public String getJwk() {
+        return jwk;
+    }
+
+    public String getPem() {
+        return pem;
+    }
+
+    @Override
+    public String toString() {
+        return "CertificateHeaders{" +
+                "jwk='" + jwk + '\'' +
+                ", pem='" + pem + '\'' +
+                '}';
+    }
+}
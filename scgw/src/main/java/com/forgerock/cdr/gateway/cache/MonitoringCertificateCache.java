@@ -0,0 +1,126 @@
+/**
+ * Copyright 2019 ForgeRock AS. All Rights Reserved
+ *
+ * Use of this code requires a commercial software license with ForgeRock AS.
+ * or with one of its affiliates. All use shall be exclusively subject
+ * to such license between the licensee and ForgeRock AS.
+ */
+package com.forgerock.cdr.gateway.cache;
+
+import com.forgerock.cdr.gateway.filters.PemCertificateDecoder;
+import com.github.benmanes.caffeine.cache.AsyncLoadingCache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.Expiry;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.web.reactive.function.client.WebClient;
+import org.springframework.web.reactive.function.client.WebClientResponseException;
+import reactor.core.publisher.Mono;
+
+import java.security.cert.X509Certificate;
+import java.time.Duration;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * The certificates of the monitoring software statements, by monitoring ID.
+ *
+ * The requests for an ID that is being loaded share the same call to the monitoring service. An unknown ID or an
+ * invalid certificate is cached as empty for a shorter time, a failure of the monitoring service is not cached.
+ */
+@Component
+@Slf4j
+public class MonitoringCertificateCache {
+
+    public static final String CACHE_NAME = "gateway.monitoring.certificates";
+
+    private final WebClient webClient;
+    private final String monitoringRoot;
+    private final AsyncLoadingCache<String, Optional<X509Certificate>> cache;
+
+    public MonitoringCertificateCache(@Qualifier("webClient") WebClient webClient,
+                                      @Value("${monitoring.root}") String monitoringRoot,
+                                      @Value("${gateway.monitoring-certificate-cache.maximum-size:100}") long maximumSize,
+                                      @Value("${gateway.monitoring-certificate-cache.expire-after-write:PT5M}") Duration expireAfterWrite,
+                                      @Value("${gateway.monitoring-certificate-cache.negative-expire-after-write:PT30S}") Duration negativeExpireAfterWrite,
+                                      MeterRegistry meterRegistry) {
+        this.webClient = webClient;
+        this.monitoringRoot = monitoringRoot;
+        this.cache = Caffeine.newBuilder()
+                .maximumSize(maximumSize)
+                .expireAfter(new WriteExpiry(expireAfterWrite, negativeExpireAfterWrite))
+                .recordStats()
+                .buildAsync((monitoringID, executor) -> getMonitoringCertificate(monitoringID).toFuture());
+        CaffeineCacheMetrics.monitor(meterRegistry, cache, CACHE_NAME);
+    }
+
+    /**
+     * Get the certificate of a monitoring ID, empty if the monitoring service doesn't know a valid one.
+     */
+    public Mono<Optional<X509Certificate>> get(String monitoringID) {
+        return Mono.defer(() -> Mono.fromFuture(load(monitoringID)));
+    }
+
+    public void invalidateAll() {
+        cache.synchronous().invalidateAll();
+    }
+
+    private CompletableFuture<Optional<X509Certificate>> load(String monitoringID) {
+        CompletableFuture<Optional<X509Certificate>> certificate = cache.get(monitoringID);
+        if (certificate.isCompletedExceptionally()) {
+            // The cache drops a failed load once all its callers are notified, don't hand it to a new caller
+            if (cache.getIfPresent(monitoringID) == certificate) {
+                cache.synchronous().invalidate(monitoringID);
+            }
+            certificate = cache.get(monitoringID);
+        }
+        return certificate;
+    }
+
+    private Mono<Optional<X509Certificate>> getMonitoringCertificate(String monitoringID) {
+        log.debug("Load the certificate of the monitoring ID {}", monitoringID);
+        return webClient.get()
+                .uri(monitoringRoot + "api/test/software-statement/{monitoringID}/certificate", monitoringID)
+                .retrieve()
+                .bodyToMono(String.class)
+                .map(c -> Optional.ofNullable(PemCertificateDecoder.decode(c, false)))
+                .defaultIfEmpty(Optional.empty())
+                .onErrorResume(WebClientResponseException.class, e -> {
+                    if (e.getStatusCode().is4xxClientError()) {
+                        log.debug("No certificate for the monitoring ID {}: {}", monitoringID, e.getStatusCode());
+                        return Mono.just(Optional.empty());
+                    }
+                    return Mono.error(e);
+                });
+    }
+
+    private static class WriteExpiry implements Expiry<String, Optional<X509Certificate>> {
+
+        private final long expireAfterWrite;
+        private final long negativeExpireAfterWrite;
+
+        private WriteExpiry(Duration expireAfterWrite, Duration negativeExpireAfterWrite) {
+            this.expireAfterWrite = expireAfterWrite.toNanos();
+            this.negativeExpireAfterWrite = negativeExpireAfterWrite.toNanos();
+        }
+
+        @Override
+        public long expireAfterCreate(String key, Optional<X509Certificate> value, long currentTime) {
+            return value.isPresent() ? expireAfterWrite : negativeExpireAfterWrite;
+        }
+
+        @Override
+        public long expireAfterUpdate(String key, Optional<X509Certificate> value, long currentTime, long currentDuration) {
+            return expireAfterCreate(key, value, currentTime);
+        }
+
+        @Override
+        public long expireAfterRead(String key, Optional<X509Certificate> value, long currentTime, long currentDuration) {
+            return currentDuration;
+        }
+    }
+}
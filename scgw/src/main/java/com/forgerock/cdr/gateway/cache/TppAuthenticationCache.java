@@ -0,0 +1,100 @@
+/**
+ * Copyright 2019 ForgeRock AS. All Rights Reserved
+ *
+ * Use of this code requires a commercial software license with ForgeRock AS.
+ * or with one of its affiliates. All use shall be exclusively subject
+ * to such license between the licensee and ForgeRock AS.
+ */
+package com.forgerock.cdr.gateway.cache;
+
+import com.forgerock.cdr.gateway.model.AuthenticatedTpp;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.nimbusds.jose.util.X509CertUtils;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Mono;
+
+import java.security.cert.X509Certificate;
+import java.time.Duration;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Function;
+
+/**
+ * The TPP authentications, by client certificate SHA-256 thumbprint.
+ *
+ * The requests with a certificate that is being authenticated share the same authentication. A failed
+ * authentication is not cached.
+ */
+@Component
+@Slf4j
+public class TppAuthenticationCache {
+
+    public static final String CACHE_NAME = "gateway.tpp.authentications";
+
+    private final Cache<String, CompletableFuture<AuthenticatedTpp>> cache;
+
+    public TppAuthenticationCache(@Value("${gateway.tpp-authentication-cache.maximum-size:1000}") long maximumSize,
+                                  @Value("${gateway.tpp-authentication-cache.expire-after-write:PT5M}") Duration expireAfterWrite,
+                                  MeterRegistry meterRegistry) {
+        this.cache = Caffeine.newBuilder()
+                .maximumSize(maximumSize)
+                .expireAfterWrite(expireAfterWrite)
+                .recordStats()
+                .build();
+        CaffeineCacheMetrics.monitor(meterRegistry, cache, CACHE_NAME);
+    }
+
+    /**
+     * Get the authentication of a certificate, authenticating it if it is not cached yet.
+     */
+    public Mono<AuthenticatedTpp> get(X509Certificate certificate, Function<X509Certificate, Mono<AuthenticatedTpp>> authenticate) {
+        return Mono.defer(() -> {
+            String thumbprint = X509CertUtils.computeSHA256Thumbprint(certificate).toString();
+            CompletableFuture<AuthenticatedTpp> authentication = authentication(thumbprint, certificate, authenticate);
+            if (authentication.isCompletedExceptionally()) {
+                // A failed authentication stays in the cache until all its callers are notified
+                cache.asMap().remove(thumbprint, authentication);
+                authentication = authentication(thumbprint, certificate, authenticate);
+            }
+            return Mono.fromFuture(authentication);
+        });
+    }
+
+    private CompletableFuture<AuthenticatedTpp> authentication(String thumbprint, X509Certificate certificate,
+                                                               Function<X509Certificate, Mono<AuthenticatedTpp>> authenticate) {
+        CompletableFuture<AuthenticatedTpp> authentication = cache.get(thumbprint, t -> {
+            log.debug("Certificate {} not in cache", t);
+            return authenticate.apply(certificate).toFuture();
+        });
+        if (!authentication.isDone() || authentication.isCompletedExceptionally()) {
+            authentication.whenComplete((a, e) -> {
+                if (e != null) {
+                    cache.asMap().remove(thumbprint, authentication);
+                }
+            });
+        }
+        return authentication;
+    }
+
+    /**
+     * Evict the authentication of a certificate.
+     *
+     * @param thumbprint the base64url SHA-256 thumbprint of the certificate
+     * @return true if the certificate was cached
+     */
+    public boolean evict(String thumbprint) {
+        return cache.asMap().remove(thumbprint) != null;
+    }
+
+    public void invalidateAll() {
+        cache.invalidateAll();
+    }
+
+    public long size() {
+        return cache.estimatedSize();
+    }
+}
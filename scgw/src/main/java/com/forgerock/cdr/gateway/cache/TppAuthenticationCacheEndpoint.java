@@ -0,0 +1,50 @@
+/**
+ * Copyright 2019 ForgeRock AS. All Rights Reserved
+ *
+ * Use of this code requires a commercial software license with ForgeRock AS.
+ * or with one of its affiliates. All use shall be exclusively subject
+ * to such license between the licensee and ForgeRock AS.
+ */
+package com.forgerock.cdr.gateway.cache;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.actuate.endpoint.annotation.DeleteOperation;
+import org.springframework.boot.actuate.endpoint.annotation.Endpoint;
+import org.springframework.boot.actuate.endpoint.annotation.ReadOperation;
+import org.springframework.boot.actuate.endpoint.annotation.Selector;
+import org.springframework.stereotype.Component;
+
+import java.util.Collections;
+import java.util.Map;
+
+/**
+ * Admin endpoint of the TPP authentication cache, /actuator/tppauthentications.
+ *
+ * Evict a TPP after its certificate is revoked or its registration changed, instead of waiting for the TTL.
+ */
+@Component
+@Endpoint(id = "tppauthentications")
+@Slf4j
+public class TppAuthenticationCacheEndpoint {
+
+    @Autowired
+    private TppAuthenticationCache tppAuthenticationCache;
+
+    @ReadOperation
+    public Map<String, Long> size() {
+        return Collections.singletonMap("size", tppAuthenticationCache.size());
+    }
+
+    @DeleteOperation
+    public void evictAll() {
+        log.info("Evict all the TPP authentications");
+        tppAuthenticationCache.invalidateAll();
+    }
+
+    @DeleteOperation
+    public Map<String, Boolean> evict(@Selector String thumbprint) {
+        log.info("Evict the TPP authentication of the certificate {}", thumbprint);
+        return Collections.singletonMap("evicted", tppAuthenticationCache.evict(thumbprint));
+    }
+}
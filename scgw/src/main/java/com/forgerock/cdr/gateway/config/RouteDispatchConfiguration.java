@@ -0,0 +1,36 @@
+/**
+ * Copyright 2019 ForgeRock AS. All Rights Reserved
+ *
+ * Use of this code requires a commercial software license with ForgeRock AS.
+ * or with one of its affiliates. All use shall be exclusively subject
+ * to such license between the licensee and ForgeRock AS.
+ */
+package com.forgerock.cdr.gateway.config;
+
+import com.forgerock.cdr.gateway.routing.IndexedRoutePredicateHandlerMapping;
+import com.forgerock.cdr.gateway.routing.RouteDispatchTable;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.cloud.gateway.config.GlobalCorsProperties;
+import org.springframework.cloud.gateway.handler.FilteringWebHandler;
+import org.springframework.cloud.gateway.route.RouteLocator;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.env.Environment;
+
+/**
+ * Indexed route dispatch, enabled with 'gateway.route-dispatch.indexed'. The default gateway lookup evaluates the
+ * route predicates one after the other.
+ */
+@Configuration
+@ConditionalOnProperty(name = "gateway.route-dispatch.indexed", havingValue = "true")
+public class RouteDispatchConfiguration {
+
+    @Bean
+    public IndexedRoutePredicateHandlerMapping indexedRoutePredicateHandlerMapping(FilteringWebHandler webHandler,
+                                                                                   RouteLocator routeLocator,
+                                                                                   RouteDispatchTable routeDispatchTable,
+                                                                                   GlobalCorsProperties globalCorsProperties,
+                                                                                   Environment environment) {
+        return new IndexedRoutePredicateHandlerMapping(webHandler, routeLocator, routeDispatchTable, globalCorsProperties, environment);
+    }
+}
@@ -7,11 +7,25 @@
  */
 package com.forgerock.cdr.gateway.config;
 
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.netty.handler.ssl.SslContext;
+import io.netty.handler.ssl.SslContextBuilder;
+import lombok.extern.slf4j.Slf4j;
 import org.apache.http.client.HttpClient;
+import org.apache.http.client.config.RequestConfig;
+import org.apache.http.config.RegistryBuilder;
+import org.apache.http.conn.socket.ConnectionSocketFactory;
+import org.apache.http.conn.socket.PlainConnectionSocketFactory;
 import org.apache.http.conn.ssl.NoopHostnameVerifier;
 import org.apache.http.conn.ssl.SSLConnectionSocketFactory;
+import org.apache.http.impl.client.DefaultConnectionKeepAliveStrategy;
+import org.apache.http.impl.client.HttpClientBuilder;
 import org.apache.http.impl.client.HttpClients;
+import org.apache.http.impl.conn.PoolingHttpClientConnectionManager;
+import org.apache.http.pool.PoolStats;
 import org.apache.http.ssl.SSLContextBuilder;
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.core.io.Resource;
@@ -24,9 +38,19 @@ import java.net.URL;
 import java.security.KeyStore;
 import java.security.KeyStoreException;
 import java.security.NoSuchAlgorithmException;
+import java.security.PrivateKey;
+import java.security.cert.Certificate;
 import java.security.cert.CertificateException;
+import java.security.cert.X509Certificate;
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.function.ToDoubleFunction;
 
 @Configuration
+@Slf4j
 public class SslConfiguration {
 
     private static final String JAVA_KEYSTORE = "jks";
@@ -40,36 +64,165 @@ public class SslConfiguration {
     @Value("${server.ssl.enabled}")
     private boolean sslEnabled;
 
+    @Value("${gateway.http-client.pooled:false}")
+    private boolean pooled;
+    @Value("${gateway.http-client.max-total:200}")
+    private int maxTotal;
+    @Value("${gateway.http-client.max-per-route:50}")
+    private int maxPerRoute;
+    @Value("${gateway.http-client.connect-timeout:PT5S}")
+    private Duration connectTimeout;
+    @Value("${gateway.http-client.connection-request-timeout:PT5S}")
+    private Duration connectionRequestTimeout;
+    @Value("${gateway.http-client.socket-timeout:PT30S}")
+    private Duration socketTimeout;
+    @Value("${gateway.http-client.keep-alive:PT30S}")
+    private Duration keepAlive;
+    @Value("${gateway.http-client.evict-idle-after:PT60S}")
+    private Duration evictIdleAfter;
+    @Value("${gateway.http-client.validate-after-inactivity:PT2S}")
+    private Duration validateAfterInactivity;
+    @Value("${gateway.http-client.tls-session-cache-size:1000}")
+    private int tlsSessionCacheSize;
+    @Value("${gateway.http-client.tls-session-timeout:PT1H}")
+    private Duration tlsSessionTimeout;
+
+    @Autowired(required = false)
+    private MeterRegistry meterRegistry;
+
+    private volatile KeyStore store;
+    private final Map<String, SSLContext> sslContexts = new ConcurrentHashMap<>();
+
     public HttpComponentsClientHttpRequestFactory factory(String keyAlias, boolean checkHostname) throws SslConfigurationFailure {
+        try {
+            SSLContext sslContext = getSslContext(keyAlias);
+            SSLConnectionSocketFactory socketFactory;
+
+            if (checkHostname) {
+                socketFactory = new SSLConnectionSocketFactory(sslContext);
+            } else {
+                socketFactory = new SSLConnectionSocketFactory(sslContext, new NoopHostnameVerifier());
+            }
+
+            HttpClient httpClient;
+            if (pooled) {
+                httpClient = pooledHttpClient(keyAlias, socketFactory);
+            } else {
+                httpClient = HttpClients.custom().setSSLSocketFactory(socketFactory).build();
+            }
+            return new HttpComponentsClientHttpRequestFactory(httpClient);
+        } catch (Exception e) {
+            throw new SslConfigurationFailure(e);
+        }
+    }
+
+    /**
+     * The SSL context presenting the key of the alias, built once and shared, so are the TLS sessions it caches.
+     */
+    public SSLContext getSslContext(String keyAlias) throws SslConfigurationFailure {
+        SSLContext sslContext = sslContexts.get(keyAlias);
+        if (sslContext != null) {
+            return sslContext;
+        }
         try {
             SSLContextBuilder sslContextBuilder;
             if (sslEnabled) {
                 sslContextBuilder = new SSLContextBuilder()
                         .loadKeyMaterial(
-                                getStore(keyStore.getURL(), keyStorePassword.toCharArray()),
+                                getStore(),
                                 keyPassword.toCharArray(),
                                 (aliases, socket) -> keyAlias
                         );
             } else {
                 sslContextBuilder = org.apache.http.ssl.SSLContexts.custom();
             }
+            sslContext = sslContextBuilder.build();
+            sslContext.getClientSessionContext().setSessionCacheSize(tlsSessionCacheSize);
+            sslContext.getClientSessionContext().setSessionTimeout((int) tlsSessionTimeout.getSeconds());
+        } catch (Exception e) {
+            throw new SslConfigurationFailure(e);
+        }
+        SSLContext existing = sslContexts.putIfAbsent(keyAlias, sslContext);
+        return existing != null ? existing : sslContext;
+    }
 
-            SSLContext sslContext = sslContextBuilder.build();
-            SSLConnectionSocketFactory socketFactory;
-
-            if (checkHostname) {
-                socketFactory = new SSLConnectionSocketFactory(sslContext);
-            } else {
-                socketFactory = new SSLConnectionSocketFactory(sslContext, new NoopHostnameVerifier());
+    public SslContext getSslContextForReactor(String keyAlias) throws SslConfigurationFailure {
+        try {
+            SslContextBuilder sslContextBuilder = SslContextBuilder.forClient();
+            if (sslEnabled) {
+                KeyStore store = getStore();
+                Certificate[] chain = store.getCertificateChain(keyAlias);
+                sslContextBuilder.keyManager((PrivateKey) store.getKey(keyAlias, keyPassword.toCharArray()),
+                        Arrays.copyOf(chain, chain.length, X509Certificate[].class));
             }
-
-            HttpClient httpClient = HttpClients.custom().setSSLSocketFactory(socketFactory).build();
-            return new HttpComponentsClientHttpRequestFactory(httpClient);
+            return sslContextBuilder.build();
         } catch (Exception e) {
             throw new SslConfigurationFailure(e);
         }
     }
 
+    private HttpClient pooledHttpClient(String keyAlias, SSLConnectionSocketFactory socketFactory) {
+        PoolingHttpClientConnectionManager connectionManager = new PoolingHttpClientConnectionManager(
+                RegistryBuilder.<ConnectionSocketFactory>create()
+                        .register("http", PlainConnectionSocketFactory.getSocketFactory())
+                        .register("https", socketFactory)
+                        .build());
+        connectionManager.setMaxTotal(maxTotal);
+        connectionManager.setDefaultMaxPerRoute(maxPerRoute);
+        connectionManager.setValidateAfterInactivity((int) validateAfterInactivity.toMillis());
+        registerPoolMetrics(keyAlias, connectionManager);
+        log.debug("Pooled http client for {}: {} connections, {} per route", keyAlias, maxTotal, maxPerRoute);
+
+        HttpClientBuilder httpClientBuilder = HttpClients.custom()
+                .setConnectionManager(connectionManager)
+                .setDefaultRequestConfig(RequestConfig.custom()
+                        .setConnectTimeout((int) connectTimeout.toMillis())
+                        .setConnectionRequestTimeout((int) connectionRequestTimeout.toMillis())
+                        .setSocketTimeout((int) socketTimeout.toMillis())
+                        .build())
+                .setKeepAliveStrategy((response, context) -> {
+                    long serverKeepAlive = DefaultConnectionKeepAliveStrategy.INSTANCE.getKeepAliveDuration(response, context);
+                    return serverKeepAlive > 0 ? Math.min(serverKeepAlive, keepAlive.toMillis()) : keepAlive.toMillis();
+                })
+                // The client certificate makes every connection stateful, which would stop them from being reused
+                .disableConnectionState()
+                .evictExpiredConnections()
+                .evictIdleConnections(evictIdleAfter.toMillis(), TimeUnit.MILLISECONDS);
+        return httpClientBuilder.build();
+    }
+
+    private void registerPoolMetrics(String keyAlias, PoolingHttpClientConnectionManager connectionManager) {
+        if (meterRegistry == null) {
+            return;
+        }
+        poolGauge("httpcomponents.httpclient.pool.total.max", keyAlias, connectionManager, PoolStats::getMax, null);
+        poolGauge("httpcomponents.httpclient.pool.total.connections", keyAlias, connectionManager, PoolStats::getAvailable, "available");
+        poolGauge("httpcomponents.httpclient.pool.total.connections", keyAlias, connectionManager, PoolStats::getLeased, "leased");
+        poolGauge("httpcomponents.httpclient.pool.total.pending", keyAlias, connectionManager, PoolStats::getPending, null);
+        Gauge.builder("httpcomponents.httpclient.pool.route.max.default", connectionManager,
+                PoolingHttpClientConnectionManager::getDefaultMaxPerRoute)
+                .tag("httpclient", keyAlias)
+                .register(meterRegistry);
+    }
+
+    private void poolGauge(String name, String keyAlias, PoolingHttpClientConnectionManager connectionManager,
+                           ToDoubleFunction<PoolStats> stat, String state) {
+        Gauge.Builder<PoolingHttpClientConnectionManager> gauge = Gauge.builder(name, connectionManager,
+                c -> stat.applyAsDouble(c.getTotalStats()))
+                .tag("httpclient", keyAlias);
+        if (state != null) {
+            gauge.tag("state", state);
+        }
+        gauge.register(meterRegistry);
+    }
+
+    private KeyStore getStore() throws KeyStoreException, IOException, CertificateException, NoSuchAlgorithmException {
+        if (store == null) {
+            store = getStore(keyStore.getURL(), keyStorePassword.toCharArray());
+        }
+        return store;
+    }
+
     protected KeyStore getStore(final URL url, final char[] password) throws
             KeyStoreException, IOException, CertificateException, NoSuchAlgorithmException {
         final KeyStore store = KeyStore.getInstance(JAVA_KEYSTORE);
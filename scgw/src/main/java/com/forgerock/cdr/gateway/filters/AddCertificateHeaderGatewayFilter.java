@@ -9,6 +9,9 @@ package com.forgerock.cdr.gateway.filters;
 
 import brave.Tracer;
 import brave.propagation.TraceContext;
+import com.forgerock.cdr.gateway.cache.CertificateHeaderCache;
+import com.forgerock.cdr.gateway.cache.CertificateHeaders;
+import com.forgerock.cdr.gateway.cache.MonitoringCertificateCache;
 import com.nimbusds.jose.JOSEException;
 import com.nimbusds.jose.jwk.JWK;
 import lombok.extern.slf4j.Slf4j;
@@ -16,18 +19,13 @@ import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.cloud.gateway.filter.GatewayFilter;
 import org.springframework.cloud.gateway.filter.GatewayFilterChain;
-import org.springframework.http.HttpMethod;
 import org.springframework.http.server.reactive.ServerHttpRequest;
 import org.springframework.stereotype.Service;
-import org.springframework.web.reactive.function.client.WebClient;
 import org.springframework.web.server.ServerWebExchange;
 import reactor.core.publisher.Mono;
 
 import java.io.*;
-import java.net.URLDecoder;
 import java.security.cert.CertificateEncodingException;
-import java.security.cert.CertificateException;
-import java.security.cert.CertificateFactory;
 import java.security.cert.X509Certificate;
 import java.util.Base64;
 
@@ -43,12 +41,12 @@ public class AddCertificateHeaderGatewayFilter implements GatewayFilter {
 
     @Value("${gateway.client-jwk-header}")
     private String clientJwkHeader;
-    @Value("${monitoring.internal-port}")
-    private String monitoringPort;
     @Autowired
     private Tracer tracer;
     @Autowired
-    private WebClient webClient;
+    private CertificateHeaderCache certificateHeaderCache;
+    @Autowired
+    private MonitoringCertificateCache monitoringCertificateCache;
 
     @Override
     public Mono<Void> filter(ServerWebExchange exchange, GatewayFilterChain chain) {
@@ -61,13 +59,16 @@ public class AddCertificateHeaderGatewayFilter implements GatewayFilter {
         String monitoringID = request.getHeaders().getFirst(OB_MONITORING_HEADER_NAME);
         if (monitoringID != null) {
             log.debug("Found the header '{}' equals to {}", OB_MONITORING_HEADER_NAME, monitoringID);
-            return getMonitoringCertificate(monitoringID).flatMap(c -> {
+            return monitoringCertificateCache.get(monitoringID).flatMap(c -> {
+                if (!c.isPresent()) {
+                    log.debug("No certificate for the monitoring ID {}", monitoringID);
+                    return chain.filter(exchange);
+                }
                 try {
-                    JWK jwk = JWK.parse(c);
-                    log.debug("Adding the client certificate JWK {} in the header of the request", jwk.toJSONString());
-                    return chain.filter(exchange.mutate().request(
-                            exchange.getRequest().mutate().header(clientJwkHeader, jwk.toJSONString()).build()
-                    ).build());
+                    CertificateHeaders headers = certificateHeaderCache.get(c.get(), this::certificateHeaders);
+                    log.debug("Adding the client certificate JWK {} in the header of the request", headers.getJwk());
+                    RequestDecorations.of(exchange).setHeader(clientJwkHeader, headers.getJwk());
+                    return chain.filter(exchange);
                 }  catch (JOSEException e) {
                     log.error("Can't parse x509 certificate", e);
                     return chain.filter( exchange);
@@ -88,14 +89,12 @@ public class AddCertificateHeaderGatewayFilter implements GatewayFilter {
         if (certificate != null) {
             log.debug("Convert the certificate into a JWK");
             try {
-                JWK jwk = JWK.parse(certificate);
-                log.debug("Adding the client certificate JWK {} in the header of the request", jwk.toJSONString());
-                return chain.filter( exchange.mutate().request(
-                        exchange.getRequest().mutate()
-                                .header(clientJwkHeader, jwk.toJSONString())
-                                .header(CLIENT_CERTIFICATE_PEM_HEADER_NAME, serialiseCertificate(certificate).replace("\n", ""))
-                                .build()
-                ).build());
+                CertificateHeaders headers = certificateHeaderCache.get(certificate, this::certificateHeaders);
+                log.debug("Adding the client certificate JWK {} in the header of the request", headers.getJwk());
+                RequestDecorations.of(exchange)
+                        .setHeader(clientJwkHeader, headers.getJwk())
+                        .setHeader(CLIENT_CERTIFICATE_PEM_HEADER_NAME, headers.getPem());
+                return chain.filter(exchange);
             } catch (JOSEException e) {
                 log.error("Can't parse x509 certificate", e);
             }
@@ -105,41 +104,16 @@ public class AddCertificateHeaderGatewayFilter implements GatewayFilter {
         return chain.filter( exchange);
     }
 
-    private Mono<X509Certificate> getMonitoringCertificate(String monitoringID) {
-        return webClient.method(HttpMethod.GET)
-            .uri("https://monitoring:" + monitoringPort + "/api/test/software-statement/"+ monitoringID + "/certificate")
-            .retrieve().bodyToMono(String.class)
-                    .flatMap(c -> Mono.just(parseCertificate(c)));
+    private CertificateHeaders certificateHeaders(X509Certificate certificate) throws JOSEException {
+        return new CertificateHeaders(
+                JWK.parse(certificate).toJSONString(),
+                serialiseCertificate(certificate).replace("\n", ""));
     }
 
     public X509Certificate parseCertificate(ServerHttpRequest request) {
         String certStr = request.getHeaders().getFirst(CLIENT_CERTIFICATE_HEADER_NAME);
-        try {
-            return parseCertificate(URLDecoder.decode(certStr, "UTF-8"));
-        } catch (UnsupportedEncodingException e) {
-            log.error("Couldn't decode the header", e);
-        }
-        return null;
-    }
-
-
-    private X509Certificate parseCertificate(String certStr) {
-        //before decoding we need to get rod off the prefix and suffix
-        log.debug("Client certificate as PEM format: \n {}", certStr);
-
-        try {
-
-            byte [] decoded = Base64.getDecoder()
-                    .decode(
-                            certStr
-                                    .replaceAll("\n", "")
-                                    .replaceAll(BEGIN_CERT, "")
-                                    .replaceAll(END_CERT, ""));
-            return (X509Certificate) CertificateFactory.getInstance("X.509").generateCertificate(new ByteArrayInputStream(decoded));
-        } catch (CertificateException e) {
-            log.error("Can't initialise certificate factory", e);
-        }
-        return null;
+        log.debug("Client certificate as URL encoded PEM format: \n {}", certStr);
+        return PemCertificateDecoder.decode(certStr, true);
     }
 
     private String serialiseCertificate(X509Certificate certificate) {
@@ -22,8 +22,6 @@ import org.springframework.web.server.ResponseStatusException;
 import org.springframework.web.server.ServerWebExchange;
 import reactor.core.publisher.Mono;
 
-import java.util.UUID;
-
 @Service
 @Slf4j
 public class AddInteractionIdHeaderGatewayFilter implements GatewayFilter {
@@ -33,24 +31,22 @@ public class AddInteractionIdHeaderGatewayFilter implements GatewayFilter {
 
     @Autowired
     private Tracer tracer;
+    @Autowired
+    private InteractionIdGenerator interactionIdGenerator;
 
     @Override
     public Mono<Void> filter(ServerWebExchange exchange, GatewayFilterChain chain) {
         ServerHttpRequest request = exchange.getRequest();
         String xFapiInteractionId = request.getHeaders().getFirst(X_FAPI_INTERACTION_ID_HEADER_NAME);
         if (StringUtils.isEmpty(xFapiInteractionId)) {
+            xFapiInteractionId = interactionIdGenerator.generate();
             log.debug("Interaction ID is missing, generate ID '{}'", xFapiInteractionId);
-            xFapiInteractionId = UUID.randomUUID().toString();
-        }
-        try{
-            UUID.fromString(xFapiInteractionId);
-        } catch (IllegalArgumentException exception){
+        } else if (!InteractionIds.isValid(xFapiInteractionId)) {
             log.warn("User submitted an invalid interaction id '{}: {}'", X_FAPI_INTERACTION_ID_HEADER_NAME, xFapiInteractionId);
             return Mono.error(new ResponseStatusException(HttpStatus.BAD_REQUEST, "Invalid header: "+X_FAPI_INTERACTION_ID_HEADER_NAME+". This header must be a RFC4122 UID"));
         }
 
-        exchange = exchange.mutate().request(
-                exchange.getRequest().mutate().header(X_FAPI_INTERACTION_ID_HEADER_NAME, xFapiInteractionId).build()).build();
+        RequestDecorations.of(exchange).setHeader(X_FAPI_INTERACTION_ID_HEADER_NAME, xFapiInteractionId);
 
         addAnalyticsEnabledTag(request);
         addFapiInteractionTag(xFapiInteractionId);
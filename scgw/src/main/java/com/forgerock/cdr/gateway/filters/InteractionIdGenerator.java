@@ -0,0 +1,21 @@
+/**
+ * Copyright 2019 ForgeRock AS. All Rights Reserved
+ *
+ * Use of this code requires a commercial software license with ForgeRock AS.
+ * or with one of its affiliates. All use shall be exclusively subject
+ * to such license between the licensee and ForgeRock AS.
+ */
+package com.forgerock.cdr.gateway.filters;
+
+/**
+ * Generate the x-fapi-interaction-id of the requests that don't have one.
+ *
+ * Select the implementation with gateway.interaction-id.generator, random (default) or time-ordered.
+ */
+public interface InteractionIdGenerator {
+
+    /**
+     * @return a new RFC 4122 UUID in its canonical form
+     */
+    String generate();
+}
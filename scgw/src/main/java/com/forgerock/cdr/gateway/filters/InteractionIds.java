@@ -0,0 +1,40 @@
+/**
+ * Copyright 2019 ForgeRock AS. All Rights Reserved
+ *
+ * Use of this code requires a commercial software license with ForgeRock AS.
+ * or with one of its affiliates. All use shall be exclusively subject
+ * to such license between the licensee and ForgeRock AS.
+ */
+package com.forgerock.cdr.gateway.filters;
+
+/**
+ * Validation of the x-fapi-interaction-id header.
+ */
+public final class InteractionIds {
+
+    private static final int UUID_LENGTH = 36;
+
+    private InteractionIds() {
+    }
+
+    /**
+     * Check an interaction ID is a UUID in the RFC 4122 string representation, 8-4-4-4-12 hexadecimal digits, without
+     * parsing it.
+     */
+    public static boolean isValid(CharSequence interactionId) {
+        if (interactionId == null || interactionId.length() != UUID_LENGTH) {
+            return false;
+        }
+        for (int i = 0; i < UUID_LENGTH; i++) {
+            char c = interactionId.charAt(i);
+            if (i == 8 || i == 13 || i == 18 || i == 23) {
+                if (c != '-') {
+                    return false;
+                }
+            } else if (!(c >= '0' && c <= '9' || c >= 'a' && c <= 'f' || c >= 'A' && c <= 'F')) {
+                return false;
+            }
+        }
+        return true;
+    }
+}
@@ -0,0 +1,192 @@
+/**
+ * Copyright 2019 ForgeRock AS. All Rights Reserved
+ *
+ * Use of this code requires a commercial software license with ForgeRock AS.
+ * or with one of its affiliates. All use shall be exclusively subject
+ * to such license between the licensee and ForgeRock AS.
+ */
+package com.forgerock.cdr.gateway.filters;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.ByteArrayInputStream;
+import java.nio.charset.StandardCharsets;
+import java.security.cert.CertificateException;
+import java.security.cert.CertificateFactory;
+import java.security.cert.X509Certificate;
+import java.util.Arrays;
+
+import static com.forgerock.cdr.gateway.filters.AddCertificateHeaderGatewayFilter.BEGIN_CERT;
+import static com.forgerock.cdr.gateway.filters.AddCertificateHeaderGatewayFilter.END_CERT;
+
+/**
+ * Decode a PEM certificate, optionally URL encoded as the load balancer forwards it in the x-client-cert header.
+ *
+ * The URL decoding, the removal of the armor and of the new lines and the base64 decoding are done in a single pass,
+ * straight into a buffer reused by the thread. The certificate factory is also kept per thread.
+ */
+@Slf4j
+public final class PemCertificateDecoder {
+
+    private static final byte[] BEGIN = BEGIN_CERT.getBytes(StandardCharsets.US_ASCII);
+    private static final byte[] END = END_CERT.getBytes(StandardCharsets.US_ASCII);
+    // Both armors start with "-----", the next character tells them apart
+    private static final int ARMOR_PREFIX_LENGTH = 5;
+    // A buffer bigger than this is not kept for the next certificate
+    private static final int MAX_RETAINED_BUFFER = 16 * 1024;
+
+    private static final byte[] BASE64 = new byte[128];
+
+    static {
+        Arrays.fill(BASE64, (byte) -1);
+        String alphabet = "ABCDEFGHIJKLMNOPQRSTUVWXYZabcdefghijklmnopqrstuvwxyz0123456789+/";
+        for (int i = 0; i < alphabet.length(); i++) {
+            BASE64[alphabet.charAt(i)] = (byte) i;
+        }
+    }
+
+    private static final ThreadLocal<CertificateFactory> CERTIFICATE_FACTORY = ThreadLocal.withInitial(() -> {
+        try {
+            return CertificateFactory.getInstance("X.509");
+        } catch (CertificateException e) {
+            throw new IllegalStateException("Can't initialise certificate factory", e);
+        }
+    });
+
+    private static final ThreadLocal<byte[]> BUFFER = ThreadLocal.withInitial(() -> new byte[2048]);
+
+    private PemCertificateDecoder() {
+    }
+
+    /**
+     * Decode a certificate.
+     *
+     * @param pem the PEM certificate, the armor and the new lines are optional
+     * @param urlEncoded if the PEM is URL encoded
+     * @return the certificate or null if it can't be decoded
+     */
+    public static X509Certificate decode(CharSequence pem, boolean urlEncoded) {
+        if (pem == null) {
+            return null;
+        }
+        int n = pem.length();
+        byte[] out = buffer(n / 4 * 3 + 3);
+        int length = 0;
+
+        int bits = 0;
+        int count = 0;
+        // The number of '=' still expected, -1 as long as the padding hasn't started
+        int padding = -1;
+        byte[] armor = null;
+        int armorPosition = 0;
+
+        int i = 0;
+        while (i < n) {
+            int c = pem.charAt(i++);
+            if (urlEncoded) {
+                if (c == '+') {
+                    c = ' ';
+                } else if (c == '%') {
+                    int hi = i + 1 < n ? hexDigit(pem.charAt(i)) : -1;
+                    int lo = hi >= 0 ? hexDigit(pem.charAt(i + 1)) : -1;
+                    if (lo < 0) {
+                        return invalid("incomplete escape (%) pattern", i - 1);
+                    }
+                    c = hi << 4 | lo;
+                    i += 2;
+                }
+            }
+            if (c == '\n') {
+                continue;
+            }
+            if (armorPosition > 0) {
+                if (armorPosition == ARMOR_PREFIX_LENGTH) {
+                    armor = c == END[ARMOR_PREFIX_LENGTH] ? END : BEGIN;
+                }
+                byte[] expected = armor == null ? BEGIN : armor;
+                if (c != expected[armorPosition]) {
+                    return invalid("unexpected armor", i - 1);
+                }
+                if (++armorPosition == expected.length) {
+                    armorPosition = 0;
+                    armor = null;
+                }
+                continue;
+            }
+            if (c == '-') {
+                armorPosition = 1;
+                continue;
+            }
+            if (padding >= 0) {
+                if (padding > 0 && c == '=') {
+                    padding--;
+                    continue;
+                }
+                return invalid("data after the padding", i - 1);
+            }
+            if (c == '=') {
+                if (count < 2) {
+                    return invalid("wrong 4-byte ending unit", i - 1);
+                }
+                padding = 3 - count;
+                continue;
+            }
+            int value = c < BASE64.length ? BASE64[c] : -1;
+            if (value < 0) {
+                return invalid("illegal base64 character", i - 1);
+            }
+            bits = bits << 6 | value;
+            if (++count == 4) {
+                out[length++] = (byte) (bits >> 16);
+                out[length++] = (byte) (bits >> 8);
+                out[length++] = (byte) bits;
+                bits = 0;
+                count = 0;
+            }
+        }
+        if (armorPosition > 0 || padding > 0 || count == 1) {
+            return invalid("truncated certificate", n);
+        }
+        if (count == 2) {
+            out[length++] = (byte) (bits >> 4);
+        } else if (count == 3) {
+            out[length++] = (byte) (bits >> 10);
+            out[length++] = (byte) (bits >> 2);
+        }
+
+        try {
+            return (X509Certificate) CERTIFICATE_FACTORY.get().generateCertificate(new ByteArrayInputStream(out, 0, length));
+        } catch (CertificateException e) {
+            log.error("Can't parse the client certificate", e);
+            return null;
+        }
+    }
+
+    private static byte[] buffer(int capacity) {
+        byte[] buffer = BUFFER.get();
+        if (buffer.length >= capacity) {
+            return buffer;
+        }
+        buffer = new byte[capacity];
+        if (capacity <= MAX_RETAINED_BUFFER) {
+            BUFFER.set(buffer);
+        }
+        return buffer;
+    }
+
+    private static int hexDigit(char c) {
+        if (c >= '0' && c <= '9') {
+            return c - '0';
+        } else if (c >= 'a' && c <= 'f') {
+            return c - 'a' + 10;
+        } else if (c >= 'A' && c <= 'F') {
+            return c - 'A' + 10;
+        }
+        return -1;
+    }
+
+    private static X509Certificate invalid(String reason, int index) {
+        log.error("Couldn't decode the client certificate: {} at index {}", reason, index);
+        return null;
+    }
+}
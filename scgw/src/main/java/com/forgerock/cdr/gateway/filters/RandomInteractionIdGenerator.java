@@ -0,0 +1,31 @@
+/**
+ * Copyright 2019 ForgeRock AS. All Rights Reserved
+ *
+ * Use of this code requires a commercial software license with ForgeRock AS.
+ * or with one of its affiliates. All use shall be exclusively subject
+ * to such license between the licensee and ForgeRock AS.
+ */
+package com.forgerock.cdr.gateway.filters;
+
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import java.util.UUID;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Random (version 4) UUIDs from the random generator of the thread, instead of the SecureRandom shared by
+ * {@link UUID#randomUUID()}. An interaction ID correlates logs, it doesn't need to be unpredictable.
+ */
+@Component
+@ConditionalOnProperty(name = "gateway.interaction-id.generator", havingValue = "random", matchIfMissing = true)
+public class RandomInteractionIdGenerator implements InteractionIdGenerator {
+
+    @Override
+    public String generate() {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        long mostSigBits = random.nextLong() & ~0xF000L | 0x4000L;
+        long leastSigBits = random.nextLong() & ~(0xC000L << 48) | 0x8000L << 48;
+        return new UUID(mostSigBits, leastSigBits).toString();
+    }
+}
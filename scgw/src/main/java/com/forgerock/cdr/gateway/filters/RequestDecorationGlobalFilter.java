@@ -0,0 +1,47 @@
+/**
+ * Copyright 2019 ForgeRock AS. All Rights Reserved
+ *
+ * Use of this code requires a commercial software license with ForgeRock AS.
+ * or with one of its affiliates. All use shall be exclusively subject
+ * to such license between the licensee and ForgeRock AS.
+ */
+package com.forgerock.cdr.gateway.filters;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.cloud.gateway.filter.GatewayFilterChain;
+import org.springframework.cloud.gateway.filter.GlobalFilter;
+import org.springframework.cloud.gateway.filter.LoadBalancerClientFilter;
+import org.springframework.core.Ordered;
+import org.springframework.stereotype.Component;
+import org.springframework.web.server.ServerWebExchange;
+import reactor.core.publisher.Mono;
+
+import static com.forgerock.cdr.gateway.filters.RequestDecorations.REQUEST_DECORATIONS_ATTR;
+
+/**
+ * Apply the {@link RequestDecorations} of the route filters to the request, after all of them and before the
+ * request is proxied.
+ */
+@Component
+@Slf4j
+public class RequestDecorationGlobalFilter implements GlobalFilter, Ordered {
+
+    public static final int REQUEST_DECORATION_FILTER_ORDER = LoadBalancerClientFilter.LOAD_BALANCER_CLIENT_FILTER_ORDER + 50;
+
+    @Override
+    public Mono<Void> filter(ServerWebExchange exchange, GatewayFilterChain chain) {
+        RequestDecorations requestDecorations = exchange.getAttribute(REQUEST_DECORATIONS_ATTR);
+        if (requestDecorations == null || requestDecorations.isEmpty()) {
+            return chain.filter(exchange);
+        }
+        log.debug("Decorate the request with {}", requestDecorations);
+        return chain.filter(exchange.mutate().request(
+                exchange.getRequest().mutate().headers(requestDecorations::applyTo).build()
+        ).build());
+    }
+
+    @Override
+    public int getOrder() {
+        return REQUEST_DECORATION_FILTER_ORDER;
+    }
+}
@@ -0,0 +1,63 @@
+/**
+ * Copyright 2019 ForgeRock AS. All Rights Reserved
+ *
+ * Use of this code requires a commercial software license with ForgeRock AS.
+ * or with one of its affiliates. All use shall be exclusively subject
+ * to such license between the licensee and ForgeRock AS.
+ */
+package com.forgerock.cdr.gateway.filters;
+
+import org.springframework.http.HttpHeaders;
+import org.springframework.util.LinkedCaseInsensitiveMap;
+import org.springframework.web.server.ServerWebExchange;
+
+import java.util.Collections;
+import java.util.Map;
+
+/**
+ * The headers the CDR filters add to the proxied request.
+ *
+ * The filters record their headers in the exchange instead of mutating the request each, the
+ * {@link RequestDecorationGlobalFilter} applies them all with a single copy of the request headers.
+ */
+public class RequestDecorations {
+
+    public static final String REQUEST_DECORATIONS_ATTR = RequestDecorations.class.getName();
+
+    private final Map<String, String> headers = new LinkedCaseInsensitiveMap<>(4);
+
+    /**
+     * The decorations of the request of an exchange, created on first use.
+     */
+    public static RequestDecorations of(ServerWebExchange exchange) {
+        return (RequestDecorations) exchange.getAttributes()
+                .computeIfAbsent(REQUEST_DECORATIONS_ATTR, k -> new RequestDecorations());
+    }
+
+    /**
+     * Set a header of the request, replacing the value the client may have sent.
+     */
+    public RequestDecorations setHeader(String name, String value) {
+        headers.put(name, value);
+        return this;
+    }
+
+    public Map<String, String> getHeaders() {
+        return Collections.unmodifiableMap(headers);
+    }
+
+    public boolean isEmpty() {
+        return headers.isEmpty();
+    }
+
+    public void applyTo(HttpHeaders httpHeaders) {
+        headers.forEach(httpHeaders::set);
+    }
+
+    @Override
+    public String toString() {
+        return "RequestDecorations{" +
+                "headers=" + headers +
+                '}';
+    }
+}
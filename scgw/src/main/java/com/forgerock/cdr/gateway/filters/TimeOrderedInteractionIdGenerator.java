@@ -0,0 +1,31 @@
+/**
+ * Copyright 2019 ForgeRock AS. All Rights Reserved
+ *
+ * Use of this code requires a commercial software license with ForgeRock AS.
+ * or with one of its affiliates. All use shall be exclusively subject
+ * to such license between the licensee and ForgeRock AS.
+ */
+package com.forgerock.cdr.gateway.filters;
+
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import java.util.UUID;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Time-ordered (version 7) UUIDs, the milliseconds since the epoch followed by random bits, so that the interaction
+ * IDs indexed by the downstream log stores are close to each other.
+ */
+@Component
+@ConditionalOnProperty(name = "gateway.interaction-id.generator", havingValue = "time-ordered")
+public class TimeOrderedInteractionIdGenerator implements InteractionIdGenerator {
+
+    @Override
+    public String generate() {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        long mostSigBits = System.currentTimeMillis() << 16 | 0x7000L | random.nextInt(0x1000);
+        long leastSigBits = random.nextLong() & ~(0xC000L << 48) | 0x8000L << 48;
+        return new UUID(mostSigBits, leastSigBits).toString();
+    }
+}
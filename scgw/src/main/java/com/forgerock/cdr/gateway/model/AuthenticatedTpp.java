@@ -0,0 +1,38 @@
+/**
+ * Copyright 2019 ForgeRock AS. All Rights Reserved
+ *
+ * Use of this code requires a commercial software license with ForgeRock AS.
+ * or with one of its affiliates. All use shall be exclusively subject
+ * to such license between the licensee and ForgeRock AS.
+ */
+package com.forgerock.cdr.gateway.model;
+
+/**
+ * The identity the directory gave to a client certificate and the TPP registered with it, if any.
+ */
+public class AuthenticatedTpp {
+
+    private final ApplicationIdentity applicationIdentity;
+    private final Tpp tpp;
+
+    public AuthenticatedTpp(ApplicationIdentity applicationIdentity, Tpp tpp) {
+        this.applicationIdentity = applicationIdentity;
+        this.tpp = tpp;
+    }
+
+    public ApplicationIdentity getApplicationIdentity() {
+        return applicationIdentity;
+    }
+
+    public Tpp getTpp() {
+        return tpp;
+    }
+
+    @Override
+    public String toString() {
+        return "AuthenticatedTpp{" +
+                "applicationIdentity=" + applicationIdentity +
+                ", tpp=" + tpp +
+                '}';
+    }
+}
@@ -0,0 +1,91 @@
+/**
+ * Copyright 2019 ForgeRock AS. All Rights Reserved
+ *
+ * Use of this code requires a commercial software license with ForgeRock AS.
+ * or with one of its affiliates. All use shall be exclusively subject
+ * to such license between the licensee and ForgeRock AS.
+ */
+package com.forgerock.cdr.gateway.routing;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.cloud.gateway.config.GlobalCorsProperties;
+import org.springframework.cloud.gateway.event.RefreshRoutesEvent;
+import org.springframework.cloud.gateway.handler.FilteringWebHandler;
+import org.springframework.cloud.gateway.handler.RoutePredicateHandlerMapping;
+import org.springframework.cloud.gateway.route.Route;
+import org.springframework.cloud.gateway.route.RouteLocator;
+import org.springframework.context.ApplicationListener;
+import org.springframework.core.env.Environment;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.server.reactive.ServerHttpRequest;
+import org.springframework.web.server.ServerWebExchange;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.util.BitSet;
+
+import static org.springframework.cloud.gateway.support.ServerWebExchangeUtils.GATEWAY_PREDICATE_ROUTE_ATTR;
+
+/**
+ * Route lookup using a {@link RouteDispatchIndex} to only evaluate the predicates of the routes that may match the
+ * request. The routes are still evaluated in order, so the route selected is the same as the default handler mapping.
+ *
+ * This mapping is ordered before the default one, which only sees the requests no route matched.
+ */
+@Slf4j
+public class IndexedRoutePredicateHandlerMapping extends RoutePredicateHandlerMapping implements ApplicationListener<RefreshRoutesEvent> {
+
+    private final RouteLocator routeLocator;
+    private final RouteDispatchTable routeDispatchTable;
+    private volatile Mono<RouteDispatchIndex> index;
+
+    public IndexedRoutePredicateHandlerMapping(FilteringWebHandler webHandler, RouteLocator routeLocator,
+                                               RouteDispatchTable routeDispatchTable,
+                                               GlobalCorsProperties globalCorsProperties, Environment environment) {
+        super(webHandler, routeLocator, globalCorsProperties, environment);
+        this.routeLocator = routeLocator;
+        this.routeDispatchTable = routeDispatchTable;
+        this.index = compile();
+        setOrder(0);
+    }
+
+    @Override
+    public void onApplicationEvent(RefreshRoutesEvent event) {
+        log.debug("Routes refreshed, the route dispatch index will be compiled again");
+        this.index = compile();
+    }
+
+    @Override
+    protected Mono<Route> lookupRoute(ServerWebExchange exchange) {
+        ServerHttpRequest request = exchange.getRequest();
+        String host = request.getHeaders().getFirst(HttpHeaders.HOST);
+        String path = request.getPath().pathWithinApplication().value();
+
+        return index.flatMapMany(index -> candidates(index, host, path))
+                .concatMap(route -> Mono.just(route)
+                        .filterWhen(r -> {
+                            exchange.getAttributes().put(GATEWAY_PREDICATE_ROUTE_ATTR, r.getId());
+                            return r.getPredicate().apply(exchange);
+                        })
+                        .doOnError(e -> log.error("Error applying predicate for route: {}", route.getId(), e))
+                        .onErrorResume(e -> Mono.empty()))
+                .next()
+                .map(route -> {
+                    validateRoute(route, exchange);
+                    return route;
+                });
+    }
+
+    private Flux<Route> candidates(RouteDispatchIndex index, String host, String path) {
+        BitSet candidates = index.candidates(host, path);
+        return Flux.fromStream(candidates.stream().mapToObj(index::getRoute));
+    }
+
+    private Mono<RouteDispatchIndex> compile() {
+        return routeLocator.getRoutes()
+                .collectList()
+                .map(routeDispatchTable::compile)
+                .doOnNext(i -> log.info("Route dispatch index compiled for {} routes", i.size()))
+                .cache();
+    }
+}
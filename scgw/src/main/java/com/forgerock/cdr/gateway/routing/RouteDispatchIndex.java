@@ -0,0 +1,257 @@
+/**
+ * Copyright 2019 ForgeRock AS. All Rights Reserved
+ *
+ * Use of this code requires a commercial software license with ForgeRock AS.
+ * or with one of its affiliates. All use shall be exclusively subject
+ * to such license between the licensee and ForgeRock AS.
+ */
+package com.forgerock.cdr.gateway.routing;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.cloud.gateway.route.Route;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Route guards compiled against a snapshot of the gateway routes.
+ *
+ * Host patterns of the form {@code a.b.c**} are hashed by their complete labels ({@code a.b.}) and the last label
+ * prefix ({@code c}) is checked in the bucket. Path patterns made of literal segments, optionally ending with
+ * {@code /**}, are stored in a trie. Anything else is indexed as 'any host' or 'any path', which keeps the index a
+ * superset of the routes the linear evaluation could select.
+ */
+@Slf4j
+public class RouteDispatchIndex {
+
+    private final Route[] routes;
+    private final BitSet always = new BitSet();
+    private final PathTrie anyHost = new PathTrie();
+    private final Map<String, List<HostEntry>> hosts = new HashMap<>();
+
+    RouteDispatchIndex(RouteDispatchTable table, List<Route> routes) {
+        this.routes = routes.toArray(new Route[0]);
+        for (int position = 0; position < this.routes.length; position++) {
+            RouteGuard guard = table.getGuard(this.routes[position].getId());
+            if (guard == null) {
+                log.debug("No guard declared for route '{}', it will be evaluated for every request", this.routes[position].getId());
+                always.set(position);
+                continue;
+            }
+            for (RouteGuard.Alternative alternative : guard.getAlternatives()) {
+                index(alternative, position);
+            }
+        }
+    }
+
+    public int size() {
+        return routes.length;
+    }
+
+    public Route getRoute(int position) {
+        return routes[position];
+    }
+
+    /**
+     * The positions of the routes that may match a request.
+     *
+     * @param host the host header of the request, can be null
+     * @param path the raw path of the request
+     * @return the candidate positions, in evaluation order
+     */
+    public BitSet candidates(String host, String path) {
+        String[] segments = pathSegments(path);
+        if (segments == null) {
+            BitSet all = new BitSet(routes.length);
+            all.set(0, routes.length);
+            return all;
+        }
+        BitSet candidates = (BitSet) always.clone();
+        anyHost.collect(segments, candidates);
+
+        String[] labels = hostLabels(host);
+        if (labels != null) {
+            List<HostEntry> entries = hosts.get(labels[0]);
+            if (entries != null) {
+                for (HostEntry entry : entries) {
+                    if (entry.matches(labels[1])) {
+                        entry.paths.collect(segments, candidates);
+                    }
+                }
+            }
+        }
+        return candidates;
+    }
+
+    private void index(RouteGuard.Alternative alternative, int position) {
+        PathTrie trie = anyHost;
+        String[] labels = alternative.getHostPattern() == null ? null : hostPatternLabels(alternative.getHostPattern());
+        if (labels != null) {
+            boolean prefix = labels[1].endsWith("*");
+            String lastLabel = prefix ? labels[1].replaceAll("\\*+$", "") : labels[1];
+            List<HostEntry> entries = hosts.computeIfAbsent(labels[0], k -> new ArrayList<>());
+            HostEntry entry = entries.stream()
+                    .filter(e -> e.lastLabel.equals(lastLabel) && e.prefix == prefix)
+                    .findFirst()
+                    .orElseGet(() -> {
+                        HostEntry created = new HostEntry(lastLabel, prefix);
+                        entries.add(created);
+                        return created;
+                    });
+            trie = entry.paths;
+        } else if (alternative.getHostPattern() != null) {
+            log.debug("Host pattern '{}' can't be indexed, indexing it as any host", alternative.getHostPattern());
+        }
+
+        if (alternative.getPathPatterns().isEmpty()) {
+            trie.addAnyPath(position);
+        }
+        for (String pathPattern : alternative.getPathPatterns()) {
+            if (!trie.add(pathPattern, position)) {
+                log.debug("Path pattern '{}' can't be indexed, indexing it as any path", pathPattern);
+                trie.addAnyPath(position);
+            }
+        }
+    }
+
+    /**
+     * Split a host pattern into its complete labels and its last label. Only wildcards at the end of the last label
+     * are supported.
+     */
+    private static String[] hostPatternLabels(String hostPattern) {
+        String[] labels = hostLabels(hostPattern);
+        if (labels == null
+                || hasWildcard(labels[0])
+                || hasWildcard(labels[1].replaceAll("\\*+$", ""))
+                || labels[1].replaceAll("\\*+$", "").isEmpty()) {
+            return null;
+        }
+        return labels;
+    }
+
+    /**
+     * Split a host into its complete labels, each followed by a dot, and its last label. Empty labels are ignored,
+     * as the host route predicate does.
+     */
+    private static String[] hostLabels(String host) {
+        if (host == null) {
+            return null;
+        }
+        StringBuilder complete = new StringBuilder(host.length());
+        String last = null;
+        int start = 0;
+        while (start <= host.length()) {
+            int end = host.indexOf('.', start);
+            if (end == -1) {
+                end = host.length();
+            }
+            if (end > start) {
+                if (last != null) {
+                    complete.append(last).append('.');
+                }
+                last = host.substring(start, end);
+            }
+            start = end + 1;
+        }
+        if (last == null) {
+            return null;
+        }
+        return new String[]{complete.toString(), last};
+    }
+
+    /**
+     * Split a raw request path into its segments. Returns null when the path contains encoded characters or matrix
+     * parameters, which the path route predicate matches on their decoded values.
+     */
+    private static String[] pathSegments(String path) {
+        if (path == null || path.indexOf('%') != -1 || path.indexOf(';') != -1) {
+            return null;
+        }
+        List<String> segments = new ArrayList<>();
+        int start = 0;
+        while (start < path.length()) {
+            int end = path.indexOf('/', start);
+            if (end == -1) {
+                end = path.length();
+            }
+            if (end > start) {
+                segments.add(path.substring(start, end));
+            }
+            start = end + 1;
+        }
+        return segments.toArray(new String[0]);
+    }
+
+    private static boolean hasWildcard(String value) {
+        return value.indexOf('*') != -1 || value.indexOf('?') != -1 || value.indexOf('{') != -1;
+    }
+
+    private static class HostEntry {
+        private final String lastLabel;
+        private final boolean prefix;
+        private final PathTrie paths = new PathTrie();
+
+        HostEntry(String lastLabel, boolean prefix) {
+            this.lastLabel = lastLabel;
+            this.prefix = prefix;
+        }
+
+        boolean matches(String label) {
+            return prefix ? label.startsWith(lastLabel) : label.equals(lastLabel);
+        }
+    }
+
+    private static class PathTrie {
+        private final Node root = new Node();
+
+        void addAnyPath(int position) {
+            root.wildcard.set(position);
+        }
+
+        boolean add(String pattern, int position) {
+            if (!pattern.startsWith("/")) {
+                return false;
+            }
+            String[] segments = pathSegments(pattern);
+            if (segments == null) {
+                return false;
+            }
+            Node node = root;
+            for (int i = 0; i < segments.length; i++) {
+                String segment = segments[i];
+                if (i == segments.length - 1 && segment.equals("**")) {
+                    node.wildcard.set(position);
+                    return true;
+                }
+                if (hasWildcard(segment)) {
+                    return false;
+                }
+                node = node.children.computeIfAbsent(segment, k -> new Node());
+            }
+            node.exact.set(position);
+            return true;
+        }
+
+        void collect(String[] segments, BitSet into) {
+            Node node = root;
+            into.or(node.wildcard);
+            for (String segment : segments) {
+                node = node.children.get(segment);
+                if (node == null) {
+                    return;
+                }
+                into.or(node.wildcard);
+            }
+            into.or(node.exact);
+        }
+    }
+
+    private static class Node {
+        private final Map<String, Node> children = new HashMap<>();
+        private final BitSet exact = new BitSet();
+        private final BitSet wildcard = new BitSet();
+    }
+}
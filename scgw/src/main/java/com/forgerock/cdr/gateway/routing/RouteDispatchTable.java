@@ -0,0 +1,46 @@
+/**
+ * Copyright 2019 ForgeRock AS. All Rights Reserved
+ *
+ * Use of this code requires a commercial software license with ForgeRock AS.
+ * or with one of its affiliates. All use shall be exclusively subject
+ * to such license between the licensee and ForgeRock AS.
+ */
+package com.forgerock.cdr.gateway.routing;
+
+import org.springframework.cloud.gateway.route.Route;
+
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * The route guards declared for the gateway routes, by route id.
+ */
+public class RouteDispatchTable {
+
+    private final Map<String, RouteGuard> guards = new LinkedHashMap<>();
+
+    public RouteDispatchTable guard(RouteGuard guard) {
+        if (guards.putIfAbsent(guard.getRouteId(), guard) != null) {
+            throw new IllegalArgumentException("A guard is already declared for route '" + guard.getRouteId() + "'");
+        }
+        return this;
+    }
+
+    public RouteGuard getGuard(String routeId) {
+        return guards.get(routeId);
+    }
+
+    public Map<String, RouteGuard> getGuards() {
+        return guards;
+    }
+
+    /**
+     * Compile this table against the routes currently served by the gateway.
+     *
+     * @param routes the routes, in the order the gateway evaluates them
+     */
+    public RouteDispatchIndex compile(List<Route> routes) {
+        return new RouteDispatchIndex(this, routes);
+    }
+}
@@ -0,0 +1,81 @@
+/**
+ * Copyright 2019 ForgeRock AS. All Rights Reserved
+ *
+ * Use of this code requires a commercial software license with ForgeRock AS.
+ * or with one of its affiliates. All use shall be exclusively subject
+ * to such license between the licensee and ForgeRock AS.
+ */
+package com.forgerock.cdr.gateway.routing;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Host and path conditions a request must satisfy for a route predicate to have any chance of matching.
+ *
+ * A guard is a necessary condition, not a sufficient one: it only needs to be at least as permissive as the route
+ * predicate it describes. Predicates the index can't express (method, remote address, negations...) are simply
+ * left out, the real predicate is still evaluated on every candidate route.
+ */
+public class RouteGuard {
+
+    public static final String ANY_HOST = null;
+
+    private final String routeId;
+    private final List<Alternative> alternatives = new ArrayList<>();
+
+    private RouteGuard(String routeId) {
+        this.routeId = routeId;
+    }
+
+    public static RouteGuard route(String routeId) {
+        return new RouteGuard(routeId);
+    }
+
+    /**
+     * Add an alternative to this guard.
+     *
+     * @param hostPattern the host pattern, as given to the host route predicate, or {@link #ANY_HOST}
+     * @param pathPatterns the path patterns, as given to the path route predicate. None means any path.
+     */
+    public RouteGuard when(String hostPattern, String... pathPatterns) {
+        alternatives.add(new Alternative(hostPattern, Arrays.asList(pathPatterns)));
+        return this;
+    }
+
+    public String getRouteId() {
+        return routeId;
+    }
+
+    public List<Alternative> getAlternatives() {
+        return Collections.unmodifiableList(alternatives);
+    }
+
+    public static class Alternative {
+        private final String hostPattern;
+        private final List<String> pathPatterns;
+
+        Alternative(String hostPattern, List<String> pathPatterns) {
+            this.hostPattern = hostPattern;
+            this.pathPatterns = pathPatterns;
+        }
+
+        public String getHostPattern() {
+            return hostPattern;
+        }
+
+        public List<String> getPathPatterns() {
+            return pathPatterns;
+        }
+    }
+
+    @Override
+    public String toString() {
+        return "RouteGuard{" +
+                "routeId='" + routeId + '\'' +
+                ", alternatives=" + alternatives.size() +
+                '}';
+    }
+}
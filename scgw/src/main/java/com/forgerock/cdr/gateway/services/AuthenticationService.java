@@ -7,20 +7,27 @@
  */
 package com.forgerock.cdr.gateway.services;
 
+import com.forgerock.cdr.gateway.cache.TppAuthenticationCache;
 import com.forgerock.cdr.gateway.model.ApplicationIdentity;
+import com.forgerock.cdr.gateway.model.AuthenticatedTpp;
 import com.forgerock.cdr.gateway.model.Tpp;
 import com.nimbusds.jose.JOSEException;
 import com.nimbusds.jose.jwk.JWK;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.core.ParameterizedTypeReference;
 import org.springframework.http.*;
 import org.springframework.http.server.reactive.ServerHttpRequest;
+import org.springframework.http.server.reactive.SslInfo;
 import org.springframework.stereotype.Service;
 import org.springframework.web.client.HttpClientErrorException;
 import org.springframework.web.client.RestTemplate;
+import org.springframework.web.reactive.function.client.WebClient;
+import org.springframework.web.reactive.function.client.WebClientResponseException;
 import org.springframework.web.util.UriComponentsBuilder;
+import reactor.core.publisher.Mono;
 
 import java.net.URI;
 import java.security.cert.X509Certificate;
@@ -32,6 +39,11 @@ public class AuthenticationService {
 
     @Autowired
     private RestTemplate restTemplate;
+    @Autowired
+    @Qualifier("matlsWebClient")
+    private WebClient webClient;
+    @Autowired
+    private TppAuthenticationCache tppAuthenticationCache;
     @Value("${directory.endpoints.authenticate}")
     public String authenticateEndpoint;
     @Value("${rs-store.base-url}")
@@ -64,6 +76,36 @@ public class AuthenticationService {
         return Optional.empty();
     }
 
+    /**
+     * Non-blocking version of {@link #authenticateTPP(ServerHttpRequest)}, the TPPs are cached by certificate.
+     */
+    public Mono<Optional<Tpp>> authenticateTPPReactive(ServerHttpRequest request) {
+        SslInfo sslInfo = request.getSslInfo();
+        X509Certificate[] certs = sslInfo != null ? sslInfo.getPeerCertificates() : null;
+        if (certs == null || certs.length == 0 || certs[0] == null) {
+            log.debug("No client certificate received.");
+            return Mono.just(Optional.empty());
+        }
+        return tppAuthenticationCache.get(certs[0], this::authenticateCertificate)
+                .map(authenticatedTpp -> Optional.ofNullable(authenticatedTpp.getTpp()));
+    }
+
+    private Mono<AuthenticatedTpp> authenticateCertificate(X509Certificate certificate) {
+        JWK jwk;
+        try {
+            jwk = JWK.parse(certificate);
+        } catch (JOSEException e) {
+            log.error("Can't parse jwk from certificate '{}'", certificate);
+            return Mono.just(new AuthenticatedTpp(null, null));
+        }
+        return authenticateReactive(jwk)
+                .flatMap(applicationIdentity -> {
+                    log.debug("applicationIdentity : {}", applicationIdentity);
+                    return findByCnReactive(applicationIdentity.getId())
+                            .map(tpp -> new AuthenticatedTpp(applicationIdentity, tpp.orElse(null)));
+                });
+    }
+
     public ApplicationIdentity authenticate(JWK jwk) {
         HttpHeaders headers = new HttpHeaders();
         headers.setContentType(MediaType.APPLICATION_JSON);
@@ -79,10 +121,34 @@ public class AuthenticationService {
         return entity.getBody();
     }
 
-    private Optional<Tpp> findByCn(String cn) {
+    public Mono<ApplicationIdentity> authenticateReactive(JWK jwk) {
+        return webClient.post()
+                .uri(authenticateEndpoint)
+                .contentType(MediaType.APPLICATION_JSON)
+                .syncBody(jwk.toJSONObject().toJSONString())
+                .retrieve()
+                .bodyToMono(ApplicationIdentity.class);
+    }
+
+    private Mono<Optional<Tpp>> findByCnReactive(String cn) {
+        log.debug("Find cn {}", cn);
+        return webClient.get()
+                .uri(findByCnUri(cn))
+                .retrieve()
+                .bodyToMono(Tpp.class)
+                .map(Optional::of)
+                .defaultIfEmpty(Optional.empty())
+                .onErrorResume(WebClientResponseException.NotFound.class, e -> Mono.just(Optional.empty()));
+    }
+
+    private URI findByCnUri(String cn) {
         UriComponentsBuilder builder = UriComponentsBuilder.fromHttpUrl(rsStoreRoot + "/tpps/search/findByCertificateCn");
         builder.queryParam("certificateCn", cn);
-        URI uri = builder.build().encode().toUri();
+        return builder.build().encode().toUri();
+    }
+
+    private Optional<Tpp> findByCn(String cn) {
+        URI uri = findByCnUri(cn);
         log.debug("Find cn {}", cn);
         try {
             ResponseEntity<Tpp> entity = restTemplate.exchange(uri, HttpMethod.GET, null, Tpp.class);
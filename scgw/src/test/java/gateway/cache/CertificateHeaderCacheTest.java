@@ -0,0 +1,93 @@
+/**
+ * Copyright 2019 ForgeRock AS. All Rights Reserved
+ *
+ * Use of this code requires a commercial software license with ForgeRock AS.
+ * or with one of its affiliates. All use shall be exclusively subject
+ * to such license between the licensee and ForgeRock AS.
+ */
+package gateway.cache;
+
+import com.forgerock.cdr.gateway.cache.CertificateHeaderCache;
+import com.forgerock.cdr.gateway.cache.CertificateHeaders;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.InputStream;
+import java.security.KeyStore;
+import java.security.cert.X509Certificate;
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class CertificateHeaderCacheTest {
+
+    private SimpleMeterRegistry meterRegistry;
+    private CertificateHeaderCache certificateHeaderCache;
+    private X509Certificate externalCa;
+    private X509Certificate internalCa;
+
+    @Before
+    public void setup() throws Exception {
+        meterRegistry = new SimpleMeterRegistry();
+        certificateHeaderCache = new CertificateHeaderCache(10, Duration.ofHours(1), meterRegistry);
+        KeyStore keyStore = KeyStore.getInstance("PKCS12");
+        try (InputStream in = getClass().getClassLoader().getResourceAsStream("keystore/keystore.jks")) {
+            keyStore.load(in, "changeit".toCharArray());
+        }
+        externalCa = (X509Certificate) keyStore.getCertificate("obri-external-ca");
+        internalCa = (X509Certificate) keyStore.getCertificate("obri-internal-ca");
+    }
+
+    @Test
+    public void loadsTheHeadersOncePerCertificate() throws Exception {
+        // Given
+        AtomicInteger loads = new AtomicInteger();
+        CertificateHeaderCache.Loader loader = c -> new CertificateHeaders("jwk-" + loads.incrementAndGet(), "pem");
+
+        // When
+        CertificateHeaders first = certificateHeaderCache.get(externalCa, loader);
+        CertificateHeaders second = certificateHeaderCache.get(externalCa, loader);
+        CertificateHeaders other = certificateHeaderCache.get(internalCa, loader);
+
+        // Then
+        assertThat(second).isSameAs(first);
+        assertThat(other.getJwk()).isEqualTo("jwk-2");
+        assertThat(loads).hasValue(2);
+    }
+
+    @Test
+    public void reloadsAfterInvalidation() throws Exception {
+        // Given
+        AtomicInteger loads = new AtomicInteger();
+        CertificateHeaderCache.Loader loader = c -> new CertificateHeaders("jwk-" + loads.incrementAndGet(), "pem");
+        certificateHeaderCache.get(externalCa, loader);
+
+        // When
+        certificateHeaderCache.invalidateAll();
+        CertificateHeaders headers = certificateHeaderCache.get(externalCa, loader);
+
+        // Then
+        assertThat(headers.getJwk()).isEqualTo("jwk-2");
+    }
+
+    @Test
+    public void exposesHitAndMissMetrics() throws Exception {
+        // Given
+        CertificateHeaderCache.Loader loader = c -> new CertificateHeaders("jwk", "pem");
+
+        // When
+        certificateHeaderCache.get(externalCa, loader);
+        certificateHeaderCache.get(externalCa, loader);
+        certificateHeaderCache.get(externalCa, loader);
+
+        // Then
+        assertThat(meterRegistry.get("cache.gets").tag("cache", CertificateHeaderCache.CACHE_NAME)
+                .tag("result", "hit").functionCounter().count()).isEqualTo(2);
+        assertThat(meterRegistry.get("cache.gets").tag("cache", CertificateHeaderCache.CACHE_NAME)
+                .tag("result", "miss").functionCounter().count()).isEqualTo(1);
+        assertThat(meterRegistry.find("cache.evictions").tag("cache", CertificateHeaderCache.CACHE_NAME).meters())
+                .isNotEmpty();
+    }
+}
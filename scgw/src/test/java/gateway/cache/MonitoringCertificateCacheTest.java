@@ -0,0 +1,151 @@
+/**
+ * Copyright 2019 ForgeRock AS. All Rights Reserved
+ *
+ * Use of this code requires a commercial software license with ForgeRock AS.
+ * or with one of its affiliates. All use shall be exclusively subject
+ * to such license between the licensee and ForgeRock AS.
+ */
+package gateway.cache;
+
+import com.forgerock.cdr.gateway.cache.MonitoringCertificateCache;
+import com.github.tomakehurst.wiremock.junit.WireMockRule;
+import gateway.filters.PemCertificates;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.springframework.web.reactive.function.client.WebClient;
+import org.springframework.web.reactive.function.client.WebClientResponseException;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.security.cert.X509Certificate;
+import java.time.Duration;
+import java.util.List;
+import java.util.Optional;
+
+import static com.github.tomakehurst.wiremock.client.WireMock.aResponse;
+import static com.github.tomakehurst.wiremock.client.WireMock.get;
+import static com.github.tomakehurst.wiremock.client.WireMock.getRequestedFor;
+import static com.github.tomakehurst.wiremock.client.WireMock.urlEqualTo;
+import static com.github.tomakehurst.wiremock.core.WireMockConfiguration.wireMockConfig;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+public class MonitoringCertificateCacheTest {
+
+    private static final String CERTIFICATE_PATH = "/api/test/software-statement/monitoring-1/certificate";
+
+    @Rule
+    public WireMockRule monitoringMock = new WireMockRule(wireMockConfig().dynamicPort());
+
+    private MonitoringCertificateCache monitoringCertificateCache;
+    private X509Certificate certificate;
+
+    @Before
+    public void setup() throws Exception {
+        certificate = PemCertificates.certificates().get(2);
+        monitoringCertificateCache = new MonitoringCertificateCache(WebClient.create(),
+                "http://localhost:" + monitoringMock.port() + "/", 10, Duration.ofMillis(500), Duration.ofMillis(200),
+                new SimpleMeterRegistry());
+    }
+
+    @Test
+    public void callsTheMonitoringServiceOnce() throws Exception {
+        // Given
+        monitoringMock.stubFor(get(urlEqualTo(CERTIFICATE_PATH))
+                .willReturn(aResponse().withStatus(200).withBody(PemCertificates.pem(certificate, 64, true))));
+
+        // When
+        Optional<X509Certificate> first = monitoringCertificateCache.get("monitoring-1").block();
+        Optional<X509Certificate> second = monitoringCertificateCache.get("monitoring-1").block();
+
+        // Then
+        assertThat(first).contains(certificate);
+        assertThat(second).contains(certificate);
+        monitoringMock.verify(1, getRequestedFor(urlEqualTo(CERTIFICATE_PATH)));
+    }
+
+    @Test
+    public void concurrentRequestsShareTheSameCall() throws Exception {
+        // Given
+        monitoringMock.stubFor(get(urlEqualTo(CERTIFICATE_PATH))
+                .willReturn(aResponse().withStatus(200).withFixedDelay(300)
+                        .withBody(PemCertificates.pem(certificate, 64, true))));
+
+        // When
+        List<Optional<X509Certificate>> certificates = Flux.range(0, 20)
+                .flatMap(i -> monitoringCertificateCache.get("monitoring-1"))
+                .collectList()
+                .block();
+
+        // Then
+        assertThat(certificates).hasSize(20).containsOnly(Optional.of(certificate));
+        monitoringMock.verify(1, getRequestedFor(urlEqualTo(CERTIFICATE_PATH)));
+    }
+
+    @Test
+    public void reloadsTheCertificateOnceExpired() throws Exception {
+        // Given
+        monitoringMock.stubFor(get(urlEqualTo(CERTIFICATE_PATH))
+                .willReturn(aResponse().withStatus(200).withBody(PemCertificates.pem(certificate, 64, true))));
+        monitoringCertificateCache.get("monitoring-1").block();
+
+        // When
+        Thread.sleep(700);
+        Optional<X509Certificate> reloaded = monitoringCertificateCache.get("monitoring-1").block();
+
+        // Then
+        assertThat(reloaded).contains(certificate);
+        monitoringMock.verify(2, getRequestedFor(urlEqualTo(CERTIFICATE_PATH)));
+    }
+
+    @Test
+    public void cachesAnUnknownMonitoringId() {
+        // Given
+        monitoringMock.stubFor(get(urlEqualTo(CERTIFICATE_PATH))
+                .willReturn(aResponse().withStatus(404)));
+
+        // When
+        Optional<X509Certificate> first = monitoringCertificateCache.get("monitoring-1").block();
+        Optional<X509Certificate> second = monitoringCertificateCache.get("monitoring-1").block();
+
+        // Then
+        assertThat(first).isEmpty();
+        assertThat(second).isEmpty();
+        monitoringMock.verify(1, getRequestedFor(urlEqualTo(CERTIFICATE_PATH)));
+    }
+
+    @Test
+    public void cachesAnUnknownMonitoringIdForTheNegativeTtl() throws Exception {
+        // Given
+        monitoringMock.stubFor(get(urlEqualTo(CERTIFICATE_PATH))
+                .willReturn(aResponse().withStatus(200).withBody("not a certificate")));
+        monitoringCertificateCache.get("monitoring-1").block();
+
+        // When
+        Thread.sleep(300);
+        monitoringCertificateCache.get("monitoring-1").block();
+
+        // Then
+        monitoringMock.verify(2, getRequestedFor(urlEqualTo(CERTIFICATE_PATH)));
+    }
+
+    @Test
+    public void doesNotCacheAFailureOfTheMonitoringService() throws Exception {
+        // Given
+        monitoringMock.stubFor(get(urlEqualTo(CERTIFICATE_PATH))
+                .willReturn(aResponse().withStatus(503)));
+        Mono<Optional<X509Certificate>> failure = monitoringCertificateCache.get("monitoring-1");
+        assertThatThrownBy(failure::block).isInstanceOf(WebClientResponseException.class);
+        monitoringMock.stubFor(get(urlEqualTo(CERTIFICATE_PATH))
+                .willReturn(aResponse().withStatus(200).withBody(PemCertificates.pem(certificate, 64, true))));
+
+        // When
+        Optional<X509Certificate> recovered = monitoringCertificateCache.get("monitoring-1").block();
+
+        // Then
+        assertThat(recovered).contains(certificate);
+        monitoringMock.verify(2, getRequestedFor(urlEqualTo(CERTIFICATE_PATH)));
+    }
+}
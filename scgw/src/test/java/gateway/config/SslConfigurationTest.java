@@ -0,0 +1,98 @@
+/**
+ * Copyright 2019 ForgeRock AS. All Rights Reserved
+ *
+ * Use of this code requires a commercial software license with ForgeRock AS.
+ * or with one of its affiliates. All use shall be exclusively subject
+ * to such license between the licensee and ForgeRock AS.
+ */
+package gateway.config;
+
+import com.forgerock.cdr.gateway.config.SslConfiguration;
+import com.github.tomakehurst.wiremock.junit.WireMockRule;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.http.client.HttpComponentsClientHttpRequestFactory;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.web.client.RestTemplate;
+
+import java.time.Duration;
+
+import static com.github.tomakehurst.wiremock.client.WireMock.aResponse;
+import static com.github.tomakehurst.wiremock.client.WireMock.get;
+import static com.github.tomakehurst.wiremock.client.WireMock.urlEqualTo;
+import static com.github.tomakehurst.wiremock.core.WireMockConfiguration.wireMockConfig;
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class SslConfigurationTest {
+
+    private static final String KEY_ALIAS = "scgw.dev-ob.forgerock.financial";
+
+    @Rule
+    public WireMockRule serviceMock = new WireMockRule(wireMockConfig().dynamicPort());
+
+    private SslConfiguration sslConfiguration;
+    private SimpleMeterRegistry meterRegistry;
+
+    @Before
+    public void setup() {
+        meterRegistry = new SimpleMeterRegistry();
+        sslConfiguration = new SslConfiguration();
+        ReflectionTestUtils.setField(sslConfiguration, "keyStore", new ClassPathResource("keystore/keystore.jks"));
+        ReflectionTestUtils.setField(sslConfiguration, "keyStorePassword", "changeit");
+        ReflectionTestUtils.setField(sslConfiguration, "keyPassword", "changeit");
+        ReflectionTestUtils.setField(sslConfiguration, "sslEnabled", true);
+        ReflectionTestUtils.setField(sslConfiguration, "pooled", true);
+        ReflectionTestUtils.setField(sslConfiguration, "maxTotal", 20);
+        ReflectionTestUtils.setField(sslConfiguration, "maxPerRoute", 5);
+        ReflectionTestUtils.setField(sslConfiguration, "connectTimeout", Duration.ofSeconds(1));
+        ReflectionTestUtils.setField(sslConfiguration, "connectionRequestTimeout", Duration.ofSeconds(1));
+        ReflectionTestUtils.setField(sslConfiguration, "socketTimeout", Duration.ofSeconds(1));
+        ReflectionTestUtils.setField(sslConfiguration, "keepAlive", Duration.ofSeconds(30));
+        ReflectionTestUtils.setField(sslConfiguration, "evictIdleAfter", Duration.ofSeconds(60));
+        ReflectionTestUtils.setField(sslConfiguration, "validateAfterInactivity", Duration.ofSeconds(2));
+        ReflectionTestUtils.setField(sslConfiguration, "tlsSessionCacheSize", 100);
+        ReflectionTestUtils.setField(sslConfiguration, "tlsSessionTimeout", Duration.ofHours(1));
+        ReflectionTestUtils.setField(sslConfiguration, "meterRegistry", meterRegistry);
+    }
+
+    @Test
+    public void buildsTheSslContextOnce() throws Exception {
+        // When
+        sslConfiguration.factory(KEY_ALIAS, false);
+        sslConfiguration.factory(KEY_ALIAS, true);
+
+        // Then
+        assertThat(sslConfiguration.getSslContext(KEY_ALIAS)).isSameAs(sslConfiguration.getSslContext(KEY_ALIAS));
+        assertThat(sslConfiguration.getSslContext(KEY_ALIAS).getClientSessionContext().getSessionCacheSize()).isEqualTo(100);
+    }
+
+    @Test
+    public void reusesThePooledConnections() throws Exception {
+        // Given
+        serviceMock.stubFor(get(urlEqualTo("/tpps")).willReturn(aResponse().withStatus(200).withBody("[]")));
+        HttpComponentsClientHttpRequestFactory factory = sslConfiguration.factory(KEY_ALIAS, false);
+        RestTemplate restTemplate = new RestTemplate(factory);
+
+        // When
+        for (int i = 0; i < 10; i++) {
+            restTemplate.getForObject("http://localhost:" + serviceMock.port() + "/tpps", String.class);
+        }
+
+        // Then
+        assertThat(gauge("httpcomponents.httpclient.pool.total.max", null)).isEqualTo(20);
+        assertThat(gauge("httpcomponents.httpclient.pool.total.connections", "available")).isEqualTo(1);
+        assertThat(gauge("httpcomponents.httpclient.pool.total.connections", "leased")).isEqualTo(0);
+        assertThat(gauge("httpcomponents.httpclient.pool.total.pending", null)).isEqualTo(0);
+        assertThat(meterRegistry.get("httpcomponents.httpclient.pool.route.max.default").gauge().value()).isEqualTo(5);
+    }
+
+    private double gauge(String name, String state) {
+        if (state == null) {
+            return meterRegistry.get(name).tag("httpclient", KEY_ALIAS).gauge().value();
+        }
+        return meterRegistry.get(name).tag("httpclient", KEY_ALIAS).tag("state", state).gauge().value();
+    }
+}
@@ -11,11 +11,15 @@ import brave.Span;
 import brave.Tracer;
 import brave.propagation.TraceContext;
 import com.forgerock.cdr.gateway.filters.AddInteractionIdHeaderGatewayFilter;
+import com.forgerock.cdr.gateway.filters.InteractionIdGenerator;
+import com.forgerock.cdr.gateway.filters.RandomInteractionIdGenerator;
+import com.forgerock.cdr.gateway.filters.RequestDecorations;
 import org.junit.Before;
 import org.junit.Test;
 import org.junit.runner.RunWith;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
+import org.mockito.Spy;
 import org.mockito.junit.MockitoJUnitRunner;
 import org.springframework.cloud.gateway.filter.GatewayFilterChain;
 import org.springframework.http.HttpHeaders;
@@ -24,11 +28,12 @@ import org.springframework.http.server.reactive.ServerHttpResponse;
 import org.springframework.web.server.ServerWebExchange;
 import reactor.core.publisher.Mono;
 
+import java.util.HashMap;
+import java.util.Map;
 import java.util.UUID;
 
 import static org.assertj.core.api.Assertions.assertThat;
 import static org.mockito.ArgumentMatchers.any;
-import static org.mockito.ArgumentMatchers.anyString;
 import static org.mockito.BDDMockito.given;
 import static org.mockito.Mockito.mock;
 
@@ -36,11 +41,14 @@ import static org.mockito.Mockito.mock;
 public class AddInteractionIdHeaderGatewayFilterTest {
     @Mock
     private Tracer tracer;
+    @Spy
+    private InteractionIdGenerator interactionIdGenerator = new RandomInteractionIdGenerator();
 
     @InjectMocks
     private AddInteractionIdHeaderGatewayFilter addInteractionIdHeaderGatewayFilter;
 
     private GatewayFilterChain chain;
+    private Map<String, Object> attributes = new HashMap<>();
 
     @Before
     public void setup() {
@@ -64,6 +72,7 @@ public class AddInteractionIdHeaderGatewayFilterTest {
 
         // Then
         assertThat(interactionId).isEqualTo(responseHeaders.getFirst("x-fapi-interaction-id"));
+        assertThat(RequestDecorations.of(exchange).getHeaders()).containsEntry("x-fapi-interaction-id", interactionId);
     }
 
     @Test
@@ -99,10 +108,7 @@ public class AddInteractionIdHeaderGatewayFilterTest {
         ServerHttpRequest serverHttpRequest = mock(ServerHttpRequest.class);
         ServerHttpResponse serverHttpResponse = mock(ServerHttpResponse.class);
 
-        ServerWebExchange.Builder builder = mock(ServerWebExchange.Builder.class);
-        given(exchange.mutate()).willReturn(builder);
-        given(builder.request(any(ServerHttpRequest.class))).willReturn(builder);
-        given(builder.build()).willReturn(exchange);
+        given(exchange.getAttributes()).willReturn(attributes);
 
         HttpHeaders requestHeaders = new HttpHeaders();
         requestHeaders.add("x-fapi-interaction-id", interactionId);
@@ -111,11 +117,6 @@ public class AddInteractionIdHeaderGatewayFilterTest {
         given(serverHttpRequest.getHeaders()).willReturn(requestHeaders);
         given(serverHttpResponse.getHeaders()).willReturn(responseHeaders);
 
-        ServerHttpRequest.Builder reqBuilder = mock(ServerHttpRequest.Builder.class);
-        given(serverHttpRequest.mutate()).willReturn(reqBuilder);
-        given(reqBuilder.header(anyString(), anyString())).willReturn(reqBuilder);
-        given(reqBuilder.build()).willReturn(serverHttpRequest);
-
         return exchange;
     }
 
@@ -0,0 +1,100 @@
+/**
+ * Copyright 2019 ForgeRock AS. All Rights Reserved
+ *
+ * Use of this code requires a commercial software license with ForgeRock AS.
+ * or with one of its affiliates. All use shall be exclusively subject
+ * to such license between the licensee and ForgeRock AS.
+ */
+package gateway.filters;
+
+import com.forgerock.cdr.gateway.filters.InteractionIds;
+import com.forgerock.cdr.gateway.filters.RandomInteractionIdGenerator;
+import com.forgerock.cdr.gateway.filters.TimeOrderedInteractionIdGenerator;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Generation and validation of the interaction IDs, UUID against the generators and the validator of the gateway.
+ *
+ * Run with: mvn test-compile exec:java -Dexec.mainClass=gateway.filters.InteractionIdBenchmark -Dexec.classpathScope=test
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@Threads(4)
+@State(Scope.Benchmark)
+public class InteractionIdBenchmark {
+
+    private static final String VALID_ID = "93bc4b66-f6d5-4d0e-8a42-2b4cb3f4ab2e";
+    private static final String INVALID_ID = "abc<script>123";
+
+    private final RandomInteractionIdGenerator randomGenerator = new RandomInteractionIdGenerator();
+    private final TimeOrderedInteractionIdGenerator timeOrderedGenerator = new TimeOrderedInteractionIdGenerator();
+
+    @Benchmark
+    public String randomUUID() {
+        return UUID.randomUUID().toString();
+    }
+
+    @Benchmark
+    public String randomGenerator() {
+        return randomGenerator.generate();
+    }
+
+    @Benchmark
+    public String timeOrderedGenerator() {
+        return timeOrderedGenerator.generate();
+    }
+
+    @Benchmark
+    public boolean fromStringValid() {
+        return isUuid(VALID_ID);
+    }
+
+    @Benchmark
+    public boolean fromStringInvalid() {
+        return isUuid(INVALID_ID);
+    }
+
+    @Benchmark
+    public boolean isValidValid() {
+        return InteractionIds.isValid(VALID_ID);
+    }
+
+    @Benchmark
+    public boolean isValidInvalid() {
+        return InteractionIds.isValid(INVALID_ID);
+    }
+
+    private static boolean isUuid(String id) {
+        try {
+            UUID.fromString(id);
+            return true;
+        } catch (IllegalArgumentException e) {
+            return false;
+        }
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder()
+                .include(InteractionIdBenchmark.class.getSimpleName())
+                .build())
+                .run();
+    }
+}
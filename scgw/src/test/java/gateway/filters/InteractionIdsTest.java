@@ -0,0 +1,86 @@
+/**
+ * Copyright 2019 ForgeRock AS. All Rights Reserved
+ *
+ * Use of this code requires a commercial software license with ForgeRock AS.
+ * or with one of its affiliates. All use shall be exclusively subject
+ * to such license between the licensee and ForgeRock AS.
+ */
+package gateway.filters;
+
+import com.forgerock.cdr.gateway.filters.InteractionIds;
+import com.forgerock.cdr.gateway.filters.RandomInteractionIdGenerator;
+import com.forgerock.cdr.gateway.filters.TimeOrderedInteractionIdGenerator;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class InteractionIdsTest {
+
+    @Test
+    public void acceptsRfc4122Uuids() {
+        assertThat(InteractionIds.isValid(UUID.randomUUID().toString())).isTrue();
+        assertThat(InteractionIds.isValid("93BC4B66-F6D5-4D0E-8A42-2B4CB3F4AB2E")).isTrue();
+        assertThat(InteractionIds.isValid("00000000-0000-0000-0000-000000000000")).isTrue();
+    }
+
+    @Test
+    public void rejectsAnythingElse() {
+        assertThat(InteractionIds.isValid(null)).isFalse();
+        assertThat(InteractionIds.isValid("")).isFalse();
+        assertThat(InteractionIds.isValid("abc<script>123")).isFalse();
+        assertThat(InteractionIds.isValid("1-1-1-1-1")).isFalse();
+        assertThat(InteractionIds.isValid("93bc4b66-f6d5-4d0e-8a42-2b4cb3f4ab2")).isFalse();
+        assertThat(InteractionIds.isValid("93bc4b66-f6d5-4d0e-8a42-2b4cb3f4ab2e0")).isFalse();
+        assertThat(InteractionIds.isValid("93bc4b66f-6d5-4d0e-8a42-2b4cb3f4ab2e")).isFalse();
+        assertThat(InteractionIds.isValid("93bc4b66-f6d5-4d0e-8a42-2b4cb3f4ab2g")).isFalse();
+        assertThat(InteractionIds.isValid("+3bc4b66-f6d5-4d0e-8a42-2b4cb3f4ab2e")).isFalse();
+    }
+
+    @Test
+    public void acceptsTheUuidsItCanParse() {
+        for (int i = 0; i < 1000; i++) {
+            // Given
+            String uuid = UUID.randomUUID().toString();
+
+            // Then
+            assertThat(InteractionIds.isValid(uuid)).isTrue();
+            assertThat(UUID.fromString(uuid).toString()).isEqualTo(uuid);
+        }
+    }
+
+    @Test
+    public void generatesRandomUuids() {
+        // When
+        UUID uuid = UUID.fromString(new RandomInteractionIdGenerator().generate());
+
+        // Then
+        assertThat(uuid.version()).isEqualTo(4);
+        assertThat(uuid.variant()).isEqualTo(2);
+        assertThat(InteractionIds.isValid(uuid.toString())).isTrue();
+    }
+
+    @Test
+    public void generatesTimeOrderedUuids() throws Exception {
+        // Given
+        TimeOrderedInteractionIdGenerator generator = new TimeOrderedInteractionIdGenerator();
+        long before = System.currentTimeMillis();
+        List<String> uuids = new ArrayList<>();
+
+        // When
+        for (int i = 0; i < 3; i++) {
+            uuids.add(generator.generate());
+            Thread.sleep(2);
+        }
+
+        // Then
+        UUID uuid = UUID.fromString(uuids.get(0));
+        assertThat(uuid.version()).isEqualTo(7);
+        assertThat(uuid.variant()).isEqualTo(2);
+        assertThat(uuid.getMostSignificantBits() >>> 16).isBetween(before, System.currentTimeMillis());
+        assertThat(uuids).isSorted();
+    }
+}
@@ -0,0 +1,43 @@
+/**
+ * Copyright 2019 ForgeRock AS. All Rights Reserved
+ *
+ * Use of this code requires a commercial software license with ForgeRock AS.
+ * or with one of its affiliates. All use shall be exclusively subject
+ * to such license between the licensee and ForgeRock AS.
+ */
+package gateway.filters;
+
+import java.io.ByteArrayInputStream;
+import java.io.UnsupportedEncodingException;
+import java.net.URLDecoder;
+import java.security.cert.CertificateException;
+import java.security.cert.CertificateFactory;
+import java.security.cert.X509Certificate;
+import java.util.Base64;
+
+import static com.forgerock.cdr.gateway.filters.AddCertificateHeaderGatewayFilter.BEGIN_CERT;
+import static com.forgerock.cdr.gateway.filters.AddCertificateHeaderGatewayFilter.END_CERT;
+
+/**
+ * The x-client-cert parsing as AddCertificateHeaderGatewayFilter used to do it, the reference for the
+ * {@link com.forgerock.cdr.gateway.filters.PemCertificateDecoder}.
+ */
+public class LegacyPemCertificateParser {
+
+    public static X509Certificate parse(String certStr, boolean urlEncoded) {
+        try {
+            if (urlEncoded) {
+                certStr = URLDecoder.decode(certStr, "UTF-8");
+            }
+            byte [] decoded = Base64.getDecoder()
+                    .decode(
+                            certStr
+                                    .replaceAll("\n", "")
+                                    .replaceAll(BEGIN_CERT, "")
+                                    .replaceAll(END_CERT, ""));
+            return (X509Certificate) CertificateFactory.getInstance("X.509").generateCertificate(new ByteArrayInputStream(decoded));
+        } catch (CertificateException | UnsupportedEncodingException | IllegalArgumentException e) {
+            return null;
+        }
+    }
+}
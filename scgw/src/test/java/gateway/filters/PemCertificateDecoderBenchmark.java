@@ -0,0 +1,65 @@
+/**
+ * Copyright 2019 ForgeRock AS. All Rights Reserved
+ *
+ * Use of this code requires a commercial software license with ForgeRock AS.
+ * or with one of its affiliates. All use shall be exclusively subject
+ * to such license between the licensee and ForgeRock AS.
+ */
+package gateway.filters;
+
+import com.forgerock.cdr.gateway.filters.PemCertificateDecoder;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.security.cert.X509Certificate;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Parsing of the x-client-cert header, the legacy URL decoding and regex parsing against the single pass decoder.
+ *
+ * Run with: mvn test-compile exec:java -Dexec.mainClass=gateway.filters.PemCertificateDecoderBenchmark -Dexec.classpathScope=test
+ * and add -prof gc to the JMH options to compare the allocation rates.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class PemCertificateDecoderBenchmark {
+
+    private String header;
+
+    @Setup
+    public void setup() throws Exception {
+        header = PemCertificates.urlEncodedPem(PemCertificates.certificates().get(2));
+    }
+
+    @Benchmark
+    public X509Certificate legacyParse() {
+        return LegacyPemCertificateParser.parse(header, true);
+    }
+
+    @Benchmark
+    public X509Certificate decode() {
+        return PemCertificateDecoder.decode(header, true);
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder()
+                .include(PemCertificateDecoderBenchmark.class.getSimpleName())
+                .build())
+                .run();
+    }
+}
@@ -0,0 +1,136 @@
+/**
+ * Copyright 2019 ForgeRock AS. All Rights Reserved
+ *
+ * Use of this code requires a commercial software license with ForgeRock AS.
+ * or with one of its affiliates. All use shall be exclusively subject
+ * to such license between the licensee and ForgeRock AS.
+ */
+package gateway.filters;
+
+import com.forgerock.cdr.gateway.filters.PemCertificateDecoder;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.security.cert.X509Certificate;
+import java.util.List;
+import java.util.Random;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class PemCertificateDecoderTest {
+
+    private static final String MUTATIONS = "AZaz09+/=-\n\r %Bx";
+    private static final int RUNS = 5000;
+
+    private List<X509Certificate> certificates;
+
+    @Before
+    public void setup() throws Exception {
+        certificates = PemCertificates.certificates();
+    }
+
+    @Test
+    public void decodesTheLoadBalancerHeader() throws Exception {
+        for (X509Certificate certificate : certificates) {
+            // When
+            X509Certificate decoded = PemCertificateDecoder.decode(PemCertificates.urlEncodedPem(certificate), true);
+
+            // Then
+            assertThat(decoded).isEqualTo(certificate);
+        }
+    }
+
+    @Test
+    public void decodesTheMonitoringCertificate() throws Exception {
+        for (X509Certificate certificate : certificates) {
+            // When
+            X509Certificate decoded = PemCertificateDecoder.decode(PemCertificates.pem(certificate, 64, true), false);
+
+            // Then
+            assertThat(decoded).isEqualTo(certificate);
+        }
+    }
+
+    @Test
+    public void rejectsInvalidCertificates() throws Exception {
+        // Given
+        String pem = PemCertificates.pem(certificates.get(0), 64, true);
+
+        // Then
+        assertThat(PemCertificateDecoder.decode(null, true)).isNull();
+        assertThat(PemCertificateDecoder.decode("", true)).isNull();
+        assertThat(PemCertificateDecoder.decode(pem.replace("-----END", "----END"), false)).isNull();
+        assertThat(PemCertificateDecoder.decode(pem + "%", true)).isNull();
+        assertThat(PemCertificateDecoder.decode(pem + "%4", true)).isNull();
+        assertThat(PemCertificateDecoder.decode(pem.substring(0, pem.length() / 2), false)).isNull();
+    }
+
+    @Test
+    public void decodesAsTheLegacyParserForEncodedCertificates() throws Exception {
+        Random random = new Random(42);
+        for (int run = 0; run < RUNS; run++) {
+            // Given
+            boolean urlEncoded = random.nextBoolean();
+            String pem = randomPem(random, urlEncoded);
+
+            // When
+            X509Certificate expected = LegacyPemCertificateParser.parse(pem, urlEncoded);
+            X509Certificate actual = PemCertificateDecoder.decode(pem, urlEncoded);
+
+            // Then
+            assertThat(actual).as("run %d: %s", run, pem).isEqualTo(expected).isNotNull();
+        }
+    }
+
+    @Test
+    public void decodesAsTheLegacyParserForMutatedCertificates() throws Exception {
+        Random random = new Random(7);
+        for (int run = 0; run < RUNS; run++) {
+            // Given
+            boolean urlEncoded = random.nextBoolean();
+            StringBuilder pem = new StringBuilder(randomPem(random, urlEncoded));
+            for (int mutations = 1 + random.nextInt(3); mutations > 0; mutations--) {
+                int index = random.nextInt(pem.length());
+                char c = MUTATIONS.charAt(random.nextInt(MUTATIONS.length()));
+                switch (random.nextInt(3)) {
+                    case 0:
+                        pem.insert(index, c);
+                        break;
+                    case 1:
+                        pem.deleteCharAt(index);
+                        break;
+                    default:
+                        pem.setCharAt(index, c);
+                }
+            }
+
+            // When
+            X509Certificate expected = LegacyPemCertificateParser.parse(pem.toString(), urlEncoded);
+            X509Certificate actual = PemCertificateDecoder.decode(pem, urlEncoded);
+
+            // Then
+            assertThat(actual).as("run %d: %s", run, pem).isEqualTo(expected);
+        }
+    }
+
+    private String randomPem(Random random, boolean urlEncoded) throws Exception {
+        X509Certificate certificate = certificates.get(random.nextInt(certificates.size()));
+        int lineLength = random.nextBoolean() ? 64 : 1 + random.nextInt(2000);
+        String pem = PemCertificates.pem(certificate, lineLength, random.nextBoolean());
+        if (!urlEncoded) {
+            return pem;
+        }
+        StringBuilder encoded = new StringBuilder();
+        for (char c : pem.toCharArray()) {
+            if (c == ' ' && random.nextBoolean()) {
+                encoded.append('+');
+            } else if (c == '+' || c == ' ' || random.nextInt(4) == 0) {
+                String hex = String.format("%%%02X", (int) c);
+                encoded.append(random.nextBoolean() ? hex : hex.toLowerCase());
+            } else {
+                encoded.append(c);
+            }
+        }
+        return encoded.toString();
+    }
+}
@@ -0,0 +1,59 @@
+/**
+ * Copyright 2019 ForgeRock AS. All Rights Reserved
+ *
+ * Use of this code requires a commercial software license with ForgeRock AS.
+ * or with one of its affiliates. All use shall be exclusively subject
+ * to such license between the licensee and ForgeRock AS.
+ */
+package gateway.filters;
+
+import java.io.InputStream;
+import java.net.URLEncoder;
+import java.security.KeyStore;
+import java.security.cert.X509Certificate;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.List;
+
+import static com.forgerock.cdr.gateway.filters.AddCertificateHeaderGatewayFilter.BEGIN_CERT;
+import static com.forgerock.cdr.gateway.filters.AddCertificateHeaderGatewayFilter.END_CERT;
+
+/**
+ * The certificates of the gateway keystore, in the formats the gateway receives them.
+ */
+public class PemCertificates {
+
+    public static List<X509Certificate> certificates() throws Exception {
+        KeyStore keyStore = KeyStore.getInstance("PKCS12");
+        try (InputStream in = PemCertificates.class.getClassLoader().getResourceAsStream("keystore/keystore.jks")) {
+            keyStore.load(in, "changeit".toCharArray());
+        }
+        List<X509Certificate> certificates = new ArrayList<>();
+        for (String alias : new String[]{"obri-external-ca", "obri-internal-ca", "scgw.dev-ob.forgerock.financial"}) {
+            certificates.add((X509Certificate) keyStore.getCertificate(alias));
+        }
+        return certificates;
+    }
+
+    public static String pem(X509Certificate certificate, int lineLength, boolean armor) throws Exception {
+        String base64 = Base64.getEncoder().encodeToString(certificate.getEncoded());
+        StringBuilder pem = new StringBuilder();
+        if (armor) {
+            pem.append(BEGIN_CERT).append('\n');
+        }
+        for (int i = 0; i < base64.length(); i += lineLength) {
+            pem.append(base64, i, Math.min(base64.length(), i + lineLength)).append('\n');
+        }
+        if (armor) {
+            pem.append(END_CERT).append('\n');
+        }
+        return pem.toString();
+    }
+
+    /**
+     * As nginx $ssl_client_escaped_cert.
+     */
+    public static String urlEncodedPem(X509Certificate certificate) throws Exception {
+        return URLEncoder.encode(pem(certificate, 64, true), "UTF-8");
+    }
+}
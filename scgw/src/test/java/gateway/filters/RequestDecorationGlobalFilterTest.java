@@ -0,0 +1,75 @@
+/**
+ * Copyright 2019 ForgeRock AS. All Rights Reserved
+ *
+ * Use of this code requires a commercial software license with ForgeRock AS.
+ * or with one of its affiliates. All use shall be exclusively subject
+ * to such license between the licensee and ForgeRock AS.
+ */
+package gateway.filters;
+
+import com.forgerock.cdr.gateway.OBMatlsFilteringFactory;
+import com.forgerock.cdr.gateway.filters.RequestDecorationGlobalFilter;
+import com.forgerock.cdr.gateway.filters.RequestDecorations;
+import org.junit.Test;
+import org.springframework.cloud.gateway.filter.GatewayFilterChain;
+import org.springframework.mock.http.server.reactive.MockServerHttpRequest;
+import org.springframework.mock.web.server.MockServerWebExchange;
+import org.springframework.web.server.ServerWebExchange;
+import reactor.core.publisher.Mono;
+
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class RequestDecorationGlobalFilterTest {
+
+    private final RequestDecorationGlobalFilter requestDecorationGlobalFilter = new RequestDecorationGlobalFilter();
+    private final AtomicReference<ServerWebExchange> proxied = new AtomicReference<>();
+    private final GatewayFilterChain chain = exchange -> {
+        proxied.set(exchange);
+        return Mono.empty();
+    };
+
+    @Test
+    public void appliesTheDecorationsOfAllTheFilters() {
+        // Given
+        MockServerWebExchange exchange = MockServerWebExchange.from(MockServerHttpRequest.get("https://localhost/banking")
+                .header("Accept", "application/json")
+                .header("X-Client-Jwk", "{\"spoofed\":true}"));
+        RequestDecorations.of(exchange).setHeader("x-fapi-interaction-id", "93bc4b66-f6d5-4d0e-8a42-2b4cb3f4ab2e");
+        RequestDecorations.of(exchange).setHeader("X-Client-Jwk", "{\"kty\":\"RSA\"}").setHeader("x-client-pem-cert", "pem");
+
+        // When
+        requestDecorationGlobalFilter.filter(exchange, chain).block();
+
+        // Then
+        assertThat(proxied.get().getRequest().getHeaders().get("Accept")).containsExactly("application/json");
+        assertThat(proxied.get().getRequest().getHeaders().get("x-fapi-interaction-id")).containsExactly("93bc4b66-f6d5-4d0e-8a42-2b4cb3f4ab2e");
+        assertThat(proxied.get().getRequest().getHeaders().get("X-Client-Jwk")).containsExactly("{\"kty\":\"RSA\"}");
+        assertThat(proxied.get().getRequest().getHeaders().get("x-client-pem-cert")).containsExactly("pem");
+    }
+
+    @Test
+    public void doesNotCopyAnUndecoratedRequest() {
+        // Given
+        MockServerWebExchange exchange = MockServerWebExchange.from(MockServerHttpRequest.get("https://localhost/banking"));
+
+        // When
+        requestDecorationGlobalFilter.filter(exchange, chain).block();
+
+        // Then
+        assertThat(proxied.get()).isSameAs(exchange);
+    }
+
+    @Test
+    public void obMatlsFilterPassesTheExchangeThrough() {
+        // Given
+        MockServerWebExchange exchange = MockServerWebExchange.from(MockServerHttpRequest.get("https://localhost/banking"));
+
+        // When
+        new OBMatlsFilteringFactory().apply((Object) null).filter(exchange, chain).block();
+
+        // Then
+        assertThat(proxied.get()).isSameAs(exchange);
+    }
+}
@@ -0,0 +1,90 @@
+/**
+ * Copyright 2019 ForgeRock AS. All Rights Reserved
+ *
+ * Use of this code requires a commercial software license with ForgeRock AS.
+ * or with one of its affiliates. All use shall be exclusively subject
+ * to such license between the licensee and ForgeRock AS.
+ */
+package gateway.routing;
+
+import com.forgerock.cdr.gateway.CdrGatewayApplication;
+import com.forgerock.cdr.gateway.routing.IndexedRoutePredicateHandlerMapping;
+import com.forgerock.cdr.gateway.routing.RouteDispatchTable;
+import org.springframework.cloud.gateway.config.GlobalCorsProperties;
+import org.springframework.cloud.gateway.filter.factory.AddRequestHeaderGatewayFilterFactory;
+import org.springframework.cloud.gateway.filter.factory.PreserveHostHeaderGatewayFilterFactory;
+import org.springframework.cloud.gateway.filter.factory.RemoveRequestHeaderGatewayFilterFactory;
+import org.springframework.cloud.gateway.filter.factory.RewritePathGatewayFilterFactory;
+import org.springframework.cloud.gateway.filter.factory.SetRequestHeaderGatewayFilterFactory;
+import org.springframework.cloud.gateway.handler.FilteringWebHandler;
+import org.springframework.cloud.gateway.handler.RoutePredicateHandlerMapping;
+import org.springframework.cloud.gateway.handler.predicate.HostRoutePredicateFactory;
+import org.springframework.cloud.gateway.handler.predicate.MethodRoutePredicateFactory;
+import org.springframework.cloud.gateway.handler.predicate.PathRoutePredicateFactory;
+import org.springframework.cloud.gateway.handler.predicate.RemoteAddrRoutePredicateFactory;
+import org.springframework.cloud.gateway.route.CachingRouteLocator;
+import org.springframework.cloud.gateway.route.RouteLocator;
+import org.springframework.cloud.gateway.route.builder.RouteLocatorBuilder;
+import org.springframework.context.support.GenericApplicationContext;
+import org.springframework.mock.env.MockEnvironment;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.Collections;
+
+/**
+ * The routes of {@link CdrGatewayApplication}, built outside of a running gateway.
+ */
+public class GatewayRoutesFixture {
+
+    public static final String DNS_HOST_ROOT = "dev-ob.forgerock.financial";
+    public static final String WHITELIST = "10.0.0.0/8";
+
+    private final CdrGatewayApplication application = new CdrGatewayApplication();
+    private final RouteLocator routeLocator;
+
+    public GatewayRoutesFixture() {
+        GenericApplicationContext context = new GenericApplicationContext();
+        context.registerBean(HostRoutePredicateFactory.class);
+        context.registerBean(PathRoutePredicateFactory.class);
+        context.registerBean(MethodRoutePredicateFactory.class);
+        context.registerBean(RemoteAddrRoutePredicateFactory.class);
+        context.registerBean(RewritePathGatewayFilterFactory.class);
+        context.registerBean(AddRequestHeaderGatewayFilterFactory.class);
+        context.registerBean(RemoveRequestHeaderGatewayFilterFactory.class);
+        context.registerBean(SetRequestHeaderGatewayFilterFactory.class);
+        context.registerBean(PreserveHostHeaderGatewayFilterFactory.class);
+        context.refresh();
+
+        ReflectionTestUtils.setField(application, "dnsHostRoot", DNS_HOST_ROOT);
+        ReflectionTestUtils.setField(application, "amRoute", "https://openam:443");
+        ReflectionTestUtils.setField(application, "amHostname", "am." + DNS_HOST_ROOT);
+        ReflectionTestUtils.setField(application, "amMatlsHostname", "matls.am." + DNS_HOST_ROOT);
+        ReflectionTestUtils.setField(application, "forgerockWhitelist", WHITELIST);
+        ReflectionTestUtils.setField(application, "isDynamicRegistrationEnable", false);
+        for (String port : new String[]{"rsApiPort", "jwkmsPort", "directoryServicePort", "metricsServicePort",
+                "rcsPort", "tppCorePort", "shopUiPort", "accountUIPort", "rsUiPort", "registerPort", "adminPort",
+                "docsPort", "asApiPort", "monitoringPort", "rsSimulatorPort", "configPort"}) {
+            ReflectionTestUtils.setField(application, port, "8443");
+        }
+
+        routeLocator = new CachingRouteLocator(application.routeLocator(new RouteLocatorBuilder(context)));
+    }
+
+    public RouteLocator getRouteLocator() {
+        return routeLocator;
+    }
+
+    public RouteDispatchTable getRouteDispatchTable() {
+        return application.routeDispatchTable();
+    }
+
+    public RoutePredicateHandlerMapping linearHandlerMapping() {
+        return new RoutePredicateHandlerMapping(new FilteringWebHandler(Collections.emptyList()), routeLocator,
+                new GlobalCorsProperties(), new MockEnvironment());
+    }
+
+    public IndexedRoutePredicateHandlerMapping indexedHandlerMapping() {
+        return new IndexedRoutePredicateHandlerMapping(new FilteringWebHandler(Collections.emptyList()), routeLocator,
+                getRouteDispatchTable(), new GlobalCorsProperties(), new MockEnvironment());
+    }
+}
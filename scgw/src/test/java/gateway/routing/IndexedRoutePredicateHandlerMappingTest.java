@@ -0,0 +1,137 @@
+/**
+ * Copyright 2019 ForgeRock AS. All Rights Reserved
+ *
+ * Use of this code requires a commercial software license with ForgeRock AS.
+ * or with one of its affiliates. All use shall be exclusively subject
+ * to such license between the licensee and ForgeRock AS.
+ */
+package gateway.routing;
+
+import com.forgerock.cdr.gateway.routing.IndexedRoutePredicateHandlerMapping;
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.cloud.gateway.handler.RoutePredicateHandlerMapping;
+import org.springframework.cloud.gateway.route.Route;
+import org.springframework.http.HttpMethod;
+import org.springframework.mock.http.server.reactive.MockServerHttpRequest;
+import org.springframework.mock.web.server.MockServerWebExchange;
+import org.springframework.web.server.ServerWebExchange;
+
+import java.net.InetSocketAddress;
+import java.util.Arrays;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import static gateway.routing.GatewayRoutesFixture.DNS_HOST_ROOT;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.springframework.cloud.gateway.support.ServerWebExchangeUtils.GATEWAY_ROUTE_ATTR;
+
+public class IndexedRoutePredicateHandlerMappingTest {
+
+    private static final List<String> HOST_PREFIXES = Arrays.asList("jwkms.", "matls.rs.aspsp.", "rs.aspsp.",
+            "as.aspsp.", "matls.as.aspsp.", "service.directory.", "matls.service.directory.", "service.metrics.",
+            "rcs.aspsp.", "tpp-core.", "shop.", "account.", "service.bank.", "matls.service.bank.", "docs.", "admin.",
+            "monitoring.", "service.register.", "rs-simulator.aspsp.", "am.", "unknown.", "aspsp.", "");
+
+    private static final List<String> PATHS = Arrays.asList("/", "/external/actuator/health",
+            "/external/actuator/info", "/external/actuator/info/", "/api/jwk/jwk_uri",
+            "/oauth2/realms/root/realms/openbanking/connect/jwk_uri", "/oauth2/access_token",
+            "/oauth2/realms/root/realms/openbanking/access_token", "/oauth2/authorize", "/oauth2/rest/authorize",
+            "/oauth2/realms/root/realms/openbanking/authorize", "/open-banking/register", "/open-banking/v3.1/aisp",
+            "/oauth2/.well-known/openid-configuration", "/banking", "/banking/accounts",
+            "/banking/accounts/1234/transactions", "/bankingx", "/api/software-statement", "/banking%2Faccounts",
+            "//banking/accounts", "/banking;v=1/accounts");
+
+    private GatewayRoutesFixture fixture;
+    private RoutePredicateHandlerMapping linear;
+    private IndexedRoutePredicateHandlerMapping indexed;
+
+    @Before
+    public void setup() {
+        fixture = new GatewayRoutesFixture();
+        linear = fixture.linearHandlerMapping();
+        indexed = fixture.indexedHandlerMapping();
+    }
+
+    @Test
+    public void everyRouteHasAGuard() {
+        // Given
+        List<String> routeIds = fixture.getRouteLocator().getRoutes().map(Route::getId).collectList().block();
+
+        // Then
+        assertThat(fixture.getRouteDispatchTable().getGuards().keySet()).containsExactlyElementsOf(routeIds);
+    }
+
+    @Test
+    public void selectsTheSameRouteAsTheLinearLookup() {
+        for (String hostPrefix : HOST_PREFIXES) {
+            for (String host : Arrays.asList(hostPrefix + DNS_HOST_ROOT, hostPrefix + DNS_HOST_ROOT + ":8074", hostPrefix + DNS_HOST_ROOT + ".evil.com")) {
+                for (String path : PATHS) {
+                    for (HttpMethod method : Arrays.asList(HttpMethod.GET, HttpMethod.POST)) {
+                        for (String remoteAddress : Arrays.asList("10.1.1.1", "192.168.1.1")) {
+                            // When
+                            String expected = lookup(linear, host, path, method, remoteAddress);
+                            String actual = lookup(indexed, host, path, method, remoteAddress);
+
+                            // Then
+                            assertThat(actual)
+                                    .as("%s %s%s from %s", method, host, path, remoteAddress)
+                                    .isEqualTo(expected);
+                        }
+                    }
+                }
+            }
+        }
+    }
+
+    @Test
+    public void selectsTheSameRouteWithoutHostHeader() {
+        for (String path : PATHS) {
+            // When
+            String expected = lookup(linear, null, path, HttpMethod.GET, "10.1.1.1");
+            String actual = lookup(indexed, null, path, HttpMethod.GET, "10.1.1.1");
+
+            // Then
+            assertThat(actual).as(path).isEqualTo(expected);
+        }
+    }
+
+    @Test
+    public void selectsTheRouteOfTheRequest() {
+        // When
+        String banking = lookup(indexed, "rs.aspsp." + DNS_HOST_ROOT, "/banking/accounts", HttpMethod.GET, "10.1.1.1");
+        String register = lookup(indexed, "matls.as.aspsp." + DNS_HOST_ROOT, "/open-banking/register", HttpMethod.POST, "10.1.1.1");
+        String notWhitelisted = lookup(indexed, "matls.as.aspsp." + DNS_HOST_ROOT, "/open-banking/register", HttpMethod.POST, "192.168.1.1");
+
+        // Then
+        assertThat(banking).isEqualTo("rs-api-banking");
+        assertThat(register).isEqualTo("as-api-register");
+        assertThat(notWhitelisted).isNull();
+    }
+
+    @Test
+    public void rsApiBankingRequestOnlyEvaluatesItsCandidates() {
+        // When
+        List<String> candidates = fixture.getRouteDispatchTable()
+                .compile(fixture.getRouteLocator().getRoutes().collectList().block())
+                .candidates("rs.aspsp." + DNS_HOST_ROOT + ":443", "/banking/accounts/1234/transactions")
+                .stream()
+                .mapToObj(i -> fixture.getRouteLocator().getRoutes().collectList().block().get(i).getId())
+                .collect(Collectors.toList());
+
+        // Then
+        assertThat(candidates).containsExactly("rs-api-banking", "rs-api");
+    }
+
+    private static String lookup(RoutePredicateHandlerMapping handlerMapping, String host, String path, HttpMethod method, String remoteAddress) {
+        MockServerHttpRequest.BaseBuilder<?> request = MockServerHttpRequest.method(method, "https://localhost" + path)
+                .remoteAddress(new InetSocketAddress(remoteAddress, 443));
+        if (host != null) {
+            request.header("Host", host);
+        }
+        ServerWebExchange exchange = MockServerWebExchange.from(request);
+        handlerMapping.getHandler(exchange).block();
+        Route route = exchange.getAttribute(GATEWAY_ROUTE_ATTR);
+        return route == null ? null : route.getId();
+    }
+}
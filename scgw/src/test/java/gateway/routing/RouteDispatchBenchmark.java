@@ -0,0 +1,86 @@
+/**
+ * Copyright 2019 ForgeRock AS. All Rights Reserved
+ *
+ * Use of this code requires a commercial software license with ForgeRock AS.
+ * or with one of its affiliates. All use shall be exclusively subject
+ * to such license between the licensee and ForgeRock AS.
+ */
+package gateway.routing;
+
+import com.forgerock.cdr.gateway.routing.IndexedRoutePredicateHandlerMapping;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.springframework.cloud.gateway.handler.RoutePredicateHandlerMapping;
+import org.springframework.mock.http.server.reactive.MockServerHttpRequest;
+import org.springframework.mock.web.server.MockServerWebExchange;
+
+import java.net.InetSocketAddress;
+import java.util.concurrent.TimeUnit;
+
+import static gateway.routing.GatewayRoutesFixture.DNS_HOST_ROOT;
+
+/**
+ * Route lookup of the gateway routes, linear predicate evaluation against the route dispatch index.
+ *
+ * Run with: mvn test-compile exec:java -Dexec.mainClass=gateway.routing.RouteDispatchBenchmark -Dexec.classpathScope=test
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class RouteDispatchBenchmark {
+
+    @Param({"rs.aspsp.|/banking/accounts/1234/transactions", "jwkms.|/api/application/1234/jwk_uri", "as.aspsp.|/oauth2/access_token", "unknown.|/"})
+    private String request;
+
+    private RoutePredicateHandlerMapping linear;
+    private IndexedRoutePredicateHandlerMapping indexed;
+    private String host;
+    private String path;
+
+    @Setup
+    public void setup() {
+        GatewayRoutesFixture fixture = new GatewayRoutesFixture();
+        linear = fixture.linearHandlerMapping();
+        indexed = fixture.indexedHandlerMapping();
+        host = request.split("\\|")[0] + DNS_HOST_ROOT + ":443";
+        path = request.split("\\|")[1];
+    }
+
+    @Benchmark
+    public Object linearLookup() {
+        return linear.getHandler(exchange()).block();
+    }
+
+    @Benchmark
+    public Object indexedLookup() {
+        return indexed.getHandler(exchange()).block();
+    }
+
+    private MockServerWebExchange exchange() {
+        return MockServerWebExchange.from(MockServerHttpRequest.get("https://localhost" + path)
+                .header("Host", host)
+                .remoteAddress(new InetSocketAddress("10.1.1.1", 443)));
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder()
+                .include(RouteDispatchBenchmark.class.getSimpleName())
+                .build())
+                .run();
+    }
+}
@@ -0,0 +1,170 @@
+/**
+ * Copyright 2019 ForgeRock AS. All Rights Reserved
+ *
+ * Use of this code requires a commercial software license with ForgeRock AS.
+ * or with one of its affiliates. All use shall be exclusively subject
+ * to such license between the licensee and ForgeRock AS.
+ */
+package gateway.services;
+
+import com.forgerock.cdr.gateway.cache.TppAuthenticationCache;
+import com.forgerock.cdr.gateway.cache.TppAuthenticationCacheEndpoint;
+import com.forgerock.cdr.gateway.model.Tpp;
+import com.forgerock.cdr.gateway.services.AuthenticationService;
+import com.github.tomakehurst.wiremock.junit.WireMockRule;
+import com.nimbusds.jose.util.X509CertUtils;
+import gateway.filters.PemCertificates;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.springframework.http.server.reactive.SslInfo;
+import org.springframework.mock.http.server.reactive.MockServerHttpRequest;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.web.reactive.function.client.WebClient;
+import org.springframework.web.reactive.function.client.WebClientResponseException;
+import reactor.core.publisher.Flux;
+
+import java.security.cert.X509Certificate;
+import java.time.Duration;
+import java.util.List;
+import java.util.Optional;
+
+import static com.github.tomakehurst.wiremock.client.WireMock.aResponse;
+import static com.github.tomakehurst.wiremock.client.WireMock.get;
+import static com.github.tomakehurst.wiremock.client.WireMock.getRequestedFor;
+import static com.github.tomakehurst.wiremock.client.WireMock.post;
+import static com.github.tomakehurst.wiremock.client.WireMock.postRequestedFor;
+import static com.github.tomakehurst.wiremock.client.WireMock.urlEqualTo;
+import static com.github.tomakehurst.wiremock.client.WireMock.urlPathEqualTo;
+import static com.github.tomakehurst.wiremock.core.WireMockConfiguration.wireMockConfig;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.BDDMockito.given;
+import static org.mockito.Mockito.mock;
+
+public class AuthenticationServiceTest {
+
+    private static final String AUTHENTICATE_PATH = "/api/directory/authenticate";
+    private static final String FIND_BY_CN_PATH = "/tpps/search/findByCertificateCn";
+
+    @Rule
+    public WireMockRule servicesMock = new WireMockRule(wireMockConfig().dynamicPort());
+
+    private AuthenticationService authenticationService;
+    private TppAuthenticationCacheEndpoint tppAuthenticationCacheEndpoint;
+    private MockServerHttpRequest request;
+    private X509Certificate certificate;
+
+    @Before
+    public void setup() throws Exception {
+        TppAuthenticationCache tppAuthenticationCache = new TppAuthenticationCache(10, Duration.ofMinutes(5), new SimpleMeterRegistry());
+        authenticationService = new AuthenticationService();
+        ReflectionTestUtils.setField(authenticationService, "webClient", WebClient.create());
+        ReflectionTestUtils.setField(authenticationService, "tppAuthenticationCache", tppAuthenticationCache);
+        ReflectionTestUtils.setField(authenticationService, "authenticateEndpoint", "http://localhost:" + servicesMock.port() + AUTHENTICATE_PATH);
+        ReflectionTestUtils.setField(authenticationService, "rsStoreRoot", "http://localhost:" + servicesMock.port());
+        tppAuthenticationCacheEndpoint = new TppAuthenticationCacheEndpoint();
+        ReflectionTestUtils.setField(tppAuthenticationCacheEndpoint, "tppAuthenticationCache", tppAuthenticationCache);
+
+        certificate = PemCertificates.certificates().get(2);
+        SslInfo sslInfo = mock(SslInfo.class);
+        given(sslInfo.getPeerCertificates()).willReturn(new X509Certificate[]{certificate});
+        MockServerHttpRequest.BaseBuilder<?> builder = MockServerHttpRequest.get("https://localhost/");
+        builder.sslInfo(sslInfo);
+        request = builder.build();
+
+        servicesMock.stubFor(post(urlEqualTo(AUTHENTICATE_PATH))
+                .willReturn(aResponse().withStatus(200).withHeader("Content-Type", "application/json")
+                        .withBody("{\"id\":\"tpp-cn\",\"roles\":[\"ROLE_AISP\"]}")));
+    }
+
+    @Test
+    public void authenticatesTheTppOfTheCertificate() {
+        // Given
+        stubTpp();
+
+        // When
+        Optional<Tpp> tpp = authenticationService.authenticateTPPReactive(request).block();
+
+        // Then
+        assertThat(tpp).hasValueSatisfying(t -> assertThat(t.getId()).isEqualTo("tpp-id"));
+        servicesMock.verify(1, getRequestedFor(urlEqualTo(FIND_BY_CN_PATH + "?certificateCn=tpp-cn")));
+    }
+
+    @Test
+    public void cachesTheTppOfTheCertificate() {
+        // Given
+        stubTpp();
+
+        // When
+        List<Optional<Tpp>> tpps = Flux.range(0, 10)
+                .flatMap(i -> authenticationService.authenticateTPPReactive(request))
+                .collectList()
+                .block();
+        authenticationService.authenticateTPPReactive(request).block();
+
+        // Then
+        assertThat(tpps).hasSize(10).allSatisfy(tpp -> assertThat(tpp).isPresent());
+        servicesMock.verify(1, postRequestedFor(urlEqualTo(AUTHENTICATE_PATH)));
+        servicesMock.verify(1, getRequestedFor(urlPathEqualTo(FIND_BY_CN_PATH)));
+    }
+
+    @Test
+    public void noTppForAnUnknownCertificateCn() {
+        // Given
+        servicesMock.stubFor(get(urlPathEqualTo(FIND_BY_CN_PATH)).willReturn(aResponse().withStatus(404)));
+
+        // When
+        Optional<Tpp> tpp = authenticationService.authenticateTPPReactive(request).block();
+
+        // Then
+        assertThat(tpp).isEmpty();
+    }
+
+    @Test
+    public void noTppWithoutClientCertificate() {
+        // When
+        Optional<Tpp> tpp = authenticationService.authenticateTPPReactive(MockServerHttpRequest.get("https://localhost/").build()).block();
+
+        // Then
+        assertThat(tpp).isEmpty();
+        servicesMock.verify(0, postRequestedFor(urlEqualTo(AUTHENTICATE_PATH)));
+    }
+
+    @Test
+    public void doesNotCacheAFailedAuthentication() {
+        // Given
+        servicesMock.stubFor(get(urlPathEqualTo(FIND_BY_CN_PATH)).willReturn(aResponse().withStatus(500)));
+        assertThatThrownBy(() -> authenticationService.authenticateTPPReactive(request).block())
+                .isInstanceOf(WebClientResponseException.class);
+        stubTpp();
+
+        // When
+        Optional<Tpp> tpp = authenticationService.authenticateTPPReactive(request).block();
+
+        // Then
+        assertThat(tpp).isPresent();
+        servicesMock.verify(2, postRequestedFor(urlEqualTo(AUTHENTICATE_PATH)));
+    }
+
+    @Test
+    public void reauthenticatesOnceEvicted() {
+        // Given
+        stubTpp();
+        authenticationService.authenticateTPPReactive(request).block();
+
+        // When
+        tppAuthenticationCacheEndpoint.evict(X509CertUtils.computeSHA256Thumbprint(certificate).toString());
+        authenticationService.authenticateTPPReactive(request).block();
+
+        // Then
+        servicesMock.verify(2, postRequestedFor(urlEqualTo(AUTHENTICATE_PATH)));
+    }
+
+    private void stubTpp() {
+        servicesMock.stubFor(get(urlPathEqualTo(FIND_BY_CN_PATH))
+                .willReturn(aResponse().withStatus(200).withHeader("Content-Type", "application/json")
+                        .withBody("{\"id\":\"tpp-id\",\"certificateCn\":\"tpp-cn\",\"_links\":{}}")));
+    }
+}